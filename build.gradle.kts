@@ -3,6 +3,7 @@ plugins {
     kotlin("jvm") version "1.9.21"
     kotlin("plugin.serialization") version "1.9.21"
     id("com.github.johnrengelman.shadow") version "8.1.1"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.tsl"
@@ -23,6 +24,13 @@ dependencies {
     implementation(kotlin("stdlib"))
     implementation("org.jetbrains.kotlinx:kotlinx-serialization-json:1.6.0")
     implementation("org.java-websocket:Java-WebSocket:1.5.6")
+
+    // JMH 基准（src/jmh）：服务端接口由 Mockito 模拟，SQLite 驱动由服务端提供，这里单独引入
+    jmh("io.papermc.paper:paper-api:1.21.8-R0.1-SNAPSHOT")
+    jmh("net.luckperms:api:5.4")
+    jmh("me.clip:placeholderapi:2.11.6")
+    jmh("org.mockito:mockito-core:5.12.0")
+    jmh("org.xerial:sqlite-jdbc:3.46.0.0")
 }
 
 java {
@@ -36,6 +44,16 @@ kotlin {
     }
 }
 
+// ./gradlew jmh [-Pjmh.includes=正则]，结果写入 build/results/jmh/results.json
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    (findProperty("jmh.includes") as String?)?.let { includes.set(listOf(it)) }
+    // Mockito inline 模拟需要动态加载代理
+    jvmArgsAppend.set(listOf("-XX:+EnableDynamicAgentLoading"))
+}
+
 tasks {
     processResources {
         filesMatching("plugin.yml") {
@@ -55,5 +73,14 @@ tasks {
     compileKotlin {
         kotlinOptions.jvmTarget = "21"
     }
+
+    // 优化前后对比：先在改动前运行 jmh + jmhBaseline，改动后再运行 jmh 对比
+    register<Copy>("jmhBaseline") {
+        group = "benchmark"
+        description = "将最近一次 JMH 结果保存为基准 src/jmh/baseline.json"
+        from(layout.buildDirectory.file("results/jmh/results.json"))
+        into(layout.projectDirectory.dir("src/jmh"))
+        rename { "baseline.json" }
+    }
 }
 
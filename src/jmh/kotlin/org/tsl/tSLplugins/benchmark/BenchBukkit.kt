@@ -0,0 +1,79 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.bukkit.Bukkit
+import org.bukkit.Server
+import org.bukkit.World
+import org.bukkit.configuration.file.YamlConfiguration
+import org.bukkit.entity.Player
+import org.bukkit.plugin.java.JavaPlugin
+import org.mockito.Mockito
+import java.io.File
+import java.nio.file.Files
+import java.util.UUID
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * 基准测试用的模拟服务端
+ *
+ * 只模拟被测代码实际用到的接口：插件配置 / 数据目录 / 日志、服务端单例、
+ * 调度器和事件注册（深度桩，调用不产生任何效果）。
+ * 不调用 Bukkit.setServer（Paper 会在其中读取构建信息），直接写入单例字段。
+ */
+object BenchBukkit {
+
+    private val logger: Logger = Logger.getLogger("TSLplugins-Bench").apply { level = Level.WARNING }
+
+    val server: Server by lazy {
+        val server = Mockito.mock(Server::class.java, Mockito.RETURNS_DEEP_STUBS)
+        Mockito.`when`(server.logger).thenReturn(logger)
+        Mockito.`when`(server.onlinePlayers).thenReturn(emptyList())
+        Bukkit::class.java.getDeclaredField("server").apply { isAccessible = true }.set(null, server)
+        server
+    }
+
+    /**
+     * 模拟插件
+     *
+     * @param config 插件配置（config.yml）
+     */
+    fun plugin(config: YamlConfiguration = YamlConfiguration()): JavaPlugin {
+        val dataFolder = Files.createTempDirectory("tsl-bench").toFile().apply { deleteOnExit() }
+        val plugin = Mockito.mock(JavaPlugin::class.java)
+        Mockito.`when`(plugin.config).thenReturn(config)
+        Mockito.`when`(plugin.dataFolder).thenReturn(dataFolder)
+        Mockito.`when`(plugin.logger).thenReturn(logger)
+        Mockito.`when`(plugin.name).thenReturn("TSLplugins")
+        Mockito.`when`(plugin.server).thenReturn(server)
+        Mockito.`when`(plugin.getResource(Mockito.anyString())).thenAnswer {
+            BenchBukkit::class.java.classLoader.getResourceAsStream(it.getArgument<String>(0))
+        }
+        return plugin
+    }
+
+    /**
+     * 把插件资源复制到数据目录（代替 saveResource）
+     */
+    fun copyResource(plugin: JavaPlugin, name: String) {
+        val target = File(plugin.dataFolder, name)
+        BenchBukkit::class.java.classLoader.getResourceAsStream(name)!!.use { input ->
+            target.outputStream().use { input.copyTo(it) }
+        }
+    }
+
+    fun world(name: String = "world"): World {
+        val world = Mockito.mock(World::class.java)
+        val uid = UUID.nameUUIDFromBytes(name.toByteArray())
+        Mockito.`when`(world.uid).thenReturn(uid)
+        Mockito.`when`(world.name).thenReturn(name)
+        return world
+    }
+
+    fun player(uuid: UUID, name: String, world: World): Player {
+        val player = Mockito.mock(Player::class.java)
+        Mockito.`when`(player.uniqueId).thenReturn(uuid)
+        Mockito.`when`(player.name).thenReturn(name)
+        Mockito.`when`(player.world).thenReturn(world)
+        return player
+    }
+}
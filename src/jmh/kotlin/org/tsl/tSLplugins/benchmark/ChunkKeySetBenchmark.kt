@@ -0,0 +1,77 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.bukkit.Chunk
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.modules.redstonefreeze.LongOpenHashSet
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * RedstoneFreeze 区块键查询（物理事件热路径）
+ *
+ * 半径 190 区块的圆形区域约 11.3 万个区块；查询点一半在区域内、一半在区域外。
+ * boxedHashSet 为 HashSet<Long> 的对照（每次查询装箱）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class ChunkKeySetBenchmark {
+
+    @Param("190")
+    @JvmField
+    var radius = 0
+
+    private lateinit var openSet: LongOpenHashSet
+    private lateinit var boxedSet: HashSet<Long>
+    private val queries = LongArray(QUERIES)
+    private var cursor = 0
+
+    @Setup
+    fun setup() {
+        openSet = LongOpenHashSet()
+        boxedSet = HashSet()
+        val radiusSquared = radius * radius
+        for (cx in -radius..radius) {
+            for (cz in -radius..radius) {
+                if (cx * cx + cz * cz > radiusSquared) continue
+                val key = Chunk.getChunkKey(cx, cz)
+                openSet.add(key)
+                boxedSet.add(key)
+            }
+        }
+
+        val random = Random(42)
+        for (i in queries.indices) {
+            val range = if (i % 2 == 0) radius / 2 else radius * 4
+            queries[i] = Chunk.getChunkKey(random.nextInt(-range, range + 1), random.nextInt(-range, range + 1))
+        }
+    }
+
+    @Benchmark
+    fun longOpenHashSet(): Boolean = openSet.contains(next())
+
+    @Benchmark
+    fun boxedHashSet(): Boolean = boxedSet.contains(next())
+
+    private fun next(): Long {
+        cursor = (cursor + 1) and (QUERIES - 1)
+        return queries[cursor]
+    }
+
+    companion object {
+        private const val QUERIES = 4096
+    }
+}
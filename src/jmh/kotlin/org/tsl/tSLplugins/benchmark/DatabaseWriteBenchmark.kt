@@ -0,0 +1,125 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.bukkit.configuration.file.YamlConfiguration
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Group
+import org.openjdk.jmh.annotations.GroupThreads
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OperationsPerInvocation
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.service.DatabaseManager
+import java.sql.PreparedStatement
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * DatabaseManager 写入与读写混合（临时目录中的真实 SQLite 文件）
+ *
+ * 写入基准每次调用写 [BATCH] 行，结果为单行平均耗时：
+ * - syncUpdate：逐条 update（每条一次自动提交）
+ * - writeBehind：写后队列（batch-size 与 BATCH 相同，攒满即提交），等待最后一条完成
+ * - updateBatch：单个事务批量写入
+ *
+ * mixed 组：3 个线程经只读连接池按主键查询，1 个线程同步写入。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+open class DatabaseWriteBenchmark {
+
+    private val keys = AtomicLong()
+    private lateinit var table: String
+    private lateinit var upsert: String
+    private lateinit var select: String
+
+    @Setup
+    fun setup() {
+        val config = YamlConfiguration()
+        config.set("database.write-behind.enabled", true)
+        config.set("database.write-behind.batch-size", BATCH)
+        config.set("database.read-pool-size", 3)
+        DatabaseManager.init(BenchBukkit.plugin(config))
+
+        table = "${DatabaseManager.getTablePrefix()}bench"
+        DatabaseManager.createTable("CREATE TABLE IF NOT EXISTS $table (id INTEGER PRIMARY KEY, value TEXT NOT NULL, updated_at INTEGER NOT NULL)")
+        upsert = "INSERT OR REPLACE INTO $table (id, value, updated_at) VALUES (?, ?, ?)"
+        select = "SELECT value FROM $table WHERE id = ?"
+
+        DatabaseManager.updateBatch(upsert, (0L until KEY_SPACE).toList()) { stmt, id -> bind(stmt, id) }
+    }
+
+    @TearDown
+    fun tearDown() {
+        DatabaseManager.shutdown()
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    fun syncUpdate(): Int {
+        var total = 0
+        repeat(BATCH) {
+            val id = nextKey()
+            total += DatabaseManager.update(upsert) { bind(it, id) }
+        }
+        return total
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    fun writeBehind(): Int {
+        var last: CompletableFuture<Int>? = null
+        repeat(BATCH) {
+            val id = nextKey()
+            last = DatabaseManager.enqueueWrite(upsert) { bind(it, id) }
+        }
+        return last!!.join()
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    fun updateBatch(): Boolean {
+        val ids = List(BATCH) { nextKey() }
+        return DatabaseManager.updateBatch(upsert, ids) { stmt, id -> bind(stmt, id) }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    fun mixedRead(): String? {
+        val id = nextKey()
+        return DatabaseManager.query(select, { it.setLong(1, id) }) { rs -> if (rs.next()) rs.getString(1) else null }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    fun mixedWrite(): Int {
+        val id = nextKey()
+        return DatabaseManager.update(upsert) { bind(it, id) }
+    }
+
+    private fun nextKey(): Long = keys.getAndIncrement() % KEY_SPACE
+
+    private fun bind(stmt: PreparedStatement, id: Long) {
+        stmt.setLong(1, id)
+        stmt.setString(2, "value-$id")
+        stmt.setLong(3, System.currentTimeMillis())
+    }
+
+    companion object {
+        const val BATCH = 100
+        private const val KEY_SPACE = 10_000L
+    }
+}
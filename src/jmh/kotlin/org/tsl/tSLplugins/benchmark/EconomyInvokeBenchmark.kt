@@ -0,0 +1,66 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Method
+import java.math.BigDecimal
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+/**
+ * 模拟的 XConomy API（实例方法，与 XConomyAPI.getPlayerBalance 签名一致）
+ */
+class FakeXConomyApi {
+    private val balances = HashMap<UUID, BigDecimal>()
+
+    fun getPlayerBalance(uuid: UUID): BigDecimal = balances.getOrPut(uuid) { BigDecimal("1234.56") }
+}
+
+/**
+ * 经济插件余额查询的调用方式（EconomyBridge）
+ *
+ * - reflection：每次 Method.invoke（EconomyBridge 之前的 XconomyApi 做法）
+ * - methodHandle：与 EconomyBridge.toHandle 相同的构造方式（绑定实例、转为通用类型）
+ * - direct：直接调用，作为下限
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class EconomyInvokeBenchmark {
+
+    private val api = FakeXConomyApi()
+    private val uuid = UUID.randomUUID()
+    private lateinit var method: Method
+    private lateinit var handle: MethodHandle
+
+    @Setup
+    fun setup() {
+        method = FakeXConomyApi::class.java.getMethod("getPlayerBalance", UUID::class.java)
+        handle = MethodHandles.publicLookup().unreflect(method)
+            .bindTo(api)
+            .asType(MethodType.genericMethodType(1))
+    }
+
+    @Benchmark
+    fun reflection(): Double = (method.invoke(api, uuid) as BigDecimal).toDouble()
+
+    @Benchmark
+    fun methodHandle(): Double = (handle.invoke(uuid) as BigDecimal).toDouble()
+
+    @Benchmark
+    fun direct(): Double = api.getPlayerBalance(uuid).toDouble()
+}
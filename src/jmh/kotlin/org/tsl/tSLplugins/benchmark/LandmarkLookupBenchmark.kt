@@ -0,0 +1,89 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.modules.landmark.Landmark
+import org.tsl.tSLplugins.modules.landmark.LandmarkRegion
+import org.tsl.tSLplugins.modules.landmark.LandmarkSpatialIndex
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * 地标区域检测（LandmarkManager.getLandmarkAt 的核心查找）
+ *
+ * 随机分布在 ±50000 范围内的地标，查询点一半落在地标内、一半随机；
+ * linearScan 为空间索引之前按世界顺序遍历的做法。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class LandmarkLookupBenchmark {
+
+    @Param("100", "1000", "10000")
+    @JvmField
+    var landmarks = 0
+
+    private val index = LandmarkSpatialIndex()
+    private lateinit var list: List<Landmark>
+    private lateinit var points: DoubleArray
+    private var cursor = 0
+
+    @Setup
+    fun setup() {
+        val random = Random(42)
+        list = List(landmarks) { i ->
+            val x = random.nextInt(-50000, 50000)
+            val z = random.nextInt(-50000, 50000)
+            val region = LandmarkRegion.fromTwoPoints(x, z, x + random.nextInt(16, 256), z + random.nextInt(16, 256))
+            Landmark(id = "lm-$i", name = "地标$i", world = "world", region = region)
+        }
+        index.rebuild(mapOf("world" to list))
+
+        points = DoubleArray(QUERIES * 2)
+        for (q in 0 until QUERIES) {
+            if (q % 2 == 0) {
+                val region = list[random.nextInt(list.size)].region
+                points[q * 2] = (region.minX + region.maxX) / 2.0
+                points[q * 2 + 1] = (region.minZ + region.maxZ) / 2.0
+            } else {
+                points[q * 2] = random.nextDouble(-50000.0, 50000.0)
+                points[q * 2 + 1] = random.nextDouble(-50000.0, 50000.0)
+            }
+        }
+    }
+
+    @Benchmark
+    fun spatialIndex(): Landmark? {
+        val q = next()
+        return index.find("world", points[q], 64.0, points[q + 1])
+    }
+
+    @Benchmark
+    fun linearScan(): Landmark? {
+        val q = next()
+        val x = points[q]
+        val z = points[q + 1]
+        return list.firstOrNull { it.region.contains(x, 64.0, z) }
+    }
+
+    private fun next(): Int {
+        cursor = (cursor + 1) and (QUERIES - 1)
+        return cursor * 2
+    }
+
+    companion object {
+        private const val QUERIES = 1024
+    }
+}
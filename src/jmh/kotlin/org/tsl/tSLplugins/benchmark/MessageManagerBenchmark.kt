@@ -0,0 +1,69 @@
+package org.tsl.tSLplugins.benchmark
+
+import net.kyori.adventure.text.Component
+import org.bukkit.ChatColor
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.service.MessageManager
+import java.util.concurrent.TimeUnit
+
+/**
+ * MessageManager.get / getComponent（使用插件自带的 messages.yml）
+ *
+ * legacy* 为预编译模板之前的做法（每次 replace 前缀、逐个 replace 占位符再整体转换颜色），作为对照。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class MessageManagerBenchmark {
+
+    private lateinit var messages: MessageManager
+    private lateinit var rawWithPlaceholders: String
+    private val prefix = "&6[TSL]&r "
+
+    private val replacements = arrayOf(
+        "player" to "Steve",
+        "attribute" to "max_health",
+        "amount" to "&a+4",
+        "duration" to "10分钟",
+        "modifier_uuid" to "3f1c2a9e"
+    )
+
+    @Setup
+    fun setup() {
+        val plugin = BenchBukkit.plugin()
+        BenchBukkit.copyResource(plugin, "messages.yml")
+        messages = MessageManager(plugin)
+        rawWithPlaceholders = messages.getRaw("timed-attribute.add_success")
+    }
+
+    @Benchmark
+    fun getStatic(): String = messages.get("common.no_permission")
+
+    @Benchmark
+    fun getWithPlaceholders(): String = messages.get("timed-attribute.add_success", *replacements)
+
+    @Benchmark
+    fun getComponentStatic(): Component = messages.getComponent("common.no_permission")
+
+    @Benchmark
+    fun legacyWithPlaceholders(): String {
+        var message = rawWithPlaceholders.replace("%prefix%", prefix)
+        for ((key, value) in replacements) {
+            message = message.replace("{$key}", value)
+            message = message.replace("%$key%", value)
+        }
+        return ChatColor.translateAlternateColorCodes('&', message)
+    }
+}
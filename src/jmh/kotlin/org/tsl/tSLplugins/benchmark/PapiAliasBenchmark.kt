@@ -0,0 +1,72 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.modules.papialias.PapiAliasIndex
+import java.util.concurrent.TimeUnit
+
+/**
+ * PapiAlias 别名查找
+ *
+ * 四种输入分别走到匹配的不同阶段：原始值精确命中、中文部分包含匹配、
+ * 去色后包含匹配、全部未命中（最坏情况，遍历两棵前缀树）。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class PapiAliasBenchmark {
+
+    /** 单个变量的映射条数 */
+    @Param("10", "1000", "50000")
+    @JvmField
+    var size = 0
+
+    private lateinit var index: PapiAliasIndex
+    private lateinit var exactInput: String
+    private lateinit var chineseInput: String
+    private lateinit var strippedInput: String
+    private val missInput = "&7<bold>Unknown Rank 999</bold>"
+
+    @Setup
+    fun setup() {
+        val mappings = LinkedHashMap<String, String>()
+        for (i in 0 until size) {
+            mappings["&6[${chineseName(i)}]&r Lv$i"] = "R$i"
+        }
+        mappings["&#FFAA00Champion"] = "CH"
+        index = PapiAliasIndex(mappings)
+
+        val middle = size / 2
+        exactInput = "&6[${chineseName(middle)}]&r Lv$middle"
+        chineseInput = "<gradient:#FFFFFF:#000000>称号${chineseName(middle)}后缀</gradient>"
+        strippedInput = "§x§F§F§A§A§0§0Champion §7of the season"
+    }
+
+    @Benchmark
+    fun exact(): String? = index.find(exactInput)
+
+    @Benchmark
+    fun chineseContains(): String? = index.find(chineseInput)
+
+    @Benchmark
+    fun strippedContains(): String? = index.find(strippedInput)
+
+    @Benchmark
+    fun miss(): String? = index.find(missInput)
+
+    /** 每个序号对应唯一的两个汉字 */
+    private fun chineseName(i: Int): String =
+        charArrayOf((0x4E00 + 2000 + i / 1000).toChar(), (0x4E00 + 3000 + i % 1000).toChar()).concatToString()
+}
@@ -0,0 +1,63 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.bukkit.OfflinePlayer
+import org.mockito.Mockito
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.TSLPlaceholderExpansion
+import org.tsl.tSLplugins.core.ModuleRegistry
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+
+/**
+ * TSLPlaceholderExpansion.onRequest 分发开销
+ *
+ * 模块注册表为模拟对象（所有模块均未加载），测量的是查表、缓存和前缀匹配本身：
+ * - ping：全局缓存命中
+ * - PING：大小写回退后命中
+ * - kiss_count：不缓存的精确变量
+ * - random_xxx：前缀变量
+ * - unknown：未知变量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class PlaceholderDispatchBenchmark {
+
+    private lateinit var expansion: TSLPlaceholderExpansion
+    private lateinit var player: OfflinePlayer
+
+    @Setup
+    fun setup() {
+        val registry = Mockito.mock(ModuleRegistry::class.java)
+        expansion = TSLPlaceholderExpansion(BenchBukkit.plugin(), registry, null)
+        player = Mockito.mock(OfflinePlayer::class.java)
+        Mockito.`when`(player.uniqueId).thenReturn(UUID.randomUUID())
+    }
+
+    @Benchmark
+    fun globalCached(): String? = expansion.onRequest(player, "ping")
+
+    @Benchmark
+    fun lowercaseFallback(): String? = expansion.onRequest(player, "PING")
+
+    @Benchmark
+    fun uncached(): String? = expansion.onRequest(player, "kiss_count")
+
+    @Benchmark
+    fun prefixed(): String? = expansion.onRequest(player, "random_lucky")
+
+    @Benchmark
+    fun unknown(): String? = expansion.onRequest(player, "no_such_variable")
+}
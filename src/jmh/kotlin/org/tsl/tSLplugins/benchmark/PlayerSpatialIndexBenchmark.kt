@@ -0,0 +1,111 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.bukkit.Location
+import org.bukkit.World
+import org.bukkit.entity.Player
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.service.PlayerSpatialIndex
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * 玩家空间索引（200 名玩家分布在 ±2000 范围内，部分聚集在出生点附近）
+ *
+ * - queryRadius / nearest：索引查询
+ * - linearRadius：遍历全部玩家计算距离的对照（索引之前各模块的做法）
+ * - move：一名玩家移动（跨网格的概率约 1/4）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class PlayerSpatialIndexBenchmark {
+
+    @Param("200")
+    @JvmField
+    var players = 0
+
+    private lateinit var index: PlayerSpatialIndex
+    private lateinit var world: World
+    private lateinit var online: List<Player>
+    private lateinit var positions: DoubleArray
+    private val random = Random(42)
+    private var cursor = 0
+
+    @Setup
+    fun setup() {
+        index = PlayerSpatialIndex(BenchBukkit.plugin())
+        index.acquire()
+        world = BenchBukkit.world()
+        online = List(players) { BenchBukkit.player(UUID.randomUUID(), "Player$it", world) }
+        positions = DoubleArray(players * 3)
+        online.forEachIndexed { i, player ->
+            val spread = if (i % 4 == 0) 64.0 else 2000.0
+            positions[i * 3] = random.nextDouble(-spread, spread)
+            positions[i * 3 + 1] = 64.0
+            positions[i * 3 + 2] = random.nextDouble(-spread, spread)
+            index.update(player, Location(world, positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]))
+        }
+    }
+
+    @TearDown
+    fun tearDown() {
+        index.shutdown()
+    }
+
+    @Benchmark
+    fun queryRadius(): Int {
+        val i = next()
+        return index.queryRadius(world, positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2], RADIUS, online[i].uniqueId).size
+    }
+
+    @Benchmark
+    fun nearest(): Int {
+        val i = next()
+        return index.nearest(world, positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2], 5, 256.0, online[i].uniqueId).size
+    }
+
+    @Benchmark
+    fun linearRadius(): Int {
+        val i = next()
+        val x = positions[i * 3]; val y = positions[i * 3 + 1]; val z = positions[i * 3 + 2]
+        var count = 0
+        for (j in 0 until players) {
+            if (j == i) continue
+            val dx = positions[j * 3] - x; val dy = positions[j * 3 + 1] - y; val dz = positions[j * 3 + 2] - z
+            if (dx * dx + dy * dy + dz * dz <= RADIUS * RADIUS) count++
+        }
+        return count
+    }
+
+    @Benchmark
+    fun move() {
+        val i = next()
+        positions[i * 3] += random.nextDouble(-16.0, 16.0)
+        positions[i * 3 + 2] += random.nextDouble(-16.0, 16.0)
+        index.update(online[i], Location(world, positions[i * 3], positions[i * 3 + 1], positions[i * 3 + 2]))
+    }
+
+    private fun next(): Int {
+        cursor = (cursor + 1) % players
+        return cursor
+    }
+
+    companion object {
+        private const val RADIUS = 32.0
+    }
+}
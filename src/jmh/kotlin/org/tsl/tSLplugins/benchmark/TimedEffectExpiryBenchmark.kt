@@ -0,0 +1,88 @@
+package org.tsl.tSLplugins.benchmark
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.modules.timedattribute.TimedAttributeEffect
+import org.tsl.tSLplugins.modules.timedattribute.TimedEffectExpiryQueue
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * TimedAttribute 到期调度（1 万个活跃效果）
+ *
+ * - idleWakeup：没有效果到期时调度器的一次唤醒（查看最早到期时间 + pollDue）
+ * - reschedule：一个效果重新入队（新效果入栈 / 恢复）
+ * - periodicScan：按到期时间调度之前每次定时扫描全部效果的做法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class TimedEffectExpiryBenchmark {
+
+    @Param("10000")
+    @JvmField
+    var effects = 0
+
+    private val queue = TimedEffectExpiryQueue()
+    private lateinit var all: List<TimedAttributeEffect>
+    private var now = 0L
+    private var cursor = 0
+
+    @Setup
+    fun setup() {
+        val random = Random(42)
+        now = System.currentTimeMillis()
+        val players = List(200) { UUID.randomUUID() }
+        all = List(effects) { i ->
+            TimedAttributeEffect(
+                playerUuid = players[i % players.size],
+                attributeKey = ATTRIBUTES[i % ATTRIBUTES.size],
+                targetValue = 24.0,
+                capturedValue = 20.0,
+                // 1 分钟到 7 天
+                remainingMs = random.nextLong(60_000L, 7 * 86_400_000L),
+                lastTickAt = now
+            )
+        }
+        all.forEach { queue.schedule(it) }
+    }
+
+    @Benchmark
+    fun idleWakeup(): Int {
+        val next = queue.nextDeadline() ?: return 0
+        return if (next <= now) queue.pollDue(now).size else 0
+    }
+
+    @Benchmark
+    fun reschedule(): Int {
+        cursor = (cursor + 1) % all.size
+        queue.schedule(all[cursor])
+        return queue.size()
+    }
+
+    @Benchmark
+    fun periodicScan(): Int {
+        var expired = 0
+        for (effect in all) {
+            if (!effect.isPaused && effect.currentRemainingMs(now) <= 0) expired++
+        }
+        return expired
+    }
+
+    companion object {
+        private val ATTRIBUTES = listOf("max_health", "movement_speed", "attack_damage", "scale", "armor")
+    }
+}
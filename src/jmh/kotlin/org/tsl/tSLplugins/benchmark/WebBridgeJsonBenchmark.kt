@@ -0,0 +1,97 @@
+package org.tsl.tSLplugins.benchmark
+
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Measurement
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Warmup
+import org.tsl.tSLplugins.modules.webbridge.ChatPayload
+import org.tsl.tSLplugins.modules.webbridge.PlayerInfo
+import org.tsl.tSLplugins.modules.webbridge.PlayerListSync
+import org.tsl.tSLplugins.modules.webbridge.WebBridgeSender
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+import java.util.logging.Logger
+
+/**
+ * WebBridge 消息编码与入队
+ *
+ * - snapshot：完整玩家列表（每次都发快照时的开销）
+ * - delta：每次一名玩家进出，生成并编码增量
+ * - chat：单条聊天消息
+ * - enqueue：发送队列已满（DROP_OLDEST）时的入队，即发送线程跟不上时调用方的开销
+ *
+ * 序列化器配置与 WebBridgeManager 一致。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+open class WebBridgeJsonBenchmark {
+
+    @Param("20", "200")
+    @JvmField
+    var players = 0
+
+    private val json = Json {
+        prettyPrint = false
+        encodeDefaults = true
+    }
+
+    private val deltaJson = Json {
+        prettyPrint = false
+        encodeDefaults = false
+    }
+
+    private val sync = PlayerListSync()
+    private lateinit var listA: List<PlayerInfo>
+    private lateinit var listB: List<PlayerInfo>
+    private var flip = false
+
+    private lateinit var sender: WebBridgeSender
+    private lateinit var chatJson: String
+
+    @Setup
+    fun setup() {
+        listA = List(players) { PlayerInfo(UUID.randomUUID().toString(), "Player$it") }
+        // 与 A 相比一人离开、一人加入
+        listB = listA.drop(1) + PlayerInfo(UUID.randomUUID().toString(), "Joined")
+        json.encodeToString(sync.snapshot(SERVER_ID, listA, 200, 20.0))
+
+        sender = WebBridgeSender(Logger.getLogger("TSLplugins-Bench"), WebBridgeSender.Settings(queueCapacity = 1000)) { null }
+        chatJson = json.encodeToString(ChatPayload("Steve", UUID.randomUUID().toString(), SERVER_ID, "大家好 hello world"))
+        repeat(1000) { sender.enqueue(chatJson) }
+    }
+
+    @Benchmark
+    fun snapshot(): String = json.encodeToString(PlayerListSync().snapshot(SERVER_ID, listA, 200, 20.0))
+
+    @Benchmark
+    fun delta(): String? {
+        flip = !flip
+        val delta = sync.delta(SERVER_ID, if (flip) listB else listA, 200, 20.0) ?: return null
+        return deltaJson.encodeToString(delta)
+    }
+
+    @Benchmark
+    fun chat(): String = json.encodeToString(ChatPayload("Steve", "8667ba71-b85a-4004-af54-457a9734eed7", SERVER_ID, "大家好 hello world"))
+
+    @Benchmark
+    fun enqueue() {
+        sender.enqueue(chatJson)
+    }
+
+    companion object {
+        private const val SERVER_ID = "survival"
+    }
+}
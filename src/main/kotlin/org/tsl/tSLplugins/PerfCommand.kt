@@ -0,0 +1,215 @@
+package org.tsl.tSLplugins
+
+import org.bukkit.Bukkit
+import org.bukkit.command.Command
+import org.bukkit.command.CommandSender
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer
+import org.tsl.tSLplugins.core.EventProfiler
+import org.tsl.tSLplugins.core.ModuleProfiler
+import org.tsl.tSLplugins.service.DatabaseManager
+
+/**
+ * 性能诊断命令处理器
+ * 处理 /tsl perf 命令
+ */
+class PerfCommand(private val plugin: TSLplugins) : SubCommandHandler {
+
+    private val serializer = LegacyComponentSerializer.legacyAmpersand()
+
+    override fun handle(
+        sender: CommandSender,
+        command: Command,
+        label: String,
+        args: Array<out String>
+    ): Boolean {
+        if (!sender.isOp && !sender.hasPermission("tsl.perf")) {
+            sender.sendMessage(serializer.deserialize("&c你没有权限使用此命令！"))
+            return true
+        }
+
+        when (args.firstOrNull()?.lowercase()) {
+            "db" -> showDatabase(sender)
+            "placeholders" -> showPlaceholders(sender)
+            "startup", "reload" -> showLifecycle(sender, args[0].lowercase(), args.getOrNull(1))
+            "events" -> handleEvents(sender, args.getOrNull(1)?.lowercase())
+            else -> showHelp(sender)
+        }
+        return true
+    }
+
+    private fun showDatabase(sender: CommandSender) {
+        if (!DatabaseManager.isInitialized()) {
+            sender.sendMessage(serializer.deserialize("&c数据库未初始化"))
+            return
+        }
+        val stats = DatabaseManager.getWriteQueueStats()
+        sender.sendMessage(serializer.deserialize("&e&l===== 数据库写后队列 ====="))
+        sender.sendMessage(serializer.deserialize("&7状态: ${if (stats.enabled) "&a启用" else "&c禁用"}"))
+        sender.sendMessage(serializer.deserialize("&7队列深度: &f${stats.queueDepth}"))
+        sender.sendMessage(serializer.deserialize("&7已提交: &f${stats.writes} &7条写入 / &f${stats.batches} &7次事务 (失败 &c${stats.failedWrites}&7)"))
+        sender.sendMessage(serializer.deserialize("&7最近批次: &f${stats.lastBatchSize} &7条, &f${"%.2f".format(stats.lastCommitMs)}ms"))
+        sender.sendMessage(serializer.deserialize("&7提交耗时: 平均 &f${"%.2f".format(stats.avgCommitMs)}ms&7, 最大 &f${"%.2f".format(stats.maxCommitMs)}ms"))
+
+        val conn = DatabaseManager.getConnectionStats()
+        sender.sendMessage(serializer.deserialize("&e&l===== 数据库连接 ====="))
+        sender.sendMessage(serializer.deserialize("&7只读连接: &f${conn.idleReaders}&7/&f${conn.readPoolSize} &7空闲"))
+        sender.sendMessage(serializer.deserialize("&7查询: 只读连接 &f${conn.pooledReads}&7, 写连接 &f${conn.writerReads}"))
+        sender.sendMessage(serializer.deserialize("&7语句缓存: 命中 &f${conn.statementCacheHits}&7, 未命中 &f${conn.statementCacheMisses}"))
+    }
+
+    private fun showPlaceholders(sender: CommandSender) {
+        val expansion = plugin.placeholderExpansion
+        if (expansion == null) {
+            sender.sendMessage(serializer.deserialize("&cPlaceholderAPI 扩展未注册"))
+            return
+        }
+        val stats = expansion.getCacheStats()
+        val lookups = stats.hits + stats.misses
+        val hitRate = if (lookups > 0) stats.hits * 100.0 / lookups else 0.0
+        sender.sendMessage(serializer.deserialize("&e&l===== PAPI 变量缓存 ====="))
+        sender.sendMessage(serializer.deserialize("&7请求总数: &f${stats.requests}"))
+        sender.sendMessage(serializer.deserialize("&7缓存: 命中 &f${stats.hits}&7, 未命中 &f${stats.misses} &7(命中率 &f${"%.1f".format(hitRate)}%&7)"))
+        sender.sendMessage(serializer.deserialize("&7不缓存的请求: &f${stats.uncached}"))
+        sender.sendMessage(serializer.deserialize("&7缓存中的玩家: &f${stats.cachedPlayers}"))
+    }
+
+    /**
+     * 启动 / 重载耗时：按模块汇总后列出最慢的模块
+     */
+    private fun showLifecycle(sender: CommandSender, kind: String, sortBy: String?) {
+        val profiler = plugin.getModuleProfiler()
+        val report = profiler?.getReport(kind)
+        if (profiler == null || report == null) {
+            sender.sendMessage(serializer.deserialize("&c暂无${if (kind == "startup") "启动" else "重载"}记录"))
+            return
+        }
+
+        val byModule = report.samples.groupBy { it.module }.map { (module, samples) -> module to samples }
+        val sorted = when (sortBy?.lowercase()) {
+            "cpu" -> byModule.sortedByDescending { (_, samples) -> samples.sumOf { it.cpuNanos.coerceAtLeast(0L) } }
+            "alloc" -> byModule.sortedByDescending { (_, samples) -> samples.sumOf { it.allocatedBytes.coerceAtLeast(0L) } }
+            else -> byModule.sortedByDescending { (_, samples) -> samples.sumOf { it.wallNanos } }
+        }
+
+        sender.sendMessage(serializer.deserialize("&e&l===== ${if (kind == "startup") "启动" else "重载"}耗时 ====="))
+        sender.sendMessage(serializer.deserialize("&7时间: &f${report.startedAt} &7版本: &f${report.pluginVersion}"))
+        sender.sendMessage(serializer.deserialize("&7总耗时: &f${formatMs(report.wallNanos)} &7准备线程: &f${report.threads} &7记录: &f${report.samples.size} &7条"))
+        sorted.take(LIFECYCLE_LIMIT).forEach { (module, samples) ->
+            val phases = samples.joinToString(" ") { sample ->
+                val label = ModuleProfiler.Phase.entries.firstOrNull { it.name.lowercase() == sample.phase }?.label ?: sample.phase
+                "$label ${formatMs(sample.wallNanos)}"
+            }
+            val cpu = samples.sumOf { it.cpuNanos.coerceAtLeast(0L) }
+            val alloc = samples.sumOf { it.allocatedBytes.coerceAtLeast(0L) }
+            val listeners = samples.sumOf { it.listeners.coerceAtLeast(0) }
+            sender.sendMessage(serializer.deserialize(
+                "&e$module &7$phases &8| &7CPU &f${formatMs(cpu)} &7分配 &f${formatBytes(alloc)} &7监听 &f$listeners"
+            ))
+        }
+        sender.sendMessage(serializer.deserialize("&7完整报告: &f${profiler.getReportFile(kind).path}"))
+    }
+
+    /**
+     * 事件监听耗时：查看 / 重置 / 导出 CSV / 暂停 / 恢复
+     */
+    private fun handleEvents(sender: CommandSender, action: String?) {
+        val profiler = plugin.getEventProfiler()
+        if (profiler == null || !profiler.enabled) {
+            sender.sendMessage(serializer.deserialize("&c事件耗时统计未开启（config.yml 中 event-profiler.enabled，重启后生效）"))
+            return
+        }
+        when (action) {
+            "reset" -> {
+                profiler.reset()
+                sender.sendMessage(serializer.deserialize("&a事件耗时统计已重置"))
+            }
+            "pause", "resume" -> {
+                profiler.recording = action == "resume"
+                sender.sendMessage(serializer.deserialize("&a事件耗时统计已${if (profiler.recording) "恢复" else "暂停"}"))
+            }
+            "csv" -> {
+                Bukkit.getAsyncScheduler().runNow(plugin) { _ ->
+                    val message = try {
+                        "&a已导出: &f${profiler.exportCsv().path}"
+                    } catch (e: Exception) {
+                        "&c导出失败: ${e.message}"
+                    }
+                    sender.sendMessage(serializer.deserialize(message))
+                }
+            }
+            else -> showEvents(sender, profiler, action)
+        }
+    }
+
+    private fun showEvents(sender: CommandSender, profiler: EventProfiler, sortBy: String?) {
+        val snapshots = profiler.snapshots()
+        val sorted = when (sortBy) {
+            "count" -> snapshots.sortedByDescending { it.invocations }
+            "p99" -> snapshots.sortedByDescending { it.p99Nanos }
+            "max" -> snapshots.sortedByDescending { it.maxNanos }
+            else -> snapshots.sortedByDescending { it.totalNanos }
+        }
+        val seconds = ((System.currentTimeMillis() - profiler.getSince()) / 1000).coerceAtLeast(1)
+        sender.sendMessage(serializer.deserialize("&e&l===== 事件监听耗时 ====="))
+        sender.sendMessage(serializer.deserialize(
+            "&7统计时长: &f${seconds}s &7状态: ${if (profiler.recording) "&a记录中" else "&c已暂停"} &7条目: &f${snapshots.size}"
+        ))
+        if (sorted.isEmpty()) {
+            sender.sendMessage(serializer.deserialize("&7暂无记录"))
+            return
+        }
+        sorted.take(LIFECYCLE_LIMIT).forEach {
+            sender.sendMessage(serializer.deserialize(
+                "&e${it.module} &f${it.event} &8| &7${it.invocations}次 (${"%.1f".format(it.invocations.toDouble() / seconds)}/s) " +
+                    "&7总 &f${formatMs(it.totalNanos)} &7p50 &f${formatMicros(it.p50Nanos)} &7p99 &f${formatMicros(it.p99Nanos)} " +
+                    "&7max &f${formatMicros(it.maxNanos)}${if (it.exceptions > 0) " &c异常 ${it.exceptions}" else ""}"
+            ))
+        }
+    }
+
+    private fun formatMicros(nanos: Long): String = "%.1fµs".format(nanos / 1000.0)
+
+    private fun formatMs(nanos: Long): String = "%.1fms".format(nanos / 1_000_000.0)
+
+    private fun formatBytes(bytes: Long): String = when {
+        bytes >= 1024L * 1024 -> "%.1fMB".format(bytes / (1024.0 * 1024))
+        bytes >= 1024L -> "%.1fKB".format(bytes / 1024.0)
+        else -> "${bytes}B"
+    }
+
+    private fun showHelp(sender: CommandSender) {
+        sender.sendMessage(serializer.deserialize("&e&l===== 性能诊断 ====="))
+        sender.sendMessage(serializer.deserialize("&e/tsl perf db &7- 数据库写后队列与连接统计"))
+        sender.sendMessage(serializer.deserialize("&e/tsl perf placeholders &7- PAPI 变量缓存命中统计"))
+        sender.sendMessage(serializer.deserialize("&e/tsl perf startup [wall|cpu|alloc] &7- 启动时各模块各阶段耗时"))
+        sender.sendMessage(serializer.deserialize("&e/tsl perf reload [wall|cpu|alloc] &7- 最近一次重载时各模块耗时"))
+        sender.sendMessage(serializer.deserialize("&e/tsl perf events [total|count|p99|max|reset|csv|pause|resume] &7- 各模块事件监听耗时"))
+    }
+
+    override fun tabComplete(
+        sender: CommandSender,
+        command: Command,
+        label: String,
+        args: Array<out String>
+    ): List<String> {
+        if (args.size == 1) {
+            return listOf("db", "placeholders", "startup", "reload", "events").filter { it.startsWith(args[0].lowercase()) }
+        }
+        if (args.size == 2 && args[0].lowercase() in setOf("startup", "reload")) {
+            return listOf("wall", "cpu", "alloc").filter { it.startsWith(args[1].lowercase()) }
+        }
+        if (args.size == 2 && args[0].lowercase() == "events") {
+            return listOf("total", "count", "p99", "max", "reset", "csv", "pause", "resume").filter { it.startsWith(args[1].lowercase()) }
+        }
+        return emptyList()
+    }
+
+    override fun getDescription(): String {
+        return "查看插件性能诊断数据"
+    }
+
+    companion object {
+        /** 启动 / 重载 / 事件耗时列出的条目数 */
+        private const val LIFECYCLE_LIMIT = 10
+    }
+}
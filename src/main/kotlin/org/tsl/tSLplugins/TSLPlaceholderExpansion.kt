@@ -3,6 +3,9 @@ package org.tsl.tSLplugins
 import me.clip.placeholderapi.expansion.PlaceholderExpansion
 import org.bukkit.OfflinePlayer
 import org.bukkit.plugin.java.JavaPlugin
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
 import org.tsl.tSLplugins.core.ModuleRegistry
 import org.tsl.tSLplugins.service.PlayerDataManager
 import org.tsl.tSLplugins.modules.advancement.AdvancementModule
@@ -22,6 +25,9 @@ import org.tsl.tSLplugins.modules.randomvariable.RandomVariableModule
  * 这是一个核心系统文件，整合了所有模块的 PAPI 变量。
  * 所有模块均通过 ModuleRegistry 获取。
  *
+ * 变量在构造时编译为 标识符 -> 处理器 的映射表，请求时一次哈希查找即可定位；
+ * 计算较重的变量按各自的缓存策略（全局 TTL / 每玩家 TTL / 不缓存）缓存结果。
+ *
  * 支持的变量：
  * - %tsl_ping% - 服务器平均延迟
  * - %tsl_adv_count% - 玩家成就数量
@@ -39,6 +45,7 @@ import org.tsl.tSLplugins.modules.randomvariable.RandomVariableModule
  * - %tsl_playtime_seconds% - 今日在线时长（秒）
  * - %tsl_playtime_minutes% - 今日在线时长（分钟）
  * - %tsl_playtime_hours% - 今日在线时长（小时，带小数）
+ * - %tsl_playtime_rank% - 今日在线时长排名
  * - %tsl_bind% - QQ 绑定状态 (true/false)
  * - %tsl_bind_qq% - 绑定的 QQ 号码
  */
@@ -49,7 +56,7 @@ class TSLPlaceholderExpansion(
 ) : PlaceholderExpansion() {
 
     // 缓存模块引用（懒加载）
-    private val advancementModule: AdvancementModule? by lazy { moduleRegistry.getModule("advancement") }
+    private val advancementModule: AdvancementModule? by lazy { moduleRegistry.getModule("advcount") }
     private val pingModule: PingModule? by lazy { moduleRegistry.getModule("ping") }
     private val kissModule: KissModule? by lazy { moduleRegistry.getModule("kiss") }
     private val rideModule: RideModule? by lazy { moduleRegistry.getModule("ride") }
@@ -60,6 +67,47 @@ class TSLPlaceholderExpansion(
     private val papiAliasModule: PapiAliasModule? by lazy { moduleRegistry.getModule("papialias") }
     private val randomVariableModule: RandomVariableModule? by lazy { moduleRegistry.getModule("randomvariable") }
 
+    /**
+     * 缓存策略
+     */
+    sealed class CachePolicy {
+        /** 每次请求都重新计算 */
+        object None : CachePolicy()
+
+        /** 与玩家无关，所有玩家共享一个值 */
+        data class Global(val ttlMs: Long) : CachePolicy()
+
+        /** 每个玩家单独缓存（仅在线玩家，退出时清除） */
+        data class PerPlayer(val ttlMs: Long) : CachePolicy()
+    }
+
+    private class Handler(
+        val policy: CachePolicy,
+        val resolve: (OfflinePlayer?) -> String?
+    )
+
+    private class CachedValue(val value: String?, val expiresAt: Long)
+
+    /** 缓存统计 */
+    data class CacheStats(
+        val requests: Long,
+        val hits: Long,
+        val misses: Long,
+        val uncached: Long,
+        val cachedPlayers: Int
+    )
+
+    /** 精确匹配的变量（标识符均为小写） */
+    private val handlers: Map<String, Handler> = buildHandlers()
+
+    private val globalCache = ConcurrentHashMap<String, CachedValue>()
+    private val playerCache = ConcurrentHashMap<UUID, ConcurrentHashMap<String, CachedValue>>()
+
+    private val requests = AtomicLong()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val uncached = AtomicLong()
+
     override fun getIdentifier(): String = "tsl"
 
     override fun getAuthor(): String = "TSL"
@@ -69,15 +117,58 @@ class TSLPlaceholderExpansion(
     override fun persist(): Boolean = true
 
     override fun onRequest(player: OfflinePlayer?, params: String): String? {
-        // === Ping 变量 ===
-        // %tsl_ping% - 不需要玩家，显示服务器平均延迟
-        if (params.equals("ping", ignoreCase = true)) {
-            val module = pingModule
-            return if (module != null && module.isEnabled()) {
-                String.format("%.1f", module.getAveragePing())
-            } else "N/A"
+        requests.incrementAndGet()
+        // 按需启用的模块在第一次请求其变量时启用
+        moduleRegistry.onPlaceholderRequest(params)
+
+        val id = params.lowercase()
+        val handler = handlers[id]
+        if (handler == null) {
+            uncached.incrementAndGet()
+            return resolvePrefixed(player, params)
+        }
+
+        return when (val policy = handler.policy) {
+            is CachePolicy.None -> {
+                uncached.incrementAndGet()
+                handler.resolve(player)
+            }
+            is CachePolicy.Global -> cached(globalCache, id, policy.ttlMs) { handler.resolve(player) }
+            is CachePolicy.PerPlayer -> {
+                if (player == null) return null
+                // 离线玩家的缓存不会在退出时清除，直接计算
+                if (!player.isOnline) {
+                    uncached.incrementAndGet()
+                    return handler.resolve(player)
+                }
+                val cache = playerCache.computeIfAbsent(player.uniqueId) { ConcurrentHashMap() }
+                cached(cache, id, policy.ttlMs) { handler.resolve(player) }
+            }
         }
+    }
 
+    private inline fun cached(
+        cache: ConcurrentHashMap<String, CachedValue>,
+        key: String,
+        ttlMs: Long,
+        compute: () -> String?
+    ): String? {
+        val now = System.currentTimeMillis()
+        val entry = cache[key]
+        if (entry != null && entry.expiresAt > now) {
+            hits.incrementAndGet()
+            return entry.value
+        }
+        misses.incrementAndGet()
+        val value = compute()
+        cache[key] = CachedValue(value, now + ttlMs)
+        return value
+    }
+
+    /**
+     * 带参数的前缀变量（random_ / alias_），不缓存
+     */
+    private fun resolvePrefixed(player: OfflinePlayer?, params: String): String? {
         // === RandomVariable 变量 ===
         // %tsl_random_变量名% - 混合分布随机数（不需要玩家）
         if (params.startsWith("random_", ignoreCase = true)) {
@@ -91,142 +182,184 @@ class TSLPlaceholderExpansion(
         // 以下变量需要玩家
         if (player == null) return null
 
+        // === PapiAlias 变量 ===
+        // %tsl_alias_变量名% - 变量值映射（将原值映射为简写）
+        if (params.startsWith("alias_", ignoreCase = true)) {
+            val module = papiAliasModule
+            if (module != null && module.isEnabled()) {
+                val variableName = params.substring(6) // 移除 "alias_" 前缀
+                if (variableName.isEmpty()) return null
+
+                // 使用 PlaceholderAPI 解析原始变量值
+                val originalPlaceholder = "%$variableName%"
+                val originalValue = me.clip.placeholderapi.PlaceholderAPI.setPlaceholders(player, originalPlaceholder)
+
+                // 如果解析结果仍然是占位符本身，说明变量不存在
+                if (originalValue == originalPlaceholder) return null
+
+                // 查找映射并返回
+                return module.getAliasValue(variableName, originalValue)
+            }
+        }
+
+        return null
+    }
+
+    private fun buildHandlers(): Map<String, Handler> {
+        val map = HashMap<String, Handler>()
+
+        fun register(id: String, policy: CachePolicy = CachePolicy.None, resolve: (OfflinePlayer?) -> String?) {
+            map[id] = Handler(policy, resolve)
+        }
+
+        // 仅在线玩家可用的变量
+        fun online(id: String, policy: CachePolicy = CachePolicy.None, resolve: (org.bukkit.entity.Player) -> String?) {
+            register(id, policy) { player -> player?.player?.let(resolve) }
+        }
+
+        // === Ping 变量 ===
+        // %tsl_ping% - 不需要玩家，显示服务器平均延迟（遍历所有在线玩家，全局缓存）
+        register("ping", CachePolicy.Global(PING_TTL_MS)) {
+            val module = pingModule
+            if (module != null && module.isEnabled()) {
+                String.format("%.1f", module.getAveragePing())
+            } else "N/A"
+        }
+
         // === Advancement 变量 ===
-        // %tsl_adv_count% - 玩家成就数量
-        if (params.equals("adv_count", ignoreCase = true)) {
-            val onlinePlayer = player.player ?: return null
+        // %tsl_adv_count% - 玩家成就数量（模块增量维护，O(1) 读取）
+        online("adv_count") { onlinePlayer ->
             val module = advancementModule
-            return if (module != null && module.isEnabled()) {
+            if (module != null && module.isEnabled()) {
                 module.countHandler.getAdvancementCount(onlinePlayer).toString()
             } else null
         }
 
         // === Kiss 变量 ===
-        val kiss = kissModule
-        if (kiss != null && kiss.isEnabled()) {
-            when (params) {
-                "kiss_count" -> {
-                    val profile = playerDataManager?.getProfileStore()?.get(player.uniqueId)
-                    return (profile?.kissCount ?: 0).toString()
-                }
-                "kissed_count" -> {
-                    val profile = playerDataManager?.getProfileStore()?.get(player.uniqueId)
-                    return (profile?.kissedCount ?: 0).toString()
-                }
-                "kiss_toggle" -> {
-                    val onlinePlayer = player.player ?: return null
-                    return if (kiss.isPlayerEnabled(onlinePlayer)) "启用" else "禁用"
-                }
-            }
+        register("kiss_count") { player ->
+            if (player == null || kissModule?.isEnabled() != true) return@register null
+            (playerDataManager?.getProfileStore()?.get(player.uniqueId)?.kissCount ?: 0).toString()
+        }
+        register("kissed_count") { player ->
+            if (player == null || kissModule?.isEnabled() != true) return@register null
+            (playerDataManager?.getProfileStore()?.get(player.uniqueId)?.kissedCount ?: 0).toString()
+        }
+        online("kiss_toggle") { onlinePlayer ->
+            val kiss = kissModule
+            if (kiss != null && kiss.isEnabled()) {
+                if (kiss.isPlayerEnabled(onlinePlayer)) "启用" else "禁用"
+            } else null
         }
 
         // === Ride 变量 ===
-        val ride = rideModule
-        if (ride != null && ride.isEnabled() && params == "ride_toggle") {
-            val onlinePlayer = player.player ?: return null
-            return if (ride.isPlayerEnabled(onlinePlayer)) "启用" else "禁用"
+        online("ride_toggle") { onlinePlayer ->
+            val ride = rideModule
+            if (ride != null && ride.isEnabled()) {
+                if (ride.isPlayerEnabled(onlinePlayer)) "启用" else "禁用"
+            } else null
         }
 
         // === Toss 变量 ===
-        val toss = tossModule
-        if (toss != null && toss.isEnabled()) {
-            when (params) {
-                "toss_toggle" -> {
-                    val onlinePlayer = player.player ?: return null
-                    return if (toss.isPlayerEnabled(onlinePlayer)) "启用" else "禁用"
-                }
-                "toss_velocity" -> {
-                    val onlinePlayer = player.player ?: return null
-                    return String.format("%.1f", toss.getPlayerThrowVelocity(onlinePlayer))
-                }
-            }
+        online("toss_toggle") { onlinePlayer ->
+            val toss = tossModule
+            if (toss != null && toss.isEnabled()) {
+                if (toss.isPlayerEnabled(onlinePlayer)) "启用" else "禁用"
+            } else null
+        }
+        online("toss_velocity") { onlinePlayer ->
+            val toss = tossModule
+            if (toss != null && toss.isEnabled()) {
+                String.format("%.1f", toss.getPlayerThrowVelocity(onlinePlayer))
+            } else null
         }
 
         // === BlockStats 变量 ===
-        // %tsl_blocks_placed_total% - 玩家放置方块总数
-        if (params.equals("blocks_placed_total", ignoreCase = true)) {
+        // %tsl_blocks_placed_total% - 玩家放置方块总数（事件增量计数，无需缓存）
+        online("blocks_placed_total") { onlinePlayer ->
             val module = blockStatsModule
             if (module != null && module.isEnabled()) {
-                val onlinePlayer = player.player ?: return null
-                return module.getTotalBlocksPlaced(onlinePlayer).toString()
-            }
+                module.getTotalBlocksPlaced(onlinePlayer).toString()
+            } else null
         }
 
         // === NewbieTag 变量 ===
         // %tsl_newbie_tag% - 萌新标志（根据在线时长）
-        if (params.equals("newbie_tag", ignoreCase = true)) {
+        online("newbie_tag", CachePolicy.PerPlayer(NEWBIE_TAG_TTL_MS)) { onlinePlayer ->
             val module = newbieTagModule
-            if (module != null && module.isEnabled()) {
-                val onlinePlayer = player.player ?: return null
-                return module.getPlayerTag(onlinePlayer)
-            }
-        }
-
-        // === PapiAlias 变量 ===
-        // %tsl_alias_变量名% - 变量值映射（将原值映射为简写）
-        if (params.startsWith("alias_", ignoreCase = true)) {
-            val module = papiAliasModule
-            if (module != null && module.isEnabled()) {
-                val variableName = params.substring(6) // 移除 "alias_" 前缀
-                if (variableName.isEmpty()) return null
-
-                // 使用 PlaceholderAPI 解析原始变量值
-                val originalPlaceholder = "%$variableName%"
-                val originalValue = me.clip.placeholderapi.PlaceholderAPI.setPlaceholders(player, originalPlaceholder)
-
-                // 如果解析结果仍然是占位符本身，说明变量不存在
-                if (originalValue == originalPlaceholder) return null
-
-                // 查找映射并返回
-                return module.getAliasValue(variableName, originalValue)
-            }
+            if (module != null && module.isEnabled()) module.getPlayerTag(onlinePlayer) else null
         }
 
         // === PlayTime 变量 ===
-        val playTime = playTimeModule
-        if (playTime != null && playTime.isEnabled()) {
-            val onlinePlayer = player.player
-            when {
-                // %tsl_playtime% - 今日在线时长（格式化字符串）
-                params.equals("playtime", ignoreCase = true) -> {
-                    if (onlinePlayer == null) return "0秒"
-                    return playTime.getTodayPlayTimeFormatted(onlinePlayer.uniqueId)
-                }
-                // %tsl_playtime_seconds% - 今日在线时长（秒）
-                params.equals("playtime_seconds", ignoreCase = true) -> {
-                    if (onlinePlayer == null) return "0"
-                    return playTime.getTodayPlayTime(onlinePlayer.uniqueId).toString()
-                }
-                // %tsl_playtime_minutes% - 今日在线时长（分钟，整数）
-                params.equals("playtime_minutes", ignoreCase = true) -> {
-                    if (onlinePlayer == null) return "0"
-                    val seconds = playTime.getTodayPlayTime(onlinePlayer.uniqueId)
-                    return (seconds / 60).toString()
-                }
-                // %tsl_playtime_hours% - 今日在线时长（小时，带一位小数）
-                params.equals("playtime_hours", ignoreCase = true) -> {
-                    if (onlinePlayer == null) return "0.0"
-                    val seconds = playTime.getTodayPlayTime(onlinePlayer.uniqueId)
-                    return String.format("%.1f", seconds / 3600.0)
-                }
+        val playTimePolicy = CachePolicy.PerPlayer(PLAYTIME_TTL_MS)
+        // 离线玩家同样按 UUID 读取今日时长和排名（数据截至上次结算）
+        fun playTime(id: String, format: (PlayTimeModule, UUID) -> String) {
+            register(id, playTimePolicy) { player ->
+                val module = playTimeModule
+                if (player == null || module == null || !module.isEnabled()) return@register null
+                format(module, player.uniqueId)
             }
         }
+        // %tsl_playtime% - 今日在线时长（格式化字符串）
+        playTime("playtime") { module, uuid -> module.getTodayPlayTimeFormatted(uuid) }
+        // %tsl_playtime_seconds% - 今日在线时长（秒）
+        playTime("playtime_seconds") { module, uuid -> module.getTodayPlayTime(uuid).toString() }
+        // %tsl_playtime_minutes% - 今日在线时长（分钟，整数）
+        playTime("playtime_minutes") { module, uuid -> (module.getTodayPlayTime(uuid) / 60).toString() }
+        // %tsl_playtime_hours% - 今日在线时长（小时，带一位小数）
+        playTime("playtime_hours") { module, uuid ->
+            String.format("%.1f", module.getTodayPlayTime(uuid) / 3600.0)
+        }
+        // %tsl_playtime_rank% - 今日在线时长排名（内存排行榜，无记录时为 -）
+        playTime("playtime_rank") { module, uuid -> module.getTodayRank(uuid)?.toString() ?: "-" }
 
         // === Bind 变量 ===
-        if (playerDataManager != null) {
-            val profile = playerDataManager.getProfileStore().get(player.uniqueId)
-            when {
-                // %tsl_bind% - QQ 绑定状态
-                params.equals("bind", ignoreCase = true) -> {
-                    return (profile?.bindStatus ?: false).toString()
-                }
-                // %tsl_bind_qq% - 绑定的 QQ 号码
-                params.equals("bind_qq", ignoreCase = true) -> {
-                    return profile?.bindQQ ?: ""
-                }
-            }
+        // %tsl_bind% - QQ 绑定状态
+        register("bind") { player ->
+            if (player == null || playerDataManager == null) return@register null
+            (playerDataManager.getProfileStore().get(player.uniqueId)?.bindStatus ?: false).toString()
+        }
+        // %tsl_bind_qq% - 绑定的 QQ 号码
+        register("bind_qq") { player ->
+            if (player == null || playerDataManager == null) return@register null
+            playerDataManager.getProfileStore().get(player.uniqueId)?.bindQQ ?: ""
         }
 
-        return null
+        return map
+    }
+
+    // ==================== 缓存管理 ====================
+
+    /**
+     * 移除玩家的缓存（玩家退出时调用）
+     */
+    fun invalidatePlayer(uuid: UUID) {
+        playerCache.remove(uuid)
+    }
+
+    /**
+     * 清空所有缓存（模块重载后调用）
+     */
+    fun invalidateAll() {
+        globalCache.clear()
+        playerCache.clear()
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    fun getCacheStats(): CacheStats {
+        return CacheStats(
+            requests = requests.get(),
+            hits = hits.get(),
+            misses = misses.get(),
+            uncached = uncached.get(),
+            cachedPlayers = playerCache.size
+        )
+    }
+
+    companion object {
+        private const val PING_TTL_MS = 1000L
+        private const val NEWBIE_TAG_TTL_MS = 10_000L
+        private const val PLAYTIME_TTL_MS = 1000L
     }
 }
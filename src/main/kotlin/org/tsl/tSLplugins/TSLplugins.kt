@@ -4,11 +4,15 @@ import org.bukkit.Bukkit
 import org.bukkit.plugin.java.JavaPlugin
 import org.tsl.tSLplugins.service.MessageManager
 import org.tsl.tSLplugins.service.DatabaseManager
+import org.tsl.tSLplugins.service.EconomyBridge
 import org.tsl.tSLplugins.service.PlayerDataManager
+import org.tsl.tSLplugins.service.PlayerSpatialIndex
 import org.tsl.tSLplugins.modules.alias.AliasManager
 import org.tsl.tSLplugins.modules.playerlist.PlayerListCommand
 import org.tsl.tSLplugins.modules.playerlist.PlayerListModule
 // 新架构导入
+import org.tsl.tSLplugins.core.EventProfiler
+import org.tsl.tSLplugins.core.ModuleProfiler
 import org.tsl.tSLplugins.core.ModuleRegistry
 import org.tsl.tSLplugins.modules.freeze.FreezeModule
 import org.tsl.tSLplugins.modules.scale.ScaleModule
@@ -70,6 +74,7 @@ class TSLplugins : JavaPlugin() {
 
     // ========== 核心服务 ==========
     private lateinit var playerDataManager: PlayerDataManager
+    private lateinit var playerSpatialIndex: PlayerSpatialIndex
     
     /** 消息管理器（全局单例） */
     lateinit var messageManager: MessageManager
@@ -81,35 +86,48 @@ class TSLplugins : JavaPlugin() {
     // ========== 特殊管理器 ==========
     private lateinit var aliasManager: AliasManager  // 动态命令别名
 
+    /** PlaceholderAPI 扩展（未安装 PlaceholderAPI 时为 null） */
+    var placeholderExpansion: TSLPlaceholderExpansion? = null
+        private set
+
     override fun onEnable() {
-        // 首先预验证和修复配置文件
-        val configUpdateManager = ConfigUpdateManager(this)
-        if (!configUpdateManager.preValidateAndRepair()) {
-            logger.severe("配置文件无法加载，插件将禁用部分功能")
-        }
-        
-        // 检查并更新配置文件版本
-        val configUpdated = configUpdateManager.checkAndUpdate()
-        if (configUpdated) {
+        // 记录启动各阶段耗时
+        val profiler = ModuleProfiler(this)
+        profiler.begin("startup")
+
+        profiler.measure("config-update", ModuleProfiler.Phase.CONFIG_UPDATE) {
+            // 首先预验证和修复配置文件
+            val configUpdateManager = ConfigUpdateManager(this)
             if (!configUpdateManager.preValidateAndRepair()) {
-                logger.warning("合并后的配置文件仍有问题，尝试使用默认配置")
+                logger.severe("配置文件无法加载，插件将禁用部分功能")
             }
-            try {
-                reloadConfig()
-            } catch (e: Exception) {
-                logger.severe("重新加载配置失败: ${e.message}")
-                saveResource("config.yml", true)
-                reloadConfig()
+
+            // 检查并更新配置文件版本
+            val configUpdated = configUpdateManager.checkAndUpdate()
+            if (configUpdated) {
+                if (!configUpdateManager.preValidateAndRepair()) {
+                    logger.warning("合并后的配置文件仍有问题，尝试使用默认配置")
+                }
+                try {
+                    reloadConfig()
+                } catch (e: Exception) {
+                    logger.severe("重新加载配置失败: ${e.message}")
+                    saveResource("config.yml", true)
+                    reloadConfig()
+                }
             }
         }
 
         // 初始化核心服务
-        messageManager = MessageManager(this)
-        DatabaseManager.init(this)
-        playerDataManager = PlayerDataManager(this)
+        profiler.measure("core-services", ModuleProfiler.Phase.CORE) {
+            messageManager = MessageManager(this)
+            DatabaseManager.init(this)
+            playerDataManager = PlayerDataManager(this)
+            playerSpatialIndex = PlayerSpatialIndex(this)
+        }
 
         // ========== 初始化模块注册器并注册所有模块 ==========
-        moduleRegistry = ModuleRegistry(this, messageManager, playerDataManager)
+        moduleRegistry = ModuleRegistry(this, messageManager, playerDataManager, playerSpatialIndex, profiler)
         registerAllModules()
         moduleRegistry.enableAll()
         logger.info("[新架构] 已注册 ${moduleRegistry.getModuleCount()} 个模块，${moduleRegistry.getEnabledCount()} 个已启用")
@@ -126,8 +144,7 @@ class TSLplugins : JavaPlugin() {
         // 注册 PlaceholderAPI 扩展
         registerPlaceholderAPI()
 
-        // 启动定期清理任务
-        startCleanupTasks()
+        profiler.finish()
 
         logger.info("TSL插件启动成功！")
         logger.info("命令别名系统已加载 ${aliasManager.getAliasCount()} 个别名")
@@ -139,6 +156,14 @@ class TSLplugins : JavaPlugin() {
             moduleRegistry.disableAll()
         }
 
+        // 停止玩家位置跟踪
+        if (::playerSpatialIndex.isInitialized) {
+            playerSpatialIndex.shutdown()
+        }
+
+        // 释放经济接口
+        EconomyBridge.shutdown()
+
         // 清理命令别名系统
         if (::aliasManager.isInitialized) {
             aliasManager.cleanup()
@@ -228,6 +253,7 @@ class TSLplugins : JavaPlugin() {
             @org.bukkit.event.EventHandler
             fun onPlayerQuit(event: org.bukkit.event.player.PlayerQuitEvent) {
                 playerDataManager.onPlayerQuit(event.player)
+                placeholderExpansion?.invalidatePlayer(event.player.uniqueId)
             }
         }, this)
     }
@@ -239,6 +265,7 @@ class TSLplugins : JavaPlugin() {
             // 注册固定命令
             dispatcher.registerSubCommand("list", PlayerListCommand())
             dispatcher.registerSubCommand("reload", ReloadCommand(this))
+            dispatcher.registerSubCommand("perf", PerfCommand(this))
 
             // 注册所有模块命令（自动覆盖）
             moduleRegistry.registerCommands(dispatcher)
@@ -250,26 +277,19 @@ class TSLplugins : JavaPlugin() {
 
     private fun registerPlaceholderAPI() {
         if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
-            TSLPlaceholderExpansion(
+            val expansion = TSLPlaceholderExpansion(
                 this,
                 moduleRegistry,
                 playerDataManager
-            ).register()
+            )
+            expansion.register()
+            placeholderExpansion = expansion
             logger.info("PlaceholderAPI 扩展已注册！")
         } else {
             logger.warning("未检测到 PlaceholderAPI，占位符功能将不可用。")
         }
     }
 
-    private fun startCleanupTasks() {
-        // 成就缓存清理（每 5 分钟）
-        moduleRegistry.getModule<AdvancementModule>("advancement")?.let { module ->
-            Bukkit.getGlobalRegionScheduler().runAtFixedRate(this, { _ ->
-                module.cleanExpiredCache()
-            }, 6000L, 6000L)
-        }
-    }
-
     // ==================== 公共 API ====================
 
     /**
@@ -278,12 +298,22 @@ class TSLplugins : JavaPlugin() {
      */
     fun reloadModules(): Int {
         return if (::moduleRegistry.isInitialized) {
-            moduleRegistry.reloadAll()
+            moduleRegistry.reloadAll().also { placeholderExpansion?.invalidateAll() }
         } else {
             0
         }
     }
 
+    /**
+     * 获取模块性能记录器（启动 / 重载耗时）
+     */
+    fun getModuleProfiler(): ModuleProfiler? = if (::moduleRegistry.isInitialized) moduleRegistry.getProfiler() else null
+
+    /**
+     * 获取事件监听耗时统计
+     */
+    fun getEventProfiler(): EventProfiler? = if (::moduleRegistry.isInitialized) moduleRegistry.getEventProfiler() else null
+
     /**
      * 重新加载命令别名
      * @return 重载的别名数量
@@ -18,6 +18,7 @@ import org.bukkit.event.Listener
  * ## 子类需要实现
  * - [id] - 模块唯一标识
  * - [doEnable] - 模块启用逻辑
+ * - [doPrepare] - 启动准备逻辑，在工作线程上执行（可选）
  * - [doDisable] - 模块禁用逻辑（可选）
  * 
  * ## 示例
@@ -69,28 +70,54 @@ abstract class AbstractModule : TSLModule {
      */
     private val registeredListeners = mutableListOf<Listener>()
     
+    /**
+     * 是否已执行准备阶段（onEnable 后复位）
+     */
+    private var prepared = false
+    
     // ==================== 生命周期方法 ====================
     
     /**
-     * 模块启用入口
+     * 启动准备入口（可能在工作线程上调用）
      * 
-     * 不要重写此方法，而是重写 [doEnable]。
+     * 不要重写此方法，而是重写 [doPrepare]。
      */
-    final override fun onEnable(context: ModuleContext) {
+    final override fun prepare(context: ModuleContext) {
         this.context = context
         loadConfig()
+        prepared = true
         
-        if (enabled) {
-            try {
-                doEnable()
-                context.logInfo("[$id] 模块已启用")
-            } catch (e: Exception) {
-                context.logSevere("[$id] 模块启用失败: ${e.message}")
-                e.printStackTrace()
-                enabled = false
-            }
-        } else {
+        if (!enabled) {
             context.logInfo("[$id] 模块未启用（配置中 enabled=false）")
+            return
+        }
+        try {
+            doPrepare()
+        } catch (e: Exception) {
+            context.logSevere("[$id] 模块准备失败: ${e.message}")
+            e.printStackTrace()
+            enabled = false
+        }
+    }
+    
+    /**
+     * 模块启用入口
+     * 
+     * 不要重写此方法，而是重写 [doEnable]。
+     * 未经过准备阶段时（直接调用）先在当前线程上执行 [prepare]。
+     */
+    final override fun onEnable(context: ModuleContext) {
+        if (!prepared) prepare(context)
+        prepared = false
+        if (!enabled) return
+        
+        try {
+            doEnable()
+            context.logInfo("[$id] 模块已启用")
+        } catch (e: Exception) {
+            context.logSevere("[$id] 模块启用失败: ${e.message}")
+            e.printStackTrace()
+            enabled = false
         }
     }
     
@@ -111,6 +138,9 @@ abstract class AbstractModule : TSLModule {
         
         // 注销所有监听器
         unregisterAllListeners()
+        
+        // 禁用后（包括按需模块空闲停用）不再报告为启用，下次 onEnable 重新读取配置
+        enabled = false
     }
     
     /**
@@ -128,6 +158,7 @@ abstract class AbstractModule : TSLModule {
             !wasEnabled && enabled -> {
                 // 从禁用变为启用
                 context.logInfo("[$id] 模块已启用（重载后）")
+                doPrepare()
                 doEnable()
             }
             wasEnabled && !enabled -> {
@@ -147,6 +178,18 @@ abstract class AbstractModule : TSLModule {
     
     // ==================== 子类需要实现的方法 ====================
     
+    /**
+     * 启动准备阶段的具体逻辑（可选）
+     * 
+     * 在工作线程上执行，可与同一依赖层的其他模块并行，适合耗时的线程安全工作：
+     * - 创建数据表、加载存储
+     * - 解析配置、构建索引
+     * 
+     * 不要在此注册监听器、启动定时任务或访问世界和实体，这些放在 [doEnable] 中。
+     * 重载时从禁用变为启用也会先调用此方法（在当前线程上）。
+     */
+    protected open fun doPrepare() {}
+    
     /**
      * 模块启用时的具体逻辑
      * 
@@ -256,7 +299,7 @@ abstract class AbstractModule : TSLModule {
      * @param listener 要注册的监听器
      */
     protected fun registerListener(listener: Listener) {
-        context.registerListener(listener)
+        context.registerListener(listener, id)
         registeredListeners.add(listener)
     }
     
@@ -0,0 +1,167 @@
+package org.tsl.tSLplugins.core
+
+import org.bukkit.event.Event
+import org.bukkit.event.EventHandler
+import org.bukkit.event.Listener
+import org.bukkit.plugin.EventExecutor
+import org.bukkit.plugin.java.JavaPlugin
+import java.io.File
+import java.lang.reflect.Method
+import java.time.LocalDateTime
+import java.time.format.DateTimeFormatter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * 事件监听耗时统计（按模块和事件类型）
+ *
+ * 配置 event-profiler.enabled 开启后，模块通过 [AbstractModule.registerListener] 注册的监听器
+ * 改为逐个处理方法注册，执行器外包一层计时：
+ * - 调用次数、总耗时、异常次数（LongAdder）
+ * - 耗时分布（[LatencyHistogram]，无锁），用于 p50 / p90 / p99
+ *
+ * 未开启时监听器按原方式注册，没有任何额外开销。开关在注册时读取，修改后需重启生效；
+ * [recording] 可在运行时暂停 / 恢复记录。
+ */
+class EventProfiler(private val plugin: JavaPlugin) {
+
+    /**
+     * 单个模块单个事件类型的统计
+     */
+    class EventStats(val module: String, val event: String) {
+        internal val invocations = LongAdder()
+        internal val totalNanos = LongAdder()
+        internal val exceptions = LongAdder()
+        internal val histogram = LatencyHistogram()
+
+        fun snapshot(): Snapshot {
+            val count = invocations.sum()
+            val total = totalNanos.sum()
+            return Snapshot(
+                module, event, count, total,
+                meanNanos = if (count > 0) total / count else 0L,
+                p50Nanos = histogram.percentile(50.0),
+                p90Nanos = histogram.percentile(90.0),
+                p99Nanos = histogram.percentile(99.0),
+                maxNanos = histogram.max(),
+                exceptions = exceptions.sum()
+            )
+        }
+
+        internal fun reset() {
+            invocations.reset()
+            totalNanos.reset()
+            exceptions.reset()
+            histogram.reset()
+        }
+    }
+
+    data class Snapshot(
+        val module: String,
+        val event: String,
+        val invocations: Long,
+        val totalNanos: Long,
+        val meanNanos: Long,
+        val p50Nanos: Long,
+        val p90Nanos: Long,
+        val p99Nanos: Long,
+        val maxNanos: Long,
+        val exceptions: Long
+    )
+
+    /** 是否在注册时包装监听器 */
+    val enabled: Boolean = plugin.config.getBoolean("event-profiler.enabled", false)
+
+    /** 运行时开关：为 false 时包装后的执行器直接调用原处理方法 */
+    @Volatile
+    var recording = true
+
+    @Volatile
+    private var since = System.currentTimeMillis()
+
+    private val stats = ConcurrentHashMap<String, EventStats>()
+
+    /**
+     * 注册监听器（开启统计时逐个处理方法包装注册，否则按原方式注册）
+     */
+    fun register(listener: Listener, module: String) {
+        if (!enabled) {
+            plugin.server.pluginManager.registerEvents(listener, plugin)
+            return
+        }
+        for (method in handlerMethods(listener.javaClass)) {
+            val annotation = method.getAnnotation(EventHandler::class.java)
+            @Suppress("UNCHECKED_CAST")
+            val eventClass = method.parameterTypes[0] as Class<out Event>
+            val delegate = EventExecutor.create(method, eventClass)
+            val entry = stats.computeIfAbsent("$module|${eventClass.name}") { EventStats(module, eventClass.simpleName) }
+            val executor = EventExecutor { target, event ->
+                if (!recording) {
+                    delegate.execute(target, event)
+                    return@EventExecutor
+                }
+                val start = System.nanoTime()
+                try {
+                    delegate.execute(target, event)
+                } catch (e: Throwable) {
+                    entry.exceptions.increment()
+                    throw e
+                } finally {
+                    val elapsed = System.nanoTime() - start
+                    entry.invocations.increment()
+                    entry.totalNanos.add(elapsed)
+                    entry.histogram.record(elapsed)
+                }
+            }
+            plugin.server.pluginManager.registerEvent(eventClass, listener, annotation.priority, executor, plugin, annotation.ignoreCancelled)
+        }
+    }
+
+    /**
+     * 所有有调用记录的统计
+     */
+    fun snapshots(): List<Snapshot> = stats.values.map { it.snapshot() }.filter { it.invocations > 0 }
+
+    fun getSince(): Long = since
+
+    fun reset() {
+        stats.values.forEach { it.reset() }
+        since = System.currentTimeMillis()
+    }
+
+    /**
+     * 导出 CSV 到 perf/events-<时间>.csv（在调用线程上写文件）
+     */
+    fun exportCsv(): File {
+        val dir = File(plugin.dataFolder, "perf")
+        dir.mkdirs()
+        val file = File(dir, "events-${LocalDateTime.now().format(FILE_TIME_FORMAT)}.csv")
+        val lines = ArrayList<String>()
+        lines.add("module,event,invocations,total_ns,mean_ns,p50_ns,p90_ns,p99_ns,max_ns,exceptions")
+        snapshots().sortedByDescending { it.totalNanos }.forEach {
+            lines.add("${it.module},${it.event},${it.invocations},${it.totalNanos},${it.meanNanos},${it.p50Nanos},${it.p90Nanos},${it.p99Nanos},${it.maxNanos},${it.exceptions}")
+        }
+        file.writeText(lines.joinToString("\n", postfix = "\n"))
+        return file
+    }
+
+    /**
+     * 与 Bukkit 相同的处理方法查找规则：公开方法（含继承）和本类声明的方法，
+     * 带 @EventHandler、只有一个 Event 参数、不是桥接方法
+     */
+    private fun handlerMethods(type: Class<*>): List<Method> {
+        val methods = LinkedHashSet<Method>()
+        methods.addAll(type.methods)
+        methods.addAll(type.declaredMethods)
+        return methods.filter { method ->
+            method.getAnnotation(EventHandler::class.java) != null &&
+                !method.isBridge && !method.isSynthetic &&
+                method.parameterCount == 1 &&
+                Event::class.java.isAssignableFrom(method.parameterTypes[0])
+        }
+    }
+
+    companion object {
+        private val FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+    }
+}
@@ -0,0 +1,78 @@
+package org.tsl.tSLplugins.core
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * 无锁耗时直方图（纳秒）
+ *
+ * 按 2 的幂分段、每段再等分 8 个桶（对数线性分桶），相对误差不超过 12.5%。
+ * 记录只做一次 AtomicLongArray 自增，可在任意线程并发调用；
+ * 读取（百分位、最大值）为近似快照，不阻塞写入。
+ */
+class LatencyHistogram {
+
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+
+    fun record(nanos: Long) {
+        buckets.incrementAndGet(indexOf(nanos))
+    }
+
+    /**
+     * 百分位（返回所在桶的上界）
+     * @param percentile 0 ~ 100
+     */
+    fun percentile(percentile: Double): Long {
+        val counts = LongArray(BUCKET_COUNT) { buckets.get(it) }
+        val total = counts.sum()
+        if (total == 0L) return 0L
+        val target = maxOf(1L, Math.ceil(total * percentile / 100.0).toLong())
+        var seen = 0L
+        for (i in counts.indices) {
+            seen += counts[i]
+            if (seen >= target) return upperBound(i)
+        }
+        return upperBound(BUCKET_COUNT - 1)
+    }
+
+    /**
+     * 最大值（所在桶的上界）
+     */
+    fun max(): Long {
+        for (i in BUCKET_COUNT - 1 downTo 0) {
+            if (buckets.get(i) > 0) return upperBound(i)
+        }
+        return 0L
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT) buckets.set(i, 0L)
+    }
+
+    companion object {
+        /** 每个 2 的幂分段的桶数（2^3） */
+        private const val SUB_BITS = 3
+        private const val SUB_COUNT = 1 shl SUB_BITS
+
+        /** 最大分段（2^40 ns ≈ 18 分钟），更大的值计入最后一个桶 */
+        private const val MAX_EXPONENT = 40
+
+        private const val BUCKET_COUNT = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT
+
+        internal fun indexOf(nanos: Long): Int {
+            if (nanos < SUB_COUNT) return nanos.coerceAtLeast(0L).toInt()
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(nanos)
+            if (exponent > MAX_EXPONENT) return BUCKET_COUNT - 1
+            val sub = ((nanos ushr (exponent - SUB_BITS)) and (SUB_COUNT - 1).toLong()).toInt()
+            return (exponent - SUB_BITS + 1) * SUB_COUNT + sub
+        }
+
+        /** 桶内的最大值 */
+        internal fun upperBound(index: Int): Long {
+            if (index < SUB_COUNT) return index.toLong()
+            val exponent = index / SUB_COUNT + SUB_BITS - 1
+            val sub = (index % SUB_COUNT).toLong()
+            val width = 1L shl (exponent - SUB_BITS)
+            return (1L shl exponent) + (sub + 1) * width - 1
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package org.tsl.tSLplugins.core
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask
+import org.bukkit.Bukkit
+import org.bukkit.command.BlockCommandSender
+import org.bukkit.command.Command
+import org.bukkit.command.CommandSender
+import org.bukkit.event.Event
+import org.bukkit.event.EventException
+import org.bukkit.event.EventPriority
+import org.bukkit.event.HandlerList
+import org.bukkit.event.Listener
+import org.bukkit.event.entity.EntityEvent
+import org.bukkit.event.player.PlayerEvent
+import org.bukkit.entity.Entity
+import org.bukkit.plugin.EventExecutor
+import org.bukkit.plugin.java.JavaPlugin
+import org.tsl.tSLplugins.SubCommandHandler
+import org.tsl.tSLplugins.service.MessageManager
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * 按需启用模块的触发器
+ *
+ * 由 [ModuleRegistry] 持有，负责声明了 [ModuleActivation] 的模块：
+ * - 代为注册触发命令，第一次使用时启用模块并转交给模块自己的命令处理器
+ * - 以 LOWEST 优先级监听触发事件，第一次触发时启用模块，并把该事件补发给模块新注册的监听器
+ * - PAPI 变量请求命中前缀时启用模块
+ * - 每分钟检查一次，空闲超过 module-activation.idle-minutes 的模块会被停用
+ *
+ * 启用和停用都在全局区域线程上执行（模块会注册监听器、启动任务、调用 Bukkit API）。
+ * 在其他线程上触发时先交给全局区域调度器，完成前：
+ * - 命令在启用后回到发送者所在的线程执行
+ * - Tab 补全和 PAPI 变量返回空结果 / 模块未启用时的默认值
+ * - 触发事件在启用后交给实体（或全局）调度器补发，此时事件已分发完毕，取消等修改不再生效
+ */
+class LazyModuleActivator(
+    private val plugin: JavaPlugin,
+    private val messageManager: MessageManager,
+    private val contextFactory: () -> ModuleContext
+) {
+
+    private class Entry(val module: TSLModule, val activation: ModuleActivation) {
+        /** 当前是否已启用 */
+        @Volatile var active = false
+
+        /** 最后一次触发的时间 */
+        @Volatile var lastUsed = 0L
+
+        /** 已提交到全局区域线程、尚未完成的启用（事件和变量触发只提交一次） */
+        val pending = AtomicBoolean(false)
+
+        /** 启用后解析出的命令处理器，停用时清空 */
+        val handlers = ConcurrentHashMap<String, SubCommandHandler>()
+    }
+
+    private val entries = ConcurrentHashMap<String, Entry>()
+
+    /** 监听触发事件的占位监听器（按模块），关闭时注销 */
+    private val triggerListeners = mutableListOf<Listener>()
+
+    /** 变量前缀 -> 模块，没有按需模块声明变量时为空 */
+    @Volatile private var placeholderPrefixes: List<Pair<String, Entry>> = emptyList()
+
+    private var idleTask: ScheduledTask? = null
+
+    /**
+     * 推迟模块的启用（启动时调用，不执行 prepare / onEnable）
+     */
+    fun defer(module: TSLModule, activation: ModuleActivation) {
+        entries[module.id] = Entry(module, activation)
+    }
+
+    /**
+     * 是否为按需启用的模块
+     */
+    fun isLazy(moduleId: String): Boolean = entries.containsKey(moduleId)
+
+    /**
+     * 是否为尚未启用（或已空闲停用）的按需模块
+     */
+    fun isDormant(moduleId: String): Boolean = entries[moduleId]?.active == false
+
+    /**
+     * 按需模块的 ID 列表
+     */
+    fun getLazyModuleIds(): Set<String> = entries.keys.toSet()
+
+    /**
+     * 注册事件触发器、变量前缀和空闲检查任务（模块全部启用后调用一次）
+     */
+    fun start() {
+        if (entries.isEmpty()) return
+
+        val pluginManager = plugin.server.pluginManager
+        entries.values.forEach { entry ->
+            if (entry.activation.events.isEmpty()) return@forEach
+            val listener = object : Listener {}
+            val executor = EventExecutor { _, event -> onTriggerEvent(entry, event) }
+            entry.activation.events.forEach { type ->
+                pluginManager.registerEvent(type, listener, EventPriority.LOWEST, executor, plugin, false)
+            }
+            triggerListeners.add(listener)
+        }
+
+        placeholderPrefixes = entries.values.flatMap { entry ->
+            entry.activation.placeholders.map { it.lowercase() to entry }
+        }
+
+        idleTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, { _ ->
+            deactivateIdle()
+        }, IDLE_CHECK_TICKS, IDLE_CHECK_TICKS)
+    }
+
+    /**
+     * 取消空闲检查并注销事件触发器（插件关闭时调用）
+     */
+    fun shutdown() {
+        idleTask?.cancel()
+        idleTask = null
+        triggerListeners.forEach { HandlerList.unregisterAll(it) }
+        triggerListeners.clear()
+    }
+
+    /**
+     * 为按需模块的触发命令创建代理处理器
+     */
+    fun commandTrigger(moduleId: String, name: String): SubCommandHandler? {
+        val entry = entries[moduleId] ?: return null
+        return CommandTrigger(entry, name.lowercase())
+    }
+
+    /**
+     * PAPI 变量请求（变量名不含 tsl_ 前缀）
+     */
+    fun onPlaceholderRequest(params: String) {
+        val prefixes = placeholderPrefixes
+        if (prefixes.isEmpty()) return
+        for ((prefix, entry) in prefixes) {
+            if (params.startsWith(prefix, ignoreCase = true)) {
+                // 本次请求照常解析（模块未启用时返回默认值），启用完成后的请求才有值
+                if (!touch(entry)) activateOnce(entry, "变量 %tsl_$params%")
+                return
+            }
+        }
+    }
+
+    /**
+     * 重载后同步状态：重载中被禁用的模块视为未启用，下次触发时按新配置重新启用
+     */
+    fun afterReload(moduleId: String) {
+        val entry = entries[moduleId] ?: return
+        if (entry.active && !entry.module.isEnabled()) {
+            synchronized(entry) {
+                entry.active = false
+                entry.handlers.clear()
+            }
+        }
+    }
+
+    // ==================== 私有方法 ====================
+
+    /**
+     * 刷新最后使用时间
+     *
+     * @return 模块是否已启用
+     */
+    private fun touch(entry: Entry): Boolean {
+        entry.lastUsed = System.currentTimeMillis()
+        return entry.active
+    }
+
+    /**
+     * 在全局区域线程上执行（已在该线程上时直接执行）
+     */
+    private fun runOnGlobal(task: () -> Unit) {
+        if (Bukkit.isGlobalTickThread()) {
+            task()
+        } else {
+            Bukkit.getGlobalRegionScheduler().run(plugin) { _ -> task() }
+        }
+    }
+
+    /**
+     * 提交一次启用，已有未完成的启用时忽略
+     *
+     * @param callback 启用结束后在全局区域线程上调用（参数为是否已启用）
+     */
+    private fun activateOnce(entry: Entry, reason: String, callback: (Boolean) -> Unit = {}) {
+        if (!entry.pending.compareAndSet(false, true)) return
+        runOnGlobal {
+            val active = try {
+                enable(entry, reason)
+            } finally {
+                entry.pending.set(false)
+            }
+            callback(active)
+        }
+    }
+
+    /**
+     * 启用模块（只在全局区域线程上调用）
+     *
+     * @return 模块是否处于启用状态
+     */
+    private fun enable(entry: Entry, reason: String): Boolean {
+        synchronized(entry) {
+            if (entry.active) return true
+            val module = entry.module
+            val start = System.nanoTime()
+            try {
+                module.onEnable(contextFactory())
+            } catch (e: Exception) {
+                plugin.logger.severe("[ModuleActivation] 按需启用模块 '${module.id}' 失败: ${e.message}")
+                e.printStackTrace()
+                return false
+            }
+            if (!module.isEnabled()) return false
+
+            entry.lastUsed = System.currentTimeMillis()
+            entry.active = true
+            plugin.logger.info(
+                "[ModuleActivation] 按需启用模块 '${module.id}'（$reason），" +
+                    "耗时 ${String.format("%.1fms", (System.nanoTime() - start) / 1_000_000.0)}"
+            )
+            return true
+        }
+    }
+
+    private fun onTriggerEvent(entry: Entry, event: Event) {
+        if (touch(entry)) return
+        if (!entry.activation.events.any { it.isInstance(event) }) return
+        if (!entry.activation.eventFilter(event)) return
+
+        // 本次事件分发已经取得了监听器快照，新注册的监听器需要手动补发
+        val handlerList = event.handlers
+        val before = handlerList.registeredListeners.toSet()
+        activateOnce(entry, "事件 ${event.eventName}") { active ->
+            if (!active) return@activateOnce
+            val added = handlerList.registeredListeners.filter { it !in before && it.plugin == plugin }
+            if (added.isEmpty()) return@activateOnce
+            val replay = {
+                added.forEach { registered ->
+                    try {
+                        registered.callEvent(event)
+                    } catch (e: EventException) {
+                        plugin.logger.warning("[ModuleActivation] 向模块 '${entry.module.id}' 补发 ${event.eventName} 时出错: ${e.cause?.message}")
+                    }
+                }
+            }
+            // 实体事件交给实体所在区域补发，其他事件直接在全局区域线程上补发
+            val entity = entityOf(event)
+            if (entity == null) replay() else entity.scheduler.run(plugin, { _ -> replay() }, null)
+        }
+    }
+
+    private fun entityOf(event: Event): Entity? = when (event) {
+        is PlayerEvent -> event.player
+        is EntityEvent -> event.entity
+        else -> null
+    }
+
+    /**
+     * 停用空闲超时的模块（全局区域线程）
+     */
+    private fun deactivateIdle() {
+        val idleMinutes = plugin.config.getLong("module-activation.idle-minutes", 30L)
+        if (idleMinutes <= 0) return
+        val deadline = System.currentTimeMillis() - idleMinutes * 60_000L
+
+        entries.values.forEach { entry ->
+            if (!entry.active || entry.lastUsed > deadline) return@forEach
+            synchronized(entry) {
+                if (!entry.active || entry.lastUsed > deadline) return@forEach
+                val module = entry.module
+                try {
+                    if (!module.canDeactivate()) return@forEach
+                    module.onDisable()
+                } catch (e: Exception) {
+                    plugin.logger.warning("[ModuleActivation] 停用模块 '${module.id}' 时出错: ${e.message}")
+                }
+                entry.active = false
+                entry.handlers.clear()
+                plugin.logger.info("[ModuleActivation] 模块 '${module.id}' 空闲超过 $idleMinutes 分钟，已停用")
+            }
+        }
+    }
+
+    /**
+     * 触发命令代理：启用模块后转交给模块自己的命令处理器
+     */
+    private inner class CommandTrigger(private val entry: Entry, private val name: String) : SubCommandHandler {
+
+        override fun handle(sender: CommandSender, command: Command, label: String, args: Array<out String>): Boolean {
+            if (touch(entry)) return dispatch(sender, command, label, args)
+
+            // 启用完成后回到发送者所在的线程执行本次命令
+            runOnGlobal {
+                val active = enable(entry, "命令 /tsl $name")
+                val run = {
+                    if (active) dispatch(sender, command, label, args)
+                    else sender.sendMessage(messageManager.getCommon("disabled"))
+                }
+                when (sender) {
+                    is Entity -> sender.scheduler.run(plugin, { _ -> run() }, null)
+                    is BlockCommandSender -> Bukkit.getRegionScheduler().run(plugin, sender.block.location) { _ -> run() }
+                    else -> run()
+                }
+            }
+            return true
+        }
+
+        override fun tabComplete(sender: CommandSender, command: Command, label: String, args: Array<out String>): List<String> {
+            // 补全请求不等待启用，启用完成后的补全才有结果
+            if (!touch(entry)) {
+                activateOnce(entry, "命令 /tsl $name")
+                return emptyList()
+            }
+            return resolve()?.tabComplete(sender, command, label, args) ?: emptyList()
+        }
+
+        override fun getDescription(): String = entry.module.getDescription()
+
+        private fun dispatch(sender: CommandSender, command: Command, label: String, args: Array<out String>): Boolean {
+            val handler = resolve()
+            if (handler == null) {
+                sender.sendMessage(messageManager.getCommon("disabled"))
+                return true
+            }
+            return handler.handle(sender, command, label, args)
+        }
+
+        private fun resolve(): SubCommandHandler? {
+            if (!entry.active) return null
+            entry.handlers[name]?.let { return it }
+            val module = entry.module
+            val handler = (if (name == module.id) module.getCommandHandler() else module.getAdditionalCommandHandlers()[name])
+                ?: return null
+            entry.handlers[name] = handler
+            return handler
+        }
+    }
+
+    companion object {
+        /** 空闲检查间隔（1 分钟） */
+        private const val IDLE_CHECK_TICKS = 20L * 60
+    }
+}
@@ -0,0 +1,37 @@
+package org.tsl.tSLplugins.core
+
+import org.bukkit.event.Event
+
+/**
+ * 模块按需启用的触发条件
+ *
+ * 模块通过 [TSLModule.activation] 声明后，开启 module-activation.lazy 时
+ * ModuleRegistry 不会在启动时准备和启用它，而是等到第一次触发时再执行 [TSLModule.onEnable]：
+ * - 第一次使用 [commands] 中的子命令（含 Tab 补全）
+ * - 第一次触发 [events] 中的事件且通过 [eventFilter]（该事件会在启用后补发给模块新注册的监听器）
+ * - 第一次请求以 [placeholders] 中任一前缀开头的 PAPI 变量（%tsl_<前缀>...%，启用完成前返回默认值）
+ *
+ * 启用在全局区域线程上执行，见 [LazyModuleActivator]。补发的事件因此可能晚若干 tick 到达，
+ * 此时实体速度、玩家手持物品等状态可能已经改变，依赖事件发生瞬间状态的模块不要使用事件触发。
+ *
+ * 空闲超过 module-activation.idle-minutes 且 [TSLModule.canDeactivate] 为 true 时，
+ * 模块会被停用（执行 [TSLModule.onDisable]），下次触发时重新启用。
+ *
+ * ## 示例
+ * ```kotlin
+ * override val activation = ModuleActivation(commands = listOf("vote"))
+ * ```
+ */
+class ModuleActivation(
+    /** 触发启用的子命令（/tsl <name>），由注册器代为注册 */
+    val commands: List<String> = emptyList(),
+
+    /** 触发启用的事件类型 */
+    val events: List<Class<out Event>> = emptyList(),
+
+    /** 事件过滤，只有返回 true 的事件才会触发启用 */
+    val eventFilter: (Event) -> Boolean = { true },
+
+    /** 触发启用的 PAPI 变量前缀（不含 tsl_，不区分大小写） */
+    val placeholders: List<String> = emptyList()
+)
@@ -7,6 +7,7 @@ import org.bukkit.plugin.java.JavaPlugin
 import org.tsl.tSLplugins.service.DatabaseManager
 import org.tsl.tSLplugins.service.MessageManager
 import org.tsl.tSLplugins.service.PlayerDataManager
+import org.tsl.tSLplugins.service.PlayerSpatialIndex
 
 /**
  * 模块上下文
@@ -18,6 +19,7 @@ import org.tsl.tSLplugins.service.PlayerDataManager
  * - [plugin] - 插件实例（用于调度器等）
  * - [messageManager] - 消息管理器
  * - [playerDataManager] - 玩家数据管理器
+ * - [playerSpatialIndex] - 玩家位置空间索引
  * - [config] - 主配置文件
  * 
  * ## 便捷方法
@@ -73,6 +75,21 @@ class ModuleContext(
      * 数据存储在 YAML 文件中，支持 PDC 迁移。
      */
     val playerDataManager: PlayerDataManager,
+
+    /**
+     * 玩家位置空间索引
+     *
+     * 按世界划分的玩家位置网格，支持半径和 k 近邻查询。
+     * 使用前需在 doEnable 中调用 acquire()，并在 doDisable 中调用 release()。
+     */
+    val playerSpatialIndex: PlayerSpatialIndex,
+
+    /**
+     * 事件监听耗时统计
+     *
+     * 开启 event-profiler.enabled 时，[registerListener] 注册的监听器会按模块记录耗时。
+     */
+    val eventProfiler: EventProfiler,
     
     /**
      * 主配置文件
@@ -120,6 +137,16 @@ class ModuleContext(
         plugin.server.pluginManager.registerEvents(listener, plugin)
     }
     
+    /**
+     * 注册事件监听器，并在开启事件耗时统计时按模块记录
+     * 
+     * @param listener 要注册的监听器实例
+     * @param module 所属模块 ID
+     */
+    fun registerListener(listener: Listener, module: String) {
+        eventProfiler.register(listener, module)
+    }
+    
     /**
      * 获取格式化消息
      * 
@@ -0,0 +1,180 @@
+package org.tsl.tSLplugins.core
+
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import org.bukkit.Bukkit
+import org.bukkit.event.HandlerList
+import org.bukkit.plugin.java.JavaPlugin
+import java.io.File
+import java.lang.management.ManagementFactory
+import java.time.LocalDateTime
+import java.time.format.DateTimeFormatter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentLinkedQueue
+
+/**
+ * 模块生命周期性能记录
+ *
+ * 记录启动（配置更新、准备、启用）和 /tsl reload 时每个模块每个阶段的：
+ * - 墙钟时间、当前线程 CPU 时间、当前线程分配字节数
+ * - 新增的事件处理方法数（HandlerList 差值，只在主线程阶段统计）
+ *
+ * 每次启动 / 重载的结果保存在内存中供 `/tsl perf startup|reload` 查看，
+ * 并写入 `perf/<类型>-latest.json` 和 `perf/<类型>-<插件版本>.json`，便于跨版本对比。
+ *
+ * [measure] 可以在多个线程上同时调用。
+ */
+class ModuleProfiler(private val plugin: JavaPlugin) {
+
+    enum class Phase(val label: String) {
+        CONFIG_UPDATE("配置更新"),
+        CORE("核心服务"),
+        PREPARE("准备"),
+        ENABLE("启用"),
+        RELOAD("重载")
+    }
+
+    /**
+     * 单个模块单个阶段的记录
+     *
+     * cpuNanos / allocatedBytes / listeners 为 -1 表示不支持或未统计
+     */
+    @Serializable
+    data class Sample(
+        val module: String,
+        val phase: String,
+        val thread: String,
+        val wallNanos: Long,
+        val cpuNanos: Long,
+        val allocatedBytes: Long,
+        val listeners: Int
+    )
+
+    /**
+     * 一次启动或重载的完整记录
+     */
+    @Serializable
+    data class Report(
+        val kind: String,
+        val pluginVersion: String,
+        val serverVersion: String,
+        val startedAt: String,
+        val wallNanos: Long,
+        val threads: Int,
+        val samples: List<Sample>
+    ) {
+        /** 按模块汇总各阶段墙钟时间，降序 */
+        fun wallByModule(): List<Pair<String, Long>> =
+            samples.groupBy { it.module }.map { (module, list) -> module to list.sumOf { it.wallNanos } }.sortedByDescending { it.second }
+    }
+
+    private class ActiveRun(val kind: String, val startedAt: LocalDateTime, val startNanos: Long) {
+        val samples = ConcurrentLinkedQueue<Sample>()
+        @Volatile
+        var threads = 1
+    }
+
+    private val threadBean = ManagementFactory.getThreadMXBean()
+    private val allocationBean = threadBean as? com.sun.management.ThreadMXBean
+    private val cpuSupported = threadBean.isCurrentThreadCpuTimeSupported
+    private val allocationSupported = allocationBean?.isThreadAllocatedMemorySupported == true
+
+    @Volatile
+    private var active: ActiveRun? = null
+    private val reports = ConcurrentHashMap<String, Report>()
+
+    private val json = Json { prettyPrint = true }
+
+    init {
+        if (cpuSupported && !threadBean.isThreadCpuTimeEnabled) threadBean.isThreadCpuTimeEnabled = true
+        if (allocationSupported && !allocationBean!!.isThreadAllocatedMemoryEnabled) allocationBean.isThreadAllocatedMemoryEnabled = true
+    }
+
+    /**
+     * 开始一次记录（startup / reload），未结束的记录会被丢弃
+     */
+    fun begin(kind: String) {
+        active = ActiveRun(kind, LocalDateTime.now(), System.nanoTime())
+    }
+
+    /**
+     * 记录准备阶段使用的线程数
+     */
+    fun setThreads(threads: Int) {
+        active?.threads = threads
+    }
+
+    /**
+     * 执行并记录一个阶段；没有进行中的记录时直接执行
+     *
+     * @param trackRegistrations 是否统计监听器差值（只应在主线程阶段开启）
+     */
+    fun <T> measure(module: String, phase: Phase, trackRegistrations: Boolean = true, block: () -> T): T {
+        val run = active ?: return block()
+        val listenersBefore = if (trackRegistrations) listenerCount() else -1
+        val cpuBefore = cpuTime()
+        val allocBefore = allocatedBytes()
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            val wall = System.nanoTime() - start
+            val cpu = if (cpuBefore < 0) -1L else cpuTime() - cpuBefore
+            val alloc = if (allocBefore < 0) -1L else allocatedBytes() - allocBefore
+            val listeners = if (listenersBefore < 0) -1 else listenerCount() - listenersBefore
+            run.samples.add(Sample(module, phase.name.lowercase(), Thread.currentThread().name, wall, cpu, alloc, listeners))
+        }
+    }
+
+    /**
+     * 当前记录中已有的结果
+     */
+    fun currentSamples(): List<Sample> = active?.samples?.toList() ?: emptyList()
+
+    /**
+     * 结束当前记录，保存结果并异步写入 JSON 文件
+     */
+    fun finish(): Report? {
+        val run = active ?: return null
+        active = null
+        val report = Report(
+            kind = run.kind,
+            pluginVersion = plugin.pluginMeta.version,
+            serverVersion = Bukkit.getVersion(),
+            startedAt = run.startedAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
+            wallNanos = System.nanoTime() - run.startNanos,
+            threads = run.threads,
+            samples = run.samples.toList()
+        )
+        reports[run.kind] = report
+        Bukkit.getAsyncScheduler().runNow(plugin) { _ -> writeReport(report) }
+        return report
+    }
+
+    /**
+     * 最近一次记录（startup / reload）
+     */
+    fun getReport(kind: String): Report? = reports[kind]
+
+    fun getReportFile(kind: String): File = File(plugin.dataFolder, "perf/$kind-latest.json")
+
+    private fun writeReport(report: Report) {
+        try {
+            val dir = File(plugin.dataFolder, "perf")
+            dir.mkdirs()
+            val content = json.encodeToString(report)
+            File(dir, "${report.kind}-latest.json").writeText(content)
+            File(dir, "${report.kind}-${report.pluginVersion}.json").writeText(content)
+        } catch (e: Exception) {
+            plugin.logger.warning("[ModuleProfiler] 写入性能报告失败: ${e.message}")
+        }
+    }
+
+    private fun cpuTime(): Long = if (cpuSupported) threadBean.currentThreadCpuTime else -1L
+
+    private fun allocatedBytes(): Long =
+        if (allocationSupported) allocationBean!!.getThreadAllocatedBytes(Thread.currentThread().threadId()) else -1L
+
+    private fun listenerCount(): Int = HandlerList.getRegisteredListeners(plugin).size
+}
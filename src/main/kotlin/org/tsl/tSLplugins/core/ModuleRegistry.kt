@@ -5,8 +5,13 @@ import org.bukkit.plugin.java.JavaPlugin
 import org.tsl.tSLplugins.service.DatabaseManager
 import org.tsl.tSLplugins.service.MessageManager
 import org.tsl.tSLplugins.service.PlayerDataManager
+import org.tsl.tSLplugins.service.PlayerSpatialIndex
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.TSLCommand
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicInteger
 
 /**
  * 模块注册器
@@ -22,7 +27,7 @@ import org.tsl.tSLplugins.TSLCommand
  * ## 使用示例
  * ```kotlin
  * // 在 TSLplugins.onEnable() 中
- * val registry = ModuleRegistry(this, messageManager, playerDataManager)
+ * val registry = ModuleRegistry(this, messageManager, playerDataManager, playerSpatialIndex)
  * 
  * // 注册模块
  * registry.register(KissModule())
@@ -40,12 +45,25 @@ import org.tsl.tSLplugins.TSLCommand
  * 模块按以下规则排序加载：
  * 1. 依赖关系（被依赖的模块先加载）
  * 2. 优先级（数值小的先加载）
- * 3. 注册顺序（同优先级按注册顺序）
+ * 3. 模块 ID（同优先级按 ID 排序）
+ * 
+ * ## 启动阶段
+ * 1. 准备：按依赖层（同一层的模块互不依赖）逐层执行 [TSLModule.prepare]，
+ *    同一层内在工作线程上并行（配置 module-startup.parallel-prepare）
+ * 2. 注册：在主线程上按加载顺序串行执行 [TSLModule.onEnable]
+ * 
+ * 启动和重载时每个模块每个阶段的耗时由 [ModuleProfiler] 记录，启动完成后输出最慢模块的报告。
+ * 
+ * ## 按需启用
+ * 开启 module-activation.lazy 时，声明了 [TSLModule.activation] 的模块跳过以上两个阶段，
+ * 由 [LazyModuleActivator] 在第一次使用时启用、空闲超时后停用。
  */
 class ModuleRegistry(
     private val plugin: JavaPlugin,
     private val messageManager: MessageManager,
-    private val playerDataManager: PlayerDataManager
+    private val playerDataManager: PlayerDataManager,
+    private val playerSpatialIndex: PlayerSpatialIndex,
+    private val profiler: ModuleProfiler = ModuleProfiler(plugin)
 ) {
     
     /**
@@ -58,6 +76,21 @@ class ModuleRegistry(
      */
     private val loadOrder = mutableListOf<String>()
     
+    /**
+     * 依赖层（第 n 层的模块只依赖前 n-1 层的模块）
+     */
+    private val layers = mutableListOf<List<String>>()
+    
+    /**
+     * 事件监听耗时统计（注册时读取 event-profiler.enabled）
+     */
+    private val eventProfiler = EventProfiler(plugin)
+    
+    /**
+     * 按需启用模块的触发器
+     */
+    private val activator = LazyModuleActivator(plugin, messageManager, ::createContext)
+    
     /**
      * 是否已完成初始化
      */
@@ -109,19 +142,31 @@ class ModuleRegistry(
             return 0
         }
         
+        val startTime = System.nanoTime()
+        
         // 解析依赖并确定加载顺序
         resolveDependencies()
         
+        // 按需启用的模块推迟到第一次触发
+        deferLazyModules()
+        
         // 创建模块上下文
         val context = createContext()
         
-        // 按顺序启用模块
+        // 准备阶段（按层并行）
+        val prepareStart = System.nanoTime()
+        val threads = prepareModules(context)
+        profiler.setThreads(threads)
+        val prepareWallNanos = System.nanoTime() - prepareStart
+        
+        // 注册阶段：按顺序启用模块
+        val enableStart = System.nanoTime()
         var enabledCount = 0
         loadOrder.forEach { moduleId ->
             val module = modules[moduleId]
-            if (module != null) {
+            if (module != null && !activator.isLazy(moduleId)) {
                 try {
-                    module.onEnable(context)
+                    profiler.measure(moduleId, ModuleProfiler.Phase.ENABLE) { module.onEnable(context) }
                     if (module.isEnabled()) {
                         enabledCount++
                     }
@@ -131,9 +176,17 @@ class ModuleRegistry(
                 }
             }
         }
+        val enableWallNanos = System.nanoTime() - enableStart
         
+        logStartupReport(threads, prepareWallNanos, enableWallNanos, System.nanoTime() - startTime)
+        
+        activator.start()
         initialized = true
-        plugin.logger.info("[ModuleRegistry] 已启用 $enabledCount/${modules.size} 个模块")
+        val lazyIds = activator.getLazyModuleIds()
+        plugin.logger.info(
+            "[ModuleRegistry] 已启用 $enabledCount/${modules.size} 个模块" +
+                if (lazyIds.isEmpty()) "" else "，${lazyIds.size} 个模块按需启用: ${lazyIds.sorted().joinToString(", ")}"
+        )
         
         return enabledCount
     }
@@ -149,10 +202,12 @@ class ModuleRegistry(
             return
         }
         
-        // 逆序禁用
+        activator.shutdown()
+        
+        // 逆序禁用（跳过未启用或已空闲停用的按需模块）
         loadOrder.reversed().forEach { moduleId ->
             val module = modules[moduleId]
-            if (module != null && module.isEnabled()) {
+            if (module != null && module.isEnabled() && !activator.isDormant(moduleId)) {
                 try {
                     module.onDisable()
                 } catch (e: Exception) {
@@ -177,22 +232,20 @@ class ModuleRegistry(
             return 0
         }
         
+        profiler.begin("reload")
+        
         // 重新加载配置文件
-        plugin.reloadConfig()
+        profiler.measure("config", ModuleProfiler.Phase.RELOAD) { plugin.reloadConfig() }
         
-        // 重载所有模块
+        // 重载所有模块（未启用的按需模块在下次启用时读取新配置）
         var enabledCount = 0
         loadOrder.forEach { moduleId ->
             val module = modules[moduleId]
-            if (module != null) {
+            if (module != null && !activator.isDormant(moduleId)) {
                 try {
-                    // 对于 AbstractModule，需要更新 context
-                    if (module is AbstractModule) {
-                        // AbstractModule 的 onReload 会重新加载配置
-                        module.onReload()
-                    } else {
-                        module.onReload()
-                    }
+                    // AbstractModule 的 onReload 会重新加载配置
+                    profiler.measure(moduleId, ModuleProfiler.Phase.RELOAD) { module.onReload() }
+                    activator.afterReload(moduleId)
                     
                     if (module.isEnabled()) {
                         enabledCount++
@@ -203,7 +256,11 @@ class ModuleRegistry(
             }
         }
         
-        plugin.logger.info("[ModuleRegistry] 重载完成，$enabledCount/${modules.size} 个模块已启用")
+        val report = profiler.finish()
+        plugin.logger.info(
+            "[ModuleRegistry] 重载完成，$enabledCount/${modules.size} 个模块已启用" +
+                (report?.let { "，耗时 ${formatMs(it.wallNanos)}" } ?: "")
+        )
         
         return enabledCount
     }
@@ -211,12 +268,22 @@ class ModuleRegistry(
     /**
      * 注册所有已启用模块的命令到 TSLCommand
      * 
-     * 注意：只为已启用的模块注册命令，避免访问未初始化的属性
+     * 注意：只为已启用的模块注册命令，避免访问未初始化的属性。
+     * 按需启用的模块注册 [ModuleActivation.commands] 的代理命令，第一次使用时启用模块。
      * 
      * @param dispatcher TSLCommand 命令分发器
      */
     fun registerCommands(dispatcher: TSLCommand) {
         modules.values.forEach { module ->
+            if (activator.isLazy(module.id)) {
+                module.activation?.commands?.forEach { name ->
+                    val trigger = activator.commandTrigger(module.id, name) ?: return@forEach
+                    dispatcher.registerSubCommand(name, trigger)
+                    plugin.logger.info("[ModuleRegistry] 注册命令: /tsl $name (按需启用模块 ${module.id})")
+                }
+                return@forEach
+            }
+            
             // 只为已启用的模块注册命令
             if (!module.isEnabled()) {
                 return@forEach
@@ -242,6 +309,15 @@ class ModuleRegistry(
         }
     }
     
+    /**
+     * PAPI 变量请求时调用，命中按需模块的变量前缀时启用该模块
+     * 
+     * @param params 变量名（不含 tsl_ 前缀）
+     */
+    fun onPlaceholderRequest(params: String) {
+        activator.onPlaceholderRequest(params)
+    }
+    
     /**
      * 获取指定模块
      * 
@@ -274,6 +350,16 @@ class ModuleRegistry(
         return modules.values.filter { it.isEnabled() }
     }
     
+    /**
+     * 获取模块性能记录器
+     */
+    fun getProfiler(): ModuleProfiler = profiler
+    
+    /**
+     * 获取事件监听耗时统计
+     */
+    fun getEventProfiler(): EventProfiler = eventProfiler
+    
     /**
      * 获取模块数量
      */
@@ -294,14 +380,135 @@ class ModuleRegistry(
             plugin = plugin,
             messageManager = messageManager,
             playerDataManager = playerDataManager,
+            playerSpatialIndex = playerSpatialIndex,
+            eventProfiler = eventProfiler,
             config = plugin.config
         )
     }
     
+    /**
+     * 准备阶段：逐层执行 prepare，同一层内并行
+     * 
+     * @return 使用的线程数（1 表示串行）
+     */
+    private fun prepareModules(context: ModuleContext): Int {
+        val config = plugin.config
+        val parallel = config.getBoolean("module-startup.parallel-prepare", true)
+        val configuredThreads = config.getInt("module-startup.threads", 0)
+        val maxLayerSize = layers.maxOfOrNull { it.size } ?: 0
+        val threads = if (!parallel) 1 else {
+            val wanted = if (configuredThreads > 0) configuredThreads else Runtime.getRuntime().availableProcessors().coerceAtMost(4)
+            wanted.coerceIn(1, maxOf(1, maxLayerSize))
+        }
+        
+        if (threads <= 1) {
+            loadOrder.forEach { prepareModule(it, context) }
+            return 1
+        }
+        
+        val threadIndex = AtomicInteger()
+        val classLoader = plugin.javaClass.classLoader
+        val executor = Executors.newFixedThreadPool(threads) { runnable ->
+            Thread(runnable, "TSLplugins-ModulePrepare-${threadIndex.incrementAndGet()}").apply {
+                isDaemon = true
+                contextClassLoader = classLoader
+            }
+        }
+        try {
+            layers.forEach { layer ->
+                // 单个模块的层直接在当前线程执行
+                if (layer.size == 1) {
+                    prepareModule(layer[0], context)
+                    return@forEach
+                }
+                val futures: List<Pair<String, Future<*>>> = layer.map { id -> id to executor.submit { prepareModule(id, context) } }
+                futures.forEach { (id, future) ->
+                    try {
+                        future.get()
+                    } catch (e: ExecutionException) {
+                        plugin.logger.severe("[ModuleRegistry] 准备模块 '$id' 失败: ${e.cause?.message}")
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown()
+        }
+        return threads
+    }
+    
+    private fun prepareModule(moduleId: String, context: ModuleContext) {
+        val module = modules[moduleId] ?: return
+        if (activator.isLazy(moduleId)) return
+        try {
+            // 准备阶段可能在工作线程上执行，不统计监听器
+            profiler.measure(moduleId, ModuleProfiler.Phase.PREPARE, trackRegistrations = false) { module.prepare(context) }
+        } catch (e: Exception) {
+            plugin.logger.severe("[ModuleRegistry] 准备模块 '$moduleId' 失败: ${e.message}")
+            e.printStackTrace()
+        }
+    }
+    
+    /**
+     * 标记按需启用的模块（module-activation.lazy）
+     * 
+     * 配置中未启用的模块照常走启动流程（只记录未启用），被其他模块依赖的模块必须在启动时启用。
+     */
+    private fun deferLazyModules() {
+        val config = plugin.config
+        if (!config.getBoolean("module-activation.lazy", true)) return
+        
+        val required = modules.values.flatMap { it.dependencies }.toSet()
+        loadOrder.forEach { moduleId ->
+            val module = modules[moduleId] ?: return@forEach
+            val activation = module.activation ?: return@forEach
+            if (moduleId in required) return@forEach
+            if (!config.getBoolean("${module.configPath}.enabled", false)) return@forEach
+            activator.defer(module, activation)
+        }
+    }
+    
+    private fun layerOf(moduleId: String): Int = layers.indexOfFirst { moduleId in it }
+    
+    /**
+     * 输出启动耗时报告
+     */
+    private fun logStartupReport(threads: Int, prepareWallNanos: Long, enableWallNanos: Long, totalNanos: Long) {
+        val samples = profiler.currentSamples().filter { it.module in modules }
+        val prepareNanos = samples.filter { it.phase == "prepare" }.associate { it.module to it.wallNanos }
+        val enableNanos = samples.filter { it.phase == "enable" }.associate { it.module to it.wallNanos }
+        val prepareSumNanos = prepareNanos.values.sum()
+        plugin.logger.info(
+            "[ModuleRegistry] 启动耗时 ${formatMs(totalNanos)}: 准备 ${formatMs(prepareWallNanos)}" +
+                "（${layers.size} 层，$threads 线程，串行合计 ${formatMs(prepareSumNanos)}，节省 ${formatMs(prepareSumNanos - prepareWallNanos)}），" +
+                "注册 ${formatMs(enableWallNanos)}"
+        )
+        if (!plugin.config.getBoolean("module-startup.timing-report", true)) return
+        
+        val slowest = loadOrder
+            .map { it to (prepareNanos[it] ?: 0L) + (enableNanos[it] ?: 0L) }
+            .sortedByDescending { it.second }
+            .take(REPORT_LIMIT)
+        slowest.forEach { (id, _) ->
+            plugin.logger.info(
+                "[ModuleRegistry]   ${id.padEnd(20)} 第 ${layerOf(id)} 层  准备 ${formatMs(prepareNanos[id] ?: 0L).padStart(9)}  " +
+                    "启用 ${formatMs(enableNanos[id] ?: 0L).padStart(9)}${statusSuffix(id)}"
+            )
+        }
+    }
+    
+    private fun statusSuffix(moduleId: String): String = when {
+        activator.isLazy(moduleId) -> "  (按需启用)"
+        modules[moduleId]?.isEnabled() == true -> ""
+        else -> "  (未启用)"
+    }
+    
+    private fun formatMs(nanos: Long): String = String.format("%.1fms", nanos.coerceAtLeast(0L) / 1_000_000.0)
+    
     /**
      * 解析依赖关系并确定加载顺序
      * 
-     * 使用拓扑排序确保依赖模块先于被依赖模块加载。
+     * 使用分层拓扑排序（Kahn 算法）确保依赖模块先于被依赖模块加载，
+     * 同时得到可以并行准备的依赖层。
      */
     private fun resolveDependencies() {
         loadOrder.clear()
@@ -327,35 +534,25 @@ class ModuleRegistry(
             }
         }
         
-        // 按优先级和入度排序的队列
-        val queue = modules.keys
-            .filter { (inDegree[it] ?: 0) == 0 }
-            .sortedWith(compareBy({ modules[it]?.priority ?: 100 }, { it }))
-            .toMutableList()
+        val order = compareBy<String>({ modules[it]?.priority ?: 100 }, { it })
         
-        // 拓扑排序
-        while (queue.isNotEmpty()) {
-            val current = queue.removeAt(0)
-            loadOrder.add(current)
+        // 逐层拓扑排序：当前层为所有入度为 0 的模块
+        layers.clear()
+        var layer = modules.keys.filter { (inDegree[it] ?: 0) == 0 }.sortedWith(order)
+        while (layer.isNotEmpty()) {
+            layers.add(layer)
+            loadOrder.addAll(layer)
             
-            // 减少依赖当前模块的模块的入度
-            dependents[current]?.forEach { depId ->
-                val newInDegree = (inDegree[depId] ?: 1) - 1
-                inDegree[depId] = newInDegree
-                
-                if (newInDegree == 0) {
-                    // 按优先级插入队列
-                    val priority = modules[depId]?.priority ?: 100
-                    val insertIndex = queue.indexOfFirst { 
-                        (modules[it]?.priority ?: 100) > priority 
-                    }
-                    if (insertIndex == -1) {
-                        queue.add(depId)
-                    } else {
-                        queue.add(insertIndex, depId)
-                    }
+            // 减少依赖当前层模块的模块的入度
+            val next = mutableListOf<String>()
+            layer.forEach { current ->
+                dependents[current]?.forEach { depId ->
+                    val newInDegree = (inDegree[depId] ?: 1) - 1
+                    inDegree[depId] = newInDegree
+                    if (newInDegree == 0) next.add(depId)
                 }
             }
+            layer = next.sortedWith(order)
         }
         
         // 检查循环依赖
@@ -365,5 +562,11 @@ class ModuleRegistry(
         }
         
         plugin.logger.info("[ModuleRegistry] 模块加载顺序: ${loadOrder.joinToString(" -> ")}")
+        plugin.logger.info("[ModuleRegistry] 依赖层: ${layers.size}，各层模块数: ${layers.joinToString(", ") { it.size.toString() }}")
+    }
+    
+    companion object {
+        /** 耗时报告中列出的模块数 */
+        private const val REPORT_LIMIT = 15
     }
 }
@@ -9,10 +9,13 @@ import org.tsl.tSLplugins.SubCommandHandler
  * 推荐继承 [AbstractModule] 而不是直接实现此接口。
  * 
  * ## 生命周期
+ * 0. [prepare] - 插件启动时在工作线程上并行调用（同一依赖层的模块同时准备）
  * 1. [onEnable] - 插件启动时调用，初始化模块
  * 2. [onReload] - 配置重载时调用，重新加载配置
  * 3. [onDisable] - 插件关闭时调用，清理资源
  * 
+ * 声明了 [activation] 的模块可以推迟到第一次使用时才执行 0、1，空闲停用时执行 3。
+ * 
  * ## 示例
  * ```kotlin
  * class KissModule : AbstractModule() {
@@ -73,6 +76,40 @@ interface TSLModule {
      */
     val priority: Int get() = 100
     
+    /**
+     * 按需启用的触发条件
+     * 
+     * 返回非 null 且开启 module-activation.lazy 时，模块不在启动时启用，
+     * 而是在第一次触发时由 ModuleRegistry 调用 [onEnable]。
+     * 被其他模块依赖的模块始终在启动时启用。
+     * 
+     * 默认 null，即启动时启用。
+     */
+    val activation: ModuleActivation? get() = null
+    
+    /**
+     * 是否允许空闲停用
+     * 
+     * 按需启用的模块空闲超时后，ModuleRegistry 会先调用此方法，返回 false 时保持启用
+     * （例如有进行中的投票、仍有玩家处于观察状态）。
+     */
+    fun canDeactivate(): Boolean = true
+    
+    /**
+     * 启动准备阶段
+     * 
+     * 由 ModuleRegistry 在 [onEnable] 之前调用，可能在工作线程上与同一依赖层的其他模块并行执行，
+     * 依赖的模块保证已完成准备（但尚未启用）。只应做线程安全的工作：
+     * - 解析配置
+     * - 加载存储（数据库、文件）
+     * - 构建索引
+     * 
+     * 不要注册监听器、命令、定时任务，也不要访问世界和实体。
+     * 
+     * @param context 模块上下文
+     */
+    fun prepare(context: ModuleContext) {}
+    
     /**
      * 模块启用时调用
      * 
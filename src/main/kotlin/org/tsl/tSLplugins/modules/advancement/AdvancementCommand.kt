@@ -47,7 +47,7 @@ class AdvancementCommand(
                 targetPlayer.scheduler.run(plugin, { _ ->
                     if (targetPlayer.isOnline) {
                         countHandler.refreshCount(targetPlayer)
-                        sender.sendMessage("§a已刷新玩家 ${targetPlayer.name} 的成就统计！")
+                        sender.sendMessage("§a已开始刷新玩家 ${targetPlayer.name} 的成就统计！")
                     }
                 }, null)
 
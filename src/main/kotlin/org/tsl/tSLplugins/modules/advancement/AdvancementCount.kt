@@ -1,156 +1,194 @@
 package org.tsl.tSLplugins.modules.advancement
 
+import io.papermc.paper.event.server.ServerResourcesReloadedEvent
 import org.bukkit.Bukkit
+import org.bukkit.NamespacedKey
+import org.bukkit.advancement.Advancement
 import org.bukkit.entity.Player
 import org.bukkit.event.EventHandler
+import org.bukkit.event.EventPriority
 import org.bukkit.event.Listener
 import org.bukkit.event.player.PlayerAdvancementDoneEvent
+import org.bukkit.event.player.PlayerCommandPreprocessEvent
+import org.bukkit.event.player.PlayerJoinEvent
 import org.bukkit.event.player.PlayerQuitEvent
+import org.bukkit.event.server.ServerCommandEvent
 import org.bukkit.plugin.java.JavaPlugin
 import java.util.UUID
 import java.util.concurrent.ConcurrentHashMap
 
+/**
+ * 成就数量统计（增量维护）
+ *
+ * - 需要统计的成就（排除配方和无显示信息的进度）在启用 / 重载 / 数据包重载时预先计算一次
+ * - 玩家加入时在其实体线程上分片扫描一次作为初始值，每 tick 最多检查 seedBatchSize 个成就
+ * - 之后由 PlayerAdvancementDoneEvent 增量 +1；执行 /advancement revoke 后重新扫描在线玩家
+ *   （Paper 没有撤销条件的事件）
+ *
+ * 读取数量为 O(1)，不再有定期全量重算。
+ */
 class AdvancementCount(private val plugin: JavaPlugin) : Listener {
 
-    // 缓存结构：UUID -> CacheEntry
-    private val cache = ConcurrentHashMap<UUID, CacheEntry>()
+    /** 需要统计的成就（不可变快照） */
+    @Volatile
+    private var tracked: List<Advancement> = emptyList()
+    @Volatile
+    private var trackedKeys: Set<NamespacedKey> = emptySet()
 
-    // 缓存过期时间（毫秒）
-    companion object {
-        private const val CACHE_EXPIRY_MS = 60_000L // 60秒
+    /** 玩家已完成的成就 */
+    private val completed = ConcurrentHashMap<UUID, MutableSet<NamespacedKey>>()
+
+    /** 正在扫描的结果集合，扫描期间完成的成就同时记入，扫描结束后替换 completed */
+    private val seeding = ConcurrentHashMap<UUID, MutableSet<NamespacedKey>>()
+
+    private var seedBatchSize = 64
+
+    init {
+        loadConfig()
+        rebuildTrackedKeys()
+    }
+
+    fun loadConfig() {
+        seedBatchSize = plugin.config.getInt("advancement.count.seed-batch-size", 64).coerceAtLeast(1)
     }
 
     /**
-     * 缓存条目
+     * 预先计算需要统计的成就
      */
-    private data class CacheEntry(
-        var count: Int,
-        var timestamp: Long
-    ) {
-        fun isExpired(): Boolean {
-            return System.currentTimeMillis() - timestamp > CACHE_EXPIRY_MS
+    fun rebuildTrackedKeys() {
+        val list = ArrayList<Advancement>()
+        val iterator = Bukkit.getServer().advancementIterator()
+        while (iterator.hasNext()) {
+            val advancement = iterator.next()
+            if (isCounted(advancement)) list.add(advancement)
         }
+        tracked = list
+        trackedKeys = list.mapTo(HashSet()) { it.key }
     }
 
+    fun getTrackedCount(): Int = trackedKeys.size
+
     /**
-     * 获取玩家完成的成就数量（使用缓存）
+     * 获取玩家完成的成就数量（O(1)，首次扫描完成前返回 0）
      */
     fun getAdvancementCount(player: Player): Int {
         val uuid = player.uniqueId
-        val entry = cache[uuid]
-
-        // 如果缓存存在且未过期，直接返回
-        if (entry != null && !entry.isExpired()) {
-            return entry.count
+        val set = completed[uuid]
+        if (set == null) {
+            // 模块启用前已在线且尚未扫描的玩家
+            if (!seeding.containsKey(uuid)) seed(player)
+            return 0
         }
-
-        // 否则重新计算
-        val count = calculateAdvancementCount(player)
-        cache[uuid] = CacheEntry(count, System.currentTimeMillis())
-        return count
+        return set.size
     }
 
     /**
-     * 计算玩家完成的成就数量（全量统计）
-     * 过滤掉配方进度，只统计真正的成就
+     * 重新扫描玩家的成就（在玩家的实体线程上分片执行）
      */
-    private fun calculateAdvancementCount(player: Player): Int {
-        var count = 0
-        val iterator = Bukkit.getServer().advancementIterator()
-
-        while (iterator.hasNext()) {
-            val advancement = iterator.next()
-
-            // 过滤掉配方进度（recipes 开头的进度）
-            val key = advancement.key.toString()
-            if (key.contains("recipes/")) {
-                continue
-            }
+    fun seed(player: Player) {
+        val found: MutableSet<NamespacedKey> = ConcurrentHashMap.newKeySet()
+        // 新的扫描开始后，旧扫描的分片任务发现集合被替换会自动停止
+        seeding[player.uniqueId] = found
+        val advancements = tracked
+        player.scheduler.run(plugin, { _ -> seedSlice(player, advancements, 0, found) }, null)
+    }
 
-            // 只统计有显示信息的成就（配方进度通常没有显示信息）
-            if (advancement.display == null) {
-                continue
-            }
+    private fun seedSlice(player: Player, advancements: List<Advancement>, start: Int, found: MutableSet<NamespacedKey>) {
+        val uuid = player.uniqueId
+        if (!player.isOnline || seeding[uuid] !== found) return
 
-            if (player.getAdvancementProgress(advancement).isDone) {
-                count++
-            }
+        val end = minOf(start + seedBatchSize, advancements.size)
+        for (i in start until end) {
+            val advancement = advancements[i]
+            if (player.getAdvancementProgress(advancement).isDone) found.add(advancement.key)
         }
 
-        return count
+        if (end < advancements.size) {
+            player.scheduler.runDelayed(plugin, { _ -> seedSlice(player, advancements, end, found) }, null, 1L)
+            return
+        }
+        if (seeding.remove(uuid, found)) completed[uuid] = found
     }
 
     /**
-     * 强制刷新玩家的成就统计（重新全量计算）
+     * 强制刷新玩家的成就统计（重新扫描）
      */
     fun refreshCount(player: Player) {
-        val count = calculateAdvancementCount(player)
-        cache[player.uniqueId] = CacheEntry(count, System.currentTimeMillis())
-        plugin.logger.info("已刷新玩家 ${player.name} 的成就统计: $count")
+        seed(player)
+        plugin.logger.info("已开始刷新玩家 ${player.name} 的成就统计")
     }
 
     /**
      * 刷新所有在线玩家的成就统计
      */
     fun refreshAllCounts() {
-        for (player in Bukkit.getOnlinePlayers()) {
-            // 使用实体调度器以兼容 Folia
-            player.scheduler.run(plugin, { _ ->
-                if (player.isOnline) {
-                    refreshCount(player)
-                }
-            }, null)
-        }
+        Bukkit.getOnlinePlayers().forEach { seed(it) }
+    }
+
+    fun clear() {
+        completed.clear()
+        seeding.clear()
+    }
+
+    @EventHandler
+    fun onPlayerJoin(event: PlayerJoinEvent) {
+        seed(event.player)
     }
 
     /**
-     * 监听玩家完成成就事件，自动 +1
-     * 过滤掉配方进度，只统计真正的成就
+     * 完成成就时增量 +1（集合去重，重复事件不会重复计数）
      */
     @EventHandler
     fun onAdvancementDone(event: PlayerAdvancementDoneEvent) {
-        val player = event.player
-        val uuid = player.uniqueId
+        val key = event.advancement.key
+        if (key !in trackedKeys) return
+        val uuid = event.player.uniqueId
+        completed[uuid]?.add(key)
+        seeding[uuid]?.add(key)
+    }
 
-        // 过滤掉配方进度
-        val key = event.advancement.key.toString()
-        if (key.contains("recipes/")) {
-            return
-        }
+    @EventHandler
+    fun onPlayerQuit(event: PlayerQuitEvent) {
+        completed.remove(event.player.uniqueId)
+        seeding.remove(event.player.uniqueId)
+    }
 
-        // 只处理有显示信息的成就
-        if (event.advancement.display == null) {
-            return
-        }
+    /**
+     * 数据包重载后成就列表可能变化
+     */
+    @EventHandler
+    fun onResourcesReloaded(event: ServerResourcesReloadedEvent) {
+        rebuildTrackedKeys()
+        refreshAllCounts()
+    }
 
-        // 使用实体调度器以兼容 Folia
-        player.scheduler.run(plugin, { _ ->
-            val entry = cache[uuid]
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    fun onPlayerCommand(event: PlayerCommandPreprocessEvent) {
+        if (isRevokeCommand(event.message.removePrefix("/"))) scheduleRefreshAll()
+    }
 
-            if (entry != null && !entry.isExpired()) {
-                // 缓存存在且未过期，直接 +1
-                entry.count++
-                entry.timestamp = System.currentTimeMillis() // 更新时间戳
-            } else {
-                // 缓存不存在或已过期，重新计算
-                val count = calculateAdvancementCount(player)
-                cache[uuid] = CacheEntry(count, System.currentTimeMillis())
-            }
-        }, null)
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    fun onServerCommand(event: ServerCommandEvent) {
+        if (isRevokeCommand(event.command.removePrefix("/"))) scheduleRefreshAll()
     }
 
     /**
-     * 玩家退出时清理缓存
+     * 命令执行后再扫描
      */
-    @EventHandler
-    fun onPlayerQuit(event: PlayerQuitEvent) {
-        cache.remove(event.player.uniqueId)
+    private fun scheduleRefreshAll() {
+        Bukkit.getGlobalRegionScheduler().runDelayed(plugin, { _ -> refreshAllCounts() }, 1L)
+    }
+
+    private fun isRevokeCommand(command: String): Boolean {
+        val parts = command.trim().lowercase().split(' ', limit = 3)
+        return parts.size >= 2 && (parts[0] == "advancement" || parts[0] == "minecraft:advancement") && parts[1] == "revoke"
     }
 
     /**
-     * 清理所有过期缓存（可定期调用）
+     * 过滤掉配方进度和无显示信息的进度，只统计真正的成就
      */
-    fun cleanExpiredCache() {
-        cache.entries.removeIf { it.value.isExpired() }
+    private fun isCounted(advancement: Advancement): Boolean {
+        if (advancement.key.key.startsWith("recipes/")) return false
+        return advancement.display != null
     }
 }
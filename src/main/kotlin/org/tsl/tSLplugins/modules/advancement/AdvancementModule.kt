@@ -6,7 +6,7 @@ import org.tsl.tSLplugins.core.AbstractModule
 
 /**
  * 成就统计模块
- * 统计玩家成就完成数量
+ * 统计玩家成就完成数量（加入时扫描一次，之后由事件增量维护）
  */
 class AdvancementModule : AbstractModule() {
     override val id = "advcount"
@@ -19,17 +19,19 @@ class AdvancementModule : AbstractModule() {
     override fun doEnable() {
         countHandler = AdvancementCount(context.plugin)
         registerListener(countHandler)
+        countHandler.refreshAllCounts()
+    }
+
+    override fun doDisable() {
+        if (::countHandler.isInitialized) countHandler.clear()
+    }
+
+    override fun doReload() {
+        countHandler.loadConfig()
+        countHandler.rebuildTrackedKeys()
+        countHandler.refreshAllCounts()
     }
 
     override fun getCommandHandler(): SubCommandHandler = 
         AdvancementCommand(context.plugin, countHandler)
-    
-    /**
-     * 清理过期缓存
-     */
-    fun cleanExpiredCache() {
-        if (::countHandler.isInitialized) {
-            countHandler.cleanExpiredCache()
-        }
-    }
 }
@@ -0,0 +1,84 @@
+package org.tsl.tSLplugins.modules.blockstats
+
+import org.bukkit.Bukkit
+import org.bukkit.command.Command
+import org.bukkit.command.CommandSender
+import org.tsl.tSLplugins.SubCommandHandler
+
+/**
+ * 方块统计命令处理器
+ * 处理 /tsl blockstats 命令
+ */
+class BlockStatsCommand(
+    private val module: BlockStatsModule
+) : SubCommandHandler {
+
+    override fun handle(
+        sender: CommandSender,
+        command: Command,
+        label: String,
+        args: Array<out String>
+    ): Boolean {
+        if (!module.isEnabled()) {
+            sender.sendMessage("§c方块统计功能未启用！")
+            return true
+        }
+
+        if (!sender.hasPermission("tsl.blockstats.reconcile")) {
+            sender.sendMessage("§c你没有权限使用此命令！")
+            return true
+        }
+
+        // /tsl blockstats reconcile <player|all>
+        if (args.size < 2 || !args[0].equals("reconcile", ignoreCase = true)) {
+            sender.sendMessage("§c用法: /tsl blockstats reconcile <player|all>")
+            return true
+        }
+
+        val target = args[1]
+        if (target.equals("all", ignoreCase = true)) {
+            val started = Bukkit.getOnlinePlayers().count { module.reconcile(it, null) }
+            sender.sendMessage("§a已开始在后台校准 $started 名在线玩家的放置方块数！")
+            return true
+        }
+
+        val targetPlayer = Bukkit.getPlayer(target)
+        if (targetPlayer == null || !targetPlayer.isOnline) {
+            sender.sendMessage("§c玩家 $target 不在线或不存在！")
+            return true
+        }
+
+        if (module.reconcile(targetPlayer, sender)) {
+            sender.sendMessage("§a已开始在后台校准玩家 ${targetPlayer.name} 的放置方块数...")
+        } else {
+            sender.sendMessage("§e玩家 ${targetPlayer.name} 的放置方块数正在校准中")
+        }
+        return true
+    }
+
+    override fun tabComplete(
+        sender: CommandSender,
+        command: Command,
+        label: String,
+        args: Array<out String>
+    ): List<String> {
+        if (!sender.hasPermission("tsl.blockstats.reconcile")) return emptyList()
+        return when (args.size) {
+            1 -> listOf("reconcile").filter { it.startsWith(args[0].lowercase()) }
+            2 -> {
+                if (args[0].equals("reconcile", ignoreCase = true)) {
+                    val completions = mutableListOf("all")
+                    completions.addAll(Bukkit.getOnlinePlayers().map { it.name })
+                    completions.filter { it.lowercase().startsWith(args[1].lowercase()) }
+                } else {
+                    emptyList()
+                }
+            }
+            else -> emptyList()
+        }
+    }
+
+    override fun getDescription(): String {
+        return "校准方块放置统计"
+    }
+}
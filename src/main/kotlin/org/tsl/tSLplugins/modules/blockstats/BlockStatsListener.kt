@@ -0,0 +1,38 @@
+package org.tsl.tSLplugins.modules.blockstats
+
+import org.bukkit.event.EventHandler
+import org.bukkit.event.EventPriority
+import org.bukkit.event.Listener
+import org.bukkit.event.block.BlockPlaceEvent
+import org.bukkit.event.player.PlayerJoinEvent
+import org.bukkit.event.player.PlayerQuitEvent
+
+/**
+ * BlockStats 监听器
+ *
+ * 维护玩家放置方块的增量计数
+ */
+class BlockStatsListener(
+    private val module: BlockStatsModule
+) : Listener {
+
+    /**
+     * 只统计最终成功的放置
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    fun onBlockPlace(event: BlockPlaceEvent) {
+        if (!module.isEnabled()) return
+        module.onBlockPlaced(event.player)
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    fun onPlayerJoin(event: PlayerJoinEvent) {
+        if (!module.isEnabled()) return
+        module.onPlayerJoin(event.player)
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    fun onPlayerQuit(event: PlayerQuitEvent) {
+        module.onPlayerQuit(event.player)
+    }
+}
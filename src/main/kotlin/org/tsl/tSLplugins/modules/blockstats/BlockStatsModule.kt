@@ -2,14 +2,20 @@ package org.tsl.tSLplugins.modules.blockstats
 
 import org.bukkit.Material
 import org.bukkit.Statistic
+import org.bukkit.command.CommandSender
 import org.bukkit.entity.Player
+import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * BlockStats 模块 - 方块放置统计
- * 
- * 基于原版统计系统（Statistic.USE_ITEM）计算玩家放置的方块总数。
- * 轻量级实现，无监听器，实时计算。
+ *
+ * 放置总数保存在玩家配置（blocksPlaced）中，由 BlockPlaceEvent 增量更新，
+ * 变量读取只是一次字段访问。
+ * 玩家首次加入（尚无计数）时从原版统计（Statistic.USE_ITEM）初始化一次，
+ * 之后可通过 /tsl blockstats reconcile 在后台按原版统计重新校准。
  */
 class BlockStatsModule : AbstractModule() {
 
@@ -17,33 +23,143 @@ class BlockStatsModule : AbstractModule() {
     override val configPath = "blockstats"
     override fun getDescription() = "方块放置统计"
 
+    /** 所有可放置的方块材料（只计算一次） */
+    private val blockMaterials: Array<Material> by lazy {
+        Material.entries.filter { it.isBlock && it.isItem }.toTypedArray()
+    }
+
+    /** 配置尚未加载完成时放置的方块数，加载后合并 */
+    private val pendingDeltas = ConcurrentHashMap<UUID, Long>()
+
+    /** 正在校准的玩家 */
+    private val reconciling = ConcurrentHashMap.newKeySet<UUID>()
+
     override fun doEnable() {
-        // 无需初始化，纯计算模块
+        registerListener(BlockStatsListener(this))
+
+        // 热重载：为已在线的玩家初始化计数
+        context.plugin.server.onlinePlayers.forEach { onPlayerJoin(it) }
+    }
+
+    override fun doDisable() {
+        pendingDeltas.clear()
+        reconciling.clear()
     }
 
+    override fun getCommandHandler(): SubCommandHandler = BlockStatsCommand(this)
+
     /**
-     * 计算玩家放置方块总数
-     * 
-     * 遍历所有 Material，筛选 isBlock() 为 true 的材料，
-     * 累加对应的 USE_ITEM 统计值。
+     * 获取玩家放置方块总数
      *
      * @param player 玩家
-     * @return 放置方块总数
+     * @return 放置方块总数（尚未初始化时只包含本次会话的增量）
      */
     fun getTotalBlocksPlaced(player: Player): Long {
-        var total = 0L
+        val stored = context.playerDataManager.getProfileStore().get(player.uniqueId)?.blocksPlaced ?: -1
+        val pending = pendingDeltas[player.uniqueId] ?: 0L
+        return stored.coerceAtLeast(0) + pending
+    }
+
+    // ==================== 事件处理 ====================
 
-        for (material in Material.entries) {
-            if (material.isBlock) {
-                try {
-                    val count = player.getStatistic(Statistic.USE_ITEM, material)
-                    total += count
-                } catch (e: Exception) {
-                    // 忽略异常（某些材料可能不支持统计）
+    /**
+     * 玩家加入：等待配置加载后，若尚无计数则从原版统计初始化
+     */
+    fun onPlayerJoin(player: Player) {
+        context.playerDataManager.getProfileStore().loadAsync(player.uniqueId, player.name).thenAccept { profile ->
+            player.scheduler.run(context.plugin, { _ ->
+                if (!player.isOnline) return@run
+                if (profile.blocksPlaced < 0) {
+                    // 原版统计已包含本次会话放置的方块，丢弃增量
+                    pendingDeltas.remove(player.uniqueId)
+                    profile.blocksPlaced = sumStatistics(player, 0, blockMaterials.size)
+                } else {
+                    pendingDeltas.remove(player.uniqueId)?.let { profile.blocksPlaced += it }
                 }
-            }
+            }, null)
         }
+    }
 
+    /**
+     * 玩家退出：丢弃未合并的增量（下次加入时会从配置或原版统计恢复）
+     */
+    fun onPlayerQuit(player: Player) {
+        pendingDeltas.remove(player.uniqueId)
+        reconciling.remove(player.uniqueId)
+    }
+
+    /**
+     * 玩家放置方块
+     */
+    fun onBlockPlaced(player: Player) {
+        val profile = context.playerDataManager.getProfileStore().get(player.uniqueId)
+        if (profile != null && profile.blocksPlaced >= 0) {
+            profile.blocksPlaced++
+        } else {
+            pendingDeltas.merge(player.uniqueId, 1L) { a, b -> a + b }
+        }
+    }
+
+    // ==================== 校准 ====================
+
+    /**
+     * 在后台按原版统计重新计算玩家的放置总数
+     *
+     * 统计只能在玩家所在线程读取，因此按 [RECONCILE_SLICE] 个材料一批分摊到多个 tick，
+     * 避免单 tick 内完成上千次统计查询。
+     *
+     * @return 是否开始校准（同一玩家已在校准中时返回 false）
+     */
+    fun reconcile(player: Player, sender: CommandSender?): Boolean {
+        if (!reconciling.add(player.uniqueId)) return false
+        player.scheduler.run(context.plugin, { _ -> reconcileSlice(player, 0, 0L, sender) }, {
+            reconciling.remove(player.uniqueId)
+        })
+        return true
+    }
+
+    private fun reconcileSlice(player: Player, offset: Int, partial: Long, sender: CommandSender?) {
+        if (!player.isOnline || !isEnabled()) {
+            reconciling.remove(player.uniqueId)
+            return
+        }
+
+        val end = minOf(offset + RECONCILE_SLICE, blockMaterials.size)
+        val total = partial + sumStatistics(player, offset, end)
+
+        if (end < blockMaterials.size) {
+            player.scheduler.runDelayed(context.plugin, { _ -> reconcileSlice(player, end, total, sender) }, {
+                reconciling.remove(player.uniqueId)
+            }, 1L)
+            return
+        }
+
+        reconciling.remove(player.uniqueId)
+        val profile = context.playerDataManager.getProfileStore().get(player.uniqueId) ?: return
+        val previous = profile.blocksPlaced
+        profile.blocksPlaced = total
+        pendingDeltas.remove(player.uniqueId)
+        logInfo("已校准 ${player.name} 的放置方块数: $previous -> $total")
+        sender?.sendMessage("§a已校准玩家 ${player.name} 的放置方块数: §f$previous §7-> §f$total")
+    }
+
+    /**
+     * 累加 [from, to) 范围内材料的 USE_ITEM 统计
+     */
+    private fun sumStatistics(player: Player, from: Int, to: Int): Long {
+        var total = 0L
+        for (i in from until to) {
+            try {
+                total += player.getStatistic(Statistic.USE_ITEM, blockMaterials[i])
+            } catch (e: Exception) {
+                // 忽略异常（某些材料可能不支持统计）
+            }
+        }
         return total
     }
+
+    companion object {
+        /** 每 tick 校准的材料数 */
+        private const val RECONCILE_SLICE = 128
+    }
 }
@@ -1,8 +1,11 @@
 package org.tsl.tSLplugins.modules.chatbubble
 
 import io.papermc.paper.event.player.AsyncChatEvent
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask
 import net.kyori.adventure.text.Component
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer
+import org.bukkit.Bukkit
+import org.bukkit.Chunk
 import org.bukkit.Color
 import org.bukkit.GameMode
 import org.bukkit.command.Command
@@ -16,21 +19,30 @@ import org.bukkit.event.Listener
 import org.bukkit.event.player.PlayerQuitEvent
 import org.bukkit.event.player.PlayerTeleportEvent
 import org.bukkit.potion.PotionEffectType
+import org.bukkit.util.Transformation
+import org.joml.AxisAngle4f
+import org.joml.Vector3f
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * ChatBubble 模块 - 聊天气泡
  * 
  * 在玩家头顶显示聊天消息气泡
- * 
+ *
+ * 每个玩家有一个气泡池：到期的气泡只隐藏不删除，下次聊天时更新文本和
+ * transformation 复用实体；所有气泡的到期由一个全局清理任务统一处理。
+ *
  * ## 命令
  * - `/tsl chatbubble` - 切换自我显示
  * - `/tsl chatbubble status` - 查看状态
- * 
+ * - `/tsl chatbubble stats` - 查看气泡池统计
+ *
  * ## 权限
- * 无特殊权限要求
+ * - `tsl.chatbubble.stats` - 查看统计
  */
 class ChatBubbleModule : AbstractModule() {
 
@@ -46,10 +58,26 @@ class ChatBubbleModule : AbstractModule() {
     private var defaultOpacity: Byte = (-1).toByte()
     private var useDefaultBackground: Boolean = true
     private var backgroundColor: Color = Color.fromARGB(0, 0, 0, 0)
+    private var maxPerPlayer: Int = 1
+    private var maxPerChunk: Int = 16
+    private var idleKeepMs: Long = 30_000L
+    private var sweepTicks: Long = 5L
+    private var stackSpacing: Float = 0.3f
 
     // 运行时数据
-    private val bubbles: MutableMap<Player, TextDisplay> = ConcurrentHashMap()
+    private val pools: MutableMap<Player, ChatBubblePool> = ConcurrentHashMap()
+    private val chunkCounter = ChatBubbleChunkCounter()
     private val selfDisplayEnabled: MutableSet<Player> = ConcurrentHashMap.newKeySet()
+    private var sweepTask: ScheduledTask? = null
+
+    // 统计
+    private val spawnedCount = AtomicLong()
+    private val reusedCount = AtomicLong()
+    private val droppedCount = AtomicLong()
+    private val expiredCount = AtomicLong()
+    private val idleRemovedCount = AtomicLong()
+    private val activeCount = AtomicInteger()
+    private val idleCount = AtomicInteger()
 
     private lateinit var listener: ChatBubbleModuleListener
 
@@ -57,14 +85,17 @@ class ChatBubbleModule : AbstractModule() {
         loadChatBubbleConfig()
         listener = ChatBubbleModuleListener(this)
         registerListener(listener)
+        startSweeper()
     }
 
     override fun doDisable() {
+        sweepTask?.cancel(); sweepTask = null
         cleanupAll()
     }
 
     override fun doReload() {
         loadChatBubbleConfig()
+        startSweeper()
     }
 
     override fun getCommandHandler(): SubCommandHandler = ChatBubbleModuleCommand(this)
@@ -76,6 +107,11 @@ class ChatBubbleModule : AbstractModule() {
         timeSpan = getConfigInt("timeSpan", 100)
         shadow = getConfigBoolean("shadow", false)
         viewRange = getConfigDouble("viewRange", 16.0).toFloat()
+        maxPerPlayer = getConfigInt("maxPerPlayer", 1).coerceAtLeast(1)
+        maxPerChunk = getConfigInt("maxPerChunk", 16).coerceAtLeast(1)
+        idleKeepMs = getConfigInt("idleKeepTicks", 600).coerceAtLeast(0) * 50L
+        sweepTicks = getConfigInt("sweepTicks", 5).coerceAtLeast(1).toLong()
+        stackSpacing = getConfigDouble("stackSpacing", 0.3).toFloat()
 
         defaultOpacity = (getConfigDouble("opacity.default", 1.0).coerceIn(0.0, 1.0) * 255).toInt().toByte()
 
@@ -98,12 +134,66 @@ class ChatBubbleModule : AbstractModule() {
 
     // ============== 公开 API ==============
 
+    /**
+     * 显示气泡（玩家所属实体线程）
+     *
+     * 优先复用：达到每人上限时复用最早的气泡，否则复用闲置实体，都没有才生成新实体。
+     * 所在区块的气泡数达到上限且玩家没有可复用的气泡时丢弃。
+     */
     fun createOrUpdateBubble(player: Player, message: Component) {
         if (!isEnabled()) return
         if (player.isInvisibleForBubble()) return
 
-        cleanupPlayer(player)
+        val pool = pools.computeIfAbsent(player) { ChatBubblePool() }
+        val now = System.currentTimeMillis()
+        val expiresAt = now + timeSpan * 50L
+        val worldId = player.world.uid
+        val location = player.location
+        val chunkKey = Chunk.getChunkKey(location.blockX shr 4, location.blockZ shr 4)
+
+        val recycled = pool.active.firstOrNull()?.takeIf {
+            pool.active.size >= maxPerPlayer || chunkCounter.get(worldId, chunkKey) >= maxPerChunk
+        }
+        val bubble = if (recycled != null && recycled.display.isValid) {
+            pool.active.removeFirst()
+            chunkCounter.decrement(recycled.worldId, recycled.chunkKey)
+            reusedCount.incrementAndGet()
+            recycled.apply { this.expiresAt = expiresAt; this.worldId = worldId; this.chunkKey = chunkKey }
+        } else {
+            if (recycled != null) {
+                // 实体已失效（例如被其他插件移除），丢弃后按新气泡处理
+                pool.active.removeFirst()
+                chunkCounter.decrement(recycled.worldId, recycled.chunkKey)
+                activeCount.decrementAndGet()
+            }
+            if (chunkCounter.get(worldId, chunkKey) >= maxPerChunk) {
+                droppedCount.incrementAndGet()
+                return
+            }
+            activeCount.incrementAndGet()
+            ActiveBubble(takeIdleDisplay(pool) ?: spawnDisplay(player), expiresAt, worldId, chunkKey)
+        }
+
+        applyStyle(bubble.display, message)
+        chunkCounter.increment(worldId, chunkKey)
+        pool.active.addLast(bubble)
+        restack(pool)
+        pool.updateDeadline(idleKeepMs)
+    }
+
+    private fun takeIdleDisplay(pool: ChatBubblePool): TextDisplay? {
+        while (pool.idle.isNotEmpty()) {
+            val display = pool.idle.removeFirst().first
+            idleCount.decrementAndGet()
+            if (display.isValid) {
+                reusedCount.incrementAndGet()
+                return display
+            }
+        }
+        return null
+    }
 
+    private fun spawnDisplay(player: Player): TextDisplay {
         val location = player.location.add(0.0, player.boundingBox.height + yOffset, 0.0).apply {
             yaw = 0f
             pitch = 0f
@@ -111,16 +201,7 @@ class ChatBubbleModule : AbstractModule() {
 
         val display = player.world.spawn(location, TextDisplay::class.java) { textDisplay ->
             textDisplay.isPersistent = false
-            textDisplay.text(message)
             textDisplay.isSeeThrough = false
-            textDisplay.isShadowed = shadow
-            textDisplay.viewRange = viewRange
-            textDisplay.billboard = billboard
-            textDisplay.textOpacity = defaultOpacity
-            textDisplay.isDefaultBackground = useDefaultBackground
-            if (!useDefaultBackground) {
-                textDisplay.backgroundColor = backgroundColor
-            }
         }
 
         player.addPassenger(display)
@@ -129,12 +210,99 @@ class ChatBubbleModule : AbstractModule() {
             try { player.hideEntity(context.plugin, display) } catch (_: Exception) {}
         }
 
-        bubbles[player] = display
+        spawnedCount.incrementAndGet()
+        return display
+    }
 
-        display.scheduler.runDelayed(context.plugin, { _ ->
+    private fun applyStyle(display: TextDisplay, message: Component) {
+        display.text(message)
+        display.isShadowed = shadow
+        display.viewRange = viewRange
+        display.billboard = billboard
+        display.textOpacity = defaultOpacity
+        display.isDefaultBackground = useDefaultBackground
+        if (!useDefaultBackground) {
+            display.backgroundColor = backgroundColor
+        }
+    }
+
+    /**
+     * 按新旧顺序堆叠气泡：最新的在最下层，旧的依次上移
+     */
+    private fun restack(pool: ChatBubblePool) {
+        val size = pool.active.size
+        pool.active.forEachIndexed { index, bubble ->
+            val stackIndex = size - 1 - index
+            if (bubble.stackIndex == stackIndex) return@forEachIndexed
+            bubble.stackIndex = stackIndex
+            bubble.display.transformation = Transformation(
+                Vector3f(0f, stackIndex * stackSpacing, 0f), AxisAngle4f(), Vector3f(1f, 1f, 1f), AxisAngle4f()
+            )
+        }
+    }
+
+    // ============== 到期清理 ==============
+
+    /**
+     * 启动全局清理任务：只检查各气泡池的最早到期时间，
+     * 到期的池投递到玩家所属的实体线程处理，不再为每个气泡单独调度任务
+     */
+    private fun startSweeper() {
+        sweepTask?.cancel()
+        sweepTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(context.plugin, { _ ->
+            sweep()
+        }, sweepTicks, sweepTicks)
+    }
+
+    private fun sweep() {
+        val now = System.currentTimeMillis()
+        pools.forEach { (player, pool) ->
+            if (pool.nextDeadline > now || !pool.sweepQueued.compareAndSet(false, true)) return@forEach
+            player.scheduler.run(context.plugin, { _ ->
+                pool.sweepQueued.set(false)
+                expirePool(player, pool, System.currentTimeMillis())
+            }, {
+                // 玩家已离线，退出事件会负责清理
+                pool.sweepQueued.set(false)
+            })
+        }
+    }
+
+    /**
+     * 处理到期气泡（玩家所属实体线程）：到期的隐藏并转为闲置，闲置超时的删除
+     */
+    private fun expirePool(player: Player, pool: ChatBubblePool, now: Long) {
+        if (pools[player] !== pool) return
+
+        var changed = false
+        val iterator = pool.active.iterator()
+        while (iterator.hasNext()) {
+            val bubble = iterator.next()
+            if (bubble.expiresAt > now) continue
+            iterator.remove()
+            changed = true
+            chunkCounter.decrement(bubble.worldId, bubble.chunkKey)
+            activeCount.decrementAndGet()
+            expiredCount.incrementAndGet()
+            val display = bubble.display
+            if (!display.isValid) continue
+            // 隐藏：清空文本并将可视距离设为 0
+            display.text(Component.empty())
+            display.viewRange = 0f
+            pool.idle.addLast(display to now)
+            idleCount.incrementAndGet()
+        }
+        if (changed) restack(pool)
+
+        // 闲置实体超时或超过每人上限时删除
+        while (pool.idle.isNotEmpty() && (pool.idle.first().second + idleKeepMs <= now || pool.idle.size > maxPerPlayer)) {
+            val display = pool.idle.removeFirst().first
+            idleCount.decrementAndGet()
+            idleRemovedCount.incrementAndGet()
             try { if (display.isValid) display.remove() } catch (_: Exception) {}
-            player.scheduler.run(context.plugin, { _ -> bubbles.remove(player) }, null)
-        }, null, timeSpan.toLong())
+        }
+
+        if (pool.isEmpty()) pools.remove(player, pool) else pool.updateDeadline(idleKeepMs)
     }
 
     private fun Player.isInvisibleForBubble(): Boolean {
@@ -144,32 +312,57 @@ class ChatBubbleModule : AbstractModule() {
     fun toggleSelfDisplay(player: Player): Boolean {
         return if (selfDisplayEnabled.contains(player)) {
             selfDisplayEnabled.remove(player)
-            bubbles[player]?.let { try { player.hideEntity(context.plugin, it) } catch (_: Exception) {} }
+            pools[player]?.allDisplays()?.forEach { try { player.hideEntity(context.plugin, it) } catch (_: Exception) {} }
             false
         } else {
             selfDisplayEnabled.add(player)
-            bubbles[player]?.let { try { player.showEntity(context.plugin, it) } catch (_: Exception) {} }
+            pools[player]?.allDisplays()?.forEach { try { player.showEntity(context.plugin, it) } catch (_: Exception) {} }
             true
         }
     }
 
-    fun getBubble(player: Player): TextDisplay? = bubbles[player]
+    fun getBubble(player: Player): TextDisplay? = pools[player]?.active?.lastOrNull()?.display
+    fun getActiveBubbleCount(player: Player): Int = pools[player]?.active?.size ?: 0
     fun getSelfDisplayEnabled(player: Player): Boolean = selfDisplayEnabled.contains(player)
 
+    fun getStats(): ChatBubbleStats = ChatBubbleStats(
+        spawned = spawnedCount.get(),
+        reused = reusedCount.get(),
+        droppedByChunkLimit = droppedCount.get(),
+        expired = expiredCount.get(),
+        idleRemoved = idleRemovedCount.get(),
+        activeBubbles = activeCount.get(),
+        idleDisplays = idleCount.get()
+    )
+
     fun cleanupPlayer(player: Player) {
-        bubbles.remove(player)?.let { display ->
-            try {
-                display.scheduler.run(context.plugin, { _ ->
-                    try { if (display.isValid) display.remove() } catch (_: Exception) {}
-                }, null)
-            } catch (_: Exception) {}
+        pools.remove(player)?.let { pool ->
+            releasePool(pool)
+            pool.allDisplays().forEach { display ->
+                try {
+                    display.scheduler.run(context.plugin, { _ ->
+                        try { if (display.isValid) display.remove() } catch (_: Exception) {}
+                    }, null)
+                } catch (_: Exception) {}
+            }
         }
         selfDisplayEnabled.remove(player)
     }
 
+    private fun releasePool(pool: ChatBubblePool) {
+        pool.active.forEach { chunkCounter.decrement(it.worldId, it.chunkKey) }
+        activeCount.addAndGet(-pool.active.size)
+        idleCount.addAndGet(-pool.idle.size)
+    }
+
     private fun cleanupAll() {
-        bubbles.values.forEach { try { if (it.isValid) it.remove() } catch (_: Exception) {} }
-        bubbles.clear()
+        pools.values.forEach { pool ->
+            pool.allDisplays().forEach { try { if (it.isValid) it.remove() } catch (_: Exception) {} }
+        }
+        pools.clear()
+        chunkCounter.clear()
+        activeCount.set(0)
+        idleCount.set(0)
         selfDisplayEnabled.clear()
     }
 
@@ -223,15 +416,28 @@ class ChatBubbleModuleCommand(private val module: ChatBubbleModule) : SubCommand
                 val enabled = module.getSelfDisplayEnabled(sender)
                 val bubble = module.getBubble(sender)
                 val stateText = if (enabled) "&a启用" else "&c禁用"
-                val bubbleText = if (bubble != null && bubble.isValid) "&a存在" else "&7无"
+                val bubbleText = if (bubble != null && bubble.isValid) "&a${module.getActiveBubbleCount(sender)} 个" else "&7无"
                 sender.sendMessage(serializer.deserialize("&6[ChatBubble] &7状态:"))
                 sender.sendMessage(serializer.deserialize("&7- 自我显示: $stateText"))
                 sender.sendMessage(serializer.deserialize("&7- 当前气泡: $bubbleText"))
             }
+            args[0].equals("stats", ignoreCase = true) -> {
+                if (!sender.hasPermission("tsl.chatbubble.stats")) {
+                    sender.sendMessage(serializer.deserialize("&c[ChatBubble] &7你没有权限使用此命令"))
+                    return true
+                }
+                val stats = module.getStats()
+                sender.sendMessage(serializer.deserialize("&6[ChatBubble] &7气泡池统计:"))
+                sender.sendMessage(serializer.deserialize("&7- 显示中: &f${stats.activeBubbles} &7闲置实体: &f${stats.idleDisplays}"))
+                sender.sendMessage(serializer.deserialize("&7- 生成实体: &f${stats.spawned} &7复用(省掉的生成): &a${stats.spawnsAvoided}"))
+                sender.sendMessage(serializer.deserialize("&7- 区块上限丢弃: &f${stats.droppedByChunkLimit}"))
+                sender.sendMessage(serializer.deserialize("&7- 到期: &f${stats.expired} &7闲置回收: &f${stats.idleRemoved}"))
+            }
             else -> {
                 sender.sendMessage(serializer.deserialize("&6[ChatBubble] &e使用方法:"))
                 sender.sendMessage(serializer.deserialize("&7/tsl chatbubble &f- 切换自我显示"))
                 sender.sendMessage(serializer.deserialize("&7/tsl chatbubble status &f- 查看状态"))
+                sender.sendMessage(serializer.deserialize("&7/tsl chatbubble stats &f- 查看气泡池统计"))
             }
         }
         return true
@@ -240,7 +446,7 @@ class ChatBubbleModuleCommand(private val module: ChatBubbleModule) : SubCommand
     override fun tabComplete(sender: CommandSender, command: Command, label: String, args: Array<out String>): List<String> {
         if (!module.isEnabled() || sender !is Player) return emptyList()
         return when (args.size) {
-            1 -> listOf("self", "status").filter { it.startsWith(args[0], ignoreCase = true) }
+            1 -> listOf("self", "status", "stats").filter { it.startsWith(args[0], ignoreCase = true) }
             else -> emptyList()
         }
     }
@@ -0,0 +1,96 @@
+package org.tsl.tSLplugins.modules.chatbubble
+
+import org.bukkit.entity.TextDisplay
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 显示中的气泡
+ *
+ * @param expiresAt 到期时间（毫秒）
+ * @param worldId / chunkKey 显示时所在区块（用于每区块计数）
+ */
+class ActiveBubble(
+    val display: TextDisplay,
+    var expiresAt: Long,
+    var worldId: UUID,
+    var chunkKey: Long
+) {
+    /** 当前堆叠层级（0 为最下层），用于避免重复设置 transformation */
+    var stackIndex = -1
+}
+
+/**
+ * 单个玩家的气泡池
+ *
+ * - active：显示中的气泡，最新的在队尾
+ * - idle：已到期但仍骑乘在玩家身上的隐藏实体，下次聊天时直接复用
+ *
+ * 除 nextDeadline / sweepQueued 外，所有字段只在玩家所属的实体线程上访问。
+ */
+class ChatBubblePool {
+
+    val active = ArrayDeque<ActiveBubble>()
+    val idle = ArrayDeque<Pair<TextDisplay, Long>>()
+
+    /** 最早需要处理的时间（气泡到期或闲置实体回收），没有时为 Long.MAX_VALUE */
+    @Volatile
+    var nextDeadline = Long.MAX_VALUE
+        private set
+
+    /** 清理任务是否已投递到实体调度器（避免重复投递） */
+    val sweepQueued = AtomicBoolean(false)
+
+    fun allDisplays(): List<TextDisplay> = active.map { it.display } + idle.map { it.first }
+
+    fun isEmpty(): Boolean = active.isEmpty() && idle.isEmpty()
+
+    /**
+     * 重新计算 nextDeadline
+     * @param idleKeepMs 闲置实体保留时间
+     */
+    fun updateDeadline(idleKeepMs: Long) {
+        val activeDeadline = active.minOfOrNull { it.expiresAt } ?: Long.MAX_VALUE
+        val idleDeadline = idle.firstOrNull()?.let { it.second + idleKeepMs } ?: Long.MAX_VALUE
+        nextDeadline = minOf(activeDeadline, idleDeadline)
+    }
+}
+
+/**
+ * 每区块显示中的气泡计数（按显示时所在区块统计，玩家移动后不迁移）
+ */
+class ChatBubbleChunkCounter {
+
+    private val counts = ConcurrentHashMap<UUID, ConcurrentHashMap<Long, AtomicInteger>>()
+
+    fun get(worldId: UUID, chunkKey: Long): Int = counts[worldId]?.get(chunkKey)?.get() ?: 0
+
+    fun increment(worldId: UUID, chunkKey: Long) {
+        counts.computeIfAbsent(worldId) { ConcurrentHashMap() }.computeIfAbsent(chunkKey) { AtomicInteger() }.incrementAndGet()
+    }
+
+    fun decrement(worldId: UUID, chunkKey: Long) {
+        val worldCounts = counts[worldId] ?: return
+        worldCounts.computeIfPresent(chunkKey) { _, count -> if (count.decrementAndGet() <= 0) null else count }
+    }
+
+    fun clear() = counts.clear()
+}
+
+/**
+ * 气泡统计
+ */
+data class ChatBubbleStats(
+    val spawned: Long,
+    val reused: Long,
+    val droppedByChunkLimit: Long,
+    val expired: Long,
+    val idleRemoved: Long,
+    val activeBubbles: Int,
+    val idleDisplays: Int
+) {
+    /** 复用即省掉的一次实体生成 */
+    val spawnsAvoided: Long get() = reused
+}
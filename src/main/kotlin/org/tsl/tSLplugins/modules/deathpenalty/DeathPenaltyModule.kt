@@ -6,8 +6,8 @@ import org.bukkit.event.EventHandler
 import org.bukkit.event.EventPriority
 import org.bukkit.event.Listener
 import org.bukkit.event.entity.PlayerDeathEvent
-import org.tsl.tSLplugins.modules.xconomytrigger.XconomyApi
 import org.tsl.tSLplugins.core.AbstractModule
+import org.tsl.tSLplugins.service.EconomyBridge
 
 /**
  * DeathPenalty 模块 - 死亡金币惩罚
@@ -18,7 +18,6 @@ class DeathPenaltyModule : AbstractModule() {
     override val configPath = "death-penalty"
 
     private var penaltyAmount = 1.0
-    private lateinit var xconomyApi: XconomyApi
     private lateinit var listener: DeathPenaltyModuleListener
 
     private var xconomyAvailable = false
@@ -29,8 +28,8 @@ class DeathPenaltyModule : AbstractModule() {
         
         // 如果启用，检查 XConomy 依赖
         if (isEnabled()) {
-            xconomyApi = XconomyApi(context.plugin)
-            xconomyAvailable = xconomyApi.isAvailable() && xconomyApi.canWithdraw()
+            EconomyBridge.setup(context.plugin)
+            xconomyAvailable = EconomyBridge.isAvailable() && EconomyBridge.canWithdraw()
             if (!xconomyAvailable) {
                 logWarning("XConomy 未安装或不可用，模块功能受限")
             }
@@ -46,7 +45,8 @@ class DeathPenaltyModule : AbstractModule() {
     }
 
     override fun doReload() {
-        xconomyApi.reload()
+        EconomyBridge.reload()
+        xconomyAvailable = EconomyBridge.isAvailable() && EconomyBridge.canWithdraw()
         loadPenaltyConfig()
     }
 
@@ -58,8 +58,9 @@ class DeathPenaltyModule : AbstractModule() {
     }
 
     fun getPenaltyAmount(): Double = penaltyAmount
-    fun getBalance(player: Player): Double? = xconomyApi.getBalance(player)
-    fun withdraw(player: Player, amount: Double): Boolean = xconomyApi.withdraw(player, amount)
+    /** 扣款前强制查询，不使用缓存 */
+    fun getBalance(player: Player): Double? = EconomyBridge.getBalance(player, 0L)
+    fun withdraw(player: Player, amount: Double): Boolean = EconomyBridge.withdraw(player, amount)
     fun getPlugin() = context.plugin
     fun getMessageManager() = context.messageManager
 }
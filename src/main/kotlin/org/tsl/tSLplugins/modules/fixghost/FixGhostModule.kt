@@ -6,6 +6,7 @@ import org.bukkit.command.CommandSender
 import org.bukkit.entity.Player
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
+import org.tsl.tSLplugins.core.ModuleActivation
 import java.util.*
 import java.util.concurrent.ConcurrentHashMap
 
@@ -24,6 +25,7 @@ class FixGhostModule : AbstractModule() {
 
     override val id = "fixghost"
     override val configPath = "fixghost"
+    override val activation = ModuleActivation(commands = listOf("fixghost"))
 
     // 配置项
     private var defaultRadius: Int = 5
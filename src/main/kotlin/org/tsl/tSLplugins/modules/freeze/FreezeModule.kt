@@ -1,11 +1,15 @@
 package org.tsl.tSLplugins.modules.freeze
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer
 import org.bukkit.Bukkit
+import org.bukkit.entity.Player
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
 import org.tsl.tSLplugins.core.ModuleContext
 import java.util.UUID
 import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * 玩家冻结模块
@@ -18,9 +22,14 @@ import java.util.concurrent.ConcurrentHashMap
  * - 永久冻结
  * - 被冻结玩家无法执行任何操作
  * 
+ * ActionBar 提示任务只为在线且被冻结的玩家创建（冻结 / 加入时创建，解冻 / 过期 / 退出时取消）；
+ * bypass 权限按玩家缓存，LuckPerms 重新计算权限时失效（未安装 LuckPerms 时由 ActionBar 任务每秒刷新），
+ * 事件处理在没有被冻结玩家时直接返回。
+ * 
  * ## 命令
  * - `/tsl freeze <玩家> [时间]` - 冻结/解冻玩家
  * - `/tsl freeze list` - 列出被冻结的玩家
+ * - `/tsl freeze stats` - 查看 ActionBar 任务统计
  * 
  * ## 权限
  * - `tsl.freeze.use` - 使用冻结命令
@@ -41,17 +50,35 @@ class FreezeModule : AbstractModule() {
     private val frozenPlayers: MutableMap<UUID, Long> = ConcurrentHashMap()
     
     // 定时任务 ID
-    private var expirationTask: io.papermc.paper.threadedregions.scheduler.ScheduledTask? = null
+    private var expirationTask: ScheduledTask? = null
+    
+    // ActionBar 任务（只有在线且被冻结的玩家才有）
+    private val actionBarTasks = ConcurrentHashMap<UUID, ScheduledTask>()
+    private val actionBarTasksStarted = AtomicLong()
+    private val actionBarTasksCancelled = AtomicLong()
+    
+    // bypass 权限缓存（UUID -> 是否有 bypass 权限）
+    private val bypassCache = ConcurrentHashMap<UUID, Boolean>()
+    
+    // LuckPerms 权限重新计算订阅（未安装时为 null）
+    private var permissionWatcher: FreezePermissionWatcher? = null
+    
+    private val serializer = LegacyComponentSerializer.legacyAmpersand()
     
     private lateinit var listener: FreezeModuleListener
     
     override fun doEnable() {
         // 注册监听器
-        listener = FreezeModuleListener(context.plugin, this)
+        listener = FreezeModuleListener(this)
         registerListener(listener)
         
         // 启动过期检查任务
         startExpirationCheck()
+        
+        subscribePermissionChanges()
+        
+        // 为已在线的被冻结玩家恢复 ActionBar 任务
+        frozenPlayers.keys.forEach { uuid -> Bukkit.getPlayer(uuid)?.let { startActionBarTask(it) } }
     }
     
     override fun doDisable() {
@@ -59,6 +86,11 @@ class FreezeModule : AbstractModule() {
         expirationTask?.cancel()
         expirationTask = null
         
+        actionBarTasks.keys.toList().forEach { cancelActionBarTask(it) }
+        permissionWatcher?.close()
+        permissionWatcher = null
+        bypassCache.clear()
+        
         // 清空冻结列表（可选：保留到下次启动）
         // frozenPlayers.clear()
     }
@@ -90,6 +122,7 @@ class FreezeModule : AbstractModule() {
             -1L
         }
         frozenPlayers[uuid] = expireTime
+        Bukkit.getPlayer(uuid)?.let { startActionBarTask(it) }
     }
     
     /**
@@ -99,6 +132,7 @@ class FreezeModule : AbstractModule() {
      * @return 是否成功解冻（true = 之前被冻结，false = 之前未被冻结）
      */
     fun unfreezePlayer(uuid: UUID): Boolean {
+        cancelActionBarTask(uuid)
         return frozenPlayers.remove(uuid) != null
     }
     
@@ -114,12 +148,67 @@ class FreezeModule : AbstractModule() {
         // 检查是否过期
         if (expireTime > 0 && System.currentTimeMillis() > expireTime) {
             frozenPlayers.remove(uuid)
+            cancelActionBarTask(uuid)
             return false
         }
         
         return true
     }
     
+    /**
+     * 玩家是否应被限制操作（被冻结且没有 bypass 权限）
+     * 
+     * 没有任何被冻结玩家时直接返回，不查询权限。
+     */
+    fun isRestricted(player: Player): Boolean {
+        if (frozenPlayers.isEmpty()) return false
+        if (!isFrozen(player.uniqueId)) return false
+        return !hasBypass(player)
+    }
+    
+    /**
+     * 是否有 bypass 权限（读取缓存，未缓存时查询一次）
+     */
+    fun hasBypass(player: Player): Boolean {
+        return bypassCache.computeIfAbsent(player.uniqueId) { player.hasPermission(BYPASS_PERMISSION) }
+    }
+    
+    /**
+     * 重新查询并缓存 bypass 权限
+     */
+    fun refreshBypass(player: Player): Boolean {
+        val bypass = player.hasPermission(BYPASS_PERMISSION)
+        bypassCache[player.uniqueId] = bypass
+        return bypass
+    }
+    
+    /**
+     * 玩家加入：被冻结时恢复 ActionBar 任务
+     */
+    fun handleJoin(player: Player) {
+        bypassCache.remove(player.uniqueId)
+        if (isFrozen(player.uniqueId)) startActionBarTask(player)
+    }
+    
+    /**
+     * 玩家退出：取消 ActionBar 任务并清除权限缓存（冻结状态保留）
+     */
+    fun handleQuit(uuid: UUID) {
+        cancelActionBarTask(uuid)
+        bypassCache.remove(uuid)
+    }
+    
+    /**
+     * ActionBar 任务统计
+     */
+    fun getTaskStats(): FreezeTaskStats = FreezeTaskStats(
+        frozenPlayers = frozenPlayers.size,
+        activeTasks = actionBarTasks.size,
+        tasksStarted = actionBarTasksStarted.get(),
+        tasksCancelled = actionBarTasksCancelled.get(),
+        cachedBypass = bypassCache.size
+    )
+    
     /**
      * 获取被冻结的玩家列表
      * 
@@ -155,6 +244,58 @@ class FreezeModule : AbstractModule() {
     
     // ==================== 私有方法 ====================
     
+    /**
+     * 启动 ActionBar 提示任务（每秒一次，已存在时不重复创建）
+     */
+    private fun startActionBarTask(player: Player) {
+        val uuid = player.uniqueId
+        actionBarTasks.computeIfAbsent(uuid) {
+            player.scheduler.runAtFixedRate(context.plugin, { task ->
+                // 已解冻 / 过期 / 下线时结束任务
+                if (!player.isOnline || !isEnabled() || !isFrozen(uuid)) {
+                    task.cancel()
+                    if (actionBarTasks.remove(uuid, task)) actionBarTasksCancelled.incrementAndGet()
+                    return@runAtFixedRate
+                }
+                
+                // 没有 LuckPerms 事件时顺便刷新 bypass 缓存，权限变化最多延迟 1 秒生效
+                val bypass = if (permissionWatcher == null) refreshBypass(player) else hasBypass(player)
+                if (bypass) return@runAtFixedRate
+                
+                val remaining = getRemainingTime(uuid)
+                val timeText = if (remaining < 0) "永久冻结" else "剩余: ${formatTime(remaining)}"
+                player.sendActionBar(serializer.deserialize(getMessage("actionbar", "time" to timeText)))
+            }, {
+                // 实体被移除（玩家下线）
+                if (actionBarTasks.remove(uuid) != null) actionBarTasksCancelled.incrementAndGet()
+            }, 1L, 20L)?.also { actionBarTasksStarted.incrementAndGet() }
+        }
+    }
+    
+    /**
+     * LuckPerms 重新计算权限时使 bypass 缓存失效
+     */
+    private fun subscribePermissionChanges() {
+        if (permissionWatcher != null) return
+        // 未安装 LuckPerms 时不能加载任何 LuckPerms 类型
+        if (Bukkit.getPluginManager().getPlugin("LuckPerms") == null) return
+        permissionWatcher = FreezePermissionWatcher.subscribe(context.plugin) { uuid -> bypassCache.remove(uuid) }
+    }
+    
+    private fun cancelActionBarTask(uuid: UUID) {
+        val task = actionBarTasks.remove(uuid) ?: return
+        task.cancel()
+        actionBarTasksCancelled.incrementAndGet()
+    }
+    
+    private fun formatTime(seconds: Int): String {
+        return when {
+            seconds < 60 -> "${seconds}秒"
+            seconds < 3600 -> "${seconds / 60}分${seconds % 60}秒"
+            else -> "${seconds / 3600}小时${(seconds % 3600) / 60}分"
+        }
+    }
+    
     /**
      * 启动过期检查任务
      */
@@ -172,6 +313,7 @@ class FreezeModule : AbstractModule() {
             // 移除过期的冻结并通知玩家
             expired.forEach { uuid ->
                 frozenPlayers.remove(uuid)
+                cancelActionBarTask(uuid)
                 val player = Bukkit.getPlayer(uuid)
                 if (player != null && player.isOnline) {
                     player.sendMessage(getMessage("expired"))
@@ -179,4 +321,19 @@ class FreezeModule : AbstractModule() {
             }
         }, 20L, 20L) // 延迟1秒，每秒执行一次
     }
+    
+    companion object {
+        const val BYPASS_PERMISSION = "tsl.freeze.bypass"
+    }
 }
+
+/**
+ * Freeze ActionBar 任务统计
+ */
+data class FreezeTaskStats(
+    val frozenPlayers: Int,
+    val activeTasks: Int,
+    val tasksStarted: Long,
+    val tasksCancelled: Long,
+    val cachedBypass: Int
+)
@@ -42,6 +42,9 @@ class FreezeModuleCommand(
             args[0].equals("list", ignoreCase = true) -> {
                 handleList(sender)
             }
+            args[0].equals("stats", ignoreCase = true) -> {
+                handleStats(sender)
+            }
             else -> {
                 val duration = if (args.size >= 2) {
                     args[1].toIntOrNull() ?: -1
@@ -68,7 +71,7 @@ class FreezeModuleCommand(
         }
         
         // 检查目标是否有 bypass 权限
-        if (target.hasPermission("tsl.freeze.bypass")) {
+        if (module.refreshBypass(target)) {
             sender.sendMessage(serializer.deserialize(
                 module.getModuleMessage("target_bypass", "player" to target.name)
             ))
@@ -129,6 +132,21 @@ class FreezeModuleCommand(
         }
     }
     
+    /**
+     * 显示 ActionBar 任务统计
+     */
+    private fun handleStats(sender: CommandSender) {
+        val stats = module.getTaskStats()
+        sender.sendMessage(serializer.deserialize(
+            module.getModuleMessage("stats",
+                "frozen" to stats.frozenPlayers.toString(),
+                "active" to stats.activeTasks.toString(),
+                "started" to stats.tasksStarted.toString(),
+                "cancelled" to stats.tasksCancelled.toString(),
+                "bypass" to stats.cachedBypass.toString())
+        ))
+    }
+    
     private fun showUsage(sender: CommandSender) {
         sender.sendMessage(serializer.deserialize(module.getModuleMessage("usage")))
     }
@@ -153,10 +171,10 @@ class FreezeModuleCommand(
         
         return when (args.size) {
             1 -> {
-                val suggestions = mutableListOf("list")
+                val suggestions = mutableListOf("list", "stats")
                 suggestions.addAll(
                     Bukkit.getOnlinePlayers()
-                        .filter { !it.hasPermission("tsl.freeze.bypass") }
+                        .filter { !module.hasBypass(it) }
                         .map { it.name }
                 )
                 suggestions.filter { it.startsWith(args[0], ignoreCase = true) }
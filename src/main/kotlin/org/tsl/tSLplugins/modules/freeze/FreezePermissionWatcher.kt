@@ -0,0 +1,42 @@
+package org.tsl.tSLplugins.modules.freeze
+
+import net.luckperms.api.LuckPerms
+import net.luckperms.api.event.EventSubscription
+import net.luckperms.api.event.user.UserDataRecalculateEvent
+import org.bukkit.Bukkit
+import org.bukkit.plugin.Plugin
+import java.util.UUID
+
+/**
+ * LuckPerms 权限重新计算监听
+ *
+ * 单独成类，FreezeModule 只在确认 LuckPerms 已安装后才加载它，
+ * 未安装 LuckPerms 时不会触及任何 LuckPerms 类型。
+ */
+class FreezePermissionWatcher private constructor(
+    private val subscription: EventSubscription<UserDataRecalculateEvent>
+) {
+
+    /**
+     * 取消订阅
+     */
+    fun close() {
+        subscription.close()
+    }
+
+    companion object {
+        /**
+         * 订阅权限重新计算事件
+         *
+         * @param onRecalculate 权限重新计算时回调（玩家 UUID）
+         * @return 监听器，LuckPerms 服务未注册时返回 null
+         */
+        fun subscribe(plugin: Plugin, onRecalculate: (UUID) -> Unit): FreezePermissionWatcher? {
+            val provider = Bukkit.getServicesManager().getRegistration(LuckPerms::class.java) ?: return null
+            val subscription = provider.provider.eventBus.subscribe(plugin, UserDataRecalculateEvent::class.java) { event ->
+                onRecalculate(event.user.uniqueId)
+            }
+            return FreezePermissionWatcher(subscription)
+        }
+    }
+}
@@ -102,9 +102,7 @@ class LandmarkManager(private val plugin: JavaPlugin) {
 
     fun getLandmarkAt(location: Location): Landmark? {
         val world = location.world?.name ?: return null
-        return storage.getLandmarksByWorld(world).find { landmark ->
-            landmark.region.contains(location.x, location.y, location.z)
-        }
+        return storage.findLandmarkAt(world, location.x, location.y, location.z)
     }
 
     fun isInsideAnyLandmark(player: Player): Boolean {
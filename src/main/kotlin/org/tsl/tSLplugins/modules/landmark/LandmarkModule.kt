@@ -20,10 +20,14 @@ class LandmarkModule : AbstractModule() {
     private lateinit var opkTool: LandmarkOPKTool
     private lateinit var compass: LandmarkCompass
 
+    override fun doPrepare() {
+        // 读取地标数据文件并构建世界索引
+        manager = LandmarkManager(context.plugin)
+    }
+
     override fun doEnable() {
         val javaPlugin = context.plugin
         
-        manager = LandmarkManager(javaPlugin)
         compass = LandmarkCompass(javaPlugin, manager)
         listener = LandmarkListener(javaPlugin, manager, compass)
         gui = LandmarkGUI(javaPlugin, manager, listener)
@@ -0,0 +1,82 @@
+package org.tsl.tSLplugins.modules.landmark
+
+/**
+ * 地标区域空间索引
+ *
+ * 将 X/Z 平面按固定大小的网格单元划分（默认 64x64 方块），
+ * 每个单元记录与之相交的地标。区域检测只需检查所在单元内的少量候选，
+ * 不再遍历整个世界的全部地标。
+ *
+ * 每个世界的网格是不可变快照，写入时整体替换（地标增删改远少于移动检测），
+ * 区域线程可以无锁并发读取。
+ */
+class LandmarkSpatialIndex(private val cellShift: Int = DEFAULT_CELL_SHIFT) {
+
+    /** 世界名 -> 网格快照 */
+    @Volatile
+    private var grids: Map<String, Map<Long, Array<Landmark>>> = emptyMap()
+
+    /**
+     * 以给定的世界索引重建全部网格
+     */
+    @Synchronized
+    fun rebuild(worldIndex: Map<String, List<Landmark>>) {
+        grids = worldIndex.mapValues { (_, list) -> buildGrid(list.toList()) }
+    }
+
+    /**
+     * 重建单个世界的网格
+     *
+     * @param landmarks 该世界的地标，顺序即重叠区域的匹配优先级
+     */
+    @Synchronized
+    fun rebuildWorld(world: String, landmarks: List<Landmark>) {
+        val snapshot = landmarks.toList()
+        grids = if (snapshot.isEmpty()) {
+            grids - world
+        } else {
+            grids + (world to buildGrid(snapshot))
+        }
+    }
+
+    @Synchronized
+    fun clear() {
+        grids = emptyMap()
+    }
+
+    /**
+     * 查找包含指定坐标的地标
+     *
+     * 与按世界顺序线性查找的结果一致：重叠时返回先加入的地标。
+     */
+    fun find(world: String, x: Double, y: Double, z: Double): Landmark? {
+        val grid = grids[world] ?: return null
+        val candidates = grid[cellKey(x.toInt() shr cellShift, z.toInt() shr cellShift)] ?: return null
+        for (landmark in candidates) {
+            if (landmark.region.contains(x, y, z)) return landmark
+        }
+        return null
+    }
+
+    private fun buildGrid(landmarks: List<Landmark>): Map<Long, Array<Landmark>> {
+        val cells = HashMap<Long, MutableList<Landmark>>()
+        landmarks.forEach { landmark ->
+            val region = landmark.region
+            for (cx in (region.minX shr cellShift)..(region.maxX shr cellShift)) {
+                for (cz in (region.minZ shr cellShift)..(region.maxZ shr cellShift)) {
+                    cells.getOrPut(cellKey(cx, cz)) { ArrayList(2) }.add(landmark)
+                }
+            }
+        }
+        return cells.mapValuesTo(HashMap(cells.size)) { (_, list) -> list.toTypedArray() }
+    }
+
+    private fun cellKey(cx: Int, cz: Int): Long {
+        return (cx.toLong() shl 32) or (cz.toLong() and 0xFFFFFFFFL)
+    }
+
+    companion object {
+        /** 单元边长 2^6 = 64 方块，最大区域（100 万平方）约占 256 个单元 */
+        const val DEFAULT_CELL_SHIFT = 6
+    }
+}
@@ -33,6 +33,9 @@ class LandmarkStorage(private val plugin: JavaPlugin) {
     // 世界索引缓存（性能优化）
     private val worldIndex: MutableMap<String, MutableList<Landmark>> = ConcurrentHashMap()
 
+    // 区域空间索引（移动检测使用）
+    private val spatialIndex = LandmarkSpatialIndex()
+
     // 脏标记（标记数据是否需要保存）
     private val landmarksDirty = AtomicBoolean(false)
     private val unlocksDirty = AtomicBoolean(false)
@@ -86,6 +89,7 @@ class LandmarkStorage(private val plugin: JavaPlugin) {
      */
     private fun loadLandmarks() {
         landmarks.clear()
+        rebuildWorldIndex()
         if (!landmarksFile.exists()) {
             plugin.logger.info("[Landmark] 地标数据文件不存在，将创建新文件")
             return
@@ -192,19 +196,41 @@ class LandmarkStorage(private val plugin: JavaPlugin) {
         return worldIndex[world] ?: emptyList()
     }
 
+    /**
+     * 查找包含指定坐标的地标（空间索引）
+     */
+    fun findLandmarkAt(world: String, x: Double, y: Double, z: Double): Landmark? {
+        return spatialIndex.find(world, x, y, z)
+    }
+
     private fun rebuildWorldIndex() {
         worldIndex.clear()
         landmarks.values.forEach { landmark ->
             worldIndex.getOrPut(landmark.world) { mutableListOf() }.add(landmark)
         }
+        spatialIndex.rebuild(worldIndex)
     }
 
     private fun addToWorldIndex(landmark: Landmark) {
-        worldIndex.getOrPut(landmark.world) { mutableListOf() }.add(landmark)
+        val list = worldIndex.getOrPut(landmark.world) { mutableListOf() }
+        list.add(landmark)
+        spatialIndex.rebuildWorld(landmark.world, list)
     }
 
     private fun removeFromWorldIndex(landmark: Landmark) {
-        worldIndex[landmark.world]?.remove(landmark)
+        val list = worldIndex[landmark.world] ?: return
+        list.remove(landmark)
+        spatialIndex.rebuildWorld(landmark.world, list)
+    }
+
+    /**
+     * 原位替换世界索引中的地标（保持重叠区域的匹配顺序），并刷新空间索引
+     */
+    private fun replaceInWorldIndex(landmark: Landmark) {
+        val list = worldIndex.getOrPut(landmark.world) { mutableListOf() }
+        val index = list.indexOfFirst { it.id == landmark.id }
+        if (index >= 0) list[index] = landmark else list.add(landmark)
+        spatialIndex.rebuildWorld(landmark.world, list)
     }
 
     fun addLandmark(landmark: Landmark): Boolean {
@@ -220,6 +246,7 @@ class LandmarkStorage(private val plugin: JavaPlugin) {
         if (!landmarks.containsKey(landmark.id)) return false
         landmark.updatedAt = System.currentTimeMillis()
         landmarks[landmark.id] = landmark
+        replaceInWorldIndex(landmark)
         saveLandmarks()
         return true
     }
@@ -52,6 +52,7 @@ class McediaCommand(
             "set" -> handleSet(sender, args.drop(1).toTypedArray())
             "tp", "teleport" -> handleTeleport(sender, args.drop(1).toTypedArray())
             "gui", "menu" -> handleGUI(sender)
+            "stats" -> handleStats(sender)
             "help" -> showUsage(sender)
             else -> showUsage(sender)
         }
@@ -251,6 +252,29 @@ class McediaCommand(
         gui.openMainMenu(sender)
     }
 
+    /**
+     * 待处理操作索引统计
+     * /tsl mcedia stats
+     */
+    private fun handleStats(sender: CommandSender) {
+        if (!sender.hasPermission("tsl.mcedia.scan")) {
+            sender.sendMessage(serializer.deserialize("&c你没有权限使用此命令！"))
+            return
+        }
+
+        val stats = manager.getPendingStats()
+        if (stats == null) {
+            sender.sendMessage(serializer.deserialize("&c存储未初始化"))
+            return
+        }
+        val lookups = stats.hits + stats.misses
+        val hitRate = if (lookups > 0) stats.hits * 100.0 / lookups else 0.0
+        sender.sendMessage(serializer.deserialize("&6&l===== Mcedia 待处理操作索引 ====="))
+        sender.sendMessage(serializer.deserialize("&7待处理操作: &f${stats.operations} &7个, 分布在 &f${stats.chunks} &7个区块"))
+        sender.sendMessage(serializer.deserialize("&7区块加载: 命中 &f${stats.hits}&7, 未命中 &f${stats.misses} &7(命中率 &f${"%.2f".format(hitRate)}%&7)"))
+        sender.sendMessage(serializer.deserialize("&7省去的数据库查询: &f${stats.queriesAvoided}"))
+    }
+
     /**
      * 显示用法
      */
@@ -263,6 +287,7 @@ class McediaCommand(
         sender.sendMessage(serializer.deserialize("&e/tsl mcedia set <名称> <链接> &7- 设置视频"))
         sender.sendMessage(serializer.deserialize("&e/tsl mcedia tp <名称> &7- 传送到播放器"))
         sender.sendMessage(serializer.deserialize("&e/tsl mcedia scan &7- 扫描现有播放器"))
+        sender.sendMessage(serializer.deserialize("&e/tsl mcedia stats &7- 待处理操作索引统计"))
         sender.sendMessage(serializer.deserialize(""))
         sender.sendMessage(serializer.deserialize("&7提示: 潜行右键点击播放器可直接打开编辑界面"))
     }
@@ -277,7 +302,7 @@ class McediaCommand(
 
         return when (args.size) {
             1 -> {
-                listOf("create", "delete", "list", "set", "tp", "scan", "gui", "help")
+                listOf("create", "delete", "list", "set", "tp", "scan", "stats", "gui", "help")
                     .filter { it.startsWith(args[0], ignoreCase = true) }
             }
             2 -> {
@@ -340,6 +340,11 @@ class McediaManager(private val plugin: JavaPlugin) {
         }
     }
 
+    /**
+     * 获取待处理操作区块索引的统计
+     */
+    fun getPendingStats(): McediaPendingStats? = storage?.getPendingStats()
+
     /**
      * 获取播放器
      */
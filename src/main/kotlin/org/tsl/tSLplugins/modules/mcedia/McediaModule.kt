@@ -18,10 +18,14 @@ class McediaModule : AbstractModule() {
     private lateinit var gui: McediaGUI
     private lateinit var listener: McediaListener
 
+    override fun doPrepare() {
+        // 读取配置、创建数据表并开始异步加载播放器
+        manager = McediaManager(context.plugin)
+    }
+
     override fun doEnable() {
         val javaPlugin = context.plugin
         
-        manager = McediaManager(javaPlugin)
         gui = McediaGUI(javaPlugin, manager)
         
         // 扫描现有播放器
@@ -0,0 +1,109 @@
+package org.tsl.tSLplugins.modules.mcedia
+
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.floor
+
+/**
+ * 待处理操作的区块索引（内存）
+ *
+ * 启动时从 mcedia_pending 表加载，之后随添加 / 删除同步更新。
+ * 区块加载时先查索引，只有命中的区块才访问数据库。
+ *
+ * 区块坐标由操作的 x/z 坐标向下取整计算，不依赖表中的 chunk_x/chunk_z 列
+ * （旧版本对负坐标使用截断计算，列值可能不准确）。
+ */
+class McediaPendingIndex {
+
+    /** 世界名 -> 区块键 -> 操作 UUID */
+    private val chunks = ConcurrentHashMap<String, ConcurrentHashMap<Long, MutableSet<UUID>>>()
+
+    /** 操作 UUID -> 所在区块（用于删除和覆盖） */
+    private val locations = ConcurrentHashMap<UUID, Pair<String, Long>>()
+
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    /**
+     * 添加操作（同一 UUID 重复添加时移动到新区块）
+     */
+    @Synchronized
+    fun add(uuid: UUID, worldName: String, x: Double, z: Double) {
+        removeInternal(uuid)
+        val key = chunkKey(chunkCoord(x), chunkCoord(z))
+        chunks.computeIfAbsent(worldName) { ConcurrentHashMap() }
+            .computeIfAbsent(key) { ConcurrentHashMap.newKeySet() }
+            .add(uuid)
+        locations[uuid] = worldName to key
+    }
+
+    /**
+     * 删除操作
+     */
+    @Synchronized
+    fun remove(uuid: UUID) {
+        removeInternal(uuid)
+    }
+
+    @Synchronized
+    fun clear() {
+        chunks.clear()
+        locations.clear()
+    }
+
+    /**
+     * 查询区块内的操作 UUID（计入命中 / 未命中统计）
+     * @return 区块内没有操作时返回空列表
+     */
+    fun lookup(worldName: String, chunkX: Int, chunkZ: Int): List<UUID> {
+        val set = chunks[worldName]?.get(chunkKey(chunkX, chunkZ))
+        if (set.isNullOrEmpty()) {
+            misses.incrementAndGet()
+            return emptyList()
+        }
+        hits.incrementAndGet()
+        return set.toList()
+    }
+
+    fun getStats(): McediaPendingStats {
+        val misses = misses.get()
+        return McediaPendingStats(
+            operations = locations.size,
+            chunks = chunks.values.sumOf { it.size },
+            hits = hits.get(),
+            misses = misses,
+            // 每次未命中都是一次省掉的数据库查询
+            queriesAvoided = misses
+        )
+    }
+
+    private fun removeInternal(uuid: UUID) {
+        val (worldName, key) = locations.remove(uuid) ?: return
+        val worldChunks = chunks[worldName] ?: return
+        val set = worldChunks[key] ?: return
+        set.remove(uuid)
+        if (set.isEmpty()) worldChunks.remove(key)
+        if (worldChunks.isEmpty()) chunks.remove(worldName)
+    }
+
+    companion object {
+        /** 方块坐标 -> 区块坐标（向下取整） */
+        fun chunkCoord(blockCoord: Double): Int = floor(blockCoord).toInt() shr 4
+
+        private fun chunkKey(chunkX: Int, chunkZ: Int): Long {
+            return (chunkX.toLong() shl 32) or (chunkZ.toLong() and 0xFFFFFFFFL)
+        }
+    }
+}
+
+/**
+ * 待处理操作索引统计
+ */
+data class McediaPendingStats(
+    val operations: Int,
+    val chunks: Int,
+    val hits: Long,
+    val misses: Long,
+    val queriesAvoided: Long
+)
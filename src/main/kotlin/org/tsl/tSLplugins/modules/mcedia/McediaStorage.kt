@@ -92,6 +92,11 @@ interface McediaStorage {
      */
     fun removePendingOperation(uuid: UUID): CompletableFuture<Boolean>
 
+    /**
+     * 获取待处理操作区块索引的统计
+     */
+    fun getPendingStats(): McediaPendingStats
+
     /**
      * 获取玩家的所有模板
      */
@@ -130,6 +135,9 @@ class SQLiteMcediaStorage(
     private val pendingTableName = "${DatabaseManager.getTablePrefix()}mcedia_pending"
     private val templateTableName = "${DatabaseManager.getTablePrefix()}mcedia_templates"
 
+    // 有待处理操作的区块索引，区块加载时只有命中才查询数据库
+    private val pendingIndex = McediaPendingIndex()
+
     init {
         // 创建播放器表
         DatabaseManager.createTable("""
@@ -199,9 +207,29 @@ class SQLiteMcediaStorage(
         DatabaseManager.createIndex("CREATE INDEX IF NOT EXISTS idx_mcedia_pending_chunk ON $pendingTableName(world, chunk_x, chunk_z)")
         DatabaseManager.createIndex("CREATE INDEX IF NOT EXISTS idx_mcedia_template_player ON $templateTableName(player_uuid)")
 
+        loadPendingIndex()
+
         plugin.logger.info("[Mcedia] 存储表已初始化")
     }
 
+    /**
+     * 加载待处理操作索引（同步，须在监听区块加载前完成）
+     */
+    private fun loadPendingIndex() {
+        val count = DatabaseManager.query("SELECT uuid, world, x, z FROM $pendingTableName", {}) { rs ->
+            var loaded = 0
+            while (rs.next()) {
+                val uuid = runCatching { UUID.fromString(rs.getString("uuid")) }.getOrNull() ?: continue
+                pendingIndex.add(uuid, rs.getString("world"), rs.getDouble("x"), rs.getDouble("z"))
+                loaded++
+            }
+            loaded
+        } ?: 0
+        if (count > 0) {
+            plugin.logger.info("[Mcedia] 已加载 $count 个待处理操作的区块索引")
+        }
+    }
+
     override fun loadAll(): CompletableFuture<List<McediaPlayer>> {
         return CompletableFuture.supplyAsync({
             val players = mutableListOf<McediaPlayer>()
@@ -264,134 +292,124 @@ class SQLiteMcediaStorage(
     }
 
     override fun save(player: McediaPlayer): CompletableFuture<Boolean> {
-        return CompletableFuture.supplyAsync({
-            try {
-                DatabaseManager.getConnection().prepareStatement("""
-                    INSERT OR REPLACE INTO $tableName 
-                    (uuid, name, world, x, y, z, yaw, pitch, video_url, start_time, 
-                     scale, volume, max_volume_range, hearing_range, 
-                     offset_x, offset_y, offset_z, looping, no_danmaku, created_by, created_at)
-                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """.trimIndent()).use { stmt ->
-                    stmt.setString(1, player.uuid.toString())
-                    stmt.setString(2, player.name)
-                    stmt.setString(3, player.location.world?.name ?: "world")
-                    stmt.setDouble(4, player.location.x)
-                    stmt.setDouble(5, player.location.y)
-                    stmt.setDouble(6, player.location.z)
-                    stmt.setFloat(7, player.location.yaw)
-                    stmt.setFloat(8, player.location.pitch)
-                    stmt.setString(9, player.videoUrl)
-                    stmt.setString(10, player.startTime)
-                    stmt.setDouble(11, player.scale)
-                    stmt.setDouble(12, player.volume)
-                    stmt.setDouble(13, player.maxVolumeRange)
-                    stmt.setDouble(14, player.hearingRange)
-                    stmt.setDouble(15, player.offsetX)
-                    stmt.setDouble(16, player.offsetY)
-                    stmt.setDouble(17, player.offsetZ)
-                    stmt.setBoolean(18, player.looping)
-                    stmt.setBoolean(19, player.noDanmaku)
-                    stmt.setString(20, player.createdBy.toString())
-                    stmt.setLong(21, player.createdAt)
-                    stmt.executeUpdate() > 0
-                }
-            } catch (e: Exception) {
-                plugin.logger.warning("[Mcedia] 保存播放器失败: ${e.message}")
-                false
-            }
-        }, DatabaseManager.getExecutor())
+        return DatabaseManager.enqueueWrite("""
+            INSERT OR REPLACE INTO $tableName 
+            (uuid, name, world, x, y, z, yaw, pitch, video_url, start_time, 
+             scale, volume, max_volume_range, hearing_range, 
+             offset_x, offset_y, offset_z, looping, no_danmaku, created_by, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """.trimIndent()) { stmt ->
+            stmt.setString(1, player.uuid.toString())
+            stmt.setString(2, player.name)
+            stmt.setString(3, player.location.world?.name ?: "world")
+            stmt.setDouble(4, player.location.x)
+            stmt.setDouble(5, player.location.y)
+            stmt.setDouble(6, player.location.z)
+            stmt.setFloat(7, player.location.yaw)
+            stmt.setFloat(8, player.location.pitch)
+            stmt.setString(9, player.videoUrl)
+            stmt.setString(10, player.startTime)
+            stmt.setDouble(11, player.scale)
+            stmt.setDouble(12, player.volume)
+            stmt.setDouble(13, player.maxVolumeRange)
+            stmt.setDouble(14, player.hearingRange)
+            stmt.setDouble(15, player.offsetX)
+            stmt.setDouble(16, player.offsetY)
+            stmt.setDouble(17, player.offsetZ)
+            stmt.setBoolean(18, player.looping)
+            stmt.setBoolean(19, player.noDanmaku)
+            stmt.setString(20, player.createdBy.toString())
+            stmt.setLong(21, player.createdAt)
+        }.thenApply { rows ->
+            if (rows < 0) plugin.logger.warning("[Mcedia] 保存播放器失败: ${player.name}")
+            rows > 0
+        }
     }
 
     override fun delete(uuid: UUID): CompletableFuture<Boolean> {
-        return CompletableFuture.supplyAsync({
-            try {
-                DatabaseManager.getConnection().prepareStatement("DELETE FROM $tableName WHERE uuid = ?").use { stmt ->
-                    stmt.setString(1, uuid.toString())
-                    stmt.executeUpdate() > 0
-                }
-            } catch (e: Exception) {
-                plugin.logger.warning("[Mcedia] 删除播放器失败: ${e.message}")
-                false
-            }
-        }, DatabaseManager.getExecutor())
+        return DatabaseManager.enqueueWrite("DELETE FROM $tableName WHERE uuid = ?") { stmt ->
+            stmt.setString(1, uuid.toString())
+        }.thenApply { rows ->
+            if (rows < 0) plugin.logger.warning("[Mcedia] 删除播放器失败: $uuid")
+            rows > 0
+        }
     }
 
     override fun addPendingOperation(operation: PendingOperation): CompletableFuture<Boolean> {
-        return CompletableFuture.supplyAsync({
-            try {
-                val chunkX = (operation.x / 16).toInt()
-                val chunkZ = (operation.z / 16).toInt()
-                DatabaseManager.getConnection().prepareStatement("""
-                    INSERT OR REPLACE INTO $pendingTableName 
-                    (uuid, operation_type, world, x, y, z, chunk_x, chunk_z, created_at)
-                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """.trimIndent()).use { stmt ->
-                    stmt.setString(1, operation.uuid.toString())
-                    stmt.setString(2, operation.operationType.name)
-                    stmt.setString(3, operation.worldName)
-                    stmt.setDouble(4, operation.x)
-                    stmt.setDouble(5, operation.y)
-                    stmt.setDouble(6, operation.z)
-                    stmt.setInt(7, chunkX)
-                    stmt.setInt(8, chunkZ)
-                    stmt.setLong(9, operation.createdAt)
-                    stmt.executeUpdate() > 0
-                }
-            } catch (e: Exception) {
-                plugin.logger.warning("[Mcedia] 添加待处理操作失败: ${e.message}")
-                false
-            }
-        }, DatabaseManager.getExecutor())
+        val chunkX = McediaPendingIndex.chunkCoord(operation.x)
+        val chunkZ = McediaPendingIndex.chunkCoord(operation.z)
+        pendingIndex.add(operation.uuid, operation.worldName, operation.x, operation.z)
+        return DatabaseManager.enqueueWrite("""
+            INSERT OR REPLACE INTO $pendingTableName 
+            (uuid, operation_type, world, x, y, z, chunk_x, chunk_z, created_at)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """.trimIndent()) { stmt ->
+            stmt.setString(1, operation.uuid.toString())
+            stmt.setString(2, operation.operationType.name)
+            stmt.setString(3, operation.worldName)
+            stmt.setDouble(4, operation.x)
+            stmt.setDouble(5, operation.y)
+            stmt.setDouble(6, operation.z)
+            stmt.setInt(7, chunkX)
+            stmt.setInt(8, chunkZ)
+            stmt.setLong(9, operation.createdAt)
+        }.thenApply { rows ->
+            if (rows < 0) plugin.logger.warning("[Mcedia] 添加待处理操作失败: ${operation.uuid}")
+            rows > 0
+        }
     }
 
     override fun getPendingOperations(worldName: String, chunkX: Int, chunkZ: Int): CompletableFuture<List<PendingOperation>> {
+        // 绝大多数区块没有待处理操作，未命中时不访问数据库
+        val uuids = pendingIndex.lookup(worldName, chunkX, chunkZ)
+        if (uuids.isEmpty()) return CompletableFuture.completedFuture(emptyList())
+
+        // 只读连接池查询，区块加载时不必排在写入之后
         return CompletableFuture.supplyAsync({
-            val operations = mutableListOf<PendingOperation>()
-            try {
-                DatabaseManager.getConnection().prepareStatement(
-                    "SELECT * FROM $pendingTableName WHERE world = ? AND chunk_x = ? AND chunk_z = ?"
-                ).use { stmt ->
-                    stmt.setString(1, worldName)
-                    stmt.setInt(2, chunkX)
-                    stmt.setInt(3, chunkZ)
-                    stmt.executeQuery().use { rs ->
-                        while (rs.next()) {
-                            operations.add(PendingOperation(
-                                uuid = UUID.fromString(rs.getString("uuid")),
-                                operationType = PendingOperationType.valueOf(rs.getString("operation_type")),
-                                worldName = rs.getString("world"),
-                                x = rs.getDouble("x"),
-                                y = rs.getDouble("y"),
-                                z = rs.getDouble("z"),
-                                createdAt = rs.getLong("created_at")
-                            ))
-                        }
-                    }
+            // 索引在入队时已更新，确保刚添加的记录已写入
+            DatabaseManager.flushPendingWrites()
+            val operations = DatabaseManager.query(
+                "SELECT * FROM $pendingTableName WHERE uuid IN (${uuids.joinToString(",") { "?" }})",
+                { stmt ->
+                    uuids.forEachIndexed { index, uuid -> stmt.setString(index + 1, uuid.toString()) }
                 }
-            } catch (e: Exception) {
-                plugin.logger.warning("[Mcedia] 获取待处理操作失败: ${e.message}")
+            ) { rs ->
+                val operations = mutableListOf<PendingOperation>()
+                while (rs.next()) {
+                    operations.add(PendingOperation(
+                        uuid = UUID.fromString(rs.getString("uuid")),
+                        operationType = PendingOperationType.valueOf(rs.getString("operation_type")),
+                        worldName = rs.getString("world"),
+                        x = rs.getDouble("x"),
+                        y = rs.getDouble("y"),
+                        z = rs.getDouble("z"),
+                        createdAt = rs.getLong("created_at")
+                    ))
+                }
+                operations
+            } ?: return@supplyAsync emptyList()
+
+            // 表中已不存在的记录从索引移除，避免反复命中
+            if (operations.size < uuids.size) {
+                val found = operations.mapTo(HashSet()) { it.uuid }
+                uuids.filter { it !in found }.forEach { pendingIndex.remove(it) }
             }
             operations
-        }, DatabaseManager.getExecutor())
+        }, DatabaseManager.getReadExecutor())
     }
 
     override fun removePendingOperation(uuid: UUID): CompletableFuture<Boolean> {
-        return CompletableFuture.supplyAsync({
-            try {
-                DatabaseManager.getConnection().prepareStatement(
-                    "DELETE FROM $pendingTableName WHERE uuid = ?"
-                ).use { stmt ->
-                    stmt.setString(1, uuid.toString())
-                    stmt.executeUpdate() > 0
-                }
-            } catch (e: Exception) {
-                plugin.logger.warning("[Mcedia] 删除待处理操作失败: ${e.message}")
-                false
-            }
-        }, DatabaseManager.getExecutor())
+        pendingIndex.remove(uuid)
+        return DatabaseManager.enqueueWrite("DELETE FROM $pendingTableName WHERE uuid = ?") { stmt ->
+            stmt.setString(1, uuid.toString())
+        }.thenApply { rows ->
+            if (rows < 0) plugin.logger.warning("[Mcedia] 删除待处理操作失败: $uuid")
+            rows > 0
+        }
     }
 
+    override fun getPendingStats(): McediaPendingStats = pendingIndex.getStats()
+
     override fun getTemplates(playerUUID: UUID): CompletableFuture<List<McediaTemplate>> {
         return CompletableFuture.supplyAsync({
             val templates = mutableListOf<McediaTemplate>()
@@ -37,10 +37,11 @@ class NearModule : AbstractModule() {
 
     override fun doEnable() {
         loadNearConfig()
+        context.playerSpatialIndex.acquire()
     }
 
     override fun doDisable() {
-        // 无需清理
+        context.playerSpatialIndex.release()
     }
 
     override fun doReload() {
@@ -72,23 +73,15 @@ class NearModule : AbstractModule() {
     fun getMaxRadius(): Int = maxRadius
 
     /**
-     * 查找附近的玩家
+     * 查找附近的玩家（按距离排序）
+     *
+     * 从玩家位置空间索引中查询，只检查半径覆盖的网格
      */
     fun findNearbyPlayers(player: Player, radius: Int): List<Pair<Player, Double>> {
         val playerLocation = player.location
-        val radiusSquared = radius * radius.toDouble()
-
-        return player.world.players
-            .filter { other ->
-                if (other.uniqueId == player.uniqueId) return@filter false
-                val distanceSquared = playerLocation.distanceSquared(other.location)
-                distanceSquared <= radiusSquared
-            }
-            .map { other ->
-                val distance = playerLocation.distance(other.location)
-                Pair(other, distance)
-            }
-            .sortedBy { it.second }
+        return context.playerSpatialIndex
+            .queryRadius(player.world, playerLocation.x, playerLocation.y, playerLocation.z, radius.toDouble(), player.uniqueId)
+            .map { Pair(it.player, it.distance) }
     }
 
     /**
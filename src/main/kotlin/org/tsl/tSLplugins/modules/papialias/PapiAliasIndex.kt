@@ -0,0 +1,183 @@
+package org.tsl.tSLplugins.modules.papialias
+
+/**
+ * 单个变量的别名索引（不可变快照）
+ *
+ * 在加载配置时预先计算每个原始值的两种归一化形式（仅保留中文 / 去除颜色代码），
+ * 并分别建立哈希表（整体相等）和前缀树（包含匹配）。
+ * 查询时只需对输入做一次无正则的归一化，再按输入长度遍历前缀树。
+ *
+ * 匹配顺序：
+ * 1. 原始值精确匹配
+ * 2. 中文部分匹配：输入的中文部分等于或包含某个键的中文部分
+ * 3. 去色后匹配：输入去色后等于或包含某个键去色后的结果
+ *
+ * 第 2、3 步命中多个键时取最长的键（整体相等即最长），等长时取配置中靠前的键。
+ */
+class PapiAliasIndex(mappings: Map<String, String>) {
+
+    /** 原始值 -> 简写值（保持配置顺序） */
+    val mappings: Map<String, String> = LinkedHashMap(mappings)
+
+    private val chinese = NormalizedIndex()
+    private val stripped = NormalizedIndex()
+
+    init {
+        mappings.entries.forEachIndexed { order, (key, value) ->
+            chinese.add(extractChinese(key), value, order)
+            stripped.add(stripColorCodes(key), value, order)
+        }
+    }
+
+    /**
+     * 查找别名
+     * @return 简写值，未找到返回 null
+     */
+    fun find(originalValue: String): String? {
+        mappings[originalValue]?.let { return it }
+
+        val chineseOriginal = extractChinese(originalValue)
+        if (chineseOriginal.isNotEmpty()) {
+            chinese.find(chineseOriginal)?.let { return it }
+        }
+
+        return stripped.find(stripColorCodes(originalValue))
+    }
+
+    /**
+     * 一种归一化形式的索引：哈希表 + 前缀树
+     */
+    private class NormalizedIndex {
+        private val exact = HashMap<String, String>()
+        private val root = TrieNode()
+
+        fun add(normalized: String, value: String, order: Int) {
+            // 空键不参与包含匹配（与任何输入都"包含"）
+            if (normalized.isEmpty()) return
+            exact.putIfAbsent(normalized, value)
+
+            var node = root
+            for (c in normalized) {
+                node = node.children.getOrPut(c) { TrieNode() }
+            }
+            if (node.value == null) {
+                node.value = value
+                node.order = order
+            }
+        }
+
+        /**
+         * 查找与输入相等的键，否则查找被输入包含的最长键
+         */
+        fun find(input: String): String? {
+            exact[input]?.let { return it }
+            if (root.children.isEmpty()) return null
+
+            var bestValue: String? = null
+            var bestLength = 0
+            var bestOrder = Int.MAX_VALUE
+
+            for (start in input.indices) {
+                // 剩余长度不可能超过当前最优时提前结束
+                if (input.length - start < bestLength) break
+                var node = root
+                var i = start
+                while (i < input.length) {
+                    node = node.children[input[i]] ?: break
+                    i++
+                    val value = node.value ?: continue
+                    val length = i - start
+                    if (length > bestLength || (length == bestLength && node.order < bestOrder)) {
+                        bestValue = value
+                        bestLength = length
+                        bestOrder = node.order
+                    }
+                }
+            }
+            return bestValue
+        }
+    }
+
+    private class TrieNode {
+        val children = HashMap<Char, TrieNode>(4)
+        var value: String? = null
+        var order: Int = Int.MAX_VALUE
+    }
+
+    companion object {
+
+        /**
+         * 仅保留中文字符（CJK 统一表意文字及扩展 A）
+         */
+        fun extractChinese(text: String): String {
+            return text.filter { it.code in 0x4E00..0x9FFF || it.code in 0x3400..0x4DBF }
+        }
+
+        /**
+         * 去除颜色代码（单次扫描，不使用正则）
+         *
+         * 支持 MiniMessage 标签 `<...>`、`&#RRGGBB`、`&x&R&R&G&G&B&B`、`§x§R§R§G§G§B§B`
+         * 以及 `&`/`§` 加单个颜色或格式字符。
+         */
+        fun stripColorCodes(text: String): String {
+            // 快速路径：没有任何可能的颜色代码
+            if (text.none { it == '<' || it == '&' || it == '§' }) return text
+
+            val result = StringBuilder(text.length)
+            var i = 0
+            val n = text.length
+            while (i < n) {
+                val c = text[i]
+                if (c == '<') {
+                    val close = text.indexOf('>', i + 1)
+                    if (close > i + 1) {
+                        i = close + 1
+                        continue
+                    }
+                } else if (c == '&' || c == '§') {
+                    if (c == '&' && i + 1 < n && text[i + 1] == '#' && isHexRun(text, i + 2, 6)) {
+                        i += 8
+                        continue
+                    }
+                    if (i + 1 < n && text[i + 1] == 'x' && isPrefixedHexRun(text, i + 2, c)) {
+                        i += 14
+                        continue
+                    }
+                    if (i + 1 < n && isFormatChar(text[i + 1])) {
+                        i += 2
+                        continue
+                    }
+                }
+                result.append(c)
+                i++
+            }
+            return result.toString()
+        }
+
+        /** 从 start 起连续 count 个字符是否均为十六进制数字 */
+        private fun isHexRun(text: String, start: Int, count: Int): Boolean {
+            if (start + count > text.length) return false
+            for (k in start until start + count) {
+                if (!isHex(text[k])) return false
+            }
+            return true
+        }
+
+        /** 是否为 6 组 "<prefix><hex>" */
+        private fun isPrefixedHexRun(text: String, start: Int, prefix: Char): Boolean {
+            if (start + 11 >= text.length) return false
+            for (k in 0 until 6) {
+                if (text[start + k * 2] != prefix || !isHex(text[start + k * 2 + 1])) return false
+            }
+            return true
+        }
+
+        private fun isHex(c: Char): Boolean {
+            return c in '0'..'9' || c in 'a'..'f' || c in 'A'..'F'
+        }
+
+        private fun isFormatChar(c: Char): Boolean {
+            return isHex(c) || c in 'k'..'o' || c in 'K'..'O' || c == 'r' || c == 'R'
+        }
+    }
+}
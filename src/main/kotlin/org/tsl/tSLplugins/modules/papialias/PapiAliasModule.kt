@@ -6,13 +6,13 @@ import org.bukkit.command.Command
 import org.bukkit.command.CommandSender
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
-import java.util.concurrent.ConcurrentHashMap
 
 /**
  * PapiAlias 模块 - 变量映射
  * 
  * 将 PAPI 变量值映射为简写形式。
- * 使用 ConcurrentHashMap 确保 Folia 多线程环境下的线程安全。
+ * 每个变量的映射在加载时编译为 [PapiAliasIndex]，整体以不可变快照发布，
+ * Folia 多线程环境下无需加锁即可并发查询。
  */
 class PapiAliasModule : AbstractModule() {
 
@@ -20,9 +20,9 @@ class PapiAliasModule : AbstractModule() {
     override val configPath = "papi-alias"
     override fun getDescription() = "变量映射"
 
-    // 映射存储：外层 key 是变量名，内层是 原始值 -> 简写值
+    // 索引快照：变量名（小写） -> 该变量的别名索引；重载时整体替换
     @Volatile
-    private var aliasMappings: ConcurrentHashMap<String, ConcurrentHashMap<String, String>> = ConcurrentHashMap()
+    private var aliasIndexes: Map<String, PapiAliasIndex> = emptyMap()
     
     private var returnOriginalIfNotFound: Boolean = true
 
@@ -44,14 +44,14 @@ class PapiAliasModule : AbstractModule() {
     override fun getCommandHandler(): SubCommandHandler = PapiAliasModuleCommand(this)
 
     private fun loadMappings() {
-        val tempMappings = ConcurrentHashMap<String, ConcurrentHashMap<String, String>>()
+        val tempIndexes = HashMap<String, PapiAliasIndex>()
 
         val mappingsSection = context.config.getConfigurationSection("$configPath.mappings")
         if (mappingsSection != null) {
             for (variableName in mappingsSection.getKeys(false)) {
                 val variableSection = mappingsSection.getConfigurationSection(variableName)
                 if (variableSection != null) {
-                    val valueMap = ConcurrentHashMap<String, String>()
+                    val valueMap = LinkedHashMap<String, String>()
                     for (originalValue in variableSection.getKeys(false)) {
                         val aliasValue = variableSection.getString(originalValue)
                         if (aliasValue != null) {
@@ -59,13 +59,14 @@ class PapiAliasModule : AbstractModule() {
                         }
                     }
                     if (valueMap.isNotEmpty()) {
-                        tempMappings[variableName.lowercase()] = valueMap
+                        tempIndexes[variableName.lowercase()] = PapiAliasIndex(valueMap)
                     }
                 }
             }
         }
 
-        aliasMappings = tempMappings
+        // 新索引完整构建后再发布，查询线程看到的始终是完整快照
+        aliasIndexes = tempIndexes
     }
 
     /**
@@ -74,64 +75,22 @@ class PapiAliasModule : AbstractModule() {
     fun getAliasValue(variableName: String, originalValue: String): String {
         if (!isEnabled()) return originalValue
 
-        val variableMap = aliasMappings[variableName.lowercase()]
-        if (variableMap == null) {
-            return if (returnOriginalIfNotFound) originalValue else ""
-        }
-
-        // 1. 精确匹配
-        variableMap[originalValue]?.let { return it }
-
-        // 2. 中文匹配
-        val chineseOriginal = extractChinese(originalValue)
-        if (chineseOriginal.isNotEmpty()) {
-            for ((key, value) in variableMap) {
-                val chineseKey = extractChinese(key)
-                if (chineseKey == chineseOriginal || 
-                    (chineseOriginal.contains(chineseKey) && chineseKey.isNotEmpty())) {
-                    return value
-                }
-            }
-        }
-
-        // 3. 去色后匹配
-        val strippedOriginal = stripColorCodes(originalValue)
-        for ((key, value) in variableMap) {
-            val strippedKey = stripColorCodes(key)
-            if (strippedKey == strippedOriginal || 
-                (strippedOriginal.contains(strippedKey) && strippedKey.isNotEmpty())) {
-                return value
-            }
-        }
-
-        return if (returnOriginalIfNotFound) originalValue else ""
+        val index = aliasIndexes[variableName] ?: aliasIndexes[variableName.lowercase()]
+        return index?.find(originalValue)
+            ?: if (returnOriginalIfNotFound) originalValue else ""
     }
 
-    private fun extractChinese(text: String): String {
-        return text.filter { it.code in 0x4E00..0x9FFF || it.code in 0x3400..0x4DBF }
-    }
-
-    private fun stripColorCodes(text: String): String {
-        var result = text
-        result = result.replace(Regex("<[^>]+>"), "")
-        result = result.replace(Regex("&#[0-9a-fA-F]{6}"), "")
-        result = result.replace(Regex("&x(&[0-9a-fA-F]){6}"), "")
-        result = result.replace(Regex("§x(§[0-9a-fA-F]){6}"), "")
-        result = result.replace(Regex("[&§][0-9a-fA-Fk-oK-OrR]"), "")
-        return result
-    }
-
-    fun hasMapping(variableName: String): Boolean = aliasMappings.containsKey(variableName.lowercase())
-    fun getMappedVariables(): Set<String> = aliasMappings.keys.toSet()
-    fun getVariableMappings(variableName: String): Map<String, String> = aliasMappings[variableName.lowercase()]?.toMap() ?: emptyMap()
-    fun getMappingCount(): Int = aliasMappings.values.sumOf { it.size }
-    fun getVariableCount(): Int = aliasMappings.size
+    fun hasMapping(variableName: String): Boolean = aliasIndexes.containsKey(variableName.lowercase())
+    fun getMappedVariables(): Set<String> = aliasIndexes.keys.toSet()
+    fun getVariableMappings(variableName: String): Map<String, String> = aliasIndexes[variableName.lowercase()]?.mappings ?: emptyMap()
+    fun getMappingCount(): Int = aliasIndexes.values.sumOf { it.mappings.size }
+    fun getVariableCount(): Int = aliasIndexes.size
 
     fun debugPrintMappings(): List<String> {
         val lines = mutableListOf("PapiAlias 映射状态: enabled=${isEnabled()}, returnOriginal=$returnOriginalIfNotFound")
-        for ((varName, mappings) in aliasMappings) {
+        for ((varName, index) in aliasIndexes) {
             lines.add("变量 [$varName]:")
-            for ((original, alias) in mappings) {
+            for ((original, alias) in index.mappings) {
                 lines.add("  '$original' -> '$alias'")
             }
         }
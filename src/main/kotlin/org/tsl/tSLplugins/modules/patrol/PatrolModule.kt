@@ -2,33 +2,35 @@ package org.tsl.tSLplugins.modules.patrol
 
 import net.kyori.adventure.text.Component
 import net.kyori.adventure.text.format.NamedTextColor
-import org.bukkit.Bukkit
 import org.bukkit.command.Command
 import org.bukkit.command.CommandSender
 import org.bukkit.entity.Player
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
+import org.tsl.tSLplugins.core.ModuleActivation
 import java.util.UUID
 import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Patrol 模块 - 巡逻功能
- * 随机传送到玩家位置进行巡查
+ * 随机传送到玩家位置进行巡查（候选玩家和目标位置来自玩家位置空间索引）
  */
 class PatrolModule : AbstractModule() {
 
     override val id = "patrol"
     override val configPath = "patrol"
+    override val activation = ModuleActivation(commands = listOf("patrol"))
 
     private val patrolRecords = ConcurrentHashMap<UUID, Long>()
     private val currentCyclePatrolled = ConcurrentHashMap.newKeySet<UUID>()
     private val cooldownMillis = 10 * 60 * 1000L
 
     override fun doEnable() {
-        // 无需特殊初始化
+        context.playerSpatialIndex.acquire()
     }
 
     override fun doDisable() {
+        context.playerSpatialIndex.release()
         patrolRecords.clear()
         currentCyclePatrolled.clear()
     }
@@ -36,8 +38,14 @@ class PatrolModule : AbstractModule() {
     override fun getCommandHandler(): SubCommandHandler = PatrolModuleCommand(this)
     override fun getDescription(): String = "巡逻功能"
 
+    // 停用会清空巡逻记录，冷却期内的记录还在用时保持启用
+    override fun canDeactivate(): Boolean {
+        val now = System.currentTimeMillis()
+        return patrolRecords.values.none { now - it < cooldownMillis }
+    }
+
     fun patrol(patroller: Player): PatrolResult {
-        val onlinePlayers = Bukkit.getOnlinePlayers().filter { it.uniqueId != patroller.uniqueId }
+        val onlinePlayers = context.playerSpatialIndex.allPlayers().map { it.player }.filter { it.uniqueId != patroller.uniqueId && it.isOnline }
         if (onlinePlayers.isEmpty()) return PatrolResult.NoPlayers
 
         cleanExpiredRecords()
@@ -53,10 +61,17 @@ class PatrolModule : AbstractModule() {
         val now = System.currentTimeMillis()
         patrolRecords[target.uniqueId] = now
         currentCyclePatrolled.add(target.uniqueId)
-        patroller.teleportAsync(target.location)
+        teleportTo(patroller, target)
         return PatrolResult.Success(target, null)
     }
 
+    /**
+     * 传送到目标在索引中的位置（避免跨区域读取目标实体的位置）
+     */
+    private fun teleportTo(patroller: Player, target: Player) {
+        patroller.teleportAsync(context.playerSpatialIndex.locationOf(target) ?: target.location)
+    }
+
     private fun getCandidates(onlinePlayers: Collection<Player>): List<Player> {
         return onlinePlayers.filter { !currentCyclePatrolled.contains(it.uniqueId) && !isInCooldown(it.uniqueId) }
     }
@@ -79,7 +94,7 @@ class PatrolModule : AbstractModule() {
             val now = System.currentTimeMillis()
             patrolRecords[target.uniqueId] = now
             currentCyclePatrolled.add(target.uniqueId)
-            patroller.teleportAsync(target.location)
+            teleportTo(patroller, target)
             return PatrolResult.Success(target, null)
         }
         val target = onlinePlayers.minByOrNull { patrolRecords[it.uniqueId] ?: 0L } ?: return PatrolResult.NoPlayers
@@ -88,7 +103,7 @@ class PatrolModule : AbstractModule() {
         val timeSinceLastPatrol = formatElapsedTime(elapsed)
         patrolRecords[target.uniqueId] = System.currentTimeMillis()
         currentCyclePatrolled.add(target.uniqueId)
-        patroller.teleportAsync(target.location)
+        teleportTo(patroller, target)
         return PatrolResult.Success(target, timeSinceLastPatrol)
     }
 
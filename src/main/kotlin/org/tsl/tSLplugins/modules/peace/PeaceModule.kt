@@ -1,6 +1,7 @@
 package org.tsl.tSLplugins.modules.peace
 
 import org.bukkit.Bukkit
+import org.bukkit.Location
 import org.bukkit.command.Command
 import org.bukkit.command.CommandSender
 import org.bukkit.entity.Player
@@ -57,11 +58,13 @@ class PeaceModule : AbstractModule() {
         initDatabase()
         loadAllFromDatabase()
         startExpirationTask()
+        context.playerSpatialIndex.acquire()
         listener = PeaceModuleListener(this)
         registerListener(listener)
     }
 
     override fun doDisable() {
+        context.playerSpatialIndex.release()
         peacePlayers.clear()
         noSpawnPlayers.clear()
     }
@@ -153,15 +156,13 @@ class PeaceModule : AbstractModule() {
         val now = System.currentTimeMillis()
         val expireAt = now + durationMs
         peacePlayers[player.uniqueId] = expireAt
-        CompletableFuture.runAsync({
-            DatabaseManager.update("INSERT OR REPLACE INTO $peaceTable VALUES (?, ?, ?, ?, ?)") { stmt ->
-                stmt.setString(1, player.uniqueId.toString())
-                stmt.setString(2, player.name)
-                stmt.setLong(3, expireAt)
-                stmt.setLong(4, now)
-                stmt.setString(5, source)
-            }
-        }, DatabaseManager.getExecutor())
+        DatabaseManager.enqueueWrite("INSERT OR REPLACE INTO $peaceTable VALUES (?, ?, ?, ?, ?)") { stmt ->
+            stmt.setString(1, player.uniqueId.toString())
+            stmt.setString(2, player.name)
+            stmt.setLong(3, expireAt)
+            stmt.setLong(4, now)
+            stmt.setString(5, source)
+        }
         return true
     }
 
@@ -169,15 +170,13 @@ class PeaceModule : AbstractModule() {
         val now = System.currentTimeMillis()
         val expireAt = now + durationMs
         noSpawnPlayers[player.uniqueId] = expireAt
-        CompletableFuture.runAsync({
-            DatabaseManager.update("INSERT OR REPLACE INTO $noSpawnTable VALUES (?, ?, ?, ?, ?)") { stmt ->
-                stmt.setString(1, player.uniqueId.toString())
-                stmt.setString(2, player.name)
-                stmt.setLong(3, expireAt)
-                stmt.setLong(4, now)
-                stmt.setString(5, source)
-            }
-        }, DatabaseManager.getExecutor())
+        DatabaseManager.enqueueWrite("INSERT OR REPLACE INTO $noSpawnTable VALUES (?, ?, ?, ?, ?)") { stmt ->
+            stmt.setString(1, player.uniqueId.toString())
+            stmt.setString(2, player.name)
+            stmt.setLong(3, expireAt)
+            stmt.setLong(4, now)
+            stmt.setString(5, source)
+        }
         return true
     }
 
@@ -186,25 +185,30 @@ class PeaceModule : AbstractModule() {
     fun getNoSpawnRadius(): Int = noSpawnRadius
     fun getNoSpawnPlayerUuids(): Set<UUID> = noSpawnPlayers.filterValues { it > System.currentTimeMillis() }.keys
 
+    /**
+     * 位置附近是否有禁怪模式的玩家（通过空间索引只检查附近的玩家）
+     */
+    fun isNoSpawnNear(location: Location): Boolean {
+        if (noSpawnPlayers.isEmpty()) return false
+        val world = location.world ?: return false
+        return context.playerSpatialIndex.anyWithin(world, location.x, location.y, location.z, noSpawnRadius.toDouble()) { hasNoSpawn(it) }
+    }
+
     fun clearPeace(uuid: UUID): Boolean {
         if (!peacePlayers.containsKey(uuid)) return false
         peacePlayers.remove(uuid)
-        CompletableFuture.runAsync({
-            DatabaseManager.update("DELETE FROM $peaceTable WHERE player_uuid = ?") { stmt ->
-                stmt.setString(1, uuid.toString())
-            }
-        }, DatabaseManager.getExecutor())
+        DatabaseManager.enqueueWrite("DELETE FROM $peaceTable WHERE player_uuid = ?") { stmt ->
+            stmt.setString(1, uuid.toString())
+        }
         return true
     }
 
     fun clearNoSpawn(uuid: UUID): Boolean {
         if (!noSpawnPlayers.containsKey(uuid)) return false
         noSpawnPlayers.remove(uuid)
-        CompletableFuture.runAsync({
-            DatabaseManager.update("DELETE FROM $noSpawnTable WHERE player_uuid = ?") { stmt ->
-                stmt.setString(1, uuid.toString())
-            }
-        }, DatabaseManager.getExecutor())
+        DatabaseManager.enqueueWrite("DELETE FROM $noSpawnTable WHERE player_uuid = ?") { stmt ->
+            stmt.setString(1, uuid.toString())
+        }
         return true
     }
 
@@ -269,16 +273,7 @@ class PeaceModuleListener(private val module: PeaceModule) : Listener {
             entity is PiglinBrute || entity is Zoglin || entity is Warden || entity is Breeze
         if (!isHostile) return
 
-        val spawnLocation = event.location
-        val radiusSquared = module.getNoSpawnRadius() * module.getNoSpawnRadius()
-        for (uuid in module.getNoSpawnPlayerUuids()) {
-            val player = Bukkit.getPlayer(uuid) ?: continue
-            if (player.world != spawnLocation.world) continue
-            if (player.location.distanceSquared(spawnLocation) <= radiusSquared) {
-                event.isCancelled = true
-                return
-            }
-        }
+        if (module.isNoSpawnNear(event.location)) event.isCancelled = true
     }
 
     @EventHandler
@@ -0,0 +1,99 @@
+package org.tsl.tSLplugins.modules.playtime
+
+import java.util.TreeSet
+import java.util.UUID
+
+/**
+ * 当日在线时长排行榜（内存，增量维护）
+ *
+ * - 有序集合按时长降序保存所有玩家，取前 N 名为 O(log n + N)
+ * - 按秒数建立的树状数组记录每个时长的人数，排名查询为 O(log maxSeconds)，
+ *   与玩家数量无关，也不访问数据库
+ *
+ * 线程安全。
+ *
+ * @param maxSeconds 时长上限（当日为 86400），超出的值按上限计入排名
+ */
+class PlayTimeLeaderboard(private val maxSeconds: Int = 86_400) {
+
+    private data class Entry(val uuid: UUID, val seconds: Long)
+
+    private val entries = TreeSet<Entry>(compareByDescending<Entry> { it.seconds }.thenBy { it.uuid })
+    private val byPlayer = HashMap<UUID, Entry>()
+
+    /** 树状数组：下标为 秒数 + 1，值为该时长的人数 */
+    private val counts = IntArray(maxSeconds + 2)
+
+    /**
+     * 设置玩家的时长
+     */
+    @Synchronized
+    fun update(uuid: UUID, seconds: Long) {
+        val previous = byPlayer[uuid]
+        if (previous != null) {
+            if (previous.seconds == seconds) return
+            entries.remove(previous)
+            add(indexOf(previous.seconds), -1)
+        }
+        val entry = Entry(uuid, seconds)
+        entries.add(entry)
+        byPlayer[uuid] = entry
+        add(indexOf(seconds), 1)
+    }
+
+    @Synchronized
+    fun get(uuid: UUID): Long? = byPlayer[uuid]?.seconds
+
+    /**
+     * 玩家排名（从 1 开始，时长相同的玩家排名相同），不在榜上返回 null
+     */
+    @Synchronized
+    fun rank(uuid: UUID): Int? {
+        val entry = byPlayer[uuid] ?: return null
+        return byPlayer.size - prefixSum(indexOf(entry.seconds)) + 1
+    }
+
+    /**
+     * 前 N 名（时长降序）
+     */
+    @Synchronized
+    fun top(limit: Int): List<Pair<UUID, Long>> {
+        val result = ArrayList<Pair<UUID, Long>>(minOf(limit, entries.size))
+        for (entry in entries) {
+            if (result.size >= limit) break
+            result.add(entry.uuid to entry.seconds)
+        }
+        return result
+    }
+
+    @Synchronized
+    fun size(): Int = byPlayer.size
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        byPlayer.clear()
+        counts.fill(0)
+    }
+
+    private fun indexOf(seconds: Long): Int = seconds.coerceIn(0L, maxSeconds.toLong()).toInt() + 1
+
+    private fun add(index: Int, delta: Int) {
+        var i = index
+        while (i < counts.size) {
+            counts[i] += delta
+            i += i and -i
+        }
+    }
+
+    /** 时长不超过该下标的人数 */
+    private fun prefixSum(index: Int): Int {
+        var sum = 0
+        var i = index
+        while (i > 0) {
+            sum += counts[i]
+            i -= i and -i
+        }
+        return sum
+    }
+}
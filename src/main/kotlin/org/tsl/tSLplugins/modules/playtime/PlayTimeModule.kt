@@ -1,5 +1,6 @@
 package org.tsl.tSLplugins.modules.playtime
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask
 import org.bukkit.Bukkit
 import org.bukkit.command.Command
 import org.bukkit.command.CommandSender
@@ -14,33 +15,61 @@ import org.tsl.tSLplugins.core.AbstractModule
 import java.time.LocalDate
 import java.time.ZoneId
 import java.util.UUID
-import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.TimeUnit
 
 /**
  * PlayTime 模块 - 玩家在线时长统计
+ *
+ * 在线时长按 玩家-日期 在内存中累加（每 accrue-interval-ticks 结算一次），
+ * 每 save-interval-ticks 把有变化的记录在一个事务中批量写入日表。
+ * 当日排行榜在内存中增量维护，排名查询不访问数据库；
+ * 周 / 月汇总表由后台任务从日表压缩生成。
  */
 class PlayTimeModule : AbstractModule() {
 
     override val id = "playtime"
     override val configPath = "playtime"
 
-    private var saveIntervalTicks: Long = 6000L
+    private var saveIntervalTicks: Long = 1200L
+    private var accrueIntervalTicks: Long = 20L
+    private var compactIntervalMinutes: Long = 60L
+    private var retentionDays: Int = 0
     private var timezone: ZoneId = ZoneId.systemDefault()
 
-    private val sessionStartTime: ConcurrentHashMap<UUID, Long> = ConcurrentHashMap()
-    private val dailyPlayTime: ConcurrentHashMap<UUID, Long> = ConcurrentHashMap()
-    private val lastRecordDate: ConcurrentHashMap<UUID, LocalDate> = ConcurrentHashMap()
+    /**
+     * 在线玩家的计时状态
+     * @param lastAccrual 上次结算时间（毫秒）
+     * @param carryMs 不足 1 秒的余数，留到下次结算
+     */
+    private class Session(var lastAccrual: Long, var carryMs: Long = 0L)
+
+    /** 以下状态均由 lock 保护 */
+    private val lock = Any()
+    private val sessions = HashMap<UUID, Session>()
+    private val dirtyRows = HashMap<Pair<UUID, LocalDate>, Long>()
+    private val dirtyDates = HashSet<LocalDate>()
+    private var currentDate: LocalDate = LocalDate.now()
+
+    private val leaderboard = PlayTimeLeaderboard()
+    private lateinit var rollups: PlayTimeRollups
+    private val tasks = mutableListOf<ScheduledTask>()
 
     private lateinit var listener: PlayTimeModuleListener
     
     // 使用全局表前缀
     private val tableName: String get() = "${DatabaseManager.getTablePrefix()}playtime_daily"
+    private val upsertSql: String get() = "INSERT INTO $tableName (player_uuid, record_date, play_seconds, last_update) VALUES (?, ?, ?, ?) ON CONFLICT(player_uuid, record_date) DO UPDATE SET play_seconds = excluded.play_seconds, last_update = excluded.last_update"
 
-    override fun doEnable() {
+    override fun doPrepare() {
         loadPlayTimeConfig()
         initDatabase()
-        startSaveTask()
+        loadToday()
+    }
+
+    override fun doEnable() {
+        Bukkit.getOnlinePlayers().forEach { onPlayerJoin(it) }
+        startTasks()
         listener = PlayTimeModuleListener(this)
         registerListener(listener)
     }
@@ -51,13 +80,18 @@ class PlayTimeModule : AbstractModule() {
 
     override fun doReload() {
         loadPlayTimeConfig()
+        startTasks()
     }
 
     override fun getCommandHandler(): SubCommandHandler = PlayTimeModuleCommand(this)
     override fun getDescription(): String = "在线时长统计"
 
     private fun loadPlayTimeConfig() {
-        saveIntervalTicks = getConfigLong("save-interval-ticks", 6000L)
+        saveIntervalTicks = getConfigLong("save-interval-ticks", 1200L).coerceAtLeast(20L)
+        accrueIntervalTicks = getConfigLong("accrue-interval-ticks", 20L).coerceAtLeast(1L)
+        compactIntervalMinutes = getConfigLong("rollup.compact-interval-minutes", 60L).coerceAtLeast(1L)
+        // 保留期至少覆盖两个完整的月，保证重新聚合时不会遇到已删除的日数据
+        retentionDays = getConfigInt("rollup.daily-retention-days", 0).let { if (it <= 0) 0 else it.coerceAtLeast(62) }
         val timezoneStr = getConfigString("timezone", "Asia/Shanghai")
         timezone = try { ZoneId.of(timezoneStr) } catch (e: Exception) { ZoneId.systemDefault() }
     }
@@ -70,98 +104,185 @@ class PlayTimeModule : AbstractModule() {
         """.trimIndent())
         DatabaseManager.createIndex("CREATE INDEX IF NOT EXISTS idx_playtime_uuid ON $tableName(player_uuid)")
         DatabaseManager.createIndex("CREATE INDEX IF NOT EXISTS idx_playtime_date ON $tableName(record_date)")
+        rollups = PlayTimeRollups(tableName)
+        rollups.createTables()
+    }
+
+    /**
+     * 启动时把当日记录载入排行榜，之后玩家加入不再查询数据库
+     */
+    private fun loadToday() {
+        val today = LocalDate.now(timezone)
+        val rows = DatabaseManager.query(
+            "SELECT player_uuid, play_seconds FROM $tableName WHERE record_date = ?",
+            { stmt -> stmt.setString(1, today.toString()) }
+        ) { rs ->
+            val list = mutableListOf<Pair<UUID, Long>>()
+            while (rs.next()) list.add(UUID.fromString(rs.getString("player_uuid")) to rs.getLong("play_seconds"))
+            list
+        } ?: emptyList()
+        synchronized(lock) {
+            currentDate = today
+            leaderboard.clear()
+            rows.forEach { (uuid, seconds) -> leaderboard.update(uuid, seconds) }
+        }
     }
 
-    private fun startSaveTask() {
-        Bukkit.getAsyncScheduler().runAtFixedRate(context.plugin, { _ -> saveAllOnlinePlayers() },
+    private fun startTasks() {
+        tasks.forEach { it.cancel() }
+        tasks.clear()
+        val scheduler = Bukkit.getAsyncScheduler()
+        tasks += scheduler.runAtFixedRate(context.plugin, { _ -> accrueAll() },
+            accrueIntervalTicks * 50, accrueIntervalTicks * 50, TimeUnit.MILLISECONDS)
+        tasks += scheduler.runAtFixedRate(context.plugin, { _ -> flush() },
             saveIntervalTicks * 50, saveIntervalTicks * 50, TimeUnit.MILLISECONDS)
+        tasks += scheduler.runAtFixedRate(context.plugin, { _ -> compact() },
+            1, compactIntervalMinutes, TimeUnit.MINUTES)
     }
 
     fun onPlayerJoin(player: Player) {
-        val uuid = player.uniqueId
-        sessionStartTime[uuid] = System.currentTimeMillis()
-        loadPlayerData(uuid, LocalDate.now(timezone))
+        synchronized(lock) {
+            sessions.putIfAbsent(player.uniqueId, Session(System.currentTimeMillis()))
+        }
     }
 
     fun onPlayerQuit(player: Player) {
-        val uuid = player.uniqueId
-        savePlayerData(uuid)
-        sessionStartTime.remove(uuid)
-        dailyPlayTime.remove(uuid)
-        lastRecordDate.remove(uuid)
+        val now = System.currentTimeMillis()
+        synchronized(lock) {
+            rolloverIfNeeded()
+            val session = sessions.remove(player.uniqueId) ?: return
+            accrue(player.uniqueId, session, now)
+        }
     }
 
-    fun getTodayPlayTime(uuid: UUID): Long {
-        val today = LocalDate.now(timezone)
-        val recordDate = lastRecordDate[uuid]
-        if (recordDate != null && recordDate != today) {
-            dailyPlayTime[uuid] = 0L
-            lastRecordDate[uuid] = today
-            sessionStartTime[uuid] = System.currentTimeMillis()
+    // ==================== 累加 ====================
+
+    private fun accrueAll() {
+        val now = System.currentTimeMillis()
+        synchronized(lock) {
+            rolloverIfNeeded()
+            sessions.forEach { (uuid, session) -> accrue(uuid, session, now) }
         }
-        val accumulated = dailyPlayTime[uuid] ?: 0L
-        val sessionStart = sessionStartTime[uuid]
-        return if (sessionStart != null) accumulated + (System.currentTimeMillis() - sessionStart) / 1000 else accumulated
     }
 
-    fun getTodayPlayTimeFormatted(uuid: UUID): String = formatDuration(getTodayPlayTime(uuid))
+    /** 调用方需持有 lock */
+    private fun accrue(uuid: UUID, session: Session, now: Long) {
+        val elapsed = (now - session.lastAccrual).coerceAtLeast(0L) + session.carryMs
+        session.lastAccrual = now
+        session.carryMs = elapsed % 1000
+        addSeconds(uuid, elapsed / 1000)
+    }
+
+    /**
+     * 累加到当前日期，更新排行榜并标记待写入（调用方需持有 lock）
+     */
+    private fun addSeconds(uuid: UUID, seconds: Long) {
+        if (seconds <= 0) return
+        val total = (leaderboard.get(uuid) ?: 0L) + seconds
+        leaderboard.update(uuid, total)
+        dirtyRows[uuid to currentDate] = total
+    }
 
-    fun getTodayLeaderboard(limit: Int = 10): List<Pair<UUID, Long>> {
+    /**
+     * 日期变化时把零点前的部分结算到旧日期（写入待写入集合），然后清空当日排行榜（调用方需持有 lock）
+     */
+    private fun rolloverIfNeeded() {
         val today = LocalDate.now(timezone)
-        val result = DatabaseManager.query(
-            "SELECT player_uuid, play_seconds FROM $tableName WHERE record_date = ? ORDER BY play_seconds DESC LIMIT ?",
-            { stmt ->
-                stmt.setString(1, today.toString())
-                stmt.setInt(2, limit)
+        if (today == currentDate) return
+        val midnight = today.atStartOfDay(timezone).toInstant().toEpochMilli()
+        sessions.forEach { (uuid, session) ->
+            if (session.lastAccrual < midnight) {
+                val elapsed = midnight - session.lastAccrual + session.carryMs
+                addSeconds(uuid, elapsed / 1000)
+                session.lastAccrual = midnight
+                session.carryMs = 0L
             }
-        ) { rs ->
-            val list = mutableListOf<Pair<UUID, Long>>()
-            while (rs.next()) {
-                val uuid = UUID.fromString(rs.getString("player_uuid"))
-                val seconds = if (sessionStartTime.containsKey(uuid)) getTodayPlayTime(uuid) else rs.getLong("play_seconds")
-                list.add(uuid to seconds)
+        }
+        currentDate = today
+        leaderboard.clear()
+    }
+
+    // ==================== 写入 ====================
+
+    /**
+     * 把有变化的记录在一个事务中写入日表（数据库线程）
+     */
+    private fun flush() {
+        val rows = synchronized(lock) {
+            if (dirtyRows.isEmpty()) return
+            dirtyRows.entries.map { Triple(it.key.first, it.key.second, it.value) }.also { dirtyRows.clear() }
+        }
+        DatabaseManager.getExecutor().execute { writeRows(rows) }
+    }
+
+    private fun writeRows(rows: List<Triple<UUID, LocalDate, Long>>) {
+        val now = System.currentTimeMillis()
+        val ok = DatabaseManager.updateBatch(upsertSql, rows) { stmt, (uuid, date, seconds) ->
+            stmt.setString(1, uuid.toString())
+            stmt.setString(2, date.toString())
+            stmt.setLong(3, seconds)
+            stmt.setLong(4, now)
+        }
+        synchronized(lock) {
+            if (ok) {
+                rows.forEach { dirtyDates.add(it.second) }
+            } else {
+                // 失败时放回待写入集合（期间已有更新的值优先）
+                rows.forEach { (uuid, date, seconds) -> dirtyRows.putIfAbsent(uuid to date, seconds) }
             }
-            list
-        } ?: emptyList()
-        return result.sortedByDescending { it.second }.take(limit)
+        }
     }
 
-    private fun loadPlayerData(uuid: UUID, date: LocalDate) {
+    /**
+     * 压缩周 / 月汇总（数据库线程）
+     */
+    private fun compact() {
         DatabaseManager.getExecutor().execute {
-            val seconds = DatabaseManager.query(
-                "SELECT play_seconds FROM $tableName WHERE player_uuid = ? AND record_date = ?",
-                { stmt ->
-                    stmt.setString(1, uuid.toString())
-                    stmt.setString(2, date.toString())
-                }
-            ) { rs ->
-                if (rs.next()) rs.getLong("play_seconds") else 0L
-            } ?: 0L
-            dailyPlayTime[uuid] = seconds
-            lastRecordDate[uuid] = date
+            val dates = synchronized(lock) { dirtyDates.toList().also { dirtyDates.clear() } }
+            try {
+                val pruned = rollups.compact(dates, LocalDate.now(timezone), retentionDays)
+                if (pruned > 0) logInfo("已清理 $pruned 条过期的每日在线时长记录")
+            } catch (e: Exception) {
+                synchronized(lock) { dirtyDates.addAll(dates) }
+                logWarning("汇总在线时长失败: ${e.message}")
+            }
         }
     }
 
-    private fun savePlayerData(uuid: UUID) {
-        val today = LocalDate.now(timezone)
-        val totalSeconds = getTodayPlayTime(uuid)
+    // ==================== 查询 ====================
+
+    fun getTodayPlayTime(uuid: UUID): Long {
         val now = System.currentTimeMillis()
-        dailyPlayTime[uuid] = totalSeconds
-        sessionStartTime[uuid] = now
-        DatabaseManager.getExecutor().execute {
-            DatabaseManager.update(
-                "INSERT INTO $tableName (player_uuid, record_date, play_seconds, last_update) VALUES (?, ?, ?, ?) ON CONFLICT(player_uuid, record_date) DO UPDATE SET play_seconds = excluded.play_seconds, last_update = excluded.last_update"
-            ) { stmt ->
-                stmt.setString(1, uuid.toString())
-                stmt.setString(2, today.toString())
-                stmt.setLong(3, totalSeconds)
-                stmt.setLong(4, now)
+        synchronized(lock) {
+            val recorded = leaderboard.get(uuid) ?: 0L
+            val session = sessions[uuid] ?: return recorded
+            // 日期已变化但尚未结算时，今日时长从零点算起
+            if (LocalDate.now(timezone) != currentDate) {
+                val midnight = LocalDate.now(timezone).atStartOfDay(timezone).toInstant().toEpochMilli()
+                return (now - maxOf(midnight, session.lastAccrual)).coerceAtLeast(0L) / 1000
             }
+            return recorded + ((now - session.lastAccrual).coerceAtLeast(0L) + session.carryMs) / 1000
         }
     }
 
-    private fun saveAllOnlinePlayers() {
-        Bukkit.getOnlinePlayers().forEach { savePlayerData(it.uniqueId) }
+    fun getTodayPlayTimeFormatted(uuid: UUID): String = formatDuration(getTodayPlayTime(uuid))
+
+    /**
+     * 当日排行榜（内存，数据截至上次结算）
+     */
+    fun getTodayLeaderboard(limit: Int = 10): List<Pair<UUID, Long>> = leaderboard.top(limit)
+
+    /**
+     * 当日排名（从 1 开始），今日没有在线记录时返回 null
+     */
+    fun getTodayRank(uuid: UUID): Int? = leaderboard.rank(uuid)
+
+    /**
+     * 本周 / 本月排行榜（异步读取汇总表，数据截至上次压缩）
+     */
+    fun getPeriodLeaderboard(period: PlayTimeRollups.Period, limit: Int): CompletableFuture<List<Pair<UUID, Long>>> {
+        val today = LocalDate.now(timezone)
+        return CompletableFuture.supplyAsync({ rollups.top(period, today, limit) }, DatabaseManager.getReadExecutor())
     }
 
     fun formatDuration(seconds: Long): String {
@@ -173,24 +294,22 @@ class PlayTimeModule : AbstractModule() {
 
     fun getModuleMessage(key: String, vararg replacements: Pair<String, String>): String = getMessage(key, *replacements)
 
+    /**
+     * 结算所有在线玩家，在数据库线程上以一个事务写入剩余记录
+     */
     private fun shutdown() {
-        val today = LocalDate.now(timezone)
-        val now = System.currentTimeMillis()
-        for (player in Bukkit.getOnlinePlayers()) {
-            val uuid = player.uniqueId
-            val totalSeconds = getTodayPlayTime(uuid)
-            DatabaseManager.update(
-                "INSERT INTO $tableName (player_uuid, record_date, play_seconds, last_update) VALUES (?, ?, ?, ?) ON CONFLICT(player_uuid, record_date) DO UPDATE SET play_seconds = excluded.play_seconds, last_update = excluded.last_update"
-            ) { stmt ->
-                stmt.setString(1, uuid.toString())
-                stmt.setString(2, today.toString())
-                stmt.setLong(3, totalSeconds)
-                stmt.setLong(4, now)
-            }
+        tasks.forEach { it.cancel() }
+        tasks.clear()
+        accrueAll()
+        val rows = synchronized(lock) {
+            val list = dirtyRows.entries.map { Triple(it.key.first, it.key.second, it.value) }
+            dirtyRows.clear()
+            sessions.clear()
+            leaderboard.clear()
+            list
         }
-        sessionStartTime.clear()
-        dailyPlayTime.clear()
-        lastRecordDate.clear()
+        // 数据库关闭时会等待已提交的任务完成
+        if (rows.isNotEmpty()) DatabaseManager.getExecutor().execute { writeRows(rows) }
     }
 }
 
@@ -224,10 +343,16 @@ class PlayTimeModuleCommand(private val module: PlayTimeModule) : SubCommandHand
 
     private fun handleTop(sender: CommandSender, args: Array<out String>) {
         if (!sender.hasPermission("tsl.playtime.top")) { sender.sendMessage("§c无权限"); return }
-        val limit = if (args.size > 1) args[1].toIntOrNull()?.coerceIn(1, 20) ?: 10 else 10
-        val leaderboard = module.getTodayLeaderboard(limit)
-        if (leaderboard.isEmpty()) { sender.sendMessage("§e今日暂无在线时长数据"); return }
-        sender.sendMessage("§6========== 今日在线时长排行榜 ==========")
+        val period = when (args.getOrNull(1)?.lowercase()) { "week" -> PlayTimeRollups.Period.WEEK; "month" -> PlayTimeRollups.Period.MONTH; else -> null }
+        val limitArg = if (period != null) args.getOrNull(2) else args.getOrNull(1)
+        val limit = limitArg?.toIntOrNull()?.coerceIn(1, 20) ?: 10
+        if (period == null) { showLeaderboard(sender, "今日", module.getTodayLeaderboard(limit)); return }
+        module.getPeriodLeaderboard(period, limit).thenAccept { showLeaderboard(sender, period.label, it) }
+    }
+
+    private fun showLeaderboard(sender: CommandSender, label: String, leaderboard: List<Pair<UUID, Long>>) {
+        if (leaderboard.isEmpty()) { sender.sendMessage("§e${label}暂无在线时长数据"); return }
+        sender.sendMessage("§6========== ${label}在线时长排行榜 ==========")
         leaderboard.forEachIndexed { index, (uuid, seconds) ->
             val playerName = Bukkit.getOfflinePlayer(uuid).name ?: "Unknown"
             sender.sendMessage("§e${index + 1}. §a$playerName §7- §f${module.formatDuration(seconds)}")
@@ -239,12 +364,14 @@ class PlayTimeModuleCommand(private val module: PlayTimeModule) : SubCommandHand
         sender.sendMessage("§e/tsl playtime §7- 查看自己今日在线时长")
         sender.sendMessage("§e/tsl playtime check <玩家> §7- 查看指定玩家在线时长")
         sender.sendMessage("§e/tsl playtime top [数量] §7- 查看今日排行榜")
+        sender.sendMessage("§e/tsl playtime top <week|month> [数量] §7- 查看本周 / 本月排行榜")
     }
 
     override fun tabComplete(sender: CommandSender, command: Command, label: String, args: Array<out String>): List<String> {
         return when (args.size) {
             1 -> listOf("check", "top", "help").filter { it.startsWith(args[0], ignoreCase = true) }
-            2 -> when (args[0].lowercase()) { "check" -> Bukkit.getOnlinePlayers().map { it.name }.filter { it.startsWith(args[1], ignoreCase = true) }; "top" -> listOf("5", "10", "20").filter { it.startsWith(args[1]) }; else -> emptyList() }
+            2 -> when (args[0].lowercase()) { "check" -> Bukkit.getOnlinePlayers().map { it.name }.filter { it.startsWith(args[1], ignoreCase = true) }; "top" -> listOf("week", "month", "5", "10", "20").filter { it.startsWith(args[1], ignoreCase = true) }; else -> emptyList() }
+            3 -> if (args[0].equals("top", true) && args[1].lowercase() in listOf("week", "month")) listOf("5", "10", "20").filter { it.startsWith(args[2]) } else emptyList()
             else -> emptyList()
         }
     }
@@ -0,0 +1,114 @@
+package org.tsl.tSLplugins.modules.playtime
+
+import org.tsl.tSLplugins.service.DatabaseManager
+import java.time.DayOfWeek
+import java.time.LocalDate
+import java.time.temporal.TemporalAdjusters
+import java.util.UUID
+
+/**
+ * 在线时长周 / 月汇总
+ *
+ * 汇总表由日表聚合得到，在数据库线程上定期压缩：
+ * - 只重新计算有新数据的周 / 月（从该周周一、该月 1 日起聚合）
+ * - 汇总表为空时从日表完整回填一次
+ * - 可选地删除早于保留期的日表数据（按周 / 月边界对齐，已计入汇总）
+ *
+ * 周以周一为起点，周键为周一的日期（yyyy-MM-dd），月键为 yyyy-MM。
+ */
+class PlayTimeRollups(private val dailyTable: String) {
+
+    enum class Period(val label: String) { WEEK("本周"), MONTH("本月") }
+
+    private val prefix: String get() = DatabaseManager.getTablePrefix()
+    private val weeklyTable: String get() = "${prefix}playtime_weekly"
+    private val monthlyTable: String get() = "${prefix}playtime_monthly"
+
+    fun createTables() {
+        DatabaseManager.createTable("""
+            CREATE TABLE IF NOT EXISTS $weeklyTable (
+                player_uuid TEXT NOT NULL, week_start TEXT NOT NULL, play_seconds INTEGER NOT NULL DEFAULT 0,
+                last_update INTEGER NOT NULL, PRIMARY KEY (player_uuid, week_start))
+        """.trimIndent())
+        DatabaseManager.createTable("""
+            CREATE TABLE IF NOT EXISTS $monthlyTable (
+                player_uuid TEXT NOT NULL, month TEXT NOT NULL, play_seconds INTEGER NOT NULL DEFAULT 0,
+                last_update INTEGER NOT NULL, PRIMARY KEY (player_uuid, month))
+        """.trimIndent())
+        DatabaseManager.createIndex("CREATE INDEX IF NOT EXISTS idx_playtime_weekly_period ON $weeklyTable(week_start, play_seconds)")
+        DatabaseManager.createIndex("CREATE INDEX IF NOT EXISTS idx_playtime_monthly_period ON $monthlyTable(month, play_seconds)")
+    }
+
+    /**
+     * 压缩（在数据库线程上调用）
+     *
+     * @param dirtyDates 自上次压缩以来有写入的日期
+     * @param retentionDays 日表保留天数，0 为不删除
+     * @return 删除的日表行数
+     */
+    fun compact(dirtyDates: Collection<LocalDate>, today: LocalDate, retentionDays: Int): Int {
+        val now = System.currentTimeMillis()
+        if (isEmpty()) {
+            rebuild(weeklyTable, "week_start", WEEK_EXPR, "0000-01-01", now)
+            rebuild(monthlyTable, "month", MONTH_EXPR, "0000-01-01", now)
+        } else if (dirtyDates.isNotEmpty()) {
+            val earliest = dirtyDates.min()
+            rebuild(weeklyTable, "week_start", WEEK_EXPR, weekStart(earliest).toString(), now)
+            rebuild(monthlyTable, "month", MONTH_EXPR, earliest.withDayOfMonth(1).toString(), now)
+        }
+
+        if (retentionDays <= 0) return 0
+        // 对齐到周 / 月起点，保证之后的重新聚合不会遇到被删掉一部分的周期
+        val cutoff = today.minusDays(retentionDays.toLong())
+        val alignedCutoff = minOf(weekStart(cutoff), cutoff.withDayOfMonth(1))
+        return DatabaseManager.update("DELETE FROM $dailyTable WHERE record_date < ?") { stmt ->
+            stmt.setString(1, alignedCutoff.toString())
+        }.coerceAtLeast(0)
+    }
+
+    /**
+     * 周期排行榜（读取汇总表，数据截至上次压缩）
+     */
+    fun top(period: Period, date: LocalDate, limit: Int): List<Pair<UUID, Long>> {
+        val (table, column, key) = when (period) {
+            Period.WEEK -> Triple(weeklyTable, "week_start", weekStart(date).toString())
+            Period.MONTH -> Triple(monthlyTable, "month", date.toString().substring(0, 7))
+        }
+        return DatabaseManager.query(
+            "SELECT player_uuid, play_seconds FROM $table WHERE $column = ? ORDER BY play_seconds DESC LIMIT ?",
+            { stmt ->
+                stmt.setString(1, key)
+                stmt.setInt(2, limit)
+            }
+        ) { rs ->
+            val list = mutableListOf<Pair<UUID, Long>>()
+            while (rs.next()) list.add(UUID.fromString(rs.getString("player_uuid")) to rs.getLong("play_seconds"))
+            list
+        } ?: emptyList()
+    }
+
+    private fun isEmpty(): Boolean {
+        val count = DatabaseManager.query("SELECT COUNT(*) FROM $monthlyTable", { }) { rs -> if (rs.next()) rs.getLong(1) else 0L }
+        return count == 0L
+    }
+
+    private fun rebuild(table: String, column: String, keyExpr: String, fromDate: String, now: Long) {
+        DatabaseManager.update("""
+            INSERT INTO $table (player_uuid, $column, play_seconds, last_update)
+            SELECT player_uuid, $keyExpr, SUM(play_seconds), ? FROM $dailyTable
+            WHERE record_date >= ? GROUP BY player_uuid, $keyExpr
+            ON CONFLICT(player_uuid, $column) DO UPDATE SET play_seconds = excluded.play_seconds, last_update = excluded.last_update
+        """.trimIndent()) { stmt ->
+            stmt.setLong(1, now)
+            stmt.setString(2, fromDate)
+        }
+    }
+
+    companion object {
+        /** 日期所在周的周一 */
+        private const val WEEK_EXPR = "date(record_date, '-' || ((CAST(strftime('%w', record_date) AS INTEGER) + 6) % 7) || ' days')"
+        private const val MONTH_EXPR = "substr(record_date, 1, 7)"
+
+        fun weekStart(date: LocalDate): LocalDate = date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+    }
+}
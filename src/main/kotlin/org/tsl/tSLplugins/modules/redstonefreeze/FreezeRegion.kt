@@ -0,0 +1,145 @@
+package org.tsl.tSLplugins.modules.redstonefreeze
+
+import org.bukkit.Chunk
+import org.bukkit.configuration.file.YamlConfiguration
+import java.io.File
+import java.time.LocalTime
+import java.util.logging.Logger
+
+/**
+ * 冻结时间窗口（每日，服务器本地时间，可跨零点）
+ *
+ * @param startMinute 开始（当日分钟数，含）
+ * @param endMinute 结束（当日分钟数，不含）
+ */
+data class FreezeWindow(val startMinute: Int, val endMinute: Int) {
+
+    fun contains(minuteOfDay: Int): Boolean {
+        return if (startMinute <= endMinute) {
+            minuteOfDay in startMinute until endMinute
+        } else {
+            minuteOfDay >= startMinute || minuteOfDay < endMinute
+        }
+    }
+
+    override fun toString(): String = "${format(startMinute)}-${format(endMinute)}"
+
+    companion object {
+        /**
+         * 解析 "HH:mm-HH:mm"
+         */
+        fun parse(text: String): FreezeWindow? {
+            val parts = text.split('-')
+            if (parts.size != 2) return null
+            val start = parseTime(parts[0]) ?: return null
+            val end = parseTime(parts[1]) ?: return null
+            if (start == end) return null
+            return FreezeWindow(start, end)
+        }
+
+        private fun parseTime(text: String): Int? {
+            val parts = text.trim().split(':')
+            if (parts.size != 2) return null
+            val hour = parts[0].toIntOrNull() ?: return null
+            val minute = parts[1].toIntOrNull() ?: return null
+            if (hour !in 0..24 || minute !in 0..59 || (hour == 24 && minute != 0)) return null
+            return hour * 60 + minute
+        }
+
+        private fun format(minute: Int): String = "%02d:%02d".format(minute / 60, minute % 60)
+    }
+}
+
+/**
+ * 冻结区域（以区块为单位的圆形区域）
+ *
+ * @param windows 冻结时间窗口，为空表示始终冻结
+ */
+data class FreezeRegion(
+    val name: String,
+    val worldName: String,
+    val centerChunkX: Int,
+    val centerChunkZ: Int,
+    val radius: Int,
+    val windows: List<FreezeWindow> = emptyList()
+) {
+
+    /**
+     * 当前时间是否处于冻结状态
+     */
+    fun isActiveAt(time: LocalTime): Boolean {
+        if (windows.isEmpty()) return true
+        val minute = time.hour * 60 + time.minute
+        return windows.any { it.contains(minute) }
+    }
+
+    /**
+     * 将区域内的区块键加入集合
+     */
+    fun collectChunks(target: LongOpenHashSet) {
+        val radiusSquared = radius * radius
+        for (cx in (centerChunkX - radius)..(centerChunkX + radius)) {
+            for (cz in (centerChunkZ - radius)..(centerChunkZ + radius)) {
+                val dx = cx - centerChunkX; val dz = cz - centerChunkZ
+                if (dx * dx + dz * dz <= radiusSquared) target.add(Chunk.getChunkKey(cx, cz))
+            }
+        }
+    }
+
+    /**
+     * 区域内区块数量（按圆形计算，不去重）
+     */
+    fun chunkCount(): Int {
+        var count = 0
+        val radiusSquared = radius * radius
+        for (dx in -radius..radius) for (dz in -radius..radius) if (dx * dx + dz * dz <= radiusSquared) count++
+        return count
+    }
+}
+
+/**
+ * 冻结区域持久化（redstone-freeze.yml）
+ */
+class FreezeRegionStore(private val file: File, private val logger: Logger) {
+
+    fun load(): List<FreezeRegion> {
+        if (!file.exists()) return emptyList()
+        val yaml = YamlConfiguration.loadConfiguration(file)
+        val section = yaml.getConfigurationSection("regions") ?: return emptyList()
+        return section.getKeys(false).mapNotNull { name ->
+            val region = section.getConfigurationSection(name) ?: return@mapNotNull null
+            val world = region.getString("world") ?: return@mapNotNull null
+            FreezeRegion(
+                name = name,
+                worldName = world,
+                centerChunkX = region.getInt("center-chunk-x"),
+                centerChunkZ = region.getInt("center-chunk-z"),
+                radius = region.getInt("radius", 1),
+                windows = region.getStringList("windows").mapNotNull { text ->
+                    FreezeWindow.parse(text) ?: run {
+                        logger.warning("[RedstoneFreeze] 区域 $name 的时间窗口格式无效: $text")
+                        null
+                    }
+                }
+            )
+        }
+    }
+
+    fun save(regions: Collection<FreezeRegion>) {
+        val yaml = YamlConfiguration()
+        regions.forEach { region ->
+            val path = "regions.${region.name}"
+            yaml.set("$path.world", region.worldName)
+            yaml.set("$path.center-chunk-x", region.centerChunkX)
+            yaml.set("$path.center-chunk-z", region.centerChunkZ)
+            yaml.set("$path.radius", region.radius)
+            yaml.set("$path.windows", region.windows.map { it.toString() })
+        }
+        try {
+            file.parentFile?.mkdirs()
+            yaml.save(file)
+        } catch (e: Exception) {
+            logger.warning("[RedstoneFreeze] 保存冻结区域失败: ${e.message}")
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.tsl.tSLplugins.modules.redstonefreeze
+
+/**
+ * long 开放寻址哈希集合（线性探测，无装箱）
+ *
+ * 用于物理事件热路径上的区块键查询：contains 不分配任何对象。
+ * 只支持添加，构建完成后作为不可变快照发布，读取无需同步。
+ */
+class LongOpenHashSet(expectedSize: Int = 16) {
+
+    private var keys: LongArray
+    private var mask: Int
+    private var hasZero = false
+
+    /** 元素数量 */
+    var size: Int = 0
+        private set
+
+    init {
+        val capacity = tableSizeFor(expectedSize)
+        keys = LongArray(capacity)
+        mask = capacity - 1
+    }
+
+    /**
+     * 添加元素
+     * @return 是否为新元素
+     */
+    fun add(value: Long): Boolean {
+        // 0 作为空槽标记，单独记录
+        if (value == 0L) {
+            if (hasZero) return false
+            hasZero = true
+            size++
+            return true
+        }
+
+        var index = mix(value) and mask
+        while (true) {
+            val current = keys[index]
+            if (current == 0L) break
+            if (current == value) return false
+            index = (index + 1) and mask
+        }
+        keys[index] = value
+        size++
+        if (size * 2 > keys.size) rehash(keys.size * 2)
+        return true
+    }
+
+    /**
+     * 是否包含元素
+     */
+    fun contains(value: Long): Boolean {
+        if (value == 0L) return hasZero
+
+        var index = mix(value) and mask
+        while (true) {
+            val current = keys[index]
+            if (current == 0L) return false
+            if (current == value) return true
+            index = (index + 1) and mask
+        }
+    }
+
+    fun isEmpty(): Boolean = size == 0
+
+    /**
+     * 遍历所有元素
+     */
+    fun forEach(action: (Long) -> Unit) {
+        if (hasZero) action(0L)
+        for (value in keys) {
+            if (value != 0L) action(value)
+        }
+    }
+
+    private fun rehash(newCapacity: Int) {
+        val old = keys
+        keys = LongArray(newCapacity)
+        mask = newCapacity - 1
+        for (value in old) {
+            if (value == 0L) continue
+            var index = mix(value) and mask
+            while (keys[index] != 0L) {
+                index = (index + 1) and mask
+            }
+            keys[index] = value
+        }
+    }
+
+    companion object {
+        /** 保持负载因子不超过 0.5 的最小 2 的幂容量 */
+        private fun tableSizeFor(expectedSize: Int): Int {
+            val target = (expectedSize.coerceAtLeast(4).toLong() * 2).coerceAtMost(1L shl 30).toInt()
+            return Integer.highestOneBit(target - 1) shl 1
+        }
+
+        /** 区块键高低 32 位分别是 z/x，混合后取低位分布更均匀 */
+        private fun mix(value: Long): Int {
+            val h = value * -0x61c8864680b583ebL
+            return (h xor (h ushr 32)).toInt()
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package org.tsl.tSLplugins.modules.redstonefreeze
+
+import org.bukkit.Bukkit
+import org.bukkit.ChunkSnapshot
+import org.bukkit.Material
+import org.bukkit.World
+import org.bukkit.block.Block
+import org.bukkit.plugin.Plugin
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * 解冻后的红石元件重扫
+ *
+ * 1. 跳过已卸载的区块，在区块所属的区域线程上拍已加载区块的 ChunkSnapshot
+ * 2. 在异步线程上扫描快照，找出活塞、红石线、中继器等元件
+ * 3. 回到区块所属的区域线程分片触发邻居更新：每 tick 最多 maxUpdatesPerTick 个，
+ *    且单次不超过 tickBudgetMs 毫秒，超出部分顺延到下一 tick
+ *
+ * 同时最多 maxConcurrentChunks 个区块处于快照/扫描中。
+ */
+class PistonRescanner(private val plugin: Plugin) {
+
+    data class Settings(
+        val maxUpdatesPerTick: Int = 256,
+        val tickBudgetMs: Long = 2L,
+        val maxConcurrentChunks: Int = 16
+    )
+
+    /**
+     * 重扫进度
+     */
+    data class Progress(
+        val totalChunks: Int,
+        val scannedChunks: Int,
+        val foundComponents: Int,
+        val appliedUpdates: Int,
+        val finished: Boolean
+    )
+
+    @Volatile
+    var settings = Settings()
+
+    private val jobs = ConcurrentLinkedQueue<Job>()
+
+    /**
+     * 开始重扫
+     *
+     * @param chunkKeys 区块键（Chunk.getChunkKey）
+     * @param onProgress 进度回调（任意线程，扫描期间约每秒一次，完成时一次）
+     */
+    fun rescan(world: World, chunkKeys: Collection<Long>, onProgress: (Progress) -> Unit) {
+        val job = Job(world, chunkKeys.toList(), onProgress)
+        jobs.add(job)
+        job.start()
+    }
+
+    /**
+     * 取消所有进行中的重扫（模块禁用时调用）
+     */
+    fun cancelAll() {
+        jobs.forEach { it.cancelled.set(true) }
+        jobs.clear()
+    }
+
+    fun getActiveJobCount(): Int = jobs.size
+
+    /**
+     * 一个区块中找到的元件位置（打包为 Int：y 高位，x/z 各 4 位）
+     */
+    private class ChunkWork(val chunkX: Int, val chunkZ: Int, val positions: IntArray) {
+        var next = 0
+    }
+
+    private inner class Job(
+        private val world: World,
+        chunkKeys: List<Long>,
+        private val onProgress: (Progress) -> Unit
+    ) {
+        val cancelled = AtomicBoolean(false)
+
+        private val pending = ConcurrentLinkedQueue(chunkKeys)
+        private val total = chunkKeys.size
+        private val inFlight = AtomicInteger()
+        private val scanned = AtomicInteger()
+        private val found = AtomicInteger()
+        private val applied = AtomicInteger()
+
+        private val applyQueue = ConcurrentLinkedQueue<ChunkWork>()
+        private val applying = AtomicBoolean(false)
+        private val finished = AtomicBoolean(false)
+        @Volatile private var lastReportAt = 0L
+
+        fun start() {
+            if (total == 0) {
+                finish()
+                return
+            }
+            pump()
+        }
+
+        /**
+         * 补充加载中的区块，保持并发数
+         */
+        private fun pump() {
+            var skipped = false
+            while (!cancelled.get() && inFlight.get() < settings.maxConcurrentChunks) {
+                val key = pending.poll() ?: break
+                val chunkX = key.toInt()
+                val chunkZ = (key shr 32).toInt()
+                // 已卸载的区块没有在运行的红石，下次加载时会自行计算，不为重扫去加载它
+                if (!world.isChunkLoaded(chunkX, chunkZ)) {
+                    scanned.incrementAndGet()
+                    skipped = true
+                    continue
+                }
+                inFlight.incrementAndGet()
+                snapshotChunk(chunkX, chunkZ)
+            }
+            if (skipped) checkFinished()
+        }
+
+        private fun snapshotChunk(chunkX: Int, chunkZ: Int) {
+            world.getChunkAtAsync(chunkX, chunkZ, false).whenComplete { chunk, error ->
+                if (chunk == null || error != null || cancelled.get()) {
+                    onScanned(null)
+                    return@whenComplete
+                }
+                // 快照必须在区块所属的区域线程上拍
+                Bukkit.getRegionScheduler().run(plugin, world, chunkX, chunkZ) { _ ->
+                    val snapshot = try {
+                        chunk.getChunkSnapshot(false, false, false)
+                    } catch (e: Exception) {
+                        null
+                    }
+                    if (snapshot == null) {
+                        onScanned(null)
+                        return@run
+                    }
+                    Bukkit.getAsyncScheduler().runNow(plugin) { _ -> onScanned(scan(snapshot)) }
+                }
+            }
+        }
+
+        private fun onScanned(work: ChunkWork?) {
+            if (work != null && work.positions.isNotEmpty()) {
+                found.addAndGet(work.positions.size)
+                applyQueue.add(work)
+                startApplying()
+            }
+            // 入队之后再计数：否则其他线程的 checkFinished 可能看到全部扫描完成且队列为空而提前结束
+            scanned.incrementAndGet()
+            inFlight.decrementAndGet()
+            report(false)
+            pump()
+            checkFinished()
+        }
+
+        /**
+         * 扫描快照（异步线程）
+         */
+        private fun scan(snapshot: ChunkSnapshot): ChunkWork {
+            val positions = IntArrayBuilder()
+            for (y in world.minHeight until world.maxHeight) {
+                for (x in 0..15) {
+                    for (z in 0..15) {
+                        if (snapshot.getBlockType(x, y, z) in COMPONENTS) {
+                            positions.add((y shl 8) or (x shl 4) or z)
+                        }
+                    }
+                }
+            }
+            return ChunkWork(snapshot.x, snapshot.z, positions.toArray())
+        }
+
+        /**
+         * 依次处理各区块的更新（同一时间只有一个区块在应用，全局受每 tick 上限约束）
+         */
+        private fun startApplying() {
+            if (!applying.compareAndSet(false, true)) return
+            applyNext(0L)
+        }
+
+        private fun applyNext(delayTicks: Long) {
+            val work = applyQueue.peek()
+            if (work == null || cancelled.get()) {
+                applying.set(false)
+                // 释放标记后可能有新区块入队
+                if (applyQueue.isNotEmpty() && !cancelled.get()) startApplying() else checkFinished()
+                return
+            }
+            val task = { applySlice(work) }
+            if (delayTicks <= 0L) {
+                Bukkit.getRegionScheduler().run(plugin, world, work.chunkX, work.chunkZ) { _ -> task() }
+            } else {
+                Bukkit.getRegionScheduler().runDelayed(plugin, world, work.chunkX, work.chunkZ, { _ -> task() }, delayTicks)
+            }
+        }
+
+        private fun applySlice(work: ChunkWork) {
+            val budgetNanos = settings.tickBudgetMs * 1_000_000L
+            val maxUpdates = settings.maxUpdatesPerTick.coerceAtLeast(1)
+            val start = System.nanoTime()
+            var count = 0
+            val baseX = work.chunkX shl 4
+            val baseZ = work.chunkZ shl 4
+
+            while (work.next < work.positions.size && count < maxUpdates && !cancelled.get()) {
+                val packed = work.positions[work.next++]
+                val block = world.getBlockAt(baseX + ((packed shr 4) and 15), packed shr 8, baseZ + (packed and 15))
+                // 快照之后方块可能已变化
+                if (block.type in COMPONENTS && nudge(block)) applied.incrementAndGet()
+                count++
+                if (System.nanoTime() - start > budgetNanos) break
+            }
+            report(false)
+
+            if (work.next >= work.positions.size) {
+                applyQueue.poll()
+                // 本 tick 还有余量时直接处理下一个区块（可能在其他区域线程）
+                applyNext(if (count < maxUpdates && System.nanoTime() - start <= budgetNanos) 0L else 1L)
+            } else {
+                applyNext(1L)
+            }
+        }
+
+        private fun checkFinished() {
+            if (scanned.get() < total || applyQueue.isNotEmpty() || applying.get()) return
+            finish()
+        }
+
+        private fun finish() {
+            if (!finished.compareAndSet(false, true)) return
+            jobs.remove(this)
+            report(true)
+        }
+
+        private fun report(done: Boolean) {
+            val now = System.currentTimeMillis()
+            if (!done && now - lastReportAt < REPORT_INTERVAL_MS) return
+            lastReportAt = now
+            try {
+                onProgress(Progress(total, scanned.get(), found.get(), applied.get(), done))
+            } catch (e: Exception) {
+                plugin.logger.warning("[RedstoneFreeze] 进度回调异常: ${e.message}")
+            }
+        }
+    }
+
+    /**
+     * 触发元件的邻居更新：把相邻的一个空气方块无物理地设为石头，再带物理地设回空气
+     */
+    private fun nudge(block: Block): Boolean {
+        for (face in NEIGHBOR_OFFSETS) {
+            val neighbor = block.getRelative(face[0], face[1], face[2])
+            if (neighbor.type != Material.AIR) continue
+            return try {
+                neighbor.setType(Material.STONE, false)
+                neighbor.setType(Material.AIR, true)
+                true
+            } catch (_: Exception) {
+                false
+            }
+        }
+        return false
+    }
+
+    /**
+     * 无装箱的 Int 动态数组
+     */
+    private class IntArrayBuilder {
+        private var data = IntArray(16)
+        private var size = 0
+
+        fun add(value: Int) {
+            if (size == data.size) data = data.copyOf(size * 2)
+            data[size++] = value
+        }
+
+        fun toArray(): IntArray = data.copyOf(size)
+    }
+
+    companion object {
+        private const val REPORT_INTERVAL_MS = 1000L
+
+        private val NEIGHBOR_OFFSETS = arrayOf(
+            intArrayOf(0, 1, 0), intArrayOf(0, -1, 0), intArrayOf(1, 0, 0),
+            intArrayOf(-1, 0, 0), intArrayOf(0, 0, 1), intArrayOf(0, 0, -1)
+        )
+
+        /**
+         * 解冻后需要重新计算状态的红石元件
+         *
+         * 不含侦测器、发射器、投掷器：[nudge] 会真实地放置再移除方块，
+         * 侦测器会因此输出脉冲，发射器/投掷器在被充能时会因邻居更新而误触发。
+         */
+        private val COMPONENTS: Set<Material> = java.util.EnumSet.of(
+            Material.PISTON, Material.STICKY_PISTON,
+            Material.REDSTONE_WIRE, Material.REPEATER, Material.COMPARATOR,
+            Material.REDSTONE_TORCH, Material.REDSTONE_WALL_TORCH,
+            Material.HOPPER
+        )
+    }
+}
@@ -6,8 +6,9 @@ import net.kyori.adventure.text.Component
 import net.kyori.adventure.text.format.NamedTextColor
 import org.bukkit.Bukkit
 import org.bukkit.Chunk
-import org.bukkit.Material
+import org.bukkit.Location
 import org.bukkit.World
+import org.bukkit.block.Block
 import org.bukkit.command.Command
 import org.bukkit.command.CommandSender
 import org.bukkit.entity.EntityType
@@ -20,10 +21,16 @@ import org.bukkit.event.entity.EntitySpawnEvent
 import org.bukkit.event.entity.ExplosionPrimeEvent
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
+import java.io.File
+import java.time.LocalTime
 import java.util.concurrent.ConcurrentHashMap
 
 /**
  * RedstoneFreeze 模块 - 红石冻结
+ *
+ * 支持多个命名冻结区域，持久化到 redstone-freeze.yml，每个区域可设置每日冻结时间窗口。
+ * 当前生效的区域按世界合并为 [LongOpenHashSet] 快照，物理事件监听器只做一次无分配的哈希查询；
+ * 区域增删或时间窗口切换时整体重建快照。
  */
 class RedstoneFreezeModule : AbstractModule() {
 
@@ -39,29 +46,43 @@ class RedstoneFreezeModule : AbstractModule() {
     private var affectTntPrime = true
     private var affectExplosion = true
     private var affectTntSpawn = true
+    private var rescanOnUnfreeze = true
 
-    @Volatile private var freezeActive = false
-    private val frozenChunks: MutableSet<Long> = ConcurrentHashMap.newKeySet()
-    @Volatile private var frozenWorld: World? = null
-    @Volatile private var freezeCenterX = 0
-    @Volatile private var freezeCenterZ = 0
-    @Volatile private var freezeRadius = 0
+    private val regions: MutableMap<String, FreezeRegion> = ConcurrentHashMap()
+    private lateinit var store: FreezeRegionStore
+
+    /** 世界名 -> 当前冻结的区块键（不可变快照） */
+    @Volatile private var frozenIndex: Map<String, LongOpenHashSet> = emptyMap()
+    @Volatile private var activeRegionNames: Set<String> = emptySet()
     @Volatile private var cachedChunkCount = 0
 
     private var freezeBossBar: BossBar? = null
-    private var bossBarTask: ScheduledTask? = null
+    private var scheduleTask: ScheduledTask? = null
     private val bossBarPlayers: MutableSet<Player> = ConcurrentHashMap.newKeySet()
 
     private lateinit var listener: RedstoneFreezeModuleListener
+    private lateinit var rescanner: PistonRescanner
 
     override fun doEnable() {
+        rescanner = PistonRescanner(context.plugin)
         loadFreezeConfig()
+        store = FreezeRegionStore(File(context.plugin.dataFolder, "redstone-freeze.yml"), context.plugin.logger)
+        regions.clear()
+        store.load().forEach { regions[it.name] = it }
+        if (regions.isNotEmpty()) logInfo("已加载 ${regions.size} 个冻结区域")
+        rebuildIndex()
         listener = RedstoneFreezeModuleListener(this)
         registerListener(listener)
+        // 每秒检查时间窗口并更新 BossBar
+        scheduleTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(context.plugin, { _ -> refreshActiveRegions(); updateBossBarVisibility() }, 20L, 20L)
     }
 
     override fun doDisable() {
-        cancelFreezeInternal()
+        scheduleTask?.cancel(); scheduleTask = null
+        rescanner.cancelAll()
+        removeBossBar()
+        frozenIndex = emptyMap(); activeRegionNames = emptySet(); cachedChunkCount = 0
+        regions.clear()
     }
 
     override fun doReload() {
@@ -81,12 +102,30 @@ class RedstoneFreezeModule : AbstractModule() {
         affectTntPrime = context.plugin.config.getBoolean("redstone-freeze.affected-components.tnt-prime", true)
         affectExplosion = context.plugin.config.getBoolean("redstone-freeze.affected-components.explosion", true)
         affectTntSpawn = context.plugin.config.getBoolean("redstone-freeze.affected-components.tnt-spawn", true)
+        rescanOnUnfreeze = context.plugin.config.getBoolean("redstone-freeze.rescan.on-unfreeze", true)
+        rescanner.settings = PistonRescanner.Settings(
+            maxUpdatesPerTick = context.plugin.config.getInt("redstone-freeze.rescan.max-updates-per-tick", 256),
+            tickBudgetMs = context.plugin.config.getLong("redstone-freeze.rescan.tick-budget-ms", 2L),
+            maxConcurrentChunks = context.plugin.config.getInt("redstone-freeze.rescan.max-concurrent-chunks", 16)
+        )
         logInfo("配置已加载 - 最大半径: $maxRadius")
     }
 
-    fun isFreezeActive() = freezeActive
-    fun isChunkFrozen(chunkKey: Long) = frozenChunks.contains(chunkKey)
-    fun isChunkFrozen(chunk: Chunk) = frozenChunks.contains(chunk.chunkKey)
+    // ==================== 热路径查询 ====================
+
+    fun isFreezeActive() = frozenIndex.isNotEmpty()
+
+    /** 指定世界的区块是否冻结（无对象分配） */
+    fun isChunkFrozen(world: World, chunkX: Int, chunkZ: Int): Boolean {
+        val index = frozenIndex
+        if (index.isEmpty()) return false
+        val set = index[world.name] ?: return false
+        return set.contains(Chunk.getChunkKey(chunkX, chunkZ))
+    }
+
+    fun isFrozen(block: Block) = isChunkFrozen(block.world, block.x shr 4, block.z shr 4)
+    fun isFrozen(location: Location): Boolean { val world = location.world ?: return false; return isChunkFrozen(world, location.blockX shr 4, location.blockZ shr 4) }
+
     fun getMaxRadius() = maxRadius
     fun isRedstoneSignalAffected() = affectRedstoneSignal
     fun isPistonExtendAffected() = affectPistonExtend
@@ -95,93 +134,180 @@ class RedstoneFreezeModule : AbstractModule() {
     fun isTntPrimeAffected() = affectTntPrime
     fun isExplosionAffected() = affectExplosion
     fun isTntSpawnAffected() = affectTntSpawn
-    fun getFreezeInfo(): String? = if (!freezeActive) null else "世界: ${frozenWorld?.name}, 中心: ($freezeCenterX, $freezeCenterZ), 半径: $freezeRadius, 区块数: $cachedChunkCount"
-
-    fun activateFreeze(player: Player, radius: Int): Int {
-        if (freezeActive) cancelFreezeInternal()
-        val world = player.world
-        val playerChunk = player.location.chunk
-        val centerChunkX = playerChunk.x
-        val centerChunkZ = playerChunk.z
-        for (cx in (centerChunkX - radius)..(centerChunkX + radius)) {
-            for (cz in (centerChunkZ - radius)..(centerChunkZ + radius)) {
-                val dx = cx - centerChunkX; val dz = cz - centerChunkZ
-                if (dx * dx + dz * dz <= radius * radius) frozenChunks.add(Chunk.getChunkKey(cx, cz))
-            }
+
+    // ==================== 区域管理 ====================
+
+    fun getRegions(): List<FreezeRegion> = regions.values.sortedBy { it.name }
+    fun getRegion(name: String): FreezeRegion? = regions[name]
+    fun isRegionActive(name: String) = name in activeRegionNames
+    fun getFrozenChunkCount() = cachedChunkCount
+
+    /**
+     * 以玩家所在区块为中心创建（或替换）冻结区域，保留原有的时间窗口
+     * @return 区域内的区块数
+     */
+    fun createRegion(name: String, player: Player, radius: Int): Int {
+        val chunk = player.location.chunk
+        val region = FreezeRegion(name, player.world.name, chunk.x, chunk.z, radius, regions[name]?.windows ?: emptyList())
+        synchronized(regions) { regions[name] = region; saveRegions(); rebuildIndex() }
+        logInfo("冻结区域 $name: ${region.worldName} (${region.centerChunkX}, ${region.centerChunkZ}) 半径 $radius")
+        return region.chunkCount()
+    }
+
+    /** 兼容旧用法：/tsl redstone-freeze <半径> 使用默认区域 */
+    fun activateFreeze(player: Player, radius: Int): Int = createRegion(DEFAULT_REGION, player, radius)
+
+    /**
+     * 删除冻结区域
+     * @return 区域内的区块数，区域不存在时返回 null
+     */
+    fun removeRegion(name: String): Int? {
+        val removed = synchronized(regions) { regions.remove(name)?.also { saveRegions(); rebuildIndex() } } ?: return null
+        return removed.chunkCount()
+    }
+
+    /**
+     * 删除所有冻结区域
+     * @return 此前冻结的区块数
+     */
+    fun cancelFreeze(): Int {
+        val count = cachedChunkCount
+        synchronized(regions) { regions.clear(); saveRegions(); rebuildIndex() }
+        return count
+    }
+
+    /**
+     * 设置区域的时间窗口（空列表表示始终冻结）
+     */
+    fun setRegionWindows(name: String, windows: List<FreezeWindow>): Boolean {
+        synchronized(regions) {
+            val region = regions[name] ?: return false
+            regions[name] = region.copy(windows = windows)
+            saveRegions(); rebuildIndex()
         }
-        frozenWorld = world; freezeCenterX = centerChunkX; freezeCenterZ = centerChunkZ; freezeRadius = radius; cachedChunkCount = frozenChunks.size
-        freezeActive = true
-        createBossBar(); startBossBarTask()
-        logInfo("已冻结 $cachedChunkCount 个区块")
-        return cachedChunkCount
+        return true
     }
 
-    fun cancelFreeze(): Int { val count = cachedChunkCount; cancelFreezeInternal(); return count }
+    private fun saveRegions() = store.save(regions.values.sortedBy { it.name })
 
-    private fun cancelFreezeInternal() {
-        freezeActive = false; stopBossBarTask(); removeBossBar()
-        frozenChunks.clear(); frozenWorld = null; freezeCenterX = 0; freezeCenterZ = 0; freezeRadius = 0; cachedChunkCount = 0
+    /**
+     * 时间窗口切换时重建快照
+     */
+    private fun refreshActiveRegions() {
+        val now = LocalTime.now()
+        val active = regions.values.filter { it.isActiveAt(now) }.mapTo(HashSet()) { it.name }
+        if (active == activeRegionNames) return
+        synchronized(regions) { rebuildIndex() }
     }
 
-    private fun createBossBar() { freezeBossBar = BossBar.bossBar(Component.text(bossBarTitle).color(NamedTextColor.RED), 1.0f, BossBar.Color.BLUE, BossBar.Overlay.PROGRESS) }
-    private fun removeBossBar() { val bar = freezeBossBar ?: return; bossBarPlayers.forEach { try { it.hideBossBar(bar) } catch (_: Exception) {} }; bossBarPlayers.clear(); freezeBossBar = null }
-    private fun startBossBarTask() { bossBarTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(context.plugin, { _ -> updateBossBarVisibility() }, 20L, 20L) }
-    private fun stopBossBarTask() { bossBarTask?.cancel(); bossBarTask = null }
+    /**
+     * 按当前生效的区域重建每个世界的区块集合（调用方持有 regions 锁或处于初始化阶段）
+     */
+    private fun rebuildIndex() {
+        val now = LocalTime.now()
+        val active = regions.values.filter { it.isActiveAt(now) }
+        val index = HashMap<String, LongOpenHashSet>()
+        active.groupBy { it.worldName }.forEach { (worldName, worldRegions) ->
+            val set = LongOpenHashSet(worldRegions.sumOf { it.chunkCount() })
+            worldRegions.forEach { it.collectChunks(set) }
+            index[worldName] = set
+        }
+        val previous = activeRegionNames
+        val previousIndex = frozenIndex
+        val activeNames = active.mapTo(HashSet()) { it.name }
+        frozenIndex = index
+        activeRegionNames = activeNames
+        cachedChunkCount = index.values.sumOf { it.size }
+        (activeNames - previous).filter { regions[it]?.windows?.isNotEmpty() == true }.forEach { logInfo("冻结区域 $it 进入冻结时段") }
+        (previous - activeNames).filter { it in regions }.forEach { logInfo("冻结区域 $it 离开冻结时段") }
+        if (rescanOnUnfreeze) rescanReleased(previousIndex, index)
+    }
+
+    /**
+     * 对解冻的区块重扫红石元件，恢复冻结期间被挂起的状态
+     */
+    private fun rescanReleased(previousIndex: Map<String, LongOpenHashSet>, index: Map<String, LongOpenHashSet>) {
+        previousIndex.forEach { (worldName, previousSet) ->
+            val world = Bukkit.getWorld(worldName) ?: return@forEach
+            val current = index[worldName]
+            val released = ArrayList<Long>()
+            previousSet.forEach { key -> if (current == null || !current.contains(key)) released.add(key) }
+            if (released.isEmpty()) return@forEach
+            logInfo("解冻 ${released.size} 个区块 ($worldName)，开始重扫红石元件")
+            rescanner.rescan(world, released) { progress ->
+                if (progress.finished) logInfo("$worldName 重扫完成: ${progress.scannedChunks} 个区块, 元件 ${progress.foundComponents} 个, 已更新 ${progress.appliedUpdates} 个")
+            }
+        }
+    }
+
+    fun getFreezeInfo(): List<String> = getRegions().map { region ->
+        val state = if (isRegionActive(region.name)) "§a冻结中" else "§7未生效"
+        val windows = if (region.windows.isEmpty()) "全天" else region.windows.joinToString(", ")
+        "${region.name} $state §b世界: ${region.worldName}, 中心区块: (${region.centerChunkX}, ${region.centerChunkZ}), 半径: ${region.radius}, 时段: $windows"
+    }
+
+    // ==================== BossBar ====================
+
+    private fun createBossBar(): BossBar = BossBar.bossBar(Component.text(bossBarTitle).color(NamedTextColor.RED), 1.0f, BossBar.Color.BLUE, BossBar.Overlay.PROGRESS).also { freezeBossBar = it }
+    private fun removeBossBar() { val bar = freezeBossBar ?: return; bossBarPlayers.forEach { player -> player.scheduler.run(context.plugin, { _ -> player.hideBossBar(bar) }, null) }; bossBarPlayers.clear(); freezeBossBar = null }
 
     private fun updateBossBarVisibility() {
-        val bar = freezeBossBar ?: return; val world = frozenWorld ?: return
-        world.players.forEach { player ->
-            val loc = player.location; val chunkKey = Chunk.getChunkKey(loc.blockX shr 4, loc.blockZ shr 4)
-            val isInFrozenArea = frozenChunks.contains(chunkKey)
-            if (isInFrozenArea && !bossBarPlayers.contains(player)) { player.scheduler.run(context.plugin, { _ -> player.showBossBar(bar) }, null); bossBarPlayers.add(player) }
-            else if (!isInFrozenArea && bossBarPlayers.contains(player)) { player.scheduler.run(context.plugin, { _ -> player.hideBossBar(bar) }, null); bossBarPlayers.remove(player) }
+        val index = frozenIndex
+        if (index.isEmpty()) { removeBossBar(); return }
+        val bar = freezeBossBar ?: createBossBar()
+        index.keys.forEach { worldName ->
+            Bukkit.getWorld(worldName)?.players?.forEach { player ->
+                if (isFrozen(player.location) && bossBarPlayers.add(player)) player.scheduler.run(context.plugin, { _ -> player.showBossBar(bar) }, null)
+            }
         }
-        bossBarPlayers.removeIf { !it.isOnline }
-    }
-
-    fun triggerPistonUpdates(player: Player, radius: Int, callback: (Int) -> Unit) {
-        val world = player.world; val centerX = player.location.blockX shr 4; val centerZ = player.location.blockZ shr 4
-        val blockRadius = radius * 16; val startX = (centerX shl 4) - blockRadius; val endX = (centerX shl 4) + blockRadius + 15
-        val startZ = (centerZ shl 4) - blockRadius; val endZ = (centerZ shl 4) + blockRadius + 15
-        Bukkit.getRegionScheduler().run(context.plugin, player.location) { _ ->
-            var updatedCount = 0
-            for (x in startX..endX) { for (z in startZ..endZ) { for (y in world.minHeight until world.maxHeight) {
-                val block = world.getBlockAt(x, y, z)
-                if (block.type == Material.PISTON || block.type == Material.STICKY_PISTON) {
-                    val neighbors = listOf(block.getRelative(0, 1, 0), block.getRelative(0, -1, 0), block.getRelative(1, 0, 0), block.getRelative(-1, 0, 0), block.getRelative(0, 0, 1), block.getRelative(0, 0, -1))
-                    for (neighbor in neighbors) { if (neighbor.type == Material.AIR) { try { neighbor.setType(Material.STONE, false); neighbor.setType(Material.AIR, true); updatedCount++; break } catch (_: Exception) {} } }
-                }
-            } } }
-            callback(updatedCount)
+        bossBarPlayers.toList().forEach { player ->
+            if (!player.isOnline) bossBarPlayers.remove(player)
+            else if (!isFrozen(player.location)) { player.scheduler.run(context.plugin, { _ -> player.hideBossBar(bar) }, null); bossBarPlayers.remove(player) }
         }
     }
 
+    /**
+     * 手动重扫玩家周围（正方形范围）的红石元件
+     */
+    fun triggerPistonUpdates(player: Player, radius: Int, onProgress: (PistonRescanner.Progress) -> Unit) {
+        val centerX = player.location.blockX shr 4; val centerZ = player.location.blockZ shr 4
+        val chunkKeys = ArrayList<Long>((radius * 2 + 1) * (radius * 2 + 1))
+        for (cx in (centerX - radius)..(centerX + radius)) for (cz in (centerZ - radius)..(centerZ + radius)) chunkKeys.add(Chunk.getChunkKey(cx, cz))
+        rescanner.rescan(player.world, chunkKeys, onProgress)
+    }
+
     fun getPlugin() = context.plugin
+
+    companion object {
+        const val DEFAULT_REGION = "default"
+        private val NAME_PATTERN = Regex("^[A-Za-z0-9_-]{1,32}$")
+        fun isValidRegionName(name: String) = NAME_PATTERN.matches(name)
+    }
 }
 
 class RedstoneFreezeModuleListener(private val module: RedstoneFreezeModule) : Listener {
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true) fun onBlockRedstone(event: BlockRedstoneEvent) {
-        if (!module.isFreezeActive()) return; if (!module.isChunkFrozen(event.block.chunk.chunkKey)) return; if (!module.isRedstoneSignalAffected()) return
+        if (!module.isFreezeActive()) return; if (!module.isFrozen(event.block)) return; if (!module.isRedstoneSignalAffected()) return
         event.newCurrent = event.oldCurrent
     }
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true) fun onPistonExtend(event: BlockPistonExtendEvent) {
-        if (!module.isFreezeActive() || !module.isChunkFrozen(event.block.chunk.chunkKey) || !module.isPistonExtendAffected()) return; event.isCancelled = true
+        if (!module.isFreezeActive() || !module.isFrozen(event.block) || !module.isPistonExtendAffected()) return; event.isCancelled = true
     }
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true) fun onPistonRetract(event: BlockPistonRetractEvent) {
-        if (!module.isFreezeActive() || !module.isChunkFrozen(event.block.chunk.chunkKey) || !module.isPistonRetractAffected()) return; event.isCancelled = true
+        if (!module.isFreezeActive() || !module.isFrozen(event.block) || !module.isPistonRetractAffected()) return; event.isCancelled = true
     }
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true) fun onBlockPhysics(event: BlockPhysicsEvent) {
-        if (!module.isFreezeActive() || !module.isChunkFrozen(event.block.chunk.chunkKey) || !module.isBlockPhysicsAffected()) return; event.isCancelled = true
+        if (!module.isFreezeActive() || !module.isFrozen(event.block) || !module.isBlockPhysicsAffected()) return; event.isCancelled = true
     }
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true) fun onTNTPrime(event: TNTPrimeEvent) {
-        if (!module.isFreezeActive() || !module.isChunkFrozen(event.block.chunk.chunkKey) || !module.isTntPrimeAffected()) return; event.isCancelled = true
+        if (!module.isFreezeActive() || !module.isFrozen(event.block) || !module.isTntPrimeAffected()) return; event.isCancelled = true
     }
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true) fun onExplosionPrime(event: ExplosionPrimeEvent) {
-        if (!module.isFreezeActive() || !module.isChunkFrozen(event.entity.location.chunk.chunkKey) || !module.isExplosionAffected()) return; event.isCancelled = true
+        if (!module.isFreezeActive() || !module.isFrozen(event.entity.location) || !module.isExplosionAffected()) return; event.isCancelled = true
     }
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true) fun onEntitySpawn(event: EntitySpawnEvent) {
         if (event.entityType != EntityType.TNT) return
-        if (!module.isFreezeActive() || !module.isChunkFrozen(event.location.chunk.chunkKey) || !module.isTntSpawnAffected()) return; event.isCancelled = true
+        if (!module.isFreezeActive() || !module.isFrozen(event.location) || !module.isTntSpawnAffected()) return; event.isCancelled = true
     }
 }
 
@@ -189,59 +315,94 @@ class RedstoneFreezeModuleCommand(private val module: RedstoneFreezeModule) : Su
     override fun handle(sender: CommandSender, command: Command, label: String, args: Array<out String>): Boolean {
         if (!module.isEnabled()) { sender.sendMessage(Component.text("红石冻结功能已禁用").color(NamedTextColor.RED)); return true }
         if (args.isEmpty()) { sendUsage(sender); return true }
+        if (!sender.hasPermission("tsl.redfreeze.use")) { sender.sendMessage(Component.text("无权限").color(NamedTextColor.RED)); return true }
         when (args[0].lowercase()) {
-            "cancel" -> handleCancel(sender); "info" -> handleInfo(sender); "update" -> handleUpdate(sender, args); else -> handleFreeze(sender, args[0])
+            "cancel" -> handleCancel(sender); "info", "list" -> handleInfo(sender); "update" -> handleUpdate(sender, args)
+            "create" -> handleCreate(sender, args); "remove" -> handleRemove(sender, args); "window" -> handleWindow(sender, args)
+            else -> handleFreeze(sender, RedstoneFreezeModule.DEFAULT_REGION, args[0])
         }
         return true
     }
 
-    private fun handleFreeze(sender: CommandSender, radiusArg: String) {
+    private fun handleFreeze(sender: CommandSender, name: String, radiusArg: String) {
         if (sender !is Player) { sender.sendMessage(Component.text("该命令只能由玩家执行").color(NamedTextColor.RED)); return }
-        if (!sender.hasPermission("tsl.redfreeze.use")) { sender.sendMessage(Component.text("无权限").color(NamedTextColor.RED)); return }
         val radius = radiusArg.toIntOrNull()
         if (radius == null || radius < 1) { sender.sendMessage(Component.text("请输入有效的半径").color(NamedTextColor.RED)); return }
         if (radius > module.getMaxRadius()) { sender.sendMessage(Component.text("半径不能超过 ${module.getMaxRadius()}").color(NamedTextColor.RED)); return }
         sender.scheduler.run(module.getPlugin(), { _ ->
-            val frozenCount = module.activateFreeze(sender, radius)
-            sender.sendMessage(Component.text("已冻结 ").color(NamedTextColor.GREEN).append(Component.text("$frozenCount").color(NamedTextColor.AQUA)).append(Component.text(" 个区块的红石活动").color(NamedTextColor.GREEN)))
+            val frozenCount = module.createRegion(name, sender, radius)
+            sender.sendMessage(Component.text("区域 $name 已冻结 ").color(NamedTextColor.GREEN).append(Component.text("$frozenCount").color(NamedTextColor.AQUA)).append(Component.text(" 个区块的红石活动").color(NamedTextColor.GREEN)))
         }, null)
     }
 
+    private fun handleCreate(sender: CommandSender, args: Array<out String>) {
+        val name = args.getOrNull(1); val radiusArg = args.getOrNull(2)
+        if (name == null || radiusArg == null) { sender.sendMessage(Component.text("用法: /tsl redstone-freeze create <名称> <半径>").color(NamedTextColor.RED)); return }
+        if (!RedstoneFreezeModule.isValidRegionName(name)) { sender.sendMessage(Component.text("区域名称只能包含字母、数字、_ 和 -").color(NamedTextColor.RED)); return }
+        handleFreeze(sender, name, radiusArg)
+    }
+
+    private fun handleRemove(sender: CommandSender, args: Array<out String>) {
+        val name = args.getOrNull(1) ?: run { sender.sendMessage(Component.text("用法: /tsl redstone-freeze remove <名称>").color(NamedTextColor.RED)); return }
+        val releasedCount = module.removeRegion(name)
+        if (releasedCount == null) { sender.sendMessage(Component.text("冻结区域不存在: $name").color(NamedTextColor.YELLOW)); return }
+        sender.sendMessage(Component.text("已删除冻结区域 $name，释放 ").color(NamedTextColor.GREEN).append(Component.text("$releasedCount").color(NamedTextColor.AQUA)).append(Component.text(" 个区块").color(NamedTextColor.GREEN)))
+    }
+
+    private fun handleWindow(sender: CommandSender, args: Array<out String>) {
+        val name = args.getOrNull(1); val spec = args.drop(2)
+        if (name == null || spec.isEmpty()) { sender.sendMessage(Component.text("用法: /tsl redstone-freeze window <名称> <HH:mm-HH:mm ...|clear>").color(NamedTextColor.RED)); return }
+        val windows = if (spec.size == 1 && spec[0].equals("clear", ignoreCase = true)) emptyList() else spec.map { text ->
+            FreezeWindow.parse(text) ?: run { sender.sendMessage(Component.text("时间窗口格式无效: $text（示例: 22:00-06:00）").color(NamedTextColor.RED)); return }
+        }
+        if (!module.setRegionWindows(name, windows)) { sender.sendMessage(Component.text("冻结区域不存在: $name").color(NamedTextColor.YELLOW)); return }
+        val text = if (windows.isEmpty()) "全天冻结" else "冻结时段 ${windows.joinToString(", ")}"
+        sender.sendMessage(Component.text("区域 $name 已设置为$text").color(NamedTextColor.GREEN))
+    }
+
     private fun handleCancel(sender: CommandSender) {
-        if (!sender.hasPermission("tsl.redfreeze.use")) { sender.sendMessage(Component.text("无权限").color(NamedTextColor.RED)); return }
-        if (!module.isFreezeActive()) { sender.sendMessage(Component.text("当前没有活跃的冻结区域").color(NamedTextColor.YELLOW)); return }
+        if (module.getRegions().isEmpty()) { sender.sendMessage(Component.text("当前没有冻结区域").color(NamedTextColor.YELLOW)); return }
         val releasedCount = module.cancelFreeze()
-        sender.sendMessage(Component.text("已取消冻结，释放 ").color(NamedTextColor.GREEN).append(Component.text("$releasedCount").color(NamedTextColor.AQUA)).append(Component.text(" 个区块").color(NamedTextColor.GREEN)))
+        sender.sendMessage(Component.text("已取消所有冻结区域，释放 ").color(NamedTextColor.GREEN).append(Component.text("$releasedCount").color(NamedTextColor.AQUA)).append(Component.text(" 个区块").color(NamedTextColor.GREEN)))
     }
 
     private fun handleUpdate(sender: CommandSender, args: Array<out String>) {
         if (sender !is Player) { sender.sendMessage(Component.text("该命令只能由玩家执行").color(NamedTextColor.RED)); return }
-        if (!sender.hasPermission("tsl.redfreeze.use")) { sender.sendMessage(Component.text("无权限").color(NamedTextColor.RED)); return }
-        val radius = args.getOrNull(1)?.toIntOrNull() ?: 3
-        sender.sendMessage(Component.text("正在更新...").color(NamedTextColor.YELLOW))
-        module.triggerPistonUpdates(sender, radius) { updatedCount ->
-            sender.sendMessage(Component.text("已更新 ").color(NamedTextColor.GREEN).append(Component.text("$updatedCount").color(NamedTextColor.AQUA)).append(Component.text(" 个活塞").color(NamedTextColor.GREEN)))
+        val radius = (args.getOrNull(1)?.toIntOrNull() ?: 3).coerceIn(0, module.getMaxRadius())
+        sender.sendMessage(Component.text("正在扫描...").color(NamedTextColor.YELLOW))
+        module.triggerPistonUpdates(sender, radius) { progress ->
+            if (progress.finished) {
+                sender.sendMessage(Component.text("已更新 ").color(NamedTextColor.GREEN).append(Component.text("${progress.appliedUpdates}").color(NamedTextColor.AQUA)).append(Component.text(" 个红石元件（扫描 ${progress.scannedChunks} 个区块，找到 ${progress.foundComponents} 个）").color(NamedTextColor.GREEN)))
+            } else {
+                sender.sendMessage(Component.text("扫描进度: ${progress.scannedChunks}/${progress.totalChunks} 区块，已更新 ${progress.appliedUpdates}/${progress.foundComponents}").color(NamedTextColor.GRAY))
+            }
         }
     }
 
     private fun handleInfo(sender: CommandSender) {
-        if (!sender.hasPermission("tsl.redfreeze.use")) { sender.sendMessage(Component.text("无权限").color(NamedTextColor.RED)); return }
         val info = module.getFreezeInfo()
-        if (info == null) sender.sendMessage(Component.text("当前没有活跃的冻结区域").color(NamedTextColor.YELLOW))
-        else sender.sendMessage(Component.text("当前冻结信息: ").color(NamedTextColor.GREEN).append(Component.text(info).color(NamedTextColor.AQUA)))
+        if (info.isEmpty()) { sender.sendMessage(Component.text("当前没有冻结区域").color(NamedTextColor.YELLOW)); return }
+        sender.sendMessage(Component.text("冻结区域 (${info.size} 个，当前冻结 ${module.getFrozenChunkCount()} 个区块):").color(NamedTextColor.GREEN))
+        info.forEach { sender.sendMessage(Component.text("  $it").color(NamedTextColor.AQUA)) }
     }
 
     private fun sendUsage(sender: CommandSender) {
         sender.sendMessage(Component.text("用法:").color(NamedTextColor.YELLOW))
-        sender.sendMessage(Component.text("  /tsl redfreeze <半径> - 冻结区块").color(NamedTextColor.GRAY))
-        sender.sendMessage(Component.text("  /tsl redfreeze cancel - 取消冻结").color(NamedTextColor.GRAY))
-        sender.sendMessage(Component.text("  /tsl redfreeze update [半径] - 触发活塞更新").color(NamedTextColor.GRAY))
-        sender.sendMessage(Component.text("  /tsl redfreeze info - 查看冻结信息").color(NamedTextColor.GRAY))
+        sender.sendMessage(Component.text("  /tsl redstone-freeze <半径> - 冻结区块（默认区域）").color(NamedTextColor.GRAY))
+        sender.sendMessage(Component.text("  /tsl redstone-freeze create <名称> <半径> - 创建命名冻结区域").color(NamedTextColor.GRAY))
+        sender.sendMessage(Component.text("  /tsl redstone-freeze remove <名称> - 删除冻结区域").color(NamedTextColor.GRAY))
+        sender.sendMessage(Component.text("  /tsl redstone-freeze window <名称> <HH:mm-HH:mm ...|clear> - 设置冻结时段").color(NamedTextColor.GRAY))
+        sender.sendMessage(Component.text("  /tsl redstone-freeze cancel - 取消所有冻结").color(NamedTextColor.GRAY))
+        sender.sendMessage(Component.text("  /tsl redstone-freeze update [半径] - 重扫红石元件").color(NamedTextColor.GRAY))
+        sender.sendMessage(Component.text("  /tsl redstone-freeze info - 查看冻结区域").color(NamedTextColor.GRAY))
     }
 
     override fun tabComplete(sender: CommandSender, command: Command, label: String, args: Array<out String>): List<String> {
-        if (args.size == 1) return listOf("cancel", "info", "update", "1", "5", "10", "16", "32").filter { it.startsWith(args[0].lowercase()) }
+        if (args.size == 1) return listOf("create", "remove", "window", "cancel", "info", "update", "1", "5", "10", "16", "32").filter { it.startsWith(args[0].lowercase()) }
+        if (args.size == 2 && args[0].lowercase() in setOf("remove", "window")) return module.getRegions().map { it.name }.filter { it.startsWith(args[1], ignoreCase = true) }
         if (args.size == 2 && args[0].lowercase() == "update") return listOf("1", "3", "5", "8").filter { it.startsWith(args[1]) }
+        if (args.size == 3 && args[0].lowercase() == "create") return listOf("1", "5", "10", "16", "32").filter { it.startsWith(args[2]) }
+        if (args.size >= 3 && args[0].lowercase() == "window") return listOf("clear", "22:00-06:00", "00:00-08:00").filter { it.startsWith(args.last()) }
         return emptyList()
     }
 
@@ -14,6 +14,7 @@ import org.bukkit.event.Listener
 import org.bukkit.event.player.PlayerQuitEvent
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
+import org.tsl.tSLplugins.core.ModuleActivation
 import java.util.UUID
 import java.util.concurrent.ConcurrentHashMap
 
@@ -26,6 +27,7 @@ class SpecModule : AbstractModule() {
 
     override val id = "spec"
     override val configPath = "spec"
+    override val activation = ModuleActivation(commands = listOf("spec"))
 
     private val whitelist = ConcurrentHashMap.newKeySet<UUID>()
     private val spectatingPlayers = ConcurrentHashMap<UUID, SpectatorState>()
@@ -53,6 +55,9 @@ class SpecModule : AbstractModule() {
     override fun getCommandHandler(): SubCommandHandler = SpecModuleCommand(this)
     override fun getDescription(): String = "观众模式"
 
+    // 停用会把观察中的玩家传送回原处
+    override fun canDeactivate(): Boolean = spectatingPlayers.isEmpty()
+
     private fun loadSpecConfig() {
         defaultDelay = getConfigInt("defaultDelay", 5)
         minDelay = getConfigInt("minDelay", 1)
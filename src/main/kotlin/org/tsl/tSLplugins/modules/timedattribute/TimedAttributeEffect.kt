@@ -51,6 +51,18 @@ data class TimedAttributeEffect(
      */
     fun isExpired(): Boolean = remainingMs <= 0
 
+    /**
+     * 实时剩余时间（活跃效果从 lastTickAt 起持续消耗，remainingMs 只在暂停/结算时更新）
+     */
+    fun currentRemainingMs(now: Long = System.currentTimeMillis()): Long {
+        return if (isPaused) remainingMs else remainingMs - (now - lastTickAt)
+    }
+
+    /**
+     * 绝对到期时间（仅对活跃效果有意义）
+     */
+    fun deadline(): Long = lastTickAt + remainingMs
+
     /**
      * 消耗时间（仅活跃效果调用）
      * @return 消耗后是否过期
@@ -92,7 +104,7 @@ data class TimedAttributeEffect(
     /**
      * 获取剩余时间（秒）
      */
-    fun getRemainingSeconds(): Int = (remainingMs.coerceAtLeast(0) / 1000).toInt()
+    fun getRemainingSeconds(): Int = (currentRemainingMs().coerceAtLeast(0) / 1000).toInt()
 
     /**
      * 格式化剩余时间为可读字符串
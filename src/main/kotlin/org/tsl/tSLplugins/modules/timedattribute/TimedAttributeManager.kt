@@ -1,5 +1,6 @@
 package org.tsl.tSLplugins.modules.timedattribute
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask
 import org.bukkit.Bukkit
 import org.bukkit.NamespacedKey
 import org.bukkit.Registry
@@ -19,11 +20,14 @@ import java.util.ArrayDeque
  * - 同一属性可以堆叠多个效果，新效果暂停旧效果
  * - 效果过期后恢复到下一层效果，直到恢复原始值
  * - 上下线、死亡不影响计时
+ *
+ * 到期调度：活跃效果按绝对到期时间放入 [TimedEffectExpiryQueue]，
+ * 全局调度器只在最早的效果到期时唤醒一次，再把移除操作派发到对应玩家的实体调度器。
+ * 离线玩家的效果移出队列（暂停计时），上线重建堆栈后重新加入。
  */
 class TimedAttributeManager(private val plugin: JavaPlugin) {
 
     private var enabled: Boolean = true
-    private var scanIntervalTicks: Long = 20L
     private var storage: TimedEffectStorage? = null
 
     private val msg get() = (plugin as TSLplugins).messageManager
@@ -33,6 +37,16 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
     private val effectStacks: ConcurrentHashMap<UUID, ConcurrentHashMap<String, ArrayDeque<TimedAttributeEffect>>> =
         ConcurrentHashMap()
 
+    // 活跃效果的到期队列
+    private val expiryQueue = TimedEffectExpiryQueue()
+
+    // 下一次唤醒任务及其预计唤醒时间
+    private val wakeLock = Any()
+    private var wakeTask: ScheduledTask? = null
+    private var wakeAt: Long = Long.MAX_VALUE
+    @Volatile
+    private var expirationStarted = false
+
     // Attribute 别名映射（简写 -> 完整名称）
     private val attributeAliases: Map<String, String> = buildAttributeAliases()
 
@@ -46,7 +60,6 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
     fun loadConfig() {
         val config = plugin.config
         enabled = config.getBoolean("timed-attribute.enabled", true)
-        scanIntervalTicks = config.getLong("timed-attribute.scan-interval-ticks", 20L)
 
         storage?.close()
         if (!enabled) return
@@ -54,47 +67,76 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
     }
 
     /**
-     * 启动过期扫描任务
+     * 启动到期调度
      */
     fun startExpirationTask() {
         if (!enabled) return
 
-        Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, { _ ->
-            scanAndRemoveExpired()
-        }, scanIntervalTicks, scanIntervalTicks)
+        expirationStarted = true
+        armWakeup()
 
-        plugin.logger.info("[TimedAttribute] 过期扫描任务已启动, 间隔: ${scanIntervalTicks} ticks")
+        plugin.logger.info("[TimedAttribute] 到期调度已启动（按最早到期时间唤醒）")
     }
 
     /**
-     * 扫描并处理过期效果
+     * 将活跃效果加入到期队列
      */
-    private fun scanAndRemoveExpired() {
-        // 遍历所有在线玩家的缓存
-        effectStacks.forEach { (playerUuid, attributeStacks) ->
-            val player = Bukkit.getPlayer(playerUuid)
-            if (player == null || !player.isOnline) {
-                return@forEach
-            }
+    private fun scheduleExpiry(effect: TimedAttributeEffect) {
+        expiryQueue.schedule(effect)
+        armWakeup()
+    }
 
-            // 检查每个属性的栈顶效果
-            val attributesToProcess = mutableListOf<String>()
-            
-            attributeStacks.forEach { (attributeKey, stack) ->
-                val topEffect = stack.peekLast()
-                if (topEffect != null && !topEffect.isPaused && topEffect.tick()) {
-                    // 栈顶效果过期
-                    attributesToProcess.add(attributeKey)
+    /**
+     * 按队列中最早的到期时间安排唤醒；已有更早的唤醒时保持不变
+     */
+    private fun armWakeup() {
+        if (!expirationStarted) return
+        val next = expiryQueue.nextDeadline() ?: return
+
+        synchronized(wakeLock) {
+            if (wakeTask != null && wakeAt <= next) return
+
+            wakeTask?.cancel()
+            val now = System.currentTimeMillis()
+            val delayTicks = ((next - now + 49) / 50).coerceAtLeast(1L)
+            wakeAt = now + delayTicks * 50
+            wakeTask = Bukkit.getGlobalRegionScheduler().runDelayed(plugin, { _ ->
+                synchronized(wakeLock) {
+                    wakeTask = null
+                    wakeAt = Long.MAX_VALUE
                 }
-            }
+                dispatchDueEffects()
+                armWakeup()
+            }, delayTicks)
+        }
+    }
+
+    /**
+     * 取出到期的效果，派发到对应玩家的实体调度器
+     */
+    private fun dispatchDueEffects() {
+        val due = expiryQueue.pollDue(System.currentTimeMillis())
+        if (due.isEmpty()) return
+
+        due.groupBy { it.playerUuid }.forEach { (playerUuid, entries) ->
+            // 离线玩家的效果已在下线时移出队列，这里只可能是刚下线的竞态
+            val player = Bukkit.getPlayer(playerUuid) ?: return@forEach
 
-            if (attributesToProcess.isNotEmpty()) {
-                player.scheduler.run(plugin, { _ ->
-                    attributesToProcess.forEach { attributeKey ->
-                        processExpiredEffect(player, attributeKey)
+            player.scheduler.run(plugin, { _ ->
+                entries.forEach { entry ->
+                    val topEffect = effectStacks[playerUuid]?.get(entry.attributeKey)?.peekLast()
+                    // 栈顶已变化（被取消或覆盖）时忽略
+                    if (topEffect == null || topEffect.effectId != entry.effectId || topEffect.isPaused) {
+                        return@forEach
                     }
-                }, null)
-            }
+                    if (topEffect.tick()) {
+                        processExpiredEffect(player, entry.attributeKey)
+                    } else {
+                        // 调度提前唤醒（时钟误差），按剩余时间重新排队
+                        scheduleExpiry(topEffect)
+                    }
+                }
+            }, null)
         }
     }
 
@@ -127,6 +169,7 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
         if (nextEffect != null) {
             // 恢复下一层效果
             nextEffect.resume()
+            scheduleExpiry(nextEffect)
             // 下一层效果需要重新应用其 delta
             val nextRestoredValue = restoredValue + nextEffect.delta
             applyAttributeValue(player, attributeKey, nextRestoredValue)
@@ -197,6 +240,7 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
             val currentTop = stack.peekLast()
             if (currentTop != null && !currentTop.isPaused) {
                 currentTop.pause()
+                expiryQueue.cancel(currentTop.effectId)
                 storage?.save(currentTop)
             }
 
@@ -231,6 +275,7 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
 
             // 应用属性值
             applyAttributeValue(player, resolvedAttributeKey, clampedValue)
+            scheduleExpiry(effect)
 
             // 保存到数据库
             storage?.save(effect)
@@ -282,6 +327,7 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
             }
             
             // 清空堆栈
+            stack.forEach { expiryQueue.cancel(it.effectId) }
             stack.clear()
             playerStacks.remove(resolvedKey)
             
@@ -346,6 +392,7 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
             }
 
             // 清空效果缓存
+            expiryQueue.cancelPlayer(player.uniqueId)
             playerStacks.clear()
             effectStacks.remove(player.uniqueId)
 
@@ -398,10 +445,11 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
 
                     playerStacks[attributeKey] = stack
 
-                    // 应用栈顶效果
+                    // 应用栈顶效果并加入到期队列
                     val topEffect = stack.peekLast()
                     if (topEffect != null) {
                         applyAttributeValue(player, attributeKey, topEffect.targetValue)
+                        scheduleExpiry(topEffect)
                     }
 
                     // 删除过期的效果记录
@@ -425,6 +473,8 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
      */
     fun onPlayerQuit(player: Player) {
         val playerStacks = effectStacks.remove(player.uniqueId) ?: return
+        // 离线期间暂停计时
+        expiryQueue.cancelPlayer(player.uniqueId)
         
         // 收集所有效果并保存到数据库
         val allEffects = mutableListOf<TimedAttributeEffect>()
@@ -451,12 +501,20 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
      * 关闭管理器
      */
     fun shutdown() {
+        expirationStarted = false
+        synchronized(wakeLock) {
+            wakeTask?.cancel()
+            wakeTask = null
+            wakeAt = Long.MAX_VALUE
+        }
+
         // 保存所有在线玩家的效果
         Bukkit.getOnlinePlayers().forEach { player ->
             onPlayerQuit(player)
         }
         storage?.close()
         effectStacks.clear()
+        expiryQueue.clear()
         plugin.logger.info("[TimedAttribute] 管理器已关闭")
     }
 
@@ -752,6 +810,7 @@ class TimedAttributeManager(private val plugin: JavaPlugin) {
         // 先清除所有效果（不撤销 delta，因为要完全重置）
         val playerStacks = effectStacks.remove(player.uniqueId)
         val effectCount = playerStacks?.values?.sumOf { it.size } ?: 0
+        expiryQueue.cancelPlayer(player.uniqueId)
 
         // 在 EntityScheduler 中重置所有属性到默认值
         player.scheduler.run(plugin, { _ ->
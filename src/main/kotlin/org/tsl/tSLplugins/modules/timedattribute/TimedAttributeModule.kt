@@ -17,10 +17,14 @@ class TimedAttributeModule : AbstractModule() {
         private set
     private lateinit var listener: TimedAttributeListener
 
+    override fun doPrepare() {
+        // 读取配置并创建存储
+        manager = TimedAttributeManager(context.plugin)
+    }
+
     override fun doEnable() {
         val javaPlugin = context.plugin
         
-        manager = TimedAttributeManager(javaPlugin)
         manager.startExpirationTask()
         
         listener = TimedAttributeListener(javaPlugin, manager)
@@ -0,0 +1,110 @@
+package org.tsl.tSLplugins.modules.timedattribute
+
+import java.util.TreeSet
+import java.util.UUID
+
+/**
+ * 计时效果到期队列（按绝对到期时间排序）
+ *
+ * 只有活跃的栈顶效果在队列中：
+ * - 入栈 / 恢复 / 上线重建时加入
+ * - 被新效果暂停、取消、玩家下线时移除
+ *
+ * 调度器只需查看最早的到期时间并在那时唤醒，开销与到期的效果数量成正比，
+ * 与活跃效果总数无关（增删均为 O(log n)）。
+ *
+ * 线程安全（命令、实体调度器、全局调度器都会访问）。
+ */
+class TimedEffectExpiryQueue {
+
+    /**
+     * 队列条目
+     */
+    data class Entry(
+        val deadline: Long,
+        val playerUuid: UUID,
+        val attributeKey: String,
+        val effectId: UUID,
+        internal val order: Long
+    )
+
+    private val entries = TreeSet<Entry>(compareBy<Entry>({ it.deadline }, { it.order }))
+    private val byEffect = HashMap<UUID, Entry>()
+    private val byPlayer = HashMap<UUID, MutableSet<UUID>>()
+    private var nextOrder = 0L
+
+    /**
+     * 加入（或更新）活跃效果的到期时间；已暂停的效果不会加入
+     */
+    @Synchronized
+    fun schedule(effect: TimedAttributeEffect) {
+        removeInternal(effect.effectId)
+        if (effect.isPaused) return
+
+        val entry = Entry(effect.deadline(), effect.playerUuid, effect.attributeKey, effect.effectId, nextOrder++)
+        entries.add(entry)
+        byEffect[entry.effectId] = entry
+        byPlayer.getOrPut(entry.playerUuid) { HashSet() }.add(entry.effectId)
+    }
+
+    /**
+     * 移除指定效果
+     */
+    @Synchronized
+    fun cancel(effectId: UUID) {
+        removeInternal(effectId)
+    }
+
+    /**
+     * 移除指定玩家的所有效果
+     */
+    @Synchronized
+    fun cancelPlayer(playerUuid: UUID) {
+        val ids = byPlayer.remove(playerUuid) ?: return
+        ids.forEach { id -> byEffect.remove(id)?.let { entries.remove(it) } }
+    }
+
+    /**
+     * 取出所有到期条目
+     */
+    @Synchronized
+    fun pollDue(now: Long): List<Entry> {
+        if (entries.isEmpty() || entries.first().deadline > now) return emptyList()
+        val due = ArrayList<Entry>()
+        while (entries.isNotEmpty() && entries.first().deadline <= now) {
+            val entry = entries.pollFirst() ?: break
+            byEffect.remove(entry.effectId)
+            byPlayer[entry.playerUuid]?.let {
+                it.remove(entry.effectId)
+                if (it.isEmpty()) byPlayer.remove(entry.playerUuid)
+            }
+            due.add(entry)
+        }
+        return due
+    }
+
+    /**
+     * 最早的到期时间，队列为空时返回 null
+     */
+    @Synchronized
+    fun nextDeadline(): Long? = if (entries.isEmpty()) null else entries.first().deadline
+
+    @Synchronized
+    fun size(): Int = entries.size
+
+    @Synchronized
+    fun clear() {
+        entries.clear()
+        byEffect.clear()
+        byPlayer.clear()
+    }
+
+    private fun removeInternal(effectId: UUID) {
+        val entry = byEffect.remove(effectId) ?: return
+        entries.remove(entry)
+        byPlayer[entry.playerUuid]?.let {
+            it.remove(effectId)
+            if (it.isEmpty()) byPlayer.remove(entry.playerUuid)
+        }
+    }
+}
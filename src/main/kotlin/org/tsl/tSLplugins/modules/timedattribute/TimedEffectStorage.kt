@@ -118,31 +118,26 @@ class SQLiteTimedEffectStorage(
     }
 
     override fun save(effect: TimedAttributeEffect): CompletableFuture<Boolean> {
-        return CompletableFuture.supplyAsync({
-            try {
-                DatabaseManager.getConnection().prepareStatement("""
-                    INSERT OR REPLACE INTO $tableName 
-                    (effect_id, player_uuid, attribute, target_value, original_value, remaining_ms, stack_index, is_paused, last_tick_at, created_at, source)
-                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-                """.trimIndent()).use { stmt ->
-                    stmt.setString(1, effect.effectId.toString())
-                    stmt.setString(2, effect.playerUuid.toString())
-                    stmt.setString(3, effect.attributeKey)
-                    stmt.setDouble(4, effect.targetValue)
-                    stmt.setDouble(5, effect.capturedValue)
-                    stmt.setLong(6, effect.remainingMs)
-                    stmt.setInt(7, effect.stackIndex)
-                    stmt.setInt(8, if (effect.isPaused) 1 else 0)
-                    stmt.setLong(9, effect.lastTickAt)
-                    stmt.setLong(10, effect.createdAt)
-                    stmt.setString(11, effect.source)
-                    stmt.executeUpdate() > 0
-                }
-            } catch (e: Exception) {
-                plugin.logger.warning("[TimedAttribute] 保存效果失败: ${e.message}")
-                false
-            }
-        }, DatabaseManager.getExecutor())
+        return DatabaseManager.enqueueWrite("""
+            INSERT OR REPLACE INTO $tableName 
+            (effect_id, player_uuid, attribute, target_value, original_value, remaining_ms, stack_index, is_paused, last_tick_at, created_at, source)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """.trimIndent()) { stmt ->
+            stmt.setString(1, effect.effectId.toString())
+            stmt.setString(2, effect.playerUuid.toString())
+            stmt.setString(3, effect.attributeKey)
+            stmt.setDouble(4, effect.targetValue)
+            stmt.setDouble(5, effect.capturedValue)
+            stmt.setLong(6, effect.remainingMs)
+            stmt.setInt(7, effect.stackIndex)
+            stmt.setInt(8, if (effect.isPaused) 1 else 0)
+            stmt.setLong(9, effect.lastTickAt)
+            stmt.setLong(10, effect.createdAt)
+            stmt.setString(11, effect.source)
+        }.thenApply { rows ->
+            if (rows < 0) plugin.logger.warning("[TimedAttribute] 保存效果失败: ${effect.effectId}")
+            rows > 0
+        }
     }
 
     override fun saveAll(effects: List<TimedAttributeEffect>): CompletableFuture<Boolean> {
@@ -190,52 +185,31 @@ class SQLiteTimedEffectStorage(
     }
 
     override fun deleteByEffectId(effectId: UUID): CompletableFuture<Boolean> {
-        return CompletableFuture.supplyAsync({
-            try {
-                DatabaseManager.getConnection().prepareStatement(
-                    "DELETE FROM $tableName WHERE effect_id = ?"
-                ).use { stmt ->
-                    stmt.setString(1, effectId.toString())
-                    stmt.executeUpdate() > 0
-                }
-            } catch (e: Exception) {
-                plugin.logger.warning("[TimedAttribute] 删除效果失败: ${e.message}")
-                false
-            }
-        }, DatabaseManager.getExecutor())
+        return DatabaseManager.enqueueWrite("DELETE FROM $tableName WHERE effect_id = ?") { stmt ->
+            stmt.setString(1, effectId.toString())
+        }.thenApply { rows ->
+            if (rows < 0) plugin.logger.warning("[TimedAttribute] 删除效果失败: $effectId")
+            rows > 0
+        }
     }
 
     override fun deleteByPlayerAttribute(playerUuid: UUID, attributeKey: String): CompletableFuture<Int> {
-        return CompletableFuture.supplyAsync({
-            try {
-                DatabaseManager.getConnection().prepareStatement(
-                    "DELETE FROM $tableName WHERE player_uuid = ? AND attribute = ?"
-                ).use { stmt ->
-                    stmt.setString(1, playerUuid.toString())
-                    stmt.setString(2, attributeKey)
-                    stmt.executeUpdate()
-                }
-            } catch (e: Exception) {
-                plugin.logger.warning("[TimedAttribute] 删除效果失败: ${e.message}")
-                0
-            }
-        }, DatabaseManager.getExecutor())
+        return DatabaseManager.enqueueWrite("DELETE FROM $tableName WHERE player_uuid = ? AND attribute = ?") { stmt ->
+            stmt.setString(1, playerUuid.toString())
+            stmt.setString(2, attributeKey)
+        }.thenApply { rows ->
+            if (rows < 0) plugin.logger.warning("[TimedAttribute] 删除效果失败: $playerUuid/$attributeKey")
+            rows.coerceAtLeast(0)
+        }
     }
 
     override fun deleteByPlayer(playerUuid: UUID): CompletableFuture<Int> {
-        return CompletableFuture.supplyAsync({
-            try {
-                DatabaseManager.getConnection().prepareStatement(
-                    "DELETE FROM $tableName WHERE player_uuid = ?"
-                ).use { stmt ->
-                    stmt.setString(1, playerUuid.toString())
-                    stmt.executeUpdate()
-                }
-            } catch (e: Exception) {
-                plugin.logger.warning("[TimedAttribute] 删除玩家效果失败: ${e.message}")
-                0
-            }
-        }, DatabaseManager.getExecutor())
+        return DatabaseManager.enqueueWrite("DELETE FROM $tableName WHERE player_uuid = ?") { stmt ->
+            stmt.setString(1, playerUuid.toString())
+        }.thenApply { rows ->
+            if (rows < 0) plugin.logger.warning("[TimedAttribute] 删除玩家效果失败: $playerUuid")
+            rows.coerceAtLeast(0)
+        }
     }
 
     override fun close() {
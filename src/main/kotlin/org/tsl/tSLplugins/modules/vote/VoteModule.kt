@@ -11,6 +11,7 @@ import org.bukkit.command.CommandSender
 import org.bukkit.entity.Player
 import org.tsl.tSLplugins.SubCommandHandler
 import org.tsl.tSLplugins.core.AbstractModule
+import org.tsl.tSLplugins.core.ModuleActivation
 import java.util.UUID
 import java.util.concurrent.ConcurrentHashMap
 import kotlin.math.ceil
@@ -22,6 +23,7 @@ class VoteModule : AbstractModule() {
 
     override val id = "vote"
     override val configPath = "vote"
+    override val activation = ModuleActivation(commands = listOf("vote"))
 
     private var cooldownSeconds = 60
     private var defaultDurationSeconds = 30
@@ -42,6 +44,9 @@ class VoteModule : AbstractModule() {
     override fun getCommandHandler(): SubCommandHandler = VoteModuleCommand(this)
     override fun getDescription(): String = "指令投票系统"
 
+    // 投票进行中时倒计时任务还引用着模块
+    override fun canDeactivate(): Boolean = activeVote == null
+
     private fun loadVoteConfig() {
         cooldownSeconds = getConfigInt("cooldown-seconds", 60)
         defaultDurationSeconds = getConfigInt("default-duration-seconds", 30)
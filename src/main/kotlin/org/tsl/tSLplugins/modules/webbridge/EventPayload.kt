@@ -24,7 +24,48 @@ data class EventData(
     val online: Int? = null,
     val max: Int? = null,
     val tps: Double? = null,
-    val players: List<PlayerInfo>? = null
+    val players: List<PlayerInfo>? = null,
+    val seq: Long? = null
+)
+
+/**
+ * 玩家列表增量消息（PLAYER_LIST_DELTA）
+ *
+ * 字段均不设默认值，配合 encodeDefaults = false 的序列化器只输出有变化的字段
+ */
+@Serializable
+data class PlayerListDeltaMessage(
+    val type: String,
+    val source: String,
+    val timestamp: Long,
+    val data: PlayerListDeltaData
+)
+
+/**
+ * 玩家列表增量数据
+ *
+ * @param seq 本条增量的序号
+ * @param baseSeq 基于的序号（上一条快照或增量的 seq），不连续时 Web 端应请求 PLAYER_LIST_RESYNC
+ * @param online 在线人数（未变化时省略）
+ * @param max 最大人数（未变化时省略）
+ * @param tps TPS（未变化时省略）
+ * @param joined 新加入的玩家
+ * @param left 离开的玩家 UUID
+ * @param renamed 名称变化的玩家
+ */
+@Serializable
+data class PlayerListDeltaData(
+    val event: String,
+    val id: String,
+    val serverId: String?,
+    val seq: Long,
+    val baseSeq: Long,
+    val online: Int? = null,
+    val max: Int? = null,
+    val tps: Double? = null,
+    val joined: List<PlayerInfo>? = null,
+    val left: List<String>? = null,
+    val renamed: List<PlayerInfo>? = null
 )
 
 /**
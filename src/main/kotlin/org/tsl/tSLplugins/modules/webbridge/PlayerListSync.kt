@@ -0,0 +1,162 @@
+package org.tsl.tSLplugins.modules.webbridge
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 玩家列表增量同步状态
+ *
+ * 协议：
+ * - 连接建立或 Web 端请求重新同步（PLAYER_LIST_RESYNC）时发送完整快照 PLAYER_LIST（带 seq）
+ * - 之后只发送增量 PLAYER_LIST_DELTA：加入、离开、改名的玩家以及人数/TPS 等字段变化，
+ *   每条增量的 seq 递增 1，baseSeq 为上一条的 seq
+ * - Web 端发现 baseSeq 与本地最后的 seq 不一致（消息丢失）时请求重新同步
+ * - 没有任何变化时不发送
+ *
+ * 所有方法线程安全（连接回调在 WebSocket 线程，定时任务在全局区域线程）。
+ */
+class PlayerListSync {
+
+    /** 已发送给 Web 端的状态 */
+    private val players = LinkedHashMap<String, String>()
+    private var online = -1
+    private var max = -1
+    private var tps: Double? = null
+    private var seq = 0L
+    private var hasSnapshot = false
+
+    private val snapshots = AtomicLong()
+    private val deltas = AtomicLong()
+    private val skipped = AtomicLong()
+    private val snapshotBytes = AtomicLong()
+    private val deltaBytes = AtomicLong()
+
+    /**
+     * 生成完整快照并重置基准
+     */
+    @Synchronized
+    fun snapshot(serverId: String, current: List<PlayerInfo>, maxPlayers: Int, currentTps: Double?): EventMessage {
+        players.clear()
+        current.forEach { players[it.uuid] = it.name }
+        online = current.size
+        max = maxPlayers
+        tps = currentTps
+        seq++
+        hasSnapshot = true
+
+        return EventMessage(
+            data = EventData(
+                event = "PLAYER_LIST",
+                id = "pl-${System.currentTimeMillis()}",
+                serverId = serverId,
+                online = online,
+                max = max,
+                tps = tps,
+                players = current,
+                seq = seq
+            )
+        )
+    }
+
+    /**
+     * 与上次发送的状态比较，生成增量
+     * 调用前先用 [needsSnapshot] 检查是否已有基准
+     * @return 增量消息，没有变化（或没有基准）时返回 null
+     */
+    @Synchronized
+    fun delta(serverId: String, current: List<PlayerInfo>, maxPlayers: Int, currentTps: Double?): PlayerListDeltaMessage? {
+        if (!hasSnapshot) return null
+
+        val joined = ArrayList<PlayerInfo>()
+        val renamed = ArrayList<PlayerInfo>()
+        val currentIds = HashSet<String>(current.size * 2)
+        for (info in current) {
+            currentIds.add(info.uuid)
+            val previous = players[info.uuid]
+            when {
+                previous == null -> joined.add(info)
+                previous != info.name -> renamed.add(info)
+            }
+        }
+        val left = players.keys.filter { it !in currentIds }
+
+        val onlineChanged = current.size != online
+        val maxChanged = maxPlayers != max
+        val tpsChanged = currentTps != tps
+
+        if (joined.isEmpty() && renamed.isEmpty() && left.isEmpty() && !onlineChanged && !maxChanged && !tpsChanged) {
+            skipped.incrementAndGet()
+            return null
+        }
+
+        left.forEach { players.remove(it) }
+        joined.forEach { players[it.uuid] = it.name }
+        renamed.forEach { players[it.uuid] = it.name }
+        online = current.size
+        max = maxPlayers
+        tps = currentTps
+        val baseSeq = seq
+        seq++
+
+        return PlayerListDeltaMessage(
+            type = "event",
+            source = "mc",
+            timestamp = System.currentTimeMillis(),
+            data = PlayerListDeltaData(
+                event = "PLAYER_LIST_DELTA",
+                id = "pld-${System.currentTimeMillis()}",
+                serverId = serverId,
+                seq = seq,
+                baseSeq = baseSeq,
+                online = if (onlineChanged) online else null,
+                max = if (maxChanged) max else null,
+                tps = if (tpsChanged) tps else null,
+                joined = joined.ifEmpty { null },
+                left = left.ifEmpty { null },
+                renamed = renamed.ifEmpty { null }
+            )
+        )
+    }
+
+    /**
+     * 是否需要发送快照（尚无基准）
+     */
+    @Synchronized
+    fun needsSnapshot(): Boolean = !hasSnapshot
+
+    /**
+     * 丢弃基准（断线后调用，下次必须发送快照）
+     */
+    @Synchronized
+    fun reset() {
+        players.clear()
+        hasSnapshot = false
+    }
+
+    /**
+     * 记录已发送的消息大小
+     */
+    fun recordSent(snapshot: Boolean, bytes: Int) {
+        if (snapshot) {
+            snapshots.incrementAndGet()
+            snapshotBytes.addAndGet(bytes.toLong())
+        } else {
+            deltas.incrementAndGet()
+            deltaBytes.addAndGet(bytes.toLong())
+        }
+    }
+
+    /**
+     * 同步统计
+     */
+    data class Stats(
+        val seq: Long,
+        val snapshots: Long,
+        val snapshotBytes: Long,
+        val deltas: Long,
+        val deltaBytes: Long,
+        val skipped: Long
+    )
+
+    @Synchronized
+    fun getStats(): Stats = Stats(seq, snapshots.get(), snapshotBytes.get(), deltas.get(), deltaBytes.get(), skipped.get())
+}
@@ -59,8 +59,8 @@ class WebBridgeChatListener(
             // 序列化为 JSON
             val jsonString = json.encodeToString(bridgeMessage)
 
-            // 加入发送队列
-            manager.sendMessage(jsonString)
+            // 加入发送队列（断线时写入离线缓冲，重连后补发）
+            manager.sendMessage(jsonString, durable = true)
 
         } catch (e: Exception) {
             plugin.logger.log(Level.WARNING, "[WebBridge] 处理聊天消息时出错", e)
@@ -9,7 +9,6 @@ import org.bukkit.plugin.Plugin
 import org.java_websocket.client.WebSocketClient
 import org.java_websocket.handshake.ServerHandshake
 import java.net.URI
-import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.atomic.AtomicBoolean
 import java.util.concurrent.atomic.AtomicReference
 import java.util.logging.Level
@@ -19,7 +18,7 @@ import java.util.logging.Level
  *
  * 功能：
  * - 连接管理（自动重连）
- * - 消息发送队列（异步发送）
+ * - 消息发送管线（独立线程批量发送、离线缓冲，见 [WebBridgeSender]）
  * - 接收消息处理（预留扩展点）
  *
  * 注意：所有认证信息（如 token）应直接包含在 URL 的查询参数中
@@ -27,20 +26,18 @@ import java.util.logging.Level
 class WebBridgeClient(
     private val plugin: Plugin,
     private val url: String,
-    private val manager: WebBridgeManager
+    private val manager: WebBridgeManager,
+    senderSettings: WebBridgeSender.Settings
 ) {
-    // 发送队列
-    private val messageQueue = ConcurrentLinkedQueue<String>()
-
     // WebSocket 客户端实例
     private val clientRef = AtomicReference<InternalWebSocketClient?>(null)
 
+    // 发送管线
+    private val sender = WebBridgeSender(plugin.logger, senderSettings) { clientRef.get() }
+
     // 运行状态
     private val isRunning = AtomicBoolean(false)
 
-    // 发送任务引用
-    private var sendTask: ScheduledTask? = null
-
     // 重连任务引用
     private var reconnectTask: ScheduledTask? = null
 
@@ -58,24 +55,23 @@ class WebBridgeClient(
         }
 
         plugin.logger.info("[WebBridge] 正在启动 WebSocket 客户端...")
+        sender.start()
         connect()
-        startSendTask()
     }
 
     /**
      * 停止 WebSocket 客户端
      */
     fun stop() {
+        // 发送线程可能由 connect() 单独启动，无论运行状态都需要停止
         if (!isRunning.compareAndSet(true, false)) {
+            clientRef.getAndSet(null)?.close()
+            sender.stop()
             return
         }
 
         plugin.logger.info("[WebBridge] 正在停止 WebSocket 客户端...")
 
-        // 停止发送任务
-        sendTask?.cancel()
-        sendTask = null
-
         // 停止重连任务
         reconnectTask?.cancel()
         reconnectTask = null
@@ -83,8 +79,8 @@ class WebBridgeClient(
         // 关闭连接
         clientRef.getAndSet(null)?.close()
 
-        // 清空队列
-        messageQueue.clear()
+        // 停止发送线程，未发送的消息写入离线缓冲
+        sender.stop()
 
         plugin.logger.info("[WebBridge] WebSocket 客户端已停止")
     }
@@ -92,29 +88,24 @@ class WebBridgeClient(
     /**
      * 将消息加入发送队列
      *
+     * 未连接时持久消息写入离线缓冲，重连后按顺序补发；时效性消息直接丢弃。
+     *
      * @param json JSON 格式的消息
+     * @param durable 断线时是否保留
      */
-    fun enqueue(json: String) {
-        // 检查真实的连接状态
-        val client = clientRef.get()
-        if (client == null || !client.isOpen) {
-            // 未连接时静默丢弃消息，避免刷屏
-            return
-        }
-
-        messageQueue.offer(json)
-
-        // 队列过长警告
-        val queueSize = messageQueue.size
-        if (queueSize > 100) {
-            plugin.logger.warning("[WebBridge] 发送队列过长 (${queueSize} 条消息)，可能存在网络问题")
-        }
+    fun enqueue(json: String, durable: Boolean = true) {
+        sender.enqueue(json, durable)
     }
 
     /**
      * 获取当前队列长度
      */
-    fun getQueueSize(): Int = messageQueue.size
+    fun getQueueSize(): Int = sender.getQueueSize()
+
+    /**
+     * 获取发送统计
+     */
+    fun getSenderMetrics(): WebBridgeSender.Metrics = sender.getMetrics()
 
     /**
      * 检查连接状态
@@ -168,11 +159,8 @@ class WebBridgeClient(
             reconnectTask?.cancel()
             reconnectTask = null
 
-            // 连接成功，启动发送任务（如果还没启动）
-            if (sendTask == null) {
-                startSendTask()
-                plugin.logger.info("[WebBridge] 发送任务已启动")
-            }
+            // 连接成功，确保发送线程在运行
+            sender.start()
 
             return true
 
@@ -189,10 +177,6 @@ class WebBridgeClient(
      * 手动断开连接
      */
     fun disconnect() {
-        // 停止发送任务
-        sendTask?.cancel()
-        sendTask = null
-
         // 停止重连任务
         reconnectTask?.cancel()
         reconnectTask = null
@@ -204,9 +188,6 @@ class WebBridgeClient(
         } else {
             plugin.logger.warning("[WebBridge] 当前未连接")
         }
-
-        // 清空队列
-        messageQueue.clear()
     }
 
     /**
@@ -233,44 +214,6 @@ class WebBridgeClient(
         }, reconnectIntervalSeconds * 20L) // 转换为 ticks
     }
 
-    /**
-     * 启动发送任务
-     */
-    private fun startSendTask() {
-        // 每秒执行一次，处理队列中的消息
-        sendTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, { _ ->
-            processSendQueue()
-        }, 20L, 20L) // 延迟 1 秒，每 1 秒执行一次
-    }
-
-    /**
-     * 处理发送队列
-     */
-    private fun processSendQueue() {
-        val client = clientRef.get()
-
-        // 未连接，跳过
-        if (client == null || !client.isOpen) {
-            return
-        }
-
-        // 批量发送消息（最多 10 条/次）
-        var sent = 0
-        while (sent < 10) {
-            val message = messageQueue.poll() ?: break
-
-            try {
-                client.send(message)
-                sent++
-            } catch (e: Exception) {
-                plugin.logger.log(Level.WARNING, "[WebBridge] 发送消息失败", e)
-                // 发送失败，重新加入队列
-                messageQueue.offer(message)
-                break
-            }
-        }
-    }
-
     /**
      * 内部 WebSocket 客户端实现
      *
@@ -369,6 +312,7 @@ class WebBridgeClient(
                 when (event) {
                     "TITLE_UPDATE" -> handleTitleUpdateEvent(data)
                     "BIND_STATUS_UPDATE" -> handleBindStatusUpdateEvent(data)
+                    "PLAYER_LIST_RESYNC" -> manager.resyncPlayerList()
                     else -> plugin.logger.fine("[WebBridge] 未处理的事件类型: $event")
                 }
             } catch (e: Exception) {
@@ -70,6 +70,13 @@ class WebBridgeCommand(private val manager: WebBridgeManager) : SubCommandHandle
             sender.sendMessage("§e服务器ID: §f${manager.getServerId()}")
             sender.sendMessage("§e连接状态: ${if (manager.isConnected()) "§a已连接" else "§c未连接"}")
             sender.sendMessage("§e队列长度: §f${manager.getQueueSize()} 条消息")
+            manager.getSenderMetrics()?.let { m ->
+                sender.sendMessage("§e发送: §f${m.sent} 条 / ${m.batches} 批 §7(最近一批 ${m.lastBatchSize} 条)")
+                sender.sendMessage("§e入队: §f${m.enqueued} §e丢弃: §f${m.dropped} §e发送失败: §f${m.sendFailures}")
+                sender.sendMessage("§e离线缓冲: ${if (m.spooling) "§e缓冲中" else "§a空闲"} §7(写入 ${m.spooled} 条, 重放 ${m.replayed} 条, ${m.spoolBytes / 1024} KB)")
+            }
+            val pl = manager.getPlayerListStats()
+            sender.sendMessage("§e玩家列表: §fseq ${pl.seq} §7| 快照 ${pl.snapshots} 次 ${pl.snapshotBytes} B §7| 增量 ${pl.deltas} 次 ${pl.deltaBytes} B §7| 无变化跳过 ${pl.skipped} 次")
         }
 
         sender.sendMessage("§6====================================")
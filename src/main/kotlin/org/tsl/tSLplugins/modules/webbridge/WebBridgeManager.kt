@@ -10,6 +10,7 @@ import org.tsl.tSLplugins.modules.title.GetTitleRequest
 import org.tsl.tSLplugins.modules.title.GetTitleRequestData
 import org.tsl.tSLplugins.modules.title.RedeemCodeRequest
 import org.tsl.tSLplugins.modules.title.RedeemCodeRequestData
+import java.io.File
 import java.util.UUID
 
 /**
@@ -43,12 +44,22 @@ class WebBridgeManager(private val plugin: Plugin) {
     private var playerListTask: io.papermc.paper.threadedregions.scheduler.ScheduledTask? = null
     private var heartbeatTask: io.papermc.paper.threadedregions.scheduler.ScheduledTask? = null
 
+    // 玩家列表增量同步
+    private var playerListDelta = true
+    private val playerListSync = PlayerListSync()
+
     // JSON 序列化器
     private val json = Json {
         prettyPrint = false
         encodeDefaults = true
     }
 
+    // 增量消息序列化器（省略未变化的字段）
+    private val deltaJson = Json {
+        prettyPrint = false
+        encodeDefaults = false
+    }
+
     // 自动重连配置
     private var autoReconnect = true
     private var reconnectIntervalSeconds = 30L
@@ -107,10 +118,11 @@ class WebBridgeManager(private val plugin: Plugin) {
 
         // 读取玩家列表和心跳配置
         playerListIntervalSeconds = config.getLong("player-list-interval", 30L)
+        playerListDelta = config.getBoolean("player-list-delta", true)
         heartbeatIntervalSeconds = config.getLong("heartbeat-interval", 30L)
 
         // 初始化 WebSocket 客户端（不自动连接）
-        client = WebBridgeClient(plugin, url, this)
+        client = WebBridgeClient(plugin, url, this, loadSenderSettings(config))
 
         // 注册聊天监听器
         chatListener = WebBridgeChatListener(plugin, this)
@@ -181,9 +193,11 @@ class WebBridgeManager(private val plugin: Plugin) {
      * 发送消息到 Web 后端
      *
      * @param json JSON 格式的消息
+     * @param durable 断线时是否写入离线缓冲（聊天等需要补发的消息传 true；
+     *                心跳、玩家列表、带超时的请求等时效性消息使用默认值 false）
      */
-    fun sendMessage(json: String) {
-        client?.enqueue(json)
+    fun sendMessage(json: String, durable: Boolean = false) {
+        client?.enqueue(json, durable)
     }
 
     /**
@@ -215,6 +229,11 @@ class WebBridgeManager(private val plugin: Plugin) {
      */
     fun getQueueSize(): Int = client?.getQueueSize() ?: 0
 
+    /**
+     * 获取发送统计
+     */
+    fun getSenderMetrics(): WebBridgeSender.Metrics? = client?.getSenderMetrics()
+
     /**
      * 检查模块是否启用
      */
@@ -267,6 +286,9 @@ class WebBridgeManager(private val plugin: Plugin) {
      * 连接断开时的回调（由 Client 调用）
      */
     fun onDisconnected() {
+        // 断线期间的变化无法补发，重连后重新发送快照
+        playerListSync.reset()
+
         // 如果启用了自动重连且任务还在运行，重置重试计数以便重新开始重连
         if (autoReconnect && reconnectTask != null && reconnectAttempts > maxReconnectAttempts) {
             reconnectAttempts = 0
@@ -401,8 +423,9 @@ class WebBridgeManager(private val plugin: Plugin) {
      * 连接成功时的回调（由 Client 调用）
      */
     fun onConnected() {
-        // 连接成功后立即推送玩家列表
-        sendPlayerList()
+        // 连接成功后立即推送完整快照，作为后续增量的基准
+        playerListSync.reset()
+        sendPlayerList(forceSnapshot = true)
         // 启动定时任务
         startScheduledTasks()
     }
@@ -442,12 +465,17 @@ class WebBridgeManager(private val plugin: Plugin) {
 
     /**
      * 发送玩家列表事件
+     *
+     * 增量模式下首次（或重新同步时）发送完整快照，之后只发送变化部分，没有变化时不发送。
+     *
+     * @param forceSnapshot 强制发送完整快照
      */
-    fun sendPlayerList() {
+    fun sendPlayerList(forceSnapshot: Boolean = false) {
         if (!isConnected()) return
 
         val players = Bukkit.getOnlinePlayers()
         val playerInfoList = players.map { PlayerInfo(it.uniqueId.toString(), it.name) }
+        val maxPlayers = Bukkit.getMaxPlayers()
 
         // 获取 TPS（Paper/Folia 支持）
         val tps = try {
@@ -459,21 +487,33 @@ class WebBridgeManager(private val plugin: Plugin) {
             null
         }
 
-        val eventData = EventData(
-            event = "PLAYER_LIST",
-            id = "pl-${System.currentTimeMillis()}",
-            serverId = serverId,
-            online = players.size,
-            max = Bukkit.getMaxPlayers(),
-            tps = tps,
-            players = playerInfoList
-        )
+        // 生成与入队在同一把锁内完成，保证 seq 顺序与发送顺序一致
+        synchronized(playerListSync) {
+            if (forceSnapshot || !playerListDelta || playerListSync.needsSnapshot()) {
+                val jsonString = json.encodeToString(playerListSync.snapshot(serverId, playerInfoList, maxPlayers, tps))
+                playerListSync.recordSent(snapshot = true, bytes = jsonString.toByteArray(Charsets.UTF_8).size)
+                sendMessage(jsonString)
+            } else {
+                val delta = playerListSync.delta(serverId, playerInfoList, maxPlayers, tps) ?: return
+                val jsonString = deltaJson.encodeToString(delta)
+                playerListSync.recordSent(snapshot = false, bytes = jsonString.toByteArray(Charsets.UTF_8).size)
+                sendMessage(jsonString)
+            }
+        }
+    }
 
-        val message = EventMessage(data = eventData)
-        val jsonString = json.encodeToString(message)
-        sendMessage(jsonString)
+    /**
+     * Web 端请求重新同步玩家列表（检测到 seq 不连续时）
+     */
+    fun resyncPlayerList() {
+        Bukkit.getGlobalRegionScheduler().run(plugin) { _ -> sendPlayerList(forceSnapshot = true) }
     }
 
+    /**
+     * 获取玩家列表同步统计
+     */
+    fun getPlayerListStats(): PlayerListSync.Stats = playerListSync.getStats()
+
     /**
      * 发送心跳消息
      */
@@ -507,6 +547,23 @@ class WebBridgeManager(private val plugin: Plugin) {
         }
     }
 
+    /**
+     * 读取发送管线配置（webbridge.sender）
+     */
+    private fun loadSenderSettings(config: org.bukkit.configuration.ConfigurationSection): WebBridgeSender.Settings {
+        val defaults = WebBridgeSender.Settings()
+        val spoolEnabled = config.getBoolean("sender.spool.enabled", true)
+        val spoolMaxMb = config.getLong("sender.spool.max-size-mb", defaults.spoolMaxBytes / (1024 * 1024))
+
+        return WebBridgeSender.Settings(
+            queueCapacity = config.getInt("sender.queue-capacity", defaults.queueCapacity).coerceAtLeast(1),
+            overflowPolicy = WebBridgeSender.OverflowPolicy.parse(config.getString("sender.overflow-policy")),
+            maxBatch = config.getInt("sender.max-batch", defaults.maxBatch).coerceAtLeast(1),
+            spoolFile = if (spoolEnabled) File(plugin.dataFolder, "webbridge-spool.log") else null,
+            spoolMaxBytes = spoolMaxMb.coerceAtLeast(1L) * 1024 * 1024
+        )
+    }
+
     /**
      * 构建 WebSocket URL（包含 serverId 参数）
      */
@@ -623,10 +680,11 @@ class WebBridgeManager(private val plugin: Plugin) {
         maxReconnectAttempts = config.getInt("max-reconnect-attempts", 5)
 
         // 重新初始化 WebSocket 客户端（不自动连接）
-        client = WebBridgeClient(plugin, url, this)
+        client = WebBridgeClient(plugin, url, this, loadSenderSettings(config))
 
         // 读取玩家列表和心跳配置
         playerListIntervalSeconds = config.getLong("player-list-interval", 30L)
+        playerListDelta = config.getBoolean("player-list-delta", true)
         heartbeatIntervalSeconds = config.getLong("heartbeat-interval", 30L)
 
         // 重新注册监听器
@@ -814,7 +872,7 @@ class WebBridgeManager(private val plugin: Plugin) {
         )
         
         val jsonString = json.encodeToString(response)
-        sendMessage(jsonString)
+        sendMessage(jsonString, durable = true)
     }
 }
 
@@ -0,0 +1,366 @@
+package org.tsl.tSLplugins.modules.webbridge
+
+import org.java_websocket.client.WebSocketClient
+import org.java_websocket.framing.Framedata
+import java.io.File
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.LinkedBlockingDeque
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+import java.util.logging.Level
+import java.util.logging.Logger
+
+/**
+ * WebBridge 发送管线
+ *
+ * 独立的发送线程负责所有出站消息：
+ * - 有界队列，满时按 [OverflowPolicy] 处理
+ * - 批量发送：一次取出队列中已有的消息（最多 maxBatch 条），各自编帧后合并为一次写出，
+ *   队列越深批次越大；协议层仍是一条消息一帧，服务端无需改动
+ * - 断线期间持久消息写入 [WebBridgeSpool]，重连后先按顺序重放再继续发送新消息
+ *
+ * 缓冲文件只由发送线程读写（[stop] 时由调用方收尾），[enqueue] 只做非阻塞的入队。
+ *
+ * 不依赖 Bukkit 调度器，只需提供当前 WebSocket 客户端，可直接对进程内的 WebSocket 服务端测试。
+ */
+class WebBridgeSender(
+    private val logger: Logger,
+    private val settings: Settings,
+    private val clientSupplier: () -> WebSocketClient?
+) {
+
+    /**
+     * 队列满时的处理方式
+     */
+    enum class OverflowPolicy {
+        /** 丢弃最早的消息 */
+        DROP_OLDEST,
+
+        /** 丢弃新消息 */
+        DROP_NEWEST,
+
+        /** 写入缓冲文件（缓冲文件关闭时等同 DROP_NEWEST） */
+        SPOOL;
+
+        companion object {
+            fun parse(value: String?): OverflowPolicy {
+                return entries.firstOrNull { it.name.equals(value?.replace('-', '_'), ignoreCase = true) } ?: DROP_OLDEST
+            }
+        }
+    }
+
+    data class Settings(
+        val queueCapacity: Int = 1000,
+        val overflowPolicy: OverflowPolicy = OverflowPolicy.DROP_OLDEST,
+        val maxBatch: Int = 50,
+        val spoolFile: File? = null,
+        val spoolMaxBytes: Long = 16L * 1024 * 1024
+    )
+
+    /**
+     * 发送统计
+     */
+    data class Metrics(
+        val queueDepth: Int,
+        val queueCapacity: Int,
+        val enqueued: Long,
+        val sent: Long,
+        val batches: Long,
+        val lastBatchSize: Int,
+        val dropped: Long,
+        val spooled: Long,
+        val replayed: Long,
+        val spoolBytes: Long,
+        val spooling: Boolean,
+        val sendFailures: Long
+    )
+
+    private class Outgoing(val json: String, val durable: Boolean)
+
+    private val queue = LinkedBlockingDeque<Outgoing>(settings.queueCapacity.coerceAtLeast(1))
+    private val maxBatch = settings.maxBatch.coerceAtLeast(1)
+    private val spool: WebBridgeSpool? = settings.spoolFile?.let { WebBridgeSpool(it, settings.spoolMaxBytes) }
+
+    /** 缓冲模式：缓冲文件中有未重放的消息时，新的持久消息也必须写入文件以保持顺序 */
+    private val spoolLock = Any()
+    @Volatile
+    private var spooling = spool?.hasPending() == true
+
+    /** 待写入缓冲文件的消息，由发送线程转写，容量与队列相同 */
+    private val spoolInbox = ConcurrentLinkedQueue<String>()
+    private val spoolInboxSize = AtomicInteger()
+
+    @Volatile
+    private var running = false
+
+    /** stop() 之后的消息直接丢弃，不再重新打开缓冲文件 */
+    @Volatile
+    private var stopped = false
+    private var thread: Thread? = null
+
+    private val enqueued = AtomicLong()
+    private val sent = AtomicLong()
+    private val batches = AtomicLong()
+    private val dropped = AtomicLong()
+    private val spooled = AtomicLong()
+    private val replayed = AtomicLong()
+    private val sendFailures = AtomicLong()
+    @Volatile
+    private var lastBatchSize = 0
+
+    /**
+     * 启动发送线程
+     */
+    fun start() {
+        if (running) return
+        stopped = false
+        running = true
+        thread = Thread(::runLoop, "TSL-WebBridge-Sender").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    /**
+     * 停止发送线程，未发送的持久消息写入缓冲文件
+     */
+    fun stop() {
+        stopped = true
+        running = false
+        thread?.let {
+            it.interrupt()
+            it.join(2000)
+        }
+        thread = null
+        synchronized(spoolLock) {
+            drainSpoolInbox()
+            spoolQueued()
+            spool?.flush()
+            spool?.close()
+        }
+        queue.clear()
+    }
+
+    /**
+     * 加入发送队列（任意线程，不阻塞）
+     *
+     * @param json 消息
+     * @param durable 断线时是否保留（心跳、玩家列表等时效性消息传 false）
+     */
+    fun enqueue(json: String, durable: Boolean = true) {
+        if (stopped) {
+            dropped.incrementAndGet()
+            return
+        }
+        enqueued.incrementAndGet()
+        if (spooling && durable && spool != null) {
+            handOffToSpool(json)
+            return
+        }
+
+        val message = Outgoing(json, durable)
+        if (queue.offerLast(message)) return
+
+        when (settings.overflowPolicy) {
+            OverflowPolicy.DROP_OLDEST -> {
+                while (!queue.offerLast(message)) {
+                    if (queue.pollFirst() != null) dropped.incrementAndGet()
+                }
+            }
+            OverflowPolicy.DROP_NEWEST -> dropped.incrementAndGet()
+            OverflowPolicy.SPOOL -> {
+                if (durable && spool != null) {
+                    // 队列中都是更早的消息，发送线程会先发完队列再重放文件
+                    spooling = true
+                    handOffToSpool(json)
+                } else {
+                    dropped.incrementAndGet()
+                }
+            }
+        }
+    }
+
+    /**
+     * 交给发送线程写入缓冲文件；待写入的消息超过队列容量时丢弃
+     */
+    private fun handOffToSpool(json: String) {
+        if (spoolInboxSize.incrementAndGet() > settings.queueCapacity) {
+            spoolInboxSize.decrementAndGet()
+            dropped.incrementAndGet()
+            return
+        }
+        spoolInbox.add(json)
+    }
+
+    /**
+     * 当前队列长度（不含缓冲文件）
+     */
+    fun getQueueSize(): Int = queue.size
+
+    fun getMetrics(): Metrics {
+        return Metrics(
+            queueDepth = queue.size,
+            queueCapacity = settings.queueCapacity,
+            enqueued = enqueued.get(),
+            sent = sent.get(),
+            batches = batches.get(),
+            lastBatchSize = lastBatchSize,
+            dropped = dropped.get(),
+            spooled = spooled.get(),
+            replayed = replayed.get(),
+            spoolBytes = spool?.sizeBytes ?: 0L,
+            spooling = spooling,
+            sendFailures = sendFailures.get()
+        )
+    }
+
+    // ==================== 发送线程 ====================
+
+    private fun runLoop() {
+        while (running) {
+            try {
+                if (spoolInboxSize.get() > 0) {
+                    synchronized(spoolLock) { drainSpoolInbox() }
+                }
+
+                val client = clientSupplier()
+                if (client == null || !client.isOpen) {
+                    onDisconnected()
+                    continue
+                }
+
+                // 先发队列（比缓冲文件中的消息更早，或是非持久消息）
+                val first = queue.pollFirst(if (spooling) 0L else IDLE_WAIT_MS, TimeUnit.MILLISECONDS)
+                if (first != null) {
+                    val batch = ArrayList<Outgoing>(minOf(maxBatch, queue.size + 1))
+                    batch.add(first)
+                    while (batch.size < maxBatch) {
+                        batch.add(queue.pollFirst() ?: break)
+                    }
+                    if (!send(client, batch.map { it.json })) {
+                        // 发送失败：放回队首，保持顺序
+                        for (i in batch.indices.reversed()) {
+                            if (!queue.offerFirst(batch[i])) dropped.incrementAndGet()
+                        }
+                        Thread.sleep(RETRY_WAIT_MS)
+                    }
+                    continue
+                }
+
+                if (spooling) replaySpool(client)
+            } catch (e: InterruptedException) {
+                // stop() 中断等待
+            } catch (e: Exception) {
+                logger.log(Level.WARNING, "[WebBridge] 发送线程异常", e)
+            }
+        }
+    }
+
+    /**
+     * 断线：持久消息转入缓冲文件，时效性消息丢弃
+     */
+    private fun onDisconnected() {
+        if (queue.isNotEmpty()) {
+            synchronized(spoolLock) { spoolQueued() }
+        }
+        synchronized(spoolLock) { spool?.flush() }
+        Thread.sleep(DISCONNECTED_WAIT_MS)
+    }
+
+    /**
+     * 将 [enqueue] 交来的消息写入缓冲文件（调用方持有 spoolLock）
+     */
+    private fun drainSpoolInbox() {
+        while (true) {
+            val json = spoolInbox.poll() ?: break
+            spoolInboxSize.decrementAndGet()
+            // 可能在重放完成、退出缓冲模式之后才交来
+            spooling = true
+            appendToSpool(json)
+        }
+    }
+
+    /**
+     * 将队列中的消息转入缓冲文件（调用方持有 spoolLock）
+     */
+    private fun spoolQueued() {
+        while (true) {
+            val message = queue.pollFirst() ?: break
+            if (message.durable && spool != null) {
+                spooling = true
+                appendToSpool(message.json)
+            } else {
+                dropped.incrementAndGet()
+            }
+        }
+    }
+
+    private fun appendToSpool(json: String) {
+        val target = spool
+        if (target != null && target.append(json)) {
+            spooled.incrementAndGet()
+        } else {
+            dropped.incrementAndGet()
+        }
+    }
+
+    /**
+     * 从缓冲文件读取一批消息重放；全部重放完成后删除文件并退出缓冲模式
+     */
+    private fun replaySpool(client: WebSocketClient) {
+        val target = spool ?: run {
+            spooling = false
+            return
+        }
+        val (lines, offset) = synchronized(spoolLock) { target.read(maxBatch) }
+        if (lines.isEmpty()) {
+            synchronized(spoolLock) {
+                // 读取期间可能有新消息交来，先写入再确认一次
+                drainSpoolInbox()
+                if (target.read(1).first.isEmpty()) {
+                    target.clear()
+                    spooling = false
+                    logger.info("[WebBridge] 离线消息已全部重放")
+                }
+            }
+            return
+        }
+
+        if (send(client, lines)) {
+            replayed.addAndGet(lines.size.toLong())
+            synchronized(spoolLock) { target.advance(offset) }
+        } else {
+            Thread.sleep(RETRY_WAIT_MS)
+        }
+    }
+
+    /**
+     * 各消息分别编帧，合并为一次写出
+     */
+    private fun send(client: WebSocketClient, messages: List<String>): Boolean {
+        return try {
+            if (messages.size == 1) {
+                client.send(messages[0])
+            } else {
+                val frames = ArrayList<Framedata>(messages.size)
+                messages.forEach { frames.addAll(client.draft.createFrames(it, true)) }
+                client.sendFrame(frames)
+            }
+            sent.addAndGet(messages.size.toLong())
+            batches.incrementAndGet()
+            lastBatchSize = messages.size
+            true
+        } catch (e: Exception) {
+            sendFailures.incrementAndGet()
+            logger.log(Level.WARNING, "[WebBridge] 发送消息失败: ${e.message}")
+            false
+        }
+    }
+
+    companion object {
+        private const val IDLE_WAIT_MS = 500L
+        private const val RETRY_WAIT_MS = 1000L
+        private const val DISCONNECTED_WAIT_MS = 500L
+    }
+}
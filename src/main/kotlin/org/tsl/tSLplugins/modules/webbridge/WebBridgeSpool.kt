@@ -0,0 +1,131 @@
+package org.tsl.tSLplugins.modules.webbridge
+
+import java.io.BufferedWriter
+import java.io.File
+import java.io.FileOutputStream
+import java.io.OutputStreamWriter
+import java.io.RandomAccessFile
+import java.nio.charset.StandardCharsets
+
+/**
+ * WebBridge 离线消息缓冲文件（只追加）
+ *
+ * 每行一条 JSON 消息。断线期间的消息追加到文件末尾，重连后从读取位置按顺序重放，
+ * 全部重放完成后删除文件。插件重启时文件保留，下次连接后继续重放（至少一次语义）。
+ *
+ * 非线程安全：调用方负责加锁。
+ */
+class WebBridgeSpool(
+    private val file: File,
+    private val maxBytes: Long
+) {
+
+    private var writer: BufferedWriter? = null
+
+    /** 文件当前大小（含未刷新的缓冲） */
+    var sizeBytes: Long = if (file.exists()) file.length() else 0L
+        private set
+
+    /** 下一次读取的位置 */
+    private var readOffset: Long = 0L
+
+    /**
+     * 是否还有未重放的消息
+     */
+    fun hasPending(): Boolean = readOffset < sizeBytes
+
+    /**
+     * 追加一条消息
+     * @return 是否写入（超过大小上限时返回 false）
+     */
+    fun append(line: String): Boolean {
+        val bytes = line.toByteArray(StandardCharsets.UTF_8).size + 1L
+        if (sizeBytes + bytes > maxBytes) return false
+        val out = writer ?: openWriter()
+        out.write(line)
+        out.write('\n'.code)
+        sizeBytes += bytes
+        return true
+    }
+
+    /**
+     * 将缓冲写入磁盘
+     */
+    fun flush() {
+        writer?.flush()
+    }
+
+    /**
+     * 从读取位置读取最多 maxLines 条完整消息
+     * @return 消息列表和读取后的新位置（发送成功后调用 [advance]）
+     */
+    fun read(maxLines: Int): Pair<List<String>, Long> {
+        flush()
+        if (!hasPending() || !file.exists()) return emptyList<String>() to readOffset
+
+        val lines = ArrayList<String>(maxLines)
+        var offset = readOffset
+        RandomAccessFile(file, "r").use { raf ->
+            raf.seek(readOffset)
+            val buffer = ByteArray(READ_CHUNK)
+            val pending = java.io.ByteArrayOutputStream()
+            while (lines.size < maxLines) {
+                val n = raf.read(buffer)
+                if (n <= 0) break
+                var start = 0
+                for (i in 0 until n) {
+                    if (buffer[i] != '\n'.code.toByte()) continue
+                    pending.write(buffer, start, i - start)
+                    val lineBytes = pending.toByteArray()
+                    offset += lineBytes.size + 1
+                    pending.reset()
+                    start = i + 1
+                    if (lineBytes.isNotEmpty()) lines.add(String(lineBytes, StandardCharsets.UTF_8))
+                    if (lines.size >= maxLines) break
+                }
+                if (lines.size >= maxLines) break
+                pending.write(buffer, start, n - start)
+            }
+        }
+        return lines to offset
+    }
+
+    /**
+     * 确认已发送到指定位置
+     */
+    fun advance(offset: Long) {
+        readOffset = offset
+    }
+
+    /**
+     * 删除文件并重置状态（全部重放完成后调用）
+     */
+    fun clear() {
+        close()
+        file.delete()
+        sizeBytes = 0L
+        readOffset = 0L
+    }
+
+    /**
+     * 关闭写入流（保留文件）
+     */
+    fun close() {
+        try {
+            writer?.close()
+        } finally {
+            writer = null
+        }
+    }
+
+    private fun openWriter(): BufferedWriter {
+        file.parentFile?.mkdirs()
+        return BufferedWriter(OutputStreamWriter(FileOutputStream(file, true), StandardCharsets.UTF_8)).also {
+            writer = it
+        }
+    }
+
+    companion object {
+        private const val READ_CHUNK = 64 * 1024
+    }
+}
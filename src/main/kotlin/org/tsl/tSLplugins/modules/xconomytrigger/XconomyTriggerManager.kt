@@ -4,6 +4,7 @@ import org.bukkit.Bukkit
 import org.bukkit.entity.Player
 import org.bukkit.plugin.java.JavaPlugin
 import io.papermc.paper.threadedregions.scheduler.ScheduledTask
+import org.tsl.tSLplugins.service.EconomyBridge
 import java.util.UUID
 import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.TimeUnit
@@ -31,6 +32,11 @@ data class PlayerTriggerData(
 /**
  * XConomy 余额触发器管理器
  * 监控玩家余额并在达到阈值时执行控制台命令
+ *
+ * 余额检查由两部分驱动：
+ * - 余额变化通知（[EconomyBridge] 扣款、XConomy 账户事件）立即检查对应玩家
+ * - 分批轮询兜底：每秒检查一部分在线玩家，每个玩家在 scan-interval-seconds 内被检查一次，
+ *   不再在同一时刻扫描全部玩家
  */
 class XconomyTriggerManager(private val plugin: JavaPlugin) {
 
@@ -56,8 +62,11 @@ class XconomyTriggerManager(private val plugin: JavaPlugin) {
     // 异步扫描任务
     private var scanTask: ScheduledTask? = null
 
-    // XConomy API 封装
-    private val xconomyApi = XconomyApi(plugin)
+    // 本轮尚未检查的玩家
+    private val pending = ArrayDeque<UUID>()
+    private var playersPerSecond = 1
+
+    private val balanceListener: (UUID) -> Unit = { uuid -> onBalanceChanged(uuid) }
 
     /**
      * 加载配置
@@ -107,33 +116,35 @@ class XconomyTriggerManager(private val plugin: JavaPlugin) {
             return
         }
 
-        // 检查 XConomy 是否可用
-        if (!xconomyApi.isAvailable()) {
+        // 检查经济插件是否可用
+        EconomyBridge.setup(plugin)
+        if (!EconomyBridge.isAvailable()) {
             enabled = false
             plugin.logger.warning("[XconomyTrigger] XConomy 未安装或不可用，模块已禁用")
             return
         }
 
+        EconomyBridge.addBalanceListener(balanceListener)
         startScanTask()
         plugin.logger.info("[XconomyTrigger] 模块已初始化")
         plugin.logger.info("[XconomyTrigger] 低余额阈值: $lowBalanceThreshold, 高余额阈值: $highBalanceThreshold")
     }
 
     /**
-     * 启动异步扫描任务
+     * 启动异步扫描任务（每秒检查一批玩家）
      */
     private fun startScanTask() {
         stopScanTask()
 
         scanTask = Bukkit.getAsyncScheduler().runAtFixedRate(
             plugin,
-            { _ -> scanOnlinePlayers() },
-            scanIntervalSeconds,
-            scanIntervalSeconds,
+            { _ -> scanNextBatch() },
+            1L,
+            1L,
             TimeUnit.SECONDS
         )
 
-        plugin.logger.info("[XconomyTrigger] 扫描任务已启动，间隔: ${scanIntervalSeconds}s")
+        plugin.logger.info("[XconomyTrigger] 扫描任务已启动，每个玩家检查间隔: ${scanIntervalSeconds}s")
     }
 
     /**
@@ -142,16 +153,24 @@ class XconomyTriggerManager(private val plugin: JavaPlugin) {
     private fun stopScanTask() {
         scanTask?.cancel()
         scanTask = null
+        synchronized(pending) { pending.clear() }
     }
 
     /**
-     * 扫描所有在线玩家余额
+     * 检查本秒的一批玩家，本轮检查完后重新取在线玩家列表
      */
-    private fun scanOnlinePlayers() {
+    private fun scanNextBatch() {
         if (!enabled) return
 
-        val players = Bukkit.getOnlinePlayers()
-        for (player in players) {
+        val batch = synchronized(pending) {
+            if (pending.isEmpty()) {
+                Bukkit.getOnlinePlayers().forEach { pending.addLast(it.uniqueId) }
+                playersPerSecond = ((pending.size + scanIntervalSeconds - 1) / scanIntervalSeconds.coerceAtLeast(1L)).toInt().coerceAtLeast(1)
+            }
+            List(minOf(playersPerSecond, pending.size)) { pending.removeFirst() }
+        }
+        for (uuid in batch) {
+            val player = Bukkit.getPlayer(uuid) ?: continue
             try {
                 checkPlayerBalance(player)
             } catch (e: Exception) {
@@ -160,14 +179,32 @@ class XconomyTriggerManager(private val plugin: JavaPlugin) {
         }
     }
 
+    /**
+     * 余额变化通知（异步线程）
+     */
+    private fun onBalanceChanged(uuid: UUID) {
+        if (!enabled) return
+        val player = Bukkit.getPlayer(uuid) ?: return
+        try {
+            checkPlayerBalance(player)
+        } catch (e: Exception) {
+            plugin.logger.warning("[XconomyTrigger] 检查玩家 ${player.name} 余额时出错: ${e.message}")
+        }
+    }
+
     /**
      * 检查单个玩家余额并处理触发逻辑
      */
     private fun checkPlayerBalance(player: Player) {
         val uuid = player.uniqueId
-        val balance = xconomyApi.getBalance(player) ?: return
+        val balance = EconomyBridge.getBalance(player) ?: return
 
         val data = playerStates.getOrPut(uuid) { PlayerTriggerData() }
+        // 轮询和变化通知可能同时检查同一玩家
+        synchronized(data) { evaluate(player, data, balance) }
+    }
+
+    private fun evaluate(player: Player, data: PlayerTriggerData, balance: Double) {
         val now = System.currentTimeMillis()
         val cooldownMs = playerCooldownSeconds * 1000
 
@@ -240,10 +277,14 @@ class XconomyTriggerManager(private val plugin: JavaPlugin) {
      */
     fun reload() {
         stopScanTask()
+        EconomyBridge.removeBalanceListener(balanceListener)
         playerStates.clear()
         loadConfig()
+        EconomyBridge.setup(plugin)
+        EconomyBridge.reload()
 
-        if (enabled && xconomyApi.isAvailable()) {
+        if (enabled && EconomyBridge.isAvailable()) {
+            EconomyBridge.addBalanceListener(balanceListener)
             startScanTask()
             plugin.logger.info("[XconomyTrigger] 模块已重新加载")
         } else if (enabled) {
@@ -257,6 +298,7 @@ class XconomyTriggerManager(private val plugin: JavaPlugin) {
      */
     fun shutdown() {
         stopScanTask()
+        EconomyBridge.removeBalanceListener(balanceListener)
         playerStates.clear()
         plugin.logger.info("[XconomyTrigger] 模块已关闭")
     }
@@ -266,6 +308,7 @@ class XconomyTriggerManager(private val plugin: JavaPlugin) {
      */
     fun onPlayerQuit(uuid: UUID) {
         playerStates.remove(uuid)
+        EconomyBridge.forget(uuid)
     }
 
     /**
@@ -6,8 +6,16 @@ import java.sql.Connection
 import java.sql.DriverManager
 import java.sql.PreparedStatement
 import java.sql.ResultSet
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
 import java.util.concurrent.Executors
 import java.util.concurrent.ExecutorService
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 
 /**
  * 全局数据库管理器
@@ -15,6 +23,15 @@ import java.util.concurrent.ExecutorService
  * 
  * 注意：getConnection() 返回的连接是单例的，不要调用 .use{} 或 .close()
  * 使用 execute/query/update 方法进行安全的数据库操作
+ *
+ * 写后队列（write-behind）：
+ * 高频小写入应使用 [enqueueWrite]，多条写入会合并到同一个事务中提交（group commit），
+ * 只付出一次 fsync 开销。队列达到 batch-size 或最早一条等待超过 max-delay-ms 时提交；
+ * 在数据库线程上调用 [getConnection] 前会先提交队列，保证之后的读取能看到之前的写入。
+ *
+ * 读连接池：
+ * [query] 优先使用独立的只读 WAL 连接，读取不必等待写连接上的事务；
+ * 只读连接只能看到已提交的数据。写连接和每个只读连接各自缓存 PreparedStatement。
  */
 object DatabaseManager {
 
@@ -25,14 +42,98 @@ object DatabaseManager {
     private var dbFile: File? = null
     private var tablePrefix: String = "tsl_"
 
-    // 单线程执行器，确保数据库操作顺序执行
-    private var executor: ExecutorService? = null
+    // 单线程执行器，确保数据库操作顺序执行（同时用于调度写后队列的定时提交）
+    private var executor: ScheduledExecutorService? = null
+
+    // 语句缓存命中统计（写连接与只读连接共用）
+    private val statementCacheHits = AtomicLong(0)
+    private val statementCacheMisses = AtomicLong(0)
+
+    // 写连接的语句缓存（受 connectionLock 保护）
+    private val writerStatements = PreparedStatementCache(statementCacheHits, statementCacheMisses)
+
+    // ========== 只读连接池 ==========
+
+    private class ReadConnection(val connection: Connection) {
+        val statements = PreparedStatementCache(statementCacheHits, statementCacheMisses)
+    }
+
+    private val readPool = LinkedBlockingQueue<ReadConnection>()
+    private var readPoolSize = 0
+    private var readExecutor: ExecutorService? = null
+    private val pooledReads = AtomicLong(0)
+    private val writerReads = AtomicLong(0)
+
+    /**
+     * 连接与语句缓存统计
+     */
+    data class ConnectionStats(
+        val readPoolSize: Int,
+        val idleReaders: Int,
+        val pooledReads: Long,
+        val writerReads: Long,
+        val statementCacheHits: Long,
+        val statementCacheMisses: Long
+    )
+
+    @Volatile
+    private var databaseThread: Thread? = null
+
+    /** shutdown() 之后为 true：拒绝新的写入，不再重新打开连接 */
+    @Volatile
+    private var closed = false
+
+    // ========== 写后队列 ==========
+
+    private class PendingWrite(
+        val sql: String,
+        val params: (PreparedStatement) -> Unit,
+        val future: CompletableFuture<Int>
+    )
+
+    private val writeQueue = ConcurrentLinkedQueue<PendingWrite>()
+    private val queueDepth = AtomicInteger(0)
+    private val delayedFlushScheduled = AtomicBoolean(false)
+    private val batchFlushSubmitted = AtomicBoolean(false)
+    @Volatile
+    private var flushInProgress = false
+
+    private var writeBehindEnabled = true
+    private var writeBatchSize = 200
+    private var writeMaxDelayMs = 500L
+
+    // 提交统计
+    private val committedBatches = AtomicLong(0)
+    private val committedWrites = AtomicLong(0)
+    private val failedWrites = AtomicLong(0)
+    private val totalCommitNanos = AtomicLong(0)
+    private val maxCommitNanos = AtomicLong(0)
+    @Volatile
+    private var lastCommitNanos = 0L
+    @Volatile
+    private var lastBatchSize = 0
+
+    /**
+     * 写后队列统计
+     */
+    data class WriteQueueStats(
+        val enabled: Boolean,
+        val queueDepth: Int,
+        val batches: Long,
+        val writes: Long,
+        val failedWrites: Long,
+        val lastBatchSize: Int,
+        val lastCommitMs: Double,
+        val avgCommitMs: Double,
+        val maxCommitMs: Double
+    )
 
     /**
      * 初始化数据库管理器
      */
     fun init(plugin: JavaPlugin) {
         this.plugin = plugin
+        closed = false
 
         val config = plugin.config
         tablePrefix = config.getString("database.table-prefix", "tsl_") ?: "tsl_"
@@ -41,15 +142,26 @@ object DatabaseManager {
         dbFile = File(plugin.dataFolder, dbPath)
         dbFile?.parentFile?.mkdirs()
 
+        writeBehindEnabled = config.getBoolean("database.write-behind.enabled", true)
+        writeBatchSize = config.getInt("database.write-behind.batch-size", 200).coerceAtLeast(1)
+        writeMaxDelayMs = config.getLong("database.write-behind.max-delay-ms", 500L).coerceAtLeast(0L)
+        readPoolSize = config.getInt("database.read-pool-size", 2).coerceIn(0, 8)
+
         // 创建执行器
-        executor = Executors.newSingleThreadExecutor { r ->
-            Thread(r, "TSL-Database").apply { isDaemon = true }
+        executor = Executors.newSingleThreadScheduledExecutor { r ->
+            Thread(r, "TSL-Database").apply {
+                isDaemon = true
+                databaseThread = this
+            }
         }
 
         // 初始化连接并启用 WAL 模式（不要用 .use{} 关闭连接）
         execute("PRAGMA journal_mode=WAL")
 
-        plugin.logger.info("[Database] 全局数据库已初始化: ${dbFile?.absolutePath}")
+        // WAL 模式下只读连接可与写连接并发
+        openReadPool()
+
+        plugin.logger.info("[Database] 全局数据库已初始化: ${dbFile?.absolutePath} (只读连接: ${readPool.size})")
     }
 
     /**
@@ -57,27 +169,79 @@ object DatabaseManager {
      * 
      * 警告：此连接是共享的，不要关闭它！
      * 推荐使用 execute/query/update 方法代替直接操作连接
+     *
+     * 在数据库线程上调用时会先提交写后队列中的写入，保持操作顺序。
      */
     fun getConnection(): Connection {
+        if (Thread.currentThread() === databaseThread && !flushInProgress && !writeQueue.isEmpty()) {
+            flushPendingWrites()
+        }
+        return obtainConnection()
+    }
+
+    private fun obtainConnection(): Connection {
         synchronized(connectionLock) {
             val conn = connection
             if (conn != null && !conn.isClosed) {
                 return conn
             }
+            check(!closed) { "DatabaseManager already shut down" }
             val file = dbFile ?: throw IllegalStateException("DatabaseManager not initialized")
             val newConn = DriverManager.getConnection("jdbc:sqlite:${file.absolutePath}")
+            writerStatements.clear()
             connection = newConn
             return newConn
         }
     }
+
+    private fun openReadConnection(): ReadConnection? {
+        val file = dbFile ?: return null
+        return try {
+            val conn = DriverManager.getConnection("jdbc:sqlite:${file.absolutePath}")
+            conn.createStatement().use { stmt ->
+                stmt.execute("PRAGMA query_only=1")
+            }
+            ReadConnection(conn)
+        } catch (e: Exception) {
+            plugin?.logger?.warning("[Database] 打开只读连接失败: ${e.message}")
+            null
+        }
+    }
+
+    private fun openReadPool() {
+        repeat(readPoolSize) {
+            openReadConnection()?.let { readPool.offer(it) }
+        }
+        if (readPool.isNotEmpty()) {
+            readExecutor = Executors.newFixedThreadPool(readPool.size, object : java.util.concurrent.ThreadFactory {
+                private val counter = AtomicInteger(0)
+                override fun newThread(r: Runnable): Thread {
+                    return Thread(r, "TSL-Database-Read-${counter.incrementAndGet()}").apply { isDaemon = true }
+                }
+            })
+        }
+    }
+
+    private fun closeReadPool() {
+        readExecutor?.shutdown()
+        readExecutor = null
+        while (true) {
+            val reader = readPool.poll() ?: break
+            reader.statements.clear()
+            runCatching { reader.connection.close() }
+        }
+    }
     
     /**
      * 执行 SQL 语句（无返回值）
      */
     fun execute(sql: String): Boolean {
         return try {
-            getConnection().createStatement().use { stmt ->
-                stmt.execute(sql)
+            val conn = getConnection()
+            synchronized(connectionLock) {
+                conn.createStatement().use { stmt ->
+                    stmt.execute(sql)
+                }
             }
             true
         } catch (e: Exception) {
@@ -92,8 +256,11 @@ object DatabaseManager {
      */
     fun executeUpdate(sql: String): Int {
         return try {
-            getConnection().createStatement().use { stmt ->
-                stmt.executeUpdate(sql)
+            val conn = getConnection()
+            synchronized(connectionLock) {
+                conn.createStatement().use { stmt ->
+                    stmt.executeUpdate(sql)
+                }
             }
         } catch (e: Exception) {
             plugin?.logger?.warning("[Database] 执行更新失败: ${e.message}")
@@ -108,13 +275,41 @@ object DatabaseManager {
      * @param handler 结果处理函数
      */
     fun <T> query(sql: String, params: (PreparedStatement) -> Unit, handler: (ResultSet) -> T): T? {
-        return try {
-            getConnection().prepareStatement(sql).use { stmt ->
+        // 数据库线程上的读取需要看到此前排队的写入
+        if (Thread.currentThread() === databaseThread && !flushInProgress && !writeQueue.isEmpty()) {
+            flushPendingWrites()
+        }
+
+        val reader = readPool.poll()
+        if (reader != null) {
+            var healthy = true
+            try {
+                val stmt = reader.statements.get(reader.connection, sql)
                 params(stmt)
-                stmt.executeQuery().use { rs ->
-                    handler(rs)
+                return stmt.executeQuery().use { rs -> handler(rs) }.also { pooledReads.incrementAndGet() }
+            } catch (e: java.sql.SQLException) {
+                healthy = !reader.connection.isClosed
+                plugin?.logger?.warning("[Database] 查询失败: ${e.message}")
+                return null
+            } catch (e: Exception) {
+                plugin?.logger?.warning("[Database] 查询失败: ${e.message}")
+                return null
+            } finally {
+                if (healthy) {
+                    readPool.offer(reader)
+                } else {
+                    reader.statements.clear()
+                    openReadConnection()?.let { readPool.offer(it) }
                 }
             }
+        }
+
+        return try {
+            synchronized(connectionLock) {
+                val stmt = writerStatements.get(obtainConnection(), sql)
+                params(stmt)
+                stmt.executeQuery().use { rs -> handler(rs) }.also { writerReads.incrementAndGet() }
+            }
         } catch (e: Exception) {
             plugin?.logger?.warning("[Database] 查询失败: ${e.message}")
             null
@@ -129,7 +324,9 @@ object DatabaseManager {
      */
     fun update(sql: String, params: (PreparedStatement) -> Unit): Int {
         return try {
-            getConnection().prepareStatement(sql).use { stmt ->
+            val conn = getConnection()
+            synchronized(connectionLock) {
+                val stmt = writerStatements.get(conn, sql)
                 params(stmt)
                 stmt.executeUpdate()
             }
@@ -139,6 +336,202 @@ object DatabaseManager {
         }
     }
 
+    /**
+     * 在单个事务中对多条数据执行同一语句（同步）
+     * @param sql SQL 语句
+     * @param items 数据
+     * @param params 为每条数据设置参数
+     * @return 是否全部提交成功（失败时整批回滚）
+     */
+    fun <T> updateBatch(sql: String, items: List<T>, params: (PreparedStatement, T) -> Unit): Boolean {
+        if (items.isEmpty()) return true
+        return try {
+            val conn = getConnection()
+            synchronized(connectionLock) {
+                val stmt = writerStatements.get(conn, sql)
+                conn.autoCommit = false
+                try {
+                    items.forEach { item ->
+                        params(stmt, item)
+                        stmt.addBatch()
+                    }
+                    stmt.executeBatch()
+                    conn.commit()
+                    true
+                } catch (e: Exception) {
+                    runCatching { conn.rollback() }
+                    throw e
+                } finally {
+                    // 语句是缓存复用的，失败时残留的批次不能带到下一次调用
+                    runCatching { stmt.clearBatch() }
+                    runCatching { conn.autoCommit = true }
+                }
+            }
+        } catch (e: Exception) {
+            plugin?.logger?.warning("[Database] 批量更新失败: ${e.message}")
+            false
+        }
+    }
+
+    /**
+     * 将写入加入写后队列，与其他待提交写入合并为一个事务
+     *
+     * 适用于不需要立即确认的高频小写入（在线时长、效果状态等）。
+     * 同一队列内的写入按加入顺序执行。
+     *
+     * @param sql SQL 语句
+     * @param params 参数设置函数（在数据库线程上调用）
+     * @return 提交后完成的 Future，值为受影响的行数，失败为 -1
+     */
+    fun enqueueWrite(sql: String, params: (PreparedStatement) -> Unit): CompletableFuture<Int> {
+        if (closed) {
+            plugin?.logger?.warning("[Database] 数据库已关闭，丢弃写入: $sql")
+            return CompletableFuture.completedFuture(-1)
+        }
+        val exec = executor
+        if (exec == null || exec.isShutdown) {
+            // 已关闭：同步执行，避免丢失写入
+            return CompletableFuture.completedFuture(update(sql, params))
+        }
+        if (!writeBehindEnabled) {
+            return CompletableFuture.supplyAsync({ update(sql, params) }, exec)
+        }
+
+        val future = CompletableFuture<Int>()
+        writeQueue.add(PendingWrite(sql, params, future))
+        val depth = queueDepth.incrementAndGet()
+
+        try {
+            if (depth >= writeBatchSize) {
+                if (batchFlushSubmitted.compareAndSet(false, true)) {
+                    exec.execute { flushPendingWrites() }
+                }
+            } else if (delayedFlushScheduled.compareAndSet(false, true)) {
+                exec.schedule({ flushPendingWrites() }, writeMaxDelayMs, TimeUnit.MILLISECONDS)
+            }
+        } catch (e: java.util.concurrent.RejectedExecutionException) {
+            // 执行器正在关闭，由 shutdown 中的同步提交处理
+        }
+        return future
+    }
+
+    /**
+     * 立即提交写后队列中的所有写入（同步）
+     */
+    fun flushPendingWrites() {
+        if (writeQueue.isEmpty()) return
+        synchronized(connectionLock) {
+            delayedFlushScheduled.set(false)
+            batchFlushSubmitted.set(false)
+            flushInProgress = true
+            try {
+                while (true) {
+                    val batch = ArrayList<PendingWrite>(minOf(writeBatchSize, queueDepth.get().coerceAtLeast(1)))
+                    while (batch.size < writeBatchSize) {
+                        batch.add(writeQueue.poll() ?: break)
+                    }
+                    if (batch.isEmpty()) break
+                    queueDepth.addAndGet(-batch.size)
+                    commitBatch(batch)
+                }
+            } finally {
+                flushInProgress = false
+            }
+        }
+    }
+
+    /**
+     * 在单个事务中执行一批写入；事务失败时回滚并逐条重试，避免一条坏数据拖累整批
+     */
+    private fun commitBatch(batch: List<PendingWrite>) {
+        val results = IntArray(batch.size)
+        val start = System.nanoTime()
+        var committed = false
+        try {
+            val conn = obtainConnection()
+            conn.autoCommit = false
+            try {
+                batch.forEachIndexed { index, write ->
+                    val stmt = writerStatements.get(conn, write.sql)
+                    write.params(stmt)
+                    results[index] = stmt.executeUpdate()
+                }
+                conn.commit()
+                committed = true
+            } catch (e: Exception) {
+                runCatching { conn.rollback() }
+                plugin?.logger?.warning("[Database] 批量提交失败，改为逐条执行: ${e.message}")
+            } finally {
+                runCatching { conn.autoCommit = true }
+            }
+        } catch (e: Exception) {
+            plugin?.logger?.warning("[Database] 获取连接失败: ${e.message}")
+        }
+
+        if (committed) {
+            recordCommit(batch.size, System.nanoTime() - start)
+            batch.forEachIndexed { index, write -> write.future.complete(results[index]) }
+            return
+        }
+
+        batch.forEach { write ->
+            val rows = update(write.sql, write.params)
+            if (rows < 0) failedWrites.incrementAndGet() else committedWrites.incrementAndGet()
+            write.future.complete(rows)
+        }
+    }
+
+    private fun recordCommit(size: Int, nanos: Long) {
+        committedBatches.incrementAndGet()
+        committedWrites.addAndGet(size.toLong())
+        totalCommitNanos.addAndGet(nanos)
+        maxCommitNanos.accumulateAndGet(nanos) { a, b -> maxOf(a, b) }
+        lastCommitNanos = nanos
+        lastBatchSize = size
+    }
+
+    /**
+     * 获取写后队列统计（队列深度、提交次数与提交耗时）
+     */
+    fun getWriteQueueStats(): WriteQueueStats {
+        val batches = committedBatches.get()
+        return WriteQueueStats(
+            enabled = writeBehindEnabled,
+            queueDepth = queueDepth.get(),
+            batches = batches,
+            writes = committedWrites.get(),
+            failedWrites = failedWrites.get(),
+            lastBatchSize = lastBatchSize,
+            lastCommitMs = lastCommitNanos / 1_000_000.0,
+            avgCommitMs = if (batches > 0) totalCommitNanos.get() / batches / 1_000_000.0 else 0.0,
+            maxCommitMs = maxCommitNanos.get() / 1_000_000.0
+        )
+    }
+
+    /**
+     * 获取连接池与语句缓存统计
+     */
+    fun getConnectionStats(): ConnectionStats {
+        return ConnectionStats(
+            readPoolSize = readPoolSize,
+            idleReaders = readPool.size,
+            pooledReads = pooledReads.get(),
+            writerReads = writerReads.get(),
+            statementCacheHits = statementCacheHits.get(),
+            statementCacheMisses = statementCacheMisses.get()
+        )
+    }
+
+    /**
+     * 获取只读查询执行器
+     *
+     * 用于不依赖写后队列可见性的读取（只能看到已提交的数据）。
+     * 未启用只读连接池时返回主数据库执行器。
+     */
+    fun getReadExecutor(): ExecutorService {
+        return readExecutor ?: getExecutor()
+    }
+
     /**
      * 获取表前缀
      */
@@ -170,10 +563,29 @@ object DatabaseManager {
      */
     fun shutdown() {
         try {
-            executor?.shutdown()
+            // 等待已提交的任务完成，再同步提交写后队列中剩余的写入
+            executor?.let { exec ->
+                exec.shutdown()
+                if (!exec.awaitTermination(5, TimeUnit.SECONDS)) {
+                    plugin?.logger?.warning("[Database] 等待数据库任务超时")
+                }
+            }
             executor = null
+            databaseThread = null
+            flushPendingWrites()
+            closed = true
+            closeReadPool()
+
+            val stats = getWriteQueueStats()
+            if (stats.batches > 0) {
+                plugin?.logger?.info(
+                    "[Database] 写后队列: ${stats.writes} 条写入 / ${stats.batches} 次提交, " +
+                        "平均提交耗时 ${"%.2f".format(stats.avgCommitMs)}ms"
+                )
+            }
 
             synchronized(connectionLock) {
+                writerStatements.clear()
                 connection?.close()
                 connection = null
             }
@@ -189,8 +601,11 @@ object DatabaseManager {
      */
     fun createTable(sql: String) {
         try {
-            getConnection().createStatement().use { stmt ->
-                stmt.execute(sql)
+            val conn = getConnection()
+            synchronized(connectionLock) {
+                conn.createStatement().use { stmt ->
+                    stmt.execute(sql)
+                }
             }
         } catch (e: Exception) {
             plugin?.logger?.warning("[Database] 创建表失败: ${e.message}")
@@ -202,8 +617,11 @@ object DatabaseManager {
      */
     fun createIndex(sql: String) {
         try {
-            getConnection().createStatement().use { stmt ->
-                stmt.execute(sql)
+            val conn = getConnection()
+            synchronized(connectionLock) {
+                conn.createStatement().use { stmt ->
+                    stmt.execute(sql)
+                }
             }
         } catch (e: Exception) {
             plugin?.logger?.warning("[Database] 创建索引失败: ${e.message}")
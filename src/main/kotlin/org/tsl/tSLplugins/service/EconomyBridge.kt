@@ -0,0 +1,357 @@
+package org.tsl.tSLplugins.service
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask
+import org.bukkit.Bukkit
+import org.bukkit.OfflinePlayer
+import org.bukkit.entity.Player
+import org.bukkit.event.Event
+import org.bukkit.event.EventPriority
+import org.bukkit.event.HandlerList
+import org.bukkit.event.Listener
+import org.bukkit.plugin.EventExecutor
+import org.bukkit.plugin.java.JavaPlugin
+import java.lang.invoke.MethodHandle
+import java.lang.invoke.MethodHandles
+import java.lang.invoke.MethodType
+import java.lang.reflect.Method
+import java.lang.reflect.Modifier
+import java.math.BigDecimal
+import java.util.UUID
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+/**
+ * 共享经济接口（XConomy / Vault）
+ *
+ * - 经济插件的方法只在检测时解析一次并转换为 MethodHandle，之后调用不再经过 Method.invoke
+ * - 优先使用 XConomy API，不可用时使用 Vault 注册的 Economy 服务；两者都通过反射解析，无硬依赖
+ * - 余额按玩家缓存 balance-cache-ms 毫秒，扣款后立即失效
+ * - 余额变化（本插件扣款、XConomy 账户事件）会通知 [addBalanceListener] 注册的监听器，
+ *   监听器在异步线程上调用
+ *
+ * 各模块在启用时调用 [setup]，多次调用只检测一次；[reload] 重新检测并读取配置。
+ */
+object EconomyBridge {
+
+    /**
+     * 经济后端（句柄均已绑定接收者并转换为通用类型）
+     */
+    private class Backend(
+        val name: String,
+        /** (UUID) -> 余额 */
+        val balance: MethodHandle,
+        /** 扣款，参数见 [withdrawArgs] */
+        val withdraw: MethodHandle?,
+        val withdrawArgs: (Player, Any) -> Array<Any?>,
+        /** 扣款金额的类型（BigDecimal 或 Double） */
+        val decimalAmount: Boolean,
+        /** 扣款返回值 -> 是否成功 */
+        val withdrawResult: (Any?) -> Boolean
+    )
+
+    private class CachedBalance(val balance: Double, val time: Long)
+
+    private var plugin: JavaPlugin? = null
+
+    @Volatile
+    private var backend: Backend? = null
+    private var cacheTtlMs = 2000L
+
+    private val cache = ConcurrentHashMap<UUID, CachedBalance>()
+    private val listeners = CopyOnWriteArrayList<(UUID) -> Unit>()
+    private var accountListener: Listener? = null
+
+    /** XConomy 账户变化事件（不同版本的类名） */
+    private val ACCOUNT_EVENT_CLASSES = listOf(
+        "me.yic.xconomy.api.event.PlayerAccountEvent",
+        "me.yic.xconomy.api.event.PlayerBalanceChangeEvent"
+    )
+
+    /** 账户事件到通知的延迟（等待余额写入） */
+    private const val ACCOUNT_EVENT_DELAY_MS = 100L
+
+    /**
+     * 首次使用时检测经济插件
+     */
+    @Synchronized
+    fun setup(plugin: JavaPlugin) {
+        if (this.plugin != null) return
+        this.plugin = plugin
+        detect()
+    }
+
+    /**
+     * 重新读取配置并检测经济插件
+     */
+    @Synchronized
+    fun reload() {
+        if (plugin == null) return
+        unregisterAccountListener()
+        cache.clear()
+        detect()
+    }
+
+    @Synchronized
+    fun shutdown() {
+        unregisterAccountListener()
+        listeners.clear()
+        cache.clear()
+        backend = null
+        plugin = null
+    }
+
+    fun isAvailable(): Boolean = backend != null
+
+    fun canWithdraw(): Boolean = backend?.withdraw != null
+
+    fun getBackendName(): String = backend?.name ?: "无"
+
+    /**
+     * 获取玩家余额
+     * @param maxAgeMs 可接受的缓存时长，0 表示强制查询
+     * @return 余额，经济插件不可用或查询失败时返回 null
+     */
+    fun getBalance(uuid: UUID, maxAgeMs: Long = cacheTtlMs): Double? {
+        val current = backend ?: return null
+        val now = System.currentTimeMillis()
+        if (maxAgeMs > 0) {
+            val cached = cache[uuid]
+            if (cached != null && now - cached.time <= maxAgeMs) return cached.balance
+        }
+        return try {
+            val balance = toDouble(current.balance.invoke(uuid as Any?)) ?: return null
+            cache[uuid] = CachedBalance(balance, now)
+            balance
+        } catch (e: Throwable) {
+            plugin?.logger?.warning("[EconomyBridge] 获取玩家 $uuid 余额失败: ${e.message}")
+            null
+        }
+    }
+
+    fun getBalance(player: Player, maxAgeMs: Long = cacheTtlMs): Double? = getBalance(player.uniqueId, maxAgeMs)
+
+    /**
+     * 从玩家账户扣款（成功后缓存失效并通知监听器）
+     */
+    fun withdraw(player: Player, amount: Double): Boolean {
+        val current = backend ?: return false
+        val handle = current.withdraw ?: return false
+        val value: Any = if (current.decimalAmount) BigDecimal.valueOf(amount) else amount
+        val success = try {
+            current.withdrawResult(handle.invokeWithArgs(current.withdrawArgs(player, value)))
+        } catch (e: Throwable) {
+            plugin?.logger?.warning("[EconomyBridge] 扣除玩家 ${player.name} 金币失败: ${e.message}")
+            false
+        }
+        if (success) notifyChanged(player.uniqueId, 0L)
+        return success
+    }
+
+    /**
+     * 使缓存失效（外部已知余额变化时调用）
+     */
+    fun invalidate(uuid: UUID) {
+        cache.remove(uuid)
+    }
+
+    /**
+     * 注册余额变化监听器（在异步线程上调用）
+     */
+    fun addBalanceListener(listener: (UUID) -> Unit) {
+        listeners.add(listener)
+    }
+
+    fun removeBalanceListener(listener: (UUID) -> Unit) {
+        listeners.remove(listener)
+    }
+
+    /**
+     * 玩家退出时清理缓存
+     */
+    fun forget(uuid: UUID) {
+        cache.remove(uuid)
+    }
+
+    // ==================== 检测 ====================
+
+    private fun detect() {
+        val plugin = plugin ?: return
+        cacheTtlMs = plugin.config.getLong("economy.balance-cache-ms", 2000L).coerceAtLeast(0L)
+        backend = detectXConomy(plugin) ?: detectVault(plugin)
+        val current = backend
+        if (current == null) {
+            plugin.logger.info("[EconomyBridge] 未找到可用的经济插件（XConomy / Vault）")
+            return
+        }
+        plugin.logger.info("[EconomyBridge] 经济接口已加载: ${current.name} (扣款: ${if (current.withdraw != null) "可用" else "不可用"})")
+        if (current.name == "XConomy") registerAccountListener(plugin)
+    }
+
+    private fun detectXConomy(plugin: JavaPlugin): Backend? {
+        val xconomy = Bukkit.getPluginManager().getPlugin("XConomy")
+        if (xconomy == null || !xconomy.isEnabled) return null
+        return try {
+            val apiClass = Class.forName("me.yic.xconomy.api.XConomyAPI", true, xconomy.javaClass.classLoader)
+            // 实例方法需要一个 API 对象，静态方法不需要
+            val instance by lazy { apiClass.getConstructor().newInstance() }
+
+            val balanceMethod = findMethod(apiClass, "getPlayerBalance", UUID::class.java)
+                ?: findMethod(apiClass, "getBalance", UUID::class.java)
+            if (balanceMethod == null) {
+                plugin.logger.warning("[EconomyBridge] 无法找到 XConomy 余额查询方法")
+                return null
+            }
+
+            // changePlayerBalance(UUID, String, BigDecimal, Boolean) / changePlayerBalance(UUID, BigDecimal, Boolean) / takeBalance(UUID, BigDecimal)
+            val changeMethod = findMethod(apiClass, "changePlayerBalance", UUID::class.java, String::class.java, BigDecimal::class.java, java.lang.Boolean.TYPE)
+                ?: findMethod(apiClass, "changePlayerBalance", UUID::class.java, String::class.java, BigDecimal::class.java, java.lang.Boolean::class.java)
+                ?: findMethod(apiClass, "changePlayerBalance", UUID::class.java, BigDecimal::class.java, java.lang.Boolean.TYPE)
+                ?: findMethod(apiClass, "changePlayerBalance", UUID::class.java, BigDecimal::class.java, java.lang.Boolean::class.java)
+                ?: findMethod(apiClass, "takeBalance", UUID::class.java, BigDecimal::class.java)
+
+            val withdrawArgs: (Player, Any) -> Array<Any?> = when (changeMethod?.parameterCount) {
+                4 -> { player, amount -> arrayOf(player.uniqueId, player.name, amount, false) }
+                3 -> { player, amount -> arrayOf(player.uniqueId, amount, false) }
+                else -> { player, amount -> arrayOf(player.uniqueId, amount) }
+            }
+
+            Backend(
+                name = "XConomy",
+                balance = toHandle(balanceMethod) { instance },
+                withdraw = changeMethod?.let { toHandle(it) { instance } },
+                withdrawArgs = withdrawArgs,
+                decimalAmount = true,
+                // changePlayerBalance 返回数字时 0 表示成功、非 0 表示失败；返回其它类型时除 false 外都视为成功
+                withdrawResult = { result -> if (result is Number) result.toInt() == 0 else result != false }
+            )
+        } catch (e: ClassNotFoundException) {
+            plugin.logger.info("[EconomyBridge] XConomy API 类未找到")
+            null
+        } catch (e: Exception) {
+            plugin.logger.warning("[EconomyBridge] 检测 XConomy 时出错: ${e.message}")
+            null
+        }
+    }
+
+    private fun detectVault(plugin: JavaPlugin): Backend? {
+        val vault = Bukkit.getPluginManager().getPlugin("Vault")
+        if (vault == null || !vault.isEnabled) return null
+        return try {
+            val economyClass = Class.forName("net.milkbowl.vault.economy.Economy", true, vault.javaClass.classLoader)
+            val provider = Bukkit.getServicesManager().getRegistration(economyClass)?.provider ?: return null
+            val balanceMethod = economyClass.getMethod("getBalance", OfflinePlayer::class.java)
+            val withdrawMethod = economyClass.getMethod("withdrawPlayer", OfflinePlayer::class.java, java.lang.Double.TYPE)
+            val responseClass = Class.forName("net.milkbowl.vault.economy.EconomyResponse", true, vault.javaClass.classLoader)
+            val successHandle = MethodHandles.publicLookup().unreflect(responseClass.getMethod("transactionSuccess"))
+                .asType(MethodType.genericMethodType(1))
+
+            // Vault 按 OfflinePlayer 查询，先把 UUID 转换过去
+            val toOffline = MethodHandles.publicLookup()
+                .findStatic(Bukkit::class.java, "getOfflinePlayer", MethodType.methodType(OfflinePlayer::class.java, UUID::class.java))
+            val balance = MethodHandles.filterArguments(
+                MethodHandles.publicLookup().unreflect(balanceMethod).bindTo(provider), 0, toOffline
+            ).asType(MethodType.genericMethodType(1))
+
+            Backend(
+                name = "Vault (${provider.javaClass.simpleName})",
+                balance = balance,
+                withdraw = MethodHandles.publicLookup().unreflect(withdrawMethod).bindTo(provider).asType(MethodType.genericMethodType(2)),
+                withdrawArgs = { player, amount -> arrayOf(player, amount) },
+                decimalAmount = false,
+                withdrawResult = { result -> result != null && successHandle.invoke(result) == true }
+            )
+        } catch (e: ClassNotFoundException) {
+            null
+        } catch (e: Exception) {
+            plugin.logger.warning("[EconomyBridge] 检测 Vault 时出错: ${e.message}")
+            null
+        }
+    }
+
+    private fun findMethod(owner: Class<*>, name: String, vararg parameterTypes: Class<*>): Method? =
+        try { owner.getMethod(name, *parameterTypes) } catch (e: NoSuchMethodException) { null }
+
+    /**
+     * Method -> 绑定接收者后的通用类型 MethodHandle（参数与返回值均为 Object）
+     */
+    private fun toHandle(method: Method, instance: () -> Any): MethodHandle {
+        var handle = MethodHandles.publicLookup().unreflect(method)
+        if (!Modifier.isStatic(method.modifiers)) handle = handle.bindTo(instance())
+        return handle.asType(MethodType.genericMethodType(method.parameterCount))
+    }
+
+    private fun MethodHandle.invokeWithArgs(args: Array<Any?>): Any? = when (args.size) {
+        2 -> invoke(args[0], args[1])
+        3 -> invoke(args[0], args[1], args[2])
+        4 -> invoke(args[0], args[1], args[2], args[3])
+        else -> invokeWithArguments(*args)
+    }
+
+    private fun toDouble(result: Any?): Double? = when (result) {
+        is Double -> result
+        is Number -> result.toDouble()
+        else -> {
+            plugin?.logger?.warning("[EconomyBridge] 未知的余额返回类型: ${result?.javaClass}")
+            null
+        }
+    }
+
+    // ==================== 余额变化通知 ====================
+
+    /**
+     * 监听 XConomy 账户事件（事件可能在余额写入前触发，延迟后再通知）
+     */
+    private fun registerAccountListener(plugin: JavaPlugin) {
+        val xconomy = Bukkit.getPluginManager().getPlugin("XConomy") ?: return
+        for (className in ACCOUNT_EVENT_CLASSES) {
+            val eventClass = try {
+                Class.forName(className, true, xconomy.javaClass.classLoader)
+            } catch (e: ClassNotFoundException) {
+                continue
+            }
+            if (!Event::class.java.isAssignableFrom(eventClass)) continue
+            // 事件中返回 UUID 的无参方法
+            val uuidMethod = eventClass.methods.firstOrNull { it.parameterCount == 0 && it.returnType == UUID::class.java } ?: continue
+            val uuidHandle = MethodHandles.publicLookup().unreflect(uuidMethod).asType(MethodType.genericMethodType(1))
+
+            val listener = object : Listener {}
+            val executor = EventExecutor { _, event ->
+                if (!eventClass.isInstance(event)) return@EventExecutor
+                val uuid = uuidHandle.invoke(event as Any?) as? UUID ?: return@EventExecutor
+                notifyChanged(uuid, ACCOUNT_EVENT_DELAY_MS)
+            }
+            @Suppress("UNCHECKED_CAST")
+            Bukkit.getPluginManager().registerEvent(eventClass as Class<out Event>, listener, EventPriority.MONITOR, executor, plugin, true)
+            accountListener = listener
+            plugin.logger.info("[EconomyBridge] 已监听 XConomy 账户事件: ${eventClass.simpleName}")
+            return
+        }
+    }
+
+    private fun unregisterAccountListener() {
+        accountListener?.let { HandlerList.unregisterAll(it) }
+        accountListener = null
+    }
+
+    private fun notifyChanged(uuid: UUID, delayMs: Long) {
+        cache.remove(uuid)
+        val plugin = plugin ?: return
+        if (listeners.isEmpty() || !plugin.isEnabled) return
+        val task = { _: ScheduledTask ->
+            cache.remove(uuid)
+            listeners.forEach { listener ->
+                try {
+                    listener(uuid)
+                } catch (e: Exception) {
+                    plugin.logger.warning("[EconomyBridge] 余额变化监听器出错: ${e.message}")
+                }
+            }
+        }
+        if (delayMs > 0) {
+            Bukkit.getAsyncScheduler().runDelayed(plugin, task, delayMs, TimeUnit.MILLISECONDS)
+        } else {
+            Bukkit.getAsyncScheduler().runNow(plugin, task)
+        }
+    }
+}
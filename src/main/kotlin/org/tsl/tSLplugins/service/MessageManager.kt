@@ -1,20 +1,28 @@
 package org.tsl.tSLplugins.service
 
+import net.kyori.adventure.text.Component
 import org.bukkit.ChatColor
 import org.bukkit.configuration.file.YamlConfiguration
 import org.bukkit.plugin.java.JavaPlugin
 import java.io.File
 import java.io.InputStreamReader
 import java.nio.charset.StandardCharsets
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * 统一消息管理器
  * 负责加载和管理 messages.yml 中的所有消息配置
+ *
+ * 加载时将每条消息编译为 [MessageTemplate]，get 只做一次模板查找和单次渲染。
  */
 class MessageManager(private val plugin: JavaPlugin) {
     
     private lateinit var messagesConfig: YamlConfiguration
     private var prefix: String = "&6[TSL]&r "
+
+    /** 路径 -> 编译后的模板；重载时整体替换 */
+    @Volatile
+    private var templates = ConcurrentHashMap<String, MessageTemplate>()
     
     init {
         loadMessages()
@@ -43,6 +51,15 @@ class MessageManager(private val plugin: JavaPlugin) {
         
         // 加载全局前缀
         prefix = messagesConfig.getString("prefix", "&6[TSL]&r ") ?: "&6[TSL]&r "
+
+        // 预编译文件中的所有消息，仅存在于默认配置中的消息在首次使用时编译
+        val compiled = ConcurrentHashMap<String, MessageTemplate>()
+        for (path in messagesConfig.getKeys(true)) {
+            if (messagesConfig.isString(path)) {
+                compiled[path] = compileTemplate(path)
+            }
+        }
+        templates = compiled
         
         plugin.logger.info("[MessageManager] 消息配置已加载")
     }
@@ -74,18 +91,28 @@ class MessageManager(private val plugin: JavaPlugin) {
      * @param replacements 替换参数，格式为 "key" to "value"
      */
     fun get(path: String, vararg replacements: Pair<String, String>): String {
-        var message = messagesConfig.getString(path) ?: return colorize("§c[Missing: $path]")
-        
+        return getTemplate(path).render(*replacements)
+    }
+
+    /**
+     * 获取消息并转换为 Adventure Component
+     * 不含占位符的消息复用同一个 Component 实例
+     */
+    fun getComponent(path: String, vararg replacements: Pair<String, String>): Component {
+        return getTemplate(path).renderComponent(*replacements)
+    }
+
+    /**
+     * 获取编译后的消息模板（高频调用方可自行持有，重载后需重新获取）
+     */
+    fun getTemplate(path: String): MessageTemplate {
+        return templates.computeIfAbsent(path) { compileTemplate(it) }
+    }
+
+    private fun compileTemplate(path: String): MessageTemplate {
+        val message = messagesConfig.getString(path) ?: return MessageTemplate.compile("§c[Missing: $path]")
         // 替换 %prefix% 为全局前缀
-        message = message.replace("%prefix%", prefix)
-        
-        // 替换自定义占位符
-        for ((key, value) in replacements) {
-            message = message.replace("{$key}", value)
-            message = message.replace("%$key%", value)
-        }
-        
-        return colorize(message)
+        return MessageTemplate.compile(message.replace("%prefix%", prefix))
     }
     
     /**
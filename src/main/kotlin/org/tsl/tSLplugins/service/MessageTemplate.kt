@@ -0,0 +1,149 @@
+package org.tsl.tSLplugins.service
+
+import net.kyori.adventure.text.Component
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer
+import org.bukkit.ChatColor
+
+/**
+ * 预编译的消息模板
+ *
+ * 加载时把消息拆分为字面量片段和占位符片段（`{key}` 与 `%key%` 两种写法），
+ * 字面量中的 & 颜色代码已预先转换。渲染时单次遍历片段拼接结果，
+ * 不再对整条消息反复 replace 和转换颜色。
+ *
+ * 不含占位符的模板直接复用同一个字符串 / Component。
+ */
+class MessageTemplate private constructor(
+    private val literals: Array<String>,
+    private val placeholders: Array<String?>,
+    private val tokens: Array<String?>,
+    private val estimatedLength: Int
+) {
+
+    /** 模板是否不含占位符 */
+    val isStatic: Boolean = placeholders.all { it == null }
+
+    private val staticText: String? = if (isStatic) literals.joinToString("") else null
+
+    private val staticComponent: Component? by lazy {
+        staticText?.let { SERIALIZER.deserialize(it) }
+    }
+
+    /**
+     * 渲染为字符串
+     *
+     * 替换值中的 & 颜色代码同样会被转换（与逐条 replace 后整体转换的行为一致）；
+     * 没有提供值的占位符原样保留。
+     */
+    fun render(vararg replacements: Pair<String, String>): String {
+        staticText?.let { return it }
+
+        val builder = StringBuilder(estimatedLength + replacements.size * 8)
+        for (i in literals.indices) {
+            val name = placeholders[i]
+            if (name == null) {
+                builder.append(literals[i])
+                continue
+            }
+            val value = findValue(name, replacements)
+            if (value == null) {
+                builder.append(tokens[i])
+            } else if (value.indexOf('&') >= 0) {
+                builder.append(ChatColor.translateAlternateColorCodes('&', value))
+            } else {
+                builder.append(value)
+            }
+        }
+        return builder.toString()
+    }
+
+    /**
+     * 渲染为 Adventure Component（不含占位符时复用缓存的 Component）
+     */
+    fun renderComponent(vararg replacements: Pair<String, String>): Component {
+        staticComponent?.let { return it }
+        return SERIALIZER.deserialize(render(*replacements))
+    }
+
+    private fun findValue(name: String, replacements: Array<out Pair<String, String>>): String? {
+        for (pair in replacements) {
+            if (pair.first == name) return pair.second
+        }
+        return null
+    }
+
+    companion object {
+        private val SERIALIZER = LegacyComponentSerializer.legacySection()
+
+        /**
+         * 编译消息
+         * @param raw 原始消息（%prefix% 应已替换）
+         */
+        fun compile(raw: String): MessageTemplate {
+            val literals = ArrayList<String>()
+            val placeholders = ArrayList<String?>()
+            val tokens = ArrayList<String?>()
+            val pending = StringBuilder()
+
+            fun flushLiteral() {
+                if (pending.isEmpty()) return
+                literals.add(ChatColor.translateAlternateColorCodes('&', pending.toString()))
+                placeholders.add(null)
+                tokens.add(null)
+                pending.setLength(0)
+            }
+
+            var i = 0
+            while (i < raw.length) {
+                val c = raw[i]
+                val close = when (c) {
+                    '{' -> '}'
+                    '%' -> '%'
+                    else -> null
+                }
+                if (close != null) {
+                    val end = findPlaceholderEnd(raw, i + 1, close)
+                    if (end > i + 1) {
+                        flushLiteral()
+                        val token = raw.substring(i, end + 1)
+                        literals.add("")
+                        placeholders.add(raw.substring(i + 1, end))
+                        tokens.add(ChatColor.translateAlternateColorCodes('&', token))
+                        i = end + 1
+                        continue
+                    }
+                }
+                pending.append(c)
+                i++
+            }
+            flushLiteral()
+
+            if (literals.isEmpty()) {
+                literals.add("")
+                placeholders.add(null)
+                tokens.add(null)
+            }
+            return MessageTemplate(
+                literals.toTypedArray(),
+                placeholders.toTypedArray(),
+                tokens.toTypedArray(),
+                raw.length
+            )
+        }
+
+        /**
+         * 查找占位符结束位置；名称只能由字母、数字和 _ - . 组成
+         * @return 结束字符下标，不是合法占位符时返回 -1
+         */
+        private fun findPlaceholderEnd(text: String, start: Int, close: Char): Int {
+            var j = start
+            while (j < text.length) {
+                val ch = text[j]
+                if (ch == close) return j
+                if (!(ch.isLetterOrDigit() || ch == '_' || ch == '-' || ch == '.')) return -1
+                j++
+            }
+            return -1
+        }
+    }
+}
@@ -7,7 +7,7 @@ import org.bukkit.plugin.java.JavaPlugin
 
 /**
  * 玩家数据管理器
- * 使用 YAML 存储玩家个人配置，支持从 PDC 自动迁移
+ * 使用 SQLite 存储玩家个人配置（旧版 YAML 自动导入），支持从 PDC 自动迁移
  */
 class PlayerDataManager(private val plugin: JavaPlugin) {
 
@@ -24,35 +24,31 @@ class PlayerDataManager(private val plugin: JavaPlugin) {
 
     /**
      * 玩家加入时加载配置
-     * 如果未迁移则自动从 PDC 迁移数据
+     * 在数据库线程上异步读取，完成后回到玩家线程；如果未迁移则自动从 PDC 迁移数据
      */
     fun onPlayerJoin(player: Player) {
         val uuid = player.uniqueId
         val name = player.name
 
-        // 加载配置（如果文件不存在会创建新的）
-        val profile = profileStore.load(uuid, name)
+        profileStore.loadAsync(uuid, name).thenAccept { profile ->
+            player.scheduler.run(plugin, { _ ->
+                // 如果未迁移，从 PDC 读取旧数据
+                if (!profile.migratedFromPdc) {
+                    migrateFromPdc(player, profile)
+                }
 
-        // 如果未迁移，从 PDC 读取旧数据
-        if (!profile.migratedFromPdc) {
-            migrateFromPdc(player, profile)
+                // 更新玩家名称（可能改名）
+                profile.playerName = name
+            }, null)
         }
-
-        // 更新玩家名称（可能改名）
-        profile.playerName = name
     }
 
     /**
      * 玩家退出时保存配置
      */
     fun onPlayerQuit(player: Player) {
-        val uuid = player.uniqueId
-
-        // 保存配置
-        profileStore.save(uuid)
-
-        // 从缓存移除（节省内存）
-        profileStore.remove(uuid)
+        // 保存配置并从缓存移除（节省内存）
+        profileStore.unload(player.uniqueId)
     }
 
     /**
@@ -205,8 +201,10 @@ class PlayerDataManager(private val plugin: JavaPlugin) {
         var loadedCount = 0
 
         onlinePlayers.forEach { player ->
-            profileStore.load(player.uniqueId, player.name)
-            loadedCount++
+            if (profileStore.get(player.uniqueId) == null) {
+                profileStore.load(player.uniqueId, player.name)
+                loadedCount++
+            }
         }
 
         plugin.logger.info("[PlayerData] 已重新加载 $loadedCount 个在线玩家的配置")
@@ -0,0 +1,151 @@
+package org.tsl.tSLplugins.service
+
+import org.bukkit.configuration.file.YamlConfiguration
+import org.bukkit.plugin.java.JavaPlugin
+import java.io.File
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.UUID
+
+/**
+ * 旧版 YAML 玩家配置导入器
+ *
+ * 将 playerdata/<uuid>.yml 一次性导入 SQLite。
+ * 每批文件在一个事务内写入（INSERT OR IGNORE，数据库中已有的数据优先），
+ * 提交成功后把文件移动到 playerdata/imported/，因此中断后重启会从剩余文件继续。
+ * 各批次作为独立任务提交到数据库执行器，不会长时间阻塞其他数据库操作。
+ */
+internal class PlayerProfileYamlImporter(
+    private val plugin: JavaPlugin,
+    private val playerDataDir: File,
+    private val writer: (List<TSLPlayerProfile>) -> Boolean
+) {
+
+    private val importedDir = File(playerDataDir, "imported")
+
+    @Volatile
+    var running = false
+        private set
+
+    /**
+     * 是否还有未导入的 YAML 文件
+     */
+    fun hasPendingFiles(): Boolean = listPendingFiles().isNotEmpty()
+
+    /**
+     * 在数据库执行器上开始分批导入
+     */
+    fun start() {
+        val files = listPendingFiles()
+        if (files.isEmpty()) return
+        running = true
+        plugin.logger.info("[ProfileStore] 检测到 ${files.size} 个 YAML 玩家配置，开始导入 SQLite...")
+        DatabaseManager.getExecutor().execute { importBatch(files, 0, 0) }
+    }
+
+    /**
+     * 读取单个玩家的 YAML 配置（导入完成前玩家加入时使用）
+     */
+    fun readPending(uuid: UUID, playerName: String): TSLPlayerProfile? {
+        val file = File(playerDataDir, "$uuid.yml")
+        if (!file.exists()) return null
+        return readYaml(file, uuid, playerName)
+    }
+
+    /**
+     * 将单个文件标记为已导入
+     */
+    fun markImported(uuid: UUID) {
+        moveToImported(File(playerDataDir, "$uuid.yml"))
+    }
+
+    private fun importBatch(files: List<File>, offset: Int, imported: Int) {
+        if (offset >= files.size) {
+            running = false
+            plugin.logger.info("[ProfileStore] YAML 导入完成: $imported/${files.size}")
+            return
+        }
+
+        val batch = files.subList(offset, minOf(offset + BATCH_SIZE, files.size)).filter { it.exists() }
+        val profiles = batch.mapNotNull { file ->
+            val uuid = runCatching { UUID.fromString(file.nameWithoutExtension) }.getOrNull()
+            if (uuid == null) {
+                plugin.logger.warning("[ProfileStore] 跳过无效文件名: ${file.name}")
+                null
+            } else {
+                readYaml(file, uuid, "")
+            }
+        }
+
+        if (!writer(profiles)) {
+            running = false
+            plugin.logger.severe("[ProfileStore] YAML 导入中断（第 ${offset + 1} 个文件起），将在下次启动时继续")
+            return
+        }
+
+        profiles.forEach { moveToImported(File(playerDataDir, "${it.uuid}.yml")) }
+        val total = imported + profiles.size
+        plugin.logger.info("[ProfileStore] YAML 导入进度: ${minOf(offset + BATCH_SIZE, files.size)}/${files.size}")
+
+        try {
+            DatabaseManager.getExecutor().execute { importBatch(files, offset + BATCH_SIZE, total) }
+        } catch (e: Exception) {
+            running = false
+            plugin.logger.warning("[ProfileStore] YAML 导入已暂停（数据库关闭），将在下次启动时继续")
+        }
+    }
+
+    private fun listPendingFiles(): List<File> {
+        return playerDataDir.listFiles { file -> file.isFile && file.name.endsWith(".yml") }
+            ?.sortedBy { it.name }
+            ?: emptyList()
+    }
+
+    private fun moveToImported(file: File) {
+        if (!file.exists()) return
+        try {
+            importedDir.mkdirs()
+            Files.move(file.toPath(), File(importedDir, file.name).toPath(), StandardCopyOption.REPLACE_EXISTING)
+        } catch (e: Exception) {
+            plugin.logger.warning("[ProfileStore] 移动已导入文件失败: ${file.name} - ${e.message}")
+        }
+    }
+
+    private fun readYaml(file: File, uuid: UUID, playerName: String): TSLPlayerProfile? {
+        return try {
+            val config = YamlConfiguration.loadConfiguration(file)
+
+            val ignoreList = config.getStringList("ignoreList").mapNotNull { str ->
+                try {
+                    UUID.fromString(str)
+                } catch (e: Exception) {
+                    null
+                }
+            }.toMutableSet()
+
+            TSLPlayerProfile(
+                uuid = uuid,
+                playerName = config.getString("playerName", playerName) ?: playerName,
+                kissEnabled = config.getBoolean("kissEnabled", true),
+                rideEnabled = config.getBoolean("rideEnabled", true),
+                tossEnabled = config.getBoolean("tossEnabled", true),
+                allowPhantom = config.getBoolean("allowPhantom", false),
+                tossVelocity = config.getDouble("tossVelocity", 1.5),
+                kissCount = config.getInt("kissCount", 0),
+                kissedCount = config.getInt("kissedCount", 0),
+                ignoreList = ignoreList,
+                bindStatus = config.getBoolean("bindStatus", false),
+                bindQQ = config.getString("bindQQ", "") ?: "",
+                migratedFromPdc = config.getBoolean("migratedFromPdc", false),
+                lastSaved = config.getLong("lastSaved", System.currentTimeMillis())
+            )
+        } catch (e: Exception) {
+            plugin.logger.severe("[ProfileStore] 读取 YAML 玩家配置失败: ${file.name} - ${e.message}")
+            null
+        }
+    }
+
+    companion object {
+        private const val BATCH_SIZE = 500
+    }
+}
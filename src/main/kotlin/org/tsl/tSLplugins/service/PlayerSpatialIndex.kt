@@ -0,0 +1,364 @@
+package org.tsl.tSLplugins.service
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask
+import org.bukkit.Bukkit
+import org.bukkit.Location
+import org.bukkit.World
+import org.bukkit.entity.Player
+import org.bukkit.event.EventHandler
+import org.bukkit.event.EventPriority
+import org.bukkit.event.HandlerList
+import org.bukkit.event.Listener
+import org.bukkit.event.player.PlayerChangedWorldEvent
+import org.bukkit.event.player.PlayerJoinEvent
+import org.bukkit.event.player.PlayerMoveEvent
+import org.bukkit.event.player.PlayerQuitEvent
+import org.bukkit.event.player.PlayerRespawnEvent
+import org.bukkit.event.player.PlayerTeleportEvent
+import org.bukkit.plugin.java.JavaPlugin
+import java.util.PriorityQueue
+import java.util.UUID
+import kotlin.math.floor
+import kotlin.math.sqrt
+
+/**
+ * 玩家位置空间索引（按世界划分的网格哈希）
+ *
+ * 由移动 / 传送 / 切换世界 / 重生事件增量更新，供 Near、Peace、Patrol 等模块共享：
+ * - [queryRadius] 半径查询（按距离排序）
+ * - [nearest] k 近邻查询
+ * - [anyWithin] 半径内是否存在满足条件的玩家（提前退出，不分配结果列表）
+ *
+ * 位置只在玩家跨越方块时更新，精度为 1 格以内；另有定期校正任务覆盖
+ * 乘坐载具等不触发移动事件的情况。查询读取的是索引中的快照，
+ * 可以在任意线程调用，不会跨区域读取实体位置。
+ *
+ * 使用引用计数启停：第一个模块 [acquire] 时开始跟踪，最后一个模块 [release] 时停止并清空。
+ */
+class PlayerSpatialIndex(private val plugin: JavaPlugin) {
+
+    /**
+     * 索引中的玩家
+     */
+    class Entry(val uuid: UUID, val player: Player) {
+        var x = 0.0
+            internal set
+        var y = 0.0
+            internal set
+        var z = 0.0
+            internal set
+        internal var cellKey = 0L
+    }
+
+    /**
+     * 查询结果
+     */
+    data class Hit(val player: Player, val x: Double, val y: Double, val z: Double, val distanceSquared: Double) {
+        val distance: Double get() = sqrt(distanceSquared)
+    }
+
+    /**
+     * 单个世界的网格（所有访问在 synchronized(this) 内）
+     */
+    private class WorldGrid {
+        val cells = HashMap<Long, MutableList<Entry>>()
+        val entries = HashMap<UUID, Entry>()
+    }
+
+    private val worlds = HashMap<UUID, WorldGrid>()
+    /** 玩家 UUID -> 所在世界，用于切换世界时从旧网格移除 */
+    private val playerWorlds = HashMap<UUID, UUID>()
+
+    @Volatile private var cellSize = 64.0
+    private var resyncTicks = 100L
+
+    private var users = 0
+    @Volatile private var listener: Listener? = null
+    private var resyncTask: ScheduledTask? = null
+
+    // ==================== 生命周期 ====================
+
+    /**
+     * 模块开始使用索引（第一次调用时启动跟踪）
+     *
+     * 返回前先用在线玩家的当前位置填充索引，调用方（例如按需启用时正在执行的命令）可以立即查询；
+     * 这份位置可能不是实体线程上的最新值，随后在各玩家的实体线程上校正一次。
+     */
+    @Synchronized
+    fun acquire() {
+        if (users++ > 0) return
+        loadConfig()
+        val tracker = Tracker()
+        plugin.server.pluginManager.registerEvents(tracker, plugin)
+        listener = tracker
+        Bukkit.getOnlinePlayers().forEach { player -> update(player, player.location) }
+        resync()
+        resyncTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, { _ -> resync() }, resyncTicks, resyncTicks)
+    }
+
+    /**
+     * 模块停止使用索引（最后一个使用者释放时停止跟踪并清空）
+     */
+    @Synchronized
+    fun release() {
+        if (users == 0 || --users > 0) return
+        shutdown()
+    }
+
+    @Synchronized
+    fun shutdown() {
+        users = 0
+        listener?.let { HandlerList.unregisterAll(it) }
+        listener = null
+        resyncTask?.cancel()
+        resyncTask = null
+        synchronized(worlds) {
+            worlds.clear()
+            playerWorlds.clear()
+        }
+    }
+
+    private fun loadConfig() {
+        cellSize = plugin.config.getDouble("spatial-index.cell-size", 64.0).coerceAtLeast(8.0)
+        resyncTicks = plugin.config.getLong("spatial-index.resync-interval-ticks", 100L).coerceAtLeast(20L)
+    }
+
+    /**
+     * 定期校正：在各玩家的实体线程上读取真实位置
+     */
+    private fun resync() {
+        Bukkit.getOnlinePlayers().forEach { player ->
+            player.scheduler.run(plugin, { _ -> update(player, player.location) }, null)
+        }
+    }
+
+    // ==================== 更新 ====================
+
+    /**
+     * 更新玩家位置（包括切换世界）
+     */
+    fun update(player: Player, location: Location) {
+        val world = location.world ?: return
+        val uuid = player.uniqueId
+        val worldId = world.uid
+        val cellKey = cellKey(location.x, location.z)
+
+        val grid = synchronized(worlds) {
+            if (listener == null) return
+            val previousWorld = playerWorlds.put(uuid, worldId)
+            if (previousWorld != null && previousWorld != worldId) {
+                worlds[previousWorld]?.let { old -> synchronized(old) { removeFromGrid(old, uuid) } }
+            }
+            worlds.getOrPut(worldId) { WorldGrid() }
+        }
+
+        synchronized(grid) {
+            val entry = grid.entries[uuid]
+            if (entry == null) {
+                val created = Entry(uuid, player)
+                created.x = location.x; created.y = location.y; created.z = location.z
+                created.cellKey = cellKey
+                grid.entries[uuid] = created
+                grid.cells.getOrPut(cellKey) { ArrayList(4) }.add(created)
+                return
+            }
+            entry.x = location.x; entry.y = location.y; entry.z = location.z
+            if (entry.cellKey != cellKey) {
+                removeFromCell(grid, entry)
+                entry.cellKey = cellKey
+                grid.cells.getOrPut(cellKey) { ArrayList(4) }.add(entry)
+            }
+        }
+    }
+
+    fun remove(uuid: UUID) {
+        val grid = synchronized(worlds) {
+            val worldId = playerWorlds.remove(uuid) ?: return
+            worlds[worldId] ?: return
+        }
+        synchronized(grid) { removeFromGrid(grid, uuid) }
+    }
+
+    private fun removeFromGrid(grid: WorldGrid, uuid: UUID) {
+        val entry = grid.entries.remove(uuid) ?: return
+        removeFromCell(grid, entry)
+    }
+
+    private fun removeFromCell(grid: WorldGrid, entry: Entry) {
+        val cell = grid.cells[entry.cellKey] ?: return
+        cell.remove(entry)
+        if (cell.isEmpty()) grid.cells.remove(entry.cellKey)
+    }
+
+    // ==================== 查询 ====================
+
+    /**
+     * 半径内的玩家（三维距离，按距离升序）
+     *
+     * @param exclude 排除的玩家（通常是查询者自己）
+     */
+    fun queryRadius(world: World, x: Double, y: Double, z: Double, radius: Double, exclude: UUID? = null): List<Hit> {
+        val result = ArrayList<Hit>()
+        val radiusSquared = radius * radius
+        forEachCandidate(world, x, z, radius) { entry ->
+            if (entry.uuid == exclude) return@forEachCandidate false
+            val distanceSquared = distanceSquared(entry, x, y, z)
+            if (distanceSquared <= radiusSquared) result.add(Hit(entry.player, entry.x, entry.y, entry.z, distanceSquared))
+            false
+        }
+        result.sortBy { it.distanceSquared }
+        return result
+    }
+
+    /**
+     * 半径内是否存在满足条件的玩家（找到即返回）
+     */
+    fun anyWithin(world: World, x: Double, y: Double, z: Double, radius: Double, predicate: (UUID) -> Boolean): Boolean {
+        val radiusSquared = radius * radius
+        var found = false
+        forEachCandidate(world, x, z, radius) { entry ->
+            if (distanceSquared(entry, x, y, z) <= radiusSquared && predicate(entry.uuid)) {
+                found = true
+                true
+            } else false
+        }
+        return found
+    }
+
+    /**
+     * 最近的 k 个玩家（按距离升序）
+     *
+     * 由中心网格向外逐圈扩展，已找到 k 个且第 k 近的距离不超过已搜索范围时停止。
+     *
+     * @param maxRadius 最大搜索半径
+     */
+    fun nearest(world: World, x: Double, y: Double, z: Double, k: Int, maxRadius: Double, exclude: UUID? = null): List<Hit> {
+        if (k <= 0) return emptyList()
+        val grid = synchronized(worlds) { worlds[world.uid] } ?: return emptyList()
+        val maxRadiusSquared = maxRadius * maxRadius
+        // 大顶堆，保留最近的 k 个
+        val heap = PriorityQueue<Hit>(k + 1, compareByDescending { it.distanceSquared })
+
+        synchronized(grid) {
+            val centerX = cellCoord(x); val centerZ = cellCoord(z)
+            val maxRing = (maxRadius / cellSize).toInt() + 1
+            // 网格比玩家还多时直接遍历
+            if ((2L * maxRing + 1) * (2L * maxRing + 1) > grid.entries.size) {
+                grid.entries.values.forEach { offer(heap, k, it, x, y, z, maxRadiusSquared, exclude) }
+            } else {
+                for (ring in 0..maxRing) {
+                    forEachCellInRing(centerX, centerZ, ring) { cellKey ->
+                        grid.cells[cellKey]?.forEach { offer(heap, k, it, x, y, z, maxRadiusSquared, exclude) }
+                    }
+                    // 已搜索范围内的最小保证距离
+                    val covered = ring * cellSize
+                    if (heap.size == k && heap.peek().distanceSquared <= covered * covered) break
+                }
+            }
+        }
+        return heap.sortedBy { it.distanceSquared }
+    }
+
+    /**
+     * 所有被跟踪的玩家
+     */
+    fun allPlayers(): List<Hit> {
+        val grids = synchronized(worlds) { worlds.values.toList() }
+        val result = ArrayList<Hit>()
+        grids.forEach { grid -> synchronized(grid) { grid.entries.values.forEach { result.add(Hit(it.player, it.x, it.y, it.z, 0.0)) } } }
+        return result
+    }
+
+    /**
+     * 玩家在索引中的位置
+     */
+    fun locationOf(player: Player): Location? {
+        val grid = synchronized(worlds) { playerWorlds[player.uniqueId]?.let { worlds[it] } } ?: return null
+        return synchronized(grid) { grid.entries[player.uniqueId]?.let { Location(player.world, it.x, it.y, it.z) } }
+    }
+
+    fun size(): Int = synchronized(worlds) { playerWorlds.size }
+
+    /**
+     * 遍历可能在半径内的玩家（网格数多于世界内玩家数时改为直接遍历）
+     * @param action 返回 true 时停止遍历
+     */
+    private inline fun forEachCandidate(world: World, x: Double, z: Double, radius: Double, action: (Entry) -> Boolean) {
+        val grid = synchronized(worlds) { worlds[world.uid] } ?: return
+        synchronized(grid) {
+            val minX = cellCoord(x - radius); val maxX = cellCoord(x + radius)
+            val minZ = cellCoord(z - radius); val maxZ = cellCoord(z + radius)
+            val cellCount = (maxX - minX + 1).toLong() * (maxZ - minZ + 1)
+            if (cellCount > grid.cells.size) {
+                for (entry in grid.entries.values) if (action(entry)) return
+                return
+            }
+            for (cx in minX..maxX) {
+                for (cz in minZ..maxZ) {
+                    val cell = grid.cells[packCell(cx, cz)] ?: continue
+                    for (entry in cell) if (action(entry)) return
+                }
+            }
+        }
+    }
+
+    private fun offer(heap: PriorityQueue<Hit>, k: Int, entry: Entry, x: Double, y: Double, z: Double, maxRadiusSquared: Double, exclude: UUID?) {
+        if (entry.uuid == exclude) return
+        val distanceSquared = distanceSquared(entry, x, y, z)
+        if (distanceSquared > maxRadiusSquared) return
+        if (heap.size == k && heap.peek().distanceSquared <= distanceSquared) return
+        heap.add(Hit(entry.player, entry.x, entry.y, entry.z, distanceSquared))
+        if (heap.size > k) heap.poll()
+    }
+
+    private inline fun forEachCellInRing(centerX: Int, centerZ: Int, ring: Int, action: (Long) -> Unit) {
+        if (ring == 0) {
+            action(packCell(centerX, centerZ))
+            return
+        }
+        for (dx in -ring..ring) {
+            action(packCell(centerX + dx, centerZ - ring))
+            action(packCell(centerX + dx, centerZ + ring))
+        }
+        for (dz in (-ring + 1) until ring) {
+            action(packCell(centerX - ring, centerZ + dz))
+            action(packCell(centerX + ring, centerZ + dz))
+        }
+    }
+
+    private fun distanceSquared(entry: Entry, x: Double, y: Double, z: Double): Double {
+        val dx = entry.x - x; val dy = entry.y - y; val dz = entry.z - z
+        return dx * dx + dy * dy + dz * dz
+    }
+
+    private fun cellCoord(coord: Double): Int = floor(coord / cellSize).toInt()
+
+    private fun cellKey(x: Double, z: Double): Long = packCell(cellCoord(x), cellCoord(z))
+
+    private fun packCell(cellX: Int, cellZ: Int): Long = (cellX.toLong() shl 32) or (cellZ.toLong() and 0xFFFFFFFFL)
+
+    // ==================== 事件 ====================
+
+    private inner class Tracker : Listener {
+
+        @EventHandler
+        fun onJoin(event: PlayerJoinEvent) = update(event.player, event.player.location)
+
+        @EventHandler
+        fun onQuit(event: PlayerQuitEvent) = remove(event.player.uniqueId)
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        fun onMove(event: PlayerMoveEvent) {
+            if (event.hasChangedBlock()) update(event.player, event.to)
+        }
+
+        @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+        fun onTeleport(event: PlayerTeleportEvent) = update(event.player, event.to)
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        fun onChangedWorld(event: PlayerChangedWorldEvent) = update(event.player, event.player.location)
+
+        @EventHandler(priority = EventPriority.MONITOR)
+        fun onRespawn(event: PlayerRespawnEvent) = update(event.player, event.respawnLocation)
+    }
+}
@@ -0,0 +1,52 @@
+package org.tsl.tSLplugins.service
+
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * 单个连接的 PreparedStatement 缓存（LRU）
+ *
+ * 按 SQL 文本复用已编译的语句，避免每次调用都重新 prepare。
+ * 非线程安全：调用方必须保证同一时刻只有一个线程使用所属连接。
+ * 从缓存取出的语句不要 close，由缓存统一管理。
+ */
+internal class PreparedStatementCache(
+    private val hits: AtomicLong,
+    private val misses: AtomicLong,
+    private val maxSize: Int = 64
+) {
+
+    private val statements = object : LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, PreparedStatement>): Boolean {
+            if (size <= maxSize) return false
+            runCatching { eldest.value.close() }
+            return true
+        }
+    }
+
+    /**
+     * 获取（或编译并缓存）语句，返回前清空参数
+     */
+    fun get(connection: Connection, sql: String): PreparedStatement {
+        val cached = statements[sql]
+        if (cached != null && !cached.isClosed && cached.connection === connection) {
+            hits.incrementAndGet()
+            cached.clearParameters()
+            return cached
+        }
+        cached?.let { runCatching { it.close() } }
+        misses.incrementAndGet()
+        val stmt = connection.prepareStatement(sql)
+        statements[sql] = stmt
+        return stmt
+    }
+
+    /**
+     * 关闭并清空所有缓存的语句（连接重建或关闭时调用）
+     */
+    fun clear() {
+        statements.values.forEach { runCatching { it.close() } }
+        statements.clear()
+    }
+}
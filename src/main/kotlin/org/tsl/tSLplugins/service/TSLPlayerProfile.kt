@@ -40,6 +40,9 @@ data class TSLPlayerProfile(
     /** Kiss 被亲吻次数 */
     var kissedCount: Int = 0,
 
+    /** 放置方块总数（-1 表示尚未从原版统计初始化） */
+    var blocksPlaced: Long = -1,
+
     // ==================== 屏蔽列表 ====================
 
     /** 聊天屏蔽列表（被屏蔽玩家的 UUID） */
@@ -1,152 +1,242 @@
 package org.tsl.tSLplugins.service
 
-import org.bukkit.configuration.file.YamlConfiguration
 import org.bukkit.plugin.java.JavaPlugin
 import java.io.File
+import java.sql.PreparedStatement
+import java.sql.ResultSet
 import java.util.UUID
+import java.util.concurrent.CompletableFuture
 import java.util.concurrent.ConcurrentHashMap
 
 /**
  * TSL 玩家配置存储管理器
- * 负责加载、保存和缓存玩家配置文件
+ * 负责加载、保存和缓存玩家配置
+ *
+ * 存储于全局 SQLite 数据库（DatabaseManager），旧版 playerdata/<uuid>.yml 会在启动时分批导入。
+ * 保存时只写入与上次持久化快照相比发生变化的字段，未修改的配置不会产生写入。
  */
 class TSLPlayerProfileStore(private val plugin: JavaPlugin) {
 
-    /** 玩家数据目录 */
-    private val playerDataDir: File = File(plugin.dataFolder, "playerdata").apply {
-        if (!exists()) {
-            mkdirs()
-            plugin.logger.info("[ProfileStore] 创建玩家数据目录: $absolutePath")
-        }
-    }
+    /** 旧版玩家数据目录（YAML，仅用于导入） */
+    private val playerDataDir: File = File(plugin.dataFolder, "playerdata")
+
+    private val tableName = "${DatabaseManager.getTablePrefix()}player_profiles"
 
     /** 内存缓存：UUID -> Profile */
     private val profileCache = ConcurrentHashMap<UUID, TSLPlayerProfile>()
 
+    /** 最近一次持久化时的快照，用于计算脏字段 */
+    private val persistedSnapshots = ConcurrentHashMap<UUID, TSLPlayerProfile>()
+
+    /** 进行中的异步加载 */
+    private val pendingLoads = ConcurrentHashMap<UUID, CompletableFuture<TSLPlayerProfile>>()
+
+    /** 仍在写后队列中的保存（每个玩家最近一次），提交后移除 */
+    private val pendingSaves = ConcurrentHashMap<UUID, CompletableFuture<Int>>()
+
+    private val importer = PlayerProfileYamlImporter(plugin, playerDataDir, ::insertIfAbsent)
+
+    /**
+     * 可持久化字段（lastSaved 不参与脏检查，有其他字段变化时一并写入）
+     */
+    private class Column(
+        val name: String,
+        val definition: String,
+        val value: (TSLPlayerProfile) -> Any?,
+        val bind: (PreparedStatement, Int, TSLPlayerProfile) -> Unit
+    )
+
+    private val columns = listOf(
+        Column("player_name", "TEXT NOT NULL DEFAULT ''", { it.playerName }) { s, i, p -> s.setString(i, p.playerName) },
+        Column("kiss_enabled", "INTEGER NOT NULL DEFAULT 1", { it.kissEnabled }) { s, i, p -> s.setBoolean(i, p.kissEnabled) },
+        Column("ride_enabled", "INTEGER NOT NULL DEFAULT 1", { it.rideEnabled }) { s, i, p -> s.setBoolean(i, p.rideEnabled) },
+        Column("toss_enabled", "INTEGER NOT NULL DEFAULT 1", { it.tossEnabled }) { s, i, p -> s.setBoolean(i, p.tossEnabled) },
+        Column("allow_phantom", "INTEGER NOT NULL DEFAULT 0", { it.allowPhantom }) { s, i, p -> s.setBoolean(i, p.allowPhantom) },
+        Column("toss_velocity", "REAL NOT NULL DEFAULT 1.5", { it.tossVelocity }) { s, i, p -> s.setDouble(i, p.tossVelocity) },
+        Column("kiss_count", "INTEGER NOT NULL DEFAULT 0", { it.kissCount }) { s, i, p -> s.setInt(i, p.kissCount) },
+        Column("kissed_count", "INTEGER NOT NULL DEFAULT 0", { it.kissedCount }) { s, i, p -> s.setInt(i, p.kissedCount) },
+        Column("blocks_placed", "INTEGER NOT NULL DEFAULT -1", { it.blocksPlaced }) { s, i, p -> s.setLong(i, p.blocksPlaced) },
+        Column("ignore_list", "TEXT NOT NULL DEFAULT ''", { it.ignoreList.toSet() }) { s, i, p ->
+            s.setString(i, p.ignoreList.joinToString(","))
+        },
+        Column("bind_status", "INTEGER NOT NULL DEFAULT 0", { it.bindStatus }) { s, i, p -> s.setBoolean(i, p.bindStatus) },
+        Column("bind_qq", "TEXT NOT NULL DEFAULT ''", { it.bindQQ }) { s, i, p -> s.setString(i, p.bindQQ) },
+        Column("migrated_from_pdc", "INTEGER NOT NULL DEFAULT 0", { it.migratedFromPdc }) { s, i, p ->
+            s.setBoolean(i, p.migratedFromPdc)
+        }
+    )
+
+    init {
+        DatabaseManager.createTable("""
+            CREATE TABLE IF NOT EXISTS $tableName (
+                uuid CHAR(36) PRIMARY KEY,
+                ${columns.joinToString(",\n                ") { "${it.name} ${it.definition}" }},
+                last_saved INTEGER NOT NULL DEFAULT 0
+            )
+        """.trimIndent())
+        addMissingColumns()
+
+        importer.start()
+    }
+
+    /**
+     * 为旧版表结构补充新增的字段
+     */
+    private fun addMissingColumns() {
+        val existing = DatabaseManager.query("PRAGMA table_info($tableName)", {}) { rs ->
+            val names = mutableSetOf<String>()
+            while (rs.next()) names.add(rs.getString("name"))
+            names
+        } ?: return
+        columns.filter { it.name !in existing }.forEach { column ->
+            DatabaseManager.execute("ALTER TABLE $tableName ADD COLUMN ${column.name} ${column.definition}")
+        }
+    }
+
     // ==================== 获取配置 ====================
 
     /**
      * 获取玩家配置（从缓存）
      * @param uuid 玩家 UUID
-     * @return 玩家配置，如果不存在则返回 null
+     * @return 玩家配置，如果不存在（或仍在加载）则返回 null
      */
     fun get(uuid: UUID): TSLPlayerProfile? {
         return profileCache[uuid]
     }
 
     /**
-     * 获取玩家配置，如果不存在则创建新的
+     * 获取玩家配置，如果不在缓存中则从数据库读取，仍不存在则创建新的
      * @param uuid 玩家 UUID
-     * @param playerName 玩家名称
+     * @param playerName 玩家名称（仅用于新建配置）
      * @return 玩家配置
      */
     fun getOrCreate(uuid: UUID, playerName: String): TSLPlayerProfile {
-        return profileCache.getOrPut(uuid) {
-            TSLPlayerProfile(uuid = uuid, playerName = playerName)
-        }
+        profileCache[uuid]?.let { return it }
+        // 异步加载尚未完成时直接同步读取；两者都经 putIfAbsent 写入缓存，结果一致
+        return load(uuid, playerName)
     }
 
     // ==================== 加载配置 ====================
 
     /**
-     * 从文件加载玩家配置
+     * 同步加载玩家配置
      * @param uuid 玩家 UUID
      * @param playerName 玩家名称（用于新建配置）
-     * @return 加载的配置，如果文件不存在则返回新配置
+     * @return 加载的配置，如果不存在则返回新配置
      */
     fun load(uuid: UUID, playerName: String): TSLPlayerProfile {
-        val file = getPlayerFile(uuid)
+        val profile = readProfile(uuid, playerName)
+        return profileCache.putIfAbsent(uuid, profile) ?: profile
+    }
 
-        // 如果文件不存在，返回新配置
-        if (!file.exists()) {
-            val newProfile = TSLPlayerProfile(uuid = uuid, playerName = playerName)
-            profileCache[uuid] = newProfile
-            return newProfile
+    /**
+     * 在数据库线程上异步加载玩家配置（玩家加入时使用）
+     *
+     * 数据库线程会先提交写后队列，因此能读到该玩家刚退出时保存的数据。
+     */
+    fun loadAsync(uuid: UUID, playerName: String): CompletableFuture<TSLPlayerProfile> {
+        profileCache[uuid]?.let { return CompletableFuture.completedFuture(it) }
+        return pendingLoads.computeIfAbsent(uuid) {
+            CompletableFuture.supplyAsync({
+                val profile = readProfile(uuid, playerName)
+                (profileCache.putIfAbsent(uuid, profile) ?: profile).also { pendingLoads.remove(uuid) }
+            }, DatabaseManager.getExecutor()).exceptionally { e ->
+                pendingLoads.remove(uuid)
+                plugin.logger.severe("[ProfileStore] 加载玩家配置失败: $uuid - ${e.message}")
+                profileCache.computeIfAbsent(uuid) { TSLPlayerProfile(uuid = uuid, playerName = playerName) }
+            }
         }
+    }
 
-        // 从文件加载
-        return try {
-            val config = YamlConfiguration.loadConfiguration(file)
-
-            // 加载屏蔽列表
-            val ignoreListStrings = config.getStringList("ignoreList")
-            val ignoreList = ignoreListStrings.mapNotNull { str ->
-                try {
-                    UUID.fromString(str)
-                } catch (e: Exception) {
-                    null
-                }
-            }.toMutableSet()
-
-            val profile = TSLPlayerProfile(
-                uuid = uuid,
-                playerName = config.getString("playerName", playerName) ?: playerName,
-                kissEnabled = config.getBoolean("kissEnabled", true),
-                rideEnabled = config.getBoolean("rideEnabled", true),
-                tossEnabled = config.getBoolean("tossEnabled", true),
-                allowPhantom = config.getBoolean("allowPhantom", false),
-                tossVelocity = config.getDouble("tossVelocity", 1.5),
-                kissCount = config.getInt("kissCount", 0),
-                kissedCount = config.getInt("kissedCount", 0),
-                ignoreList = ignoreList,
-                bindStatus = config.getBoolean("bindStatus", false),
-                bindQQ = config.getString("bindQQ", "") ?: "",
-                migratedFromPdc = config.getBoolean("migratedFromPdc", false),
-                lastSaved = config.getLong("lastSaved", System.currentTimeMillis())
-            )
+    private fun readProfile(uuid: UUID, playerName: String): TSLPlayerProfile {
+        // 该玩家刚退出时的保存可能仍在写后队列中，先提交再读取；没有待写入时不触发提交
+        if (pendingSaves.containsKey(uuid)) {
+            DatabaseManager.flushPendingWrites()
+        }
+        val stored = DatabaseManager.query(
+            "SELECT * FROM $tableName WHERE uuid = ?",
+            { stmt -> stmt.setString(1, uuid.toString()) }
+        ) { rs ->
+            if (rs.next()) fromResultSet(uuid, rs) else null
+        }
+        if (stored != null) {
+            persistedSnapshots[uuid] = snapshot(stored)
+            return stored
+        }
 
-            // 放入缓存
-            profileCache[uuid] = profile
+        // 导入尚未覆盖到该玩家：直接读取 YAML 并立即写入数据库
+        importer.readPending(uuid, playerName)?.let { legacy ->
+            if (insertIfAbsent(listOf(legacy))) {
+                importer.markImported(uuid)
+                persistedSnapshots[uuid] = snapshot(legacy)
+            }
+            return legacy
+        }
 
-            plugin.logger.info("[ProfileStore] 加载玩家配置: $playerName ($uuid)")
-            profile
-        } catch (e: Exception) {
-            plugin.logger.severe("[ProfileStore] 加载玩家配置失败: $uuid - ${e.message}")
-            e.printStackTrace()
+        return TSLPlayerProfile(uuid = uuid, playerName = playerName)
+    }
 
-            // 返回新配置
-            val newProfile = TSLPlayerProfile(uuid = uuid, playerName = playerName)
-            profileCache[uuid] = newProfile
-            newProfile
-        }
+    private fun fromResultSet(uuid: UUID, rs: ResultSet): TSLPlayerProfile {
+        val ignoreList = rs.getString("ignore_list").orEmpty()
+            .split(',')
+            .mapNotNull { str -> str.takeIf { it.isNotBlank() }?.let { runCatching { UUID.fromString(it) }.getOrNull() } }
+            .toMutableSet()
+
+        return TSLPlayerProfile(
+            uuid = uuid,
+            playerName = rs.getString("player_name").orEmpty(),
+            kissEnabled = rs.getBoolean("kiss_enabled"),
+            rideEnabled = rs.getBoolean("ride_enabled"),
+            tossEnabled = rs.getBoolean("toss_enabled"),
+            allowPhantom = rs.getBoolean("allow_phantom"),
+            tossVelocity = rs.getDouble("toss_velocity"),
+            kissCount = rs.getInt("kiss_count"),
+            kissedCount = rs.getInt("kissed_count"),
+            blocksPlaced = rs.getLong("blocks_placed"),
+            ignoreList = ignoreList,
+            bindStatus = rs.getBoolean("bind_status"),
+            bindQQ = rs.getString("bind_qq").orEmpty(),
+            migratedFromPdc = rs.getBoolean("migrated_from_pdc"),
+            lastSaved = rs.getLong("last_saved")
+        )
     }
 
     // ==================== 保存配置 ====================
 
     /**
-     * 保存玩家配置到文件
+     * 保存玩家配置（写后队列异步提交）
+     *
+     * 只写入相对于上次持久化发生变化的字段；没有变化时不产生写入。
      * @param profile 玩家配置
      */
     fun save(profile: TSLPlayerProfile) {
-        try {
-            val file = getPlayerFile(profile.uuid)
-            val config = YamlConfiguration()
-
-            // 更新保存时间
-            profile.updateSaveTime()
-
-            // 写入数据
-            config.set("playerName", profile.playerName)
-            config.set("kissEnabled", profile.kissEnabled)
-            config.set("rideEnabled", profile.rideEnabled)
-            config.set("tossEnabled", profile.tossEnabled)
-            config.set("allowPhantom", profile.allowPhantom)
-            config.set("tossVelocity", profile.tossVelocity)
-            config.set("kissCount", profile.kissCount)
-            config.set("kissedCount", profile.kissedCount)
-            config.set("ignoreList", profile.ignoreList.map { it.toString() })
-            config.set("bindStatus", profile.bindStatus)
-            config.set("bindQQ", profile.bindQQ)
-            config.set("migratedFromPdc", profile.migratedFromPdc)
-            config.set("lastSaved", profile.lastSaved)
-
-            // 保存到文件
-            config.save(file)
-
-            plugin.logger.info("[ProfileStore] 保存玩家配置: ${profile.playerName} (${profile.uuid})")
-        } catch (e: Exception) {
-            plugin.logger.severe("[ProfileStore] 保存玩家配置失败: ${profile.uuid} - ${e.message}")
-            e.printStackTrace()
+        val uuid = profile.uuid
+        val previous = persistedSnapshots[uuid] ?: TSLPlayerProfile(uuid = uuid)
+        val dirty = columns.filter { it.value(profile) != it.value(previous) }
+        if (dirty.isEmpty()) return
+
+        profile.updateSaveTime()
+        val current = snapshot(profile)
+        persistedSnapshots[uuid] = current
+
+        val names = dirty.map { it.name } + "last_saved"
+        val sql = "INSERT INTO $tableName (uuid, ${names.joinToString(", ")}) " +
+            "VALUES (?${", ?".repeat(names.size)}) " +
+            "ON CONFLICT(uuid) DO UPDATE SET ${names.joinToString(", ") { "$it = excluded.$it" }}"
+
+        val write = DatabaseManager.enqueueWrite(sql) { stmt ->
+            stmt.setString(1, uuid.toString())
+            dirty.forEachIndexed { index, column -> column.bind(stmt, index + 2, current) }
+            stmt.setLong(dirty.size + 2, current.lastSaved)
+        }
+        pendingSaves[uuid] = write
+        write.whenComplete { _, _ -> pendingSaves.remove(uuid, write) }
+        write.thenAccept { rows ->
+            if (rows < 0) {
+                // 写入失败：丢弃快照，下次保存时重新写入全部变化
+                persistedSnapshots.remove(uuid, current)
+                plugin.logger.severe("[ProfileStore] 保存玩家配置失败: ${profile.playerName} ($uuid)")
+            }
         }
     }
 
@@ -158,23 +248,33 @@ class TSLPlayerProfileStore(private val plugin: JavaPlugin) {
     }
 
     /**
-     * 保存所有缓存的玩家配置
+     * 保存所有缓存的玩家配置（仅写入有变化的配置）
      */
     fun saveAll() {
-        val count = profileCache.size
-        plugin.logger.info("[ProfileStore] 开始保存 $count 个玩家配置...")
-
-        var successCount = 0
         profileCache.values.forEach { profile ->
             try {
                 save(profile)
-                successCount++
             } catch (e: Exception) {
-                plugin.logger.severe("[ProfileStore] 保存失败: ${profile.uuid}")
+                plugin.logger.severe("[ProfileStore] 保存失败: ${profile.uuid} - ${e.message}")
             }
         }
+    }
+
+    /**
+     * 在一个事务中写入多条完整配置，已存在的记录保持不变（YAML 导入使用）
+     */
+    private fun insertIfAbsent(profiles: List<TSLPlayerProfile>): Boolean {
+        val names = columns.map { it.name } + "last_saved"
+        val sql = "INSERT OR IGNORE INTO $tableName (uuid, ${names.joinToString(", ")}) VALUES (?${", ?".repeat(names.size)})"
+        return DatabaseManager.updateBatch(sql, profiles) { stmt, profile ->
+            stmt.setString(1, profile.uuid.toString())
+            columns.forEachIndexed { index, column -> column.bind(stmt, index + 2, profile) }
+            stmt.setLong(columns.size + 2, profile.lastSaved)
+        }
+    }
 
-        plugin.logger.info("[ProfileStore] 保存完成: $successCount/$count 成功")
+    private fun snapshot(profile: TSLPlayerProfile): TSLPlayerProfile {
+        return profile.copy(ignoreList = profile.ignoreList.toMutableSet())
     }
 
     // ==================== 移除配置 ====================
@@ -185,6 +285,25 @@ class TSLPlayerProfileStore(private val plugin: JavaPlugin) {
      */
     fun remove(uuid: UUID) {
         profileCache.remove(uuid)
+        persistedSnapshots.remove(uuid)
+    }
+
+    /**
+     * 保存并移除玩家配置（玩家退出时调用）
+     *
+     * 加载仍在进行时，等加载完成后再保存移除，避免残留缓存。
+     */
+    fun unload(uuid: UUID) {
+        val pending = pendingLoads[uuid]
+        if (pending != null) {
+            pending.thenRun {
+                save(uuid)
+                remove(uuid)
+            }
+            return
+        }
+        save(uuid)
+        remove(uuid)
     }
 
     /**
@@ -192,23 +311,27 @@ class TSLPlayerProfileStore(private val plugin: JavaPlugin) {
      */
     fun clearCache() {
         profileCache.clear()
+        persistedSnapshots.clear()
     }
 
     // ==================== 工具方法 ====================
 
     /**
-     * 获取玩家配置文件
+     * 检查玩家配置是否存在
      */
-    private fun getPlayerFile(uuid: UUID): File {
-        return File(playerDataDir, "$uuid.yml")
+    fun exists(uuid: UUID): Boolean {
+        if (profileCache.containsKey(uuid)) return true
+        val stored = DatabaseManager.query(
+            "SELECT 1 FROM $tableName WHERE uuid = ?",
+            { stmt -> stmt.setString(1, uuid.toString()) }
+        ) { rs -> rs.next() } ?: false
+        return stored || File(playerDataDir, "$uuid.yml").exists()
     }
 
     /**
-     * 检查玩家配置文件是否存在
+     * YAML 导入是否仍在进行
      */
-    fun exists(uuid: UUID): Boolean {
-        return getPlayerFile(uuid).exists()
-    }
+    fun isImporting(): Boolean = importer.running
 
     /**
      * 获取缓存的玩家数量
@@ -224,4 +347,3 @@ class TSLPlayerProfileStore(private val plugin: JavaPlugin) {
         return profileCache.keys.toSet()
     }
 }
-